@@ -24,6 +24,36 @@ public class LightstepSpanExporterFactory implements SpanExporterFactory {
           .setDeadlineMillis(getDeadlineMillis(config, properties))
           .setServiceName(getServiceName(config, properties))
           .setServiceVersion(getServiceVersion(config, properties))
+          .setBufferPoolSize(getBufferPoolSize(config, properties))
+          .setMaxRetainedBufferBytes(getMaxRetainedBufferBytes(config, properties))
+          .setCompression(getCompression(config, properties))
+          .setCompressionLevel(getCompressionLevel(config, properties))
+          .setCompressionMinBytes(getCompressionMinBytes(config, properties))
+          .setAsyncExport(getAsyncExport(config, properties))
+          .setMaxInFlightReports(getMaxInFlightReports(config, properties))
+          .setPipelineChunkSize(getPipelineChunkSize(config, properties))
+          .setResourceTagsOnReporter(getResourceTagsOnReporter(config, properties))
+          .setTransport(getTransport(config, properties))
+          .setBatchSize(getBatchSize(config, properties))
+          .setBatchDelayMillis(getBatchDelayMillis(config, properties))
+          .setMaxReportBytes(getMaxReportBytes(config, properties))
+          .setConversionParallelism(getConversionParallelism(config, properties))
+          .setParallelConversionThreshold(getParallelConversionThreshold(config, properties))
+          .setInternalMetricsIntervalMillis(getInternalMetricsIntervalMillis(config, properties))
+          .setMaxRetries(getMaxRetries(config, properties))
+          .setRetryInitialBackoffMillis(getRetryInitialBackoffMillis(config, properties))
+          .setRetryMaxBackoffMillis(getRetryMaxBackoffMillis(config, properties))
+          .setRetryBudgetPercent(getRetryBudgetPercent(config, properties))
+          .setCircuitBreakerFailureThreshold(
+              getCircuitBreakerFailureThreshold(config, properties))
+          .setCircuitBreakerOpenMillis(getCircuitBreakerOpenMillis(config, properties))
+          .setSpoolDirectory(getSpoolDirectory(config, properties))
+          .setSpoolMaxBytes(getSpoolMaxBytes(config, properties))
+          .setSpoolDrainRate(getSpoolDrainRate(config, properties))
+          .setTailSamplingDecisionWaitMillis(getTailSamplingDecisionWaitMillis(config, properties))
+          .setTailSamplingMaxSpans(getTailSamplingMaxSpans(config, properties))
+          .setTailSamplingMinDurationMillis(getTailSamplingMinDurationMillis(config, properties))
+          .setTailSamplingOperationRate(getTailSamplingOperationRate(config, properties))
           .build();
     } catch (MalformedURLException e) {
       throw new RuntimeException(e);
@@ -94,6 +124,248 @@ public class LightstepSpanExporterFactory implements SpanExporterFactory {
         LightstepConfig.DEFAULT_DEADLINE_MILLIS);
   }
 
+  @VisibleForTesting
+  static int getBufferPoolSize(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.BUFFER_POOL_SIZE_PROPERTY_KEY,
+        LightstepConfig.BUFFER_POOL_SIZE,
+        Integer.class,
+        LightstepConfig.DEFAULT_BUFFER_POOL_SIZE);
+  }
+
+  @VisibleForTesting
+  static int getMaxRetainedBufferBytes(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.MAX_RETAINED_BUFFER_BYTES_PROPERTY_KEY,
+        LightstepConfig.MAX_RETAINED_BUFFER_BYTES,
+        Integer.class,
+        LightstepConfig.DEFAULT_MAX_RETAINED_BUFFER_BYTES);
+  }
+
+  @VisibleForTesting
+  static String getCompression(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.COMPRESSION_PROPERTY_KEY,
+        LightstepConfig.COMPRESSION,
+        String.class,
+        LightstepConfig.COMPRESSION_NONE);
+  }
+
+  @VisibleForTesting
+  static int getCompressionLevel(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.COMPRESSION_LEVEL_PROPERTY_KEY,
+        LightstepConfig.COMPRESSION_LEVEL,
+        Integer.class,
+        LightstepConfig.DEFAULT_COMPRESSION_LEVEL);
+  }
+
+  @VisibleForTesting
+  static int getCompressionMinBytes(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.COMPRESSION_MIN_BYTES_PROPERTY_KEY,
+        LightstepConfig.COMPRESSION_MIN_BYTES,
+        Integer.class,
+        LightstepConfig.DEFAULT_COMPRESSION_MIN_BYTES);
+  }
+
+  @VisibleForTesting
+  static boolean getAsyncExport(Config config, Properties properties) {
+    return Boolean.parseBoolean(getProperty(config, properties,
+        LightstepConfig.ASYNC_EXPORT_PROPERTY_KEY,
+        LightstepConfig.ASYNC_EXPORT,
+        String.class,
+        "false"));
+  }
+
+  @VisibleForTesting
+  static boolean getResourceTagsOnReporter(Config config, Properties properties) {
+    return Boolean.parseBoolean(getProperty(config, properties,
+        LightstepConfig.RESOURCE_TAGS_ON_REPORTER_PROPERTY_KEY,
+        LightstepConfig.RESOURCE_TAGS_ON_REPORTER,
+        String.class,
+        "false"));
+  }
+
+  @VisibleForTesting
+  static int getMaxInFlightReports(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.MAX_IN_FLIGHT_REPORTS_PROPERTY_KEY,
+        LightstepConfig.MAX_IN_FLIGHT_REPORTS,
+        Integer.class,
+        LightstepConfig.DEFAULT_MAX_IN_FLIGHT_REPORTS);
+  }
+
+  @VisibleForTesting
+  static int getPipelineChunkSize(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.PIPELINE_CHUNK_SIZE_PROPERTY_KEY,
+        LightstepConfig.PIPELINE_CHUNK_SIZE,
+        Integer.class,
+        LightstepConfig.DEFAULT_PIPELINE_CHUNK_SIZE);
+  }
+
+  @VisibleForTesting
+  static String getTransport(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.TRANSPORT_PROPERTY_KEY,
+        LightstepConfig.TRANSPORT,
+        String.class,
+        LightstepConfig.TRANSPORT_OKHTTP);
+  }
+
+  @VisibleForTesting
+  static int getBatchSize(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.BATCH_SIZE_PROPERTY_KEY,
+        LightstepConfig.BATCH_SIZE,
+        Integer.class,
+        LightstepConfig.DEFAULT_BATCH_SIZE);
+  }
+
+  @VisibleForTesting
+  static long getBatchDelayMillis(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.BATCH_DELAY_MILLIS_PROPERTY_KEY,
+        LightstepConfig.BATCH_DELAY_MILLIS,
+        Long.class,
+        LightstepConfig.DEFAULT_BATCH_DELAY_MILLIS);
+  }
+
+  @VisibleForTesting
+  static int getMaxReportBytes(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.MAX_REPORT_BYTES_PROPERTY_KEY,
+        LightstepConfig.MAX_REPORT_BYTES,
+        Integer.class,
+        LightstepConfig.DEFAULT_MAX_REPORT_BYTES);
+  }
+
+  @VisibleForTesting
+  static int getConversionParallelism(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.CONVERSION_PARALLELISM_PROPERTY_KEY,
+        LightstepConfig.CONVERSION_PARALLELISM,
+        Integer.class,
+        LightstepConfig.DEFAULT_CONVERSION_PARALLELISM);
+  }
+
+  @VisibleForTesting
+  static int getParallelConversionThreshold(Config config, Properties properties) {
+    return getProperty(config, properties,
+        LightstepConfig.PARALLEL_CONVERSION_THRESHOLD_PROPERTY_KEY,
+        LightstepConfig.PARALLEL_CONVERSION_THRESHOLD,
+        Integer.class,
+        LightstepConfig.DEFAULT_PARALLEL_CONVERSION_THRESHOLD);
+  }
+
+  @VisibleForTesting
+  static long getInternalMetricsIntervalMillis(Config config, Properties properties) {
+    return getProperty(config, properties,
+        LightstepConfig.INTERNAL_METRICS_INTERVAL_MILLIS_PROPERTY_KEY,
+        LightstepConfig.INTERNAL_METRICS_INTERVAL_MILLIS,
+        Long.class,
+        LightstepConfig.DEFAULT_INTERNAL_METRICS_INTERVAL_MILLIS);
+  }
+
+  @VisibleForTesting
+  static int getMaxRetries(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.MAX_RETRIES_PROPERTY_KEY,
+        LightstepConfig.MAX_RETRIES,
+        Integer.class,
+        LightstepConfig.DEFAULT_MAX_RETRIES);
+  }
+
+  @VisibleForTesting
+  static long getRetryInitialBackoffMillis(Config config, Properties properties) {
+    return getProperty(config, properties,
+        LightstepConfig.RETRY_INITIAL_BACKOFF_MILLIS_PROPERTY_KEY,
+        LightstepConfig.RETRY_INITIAL_BACKOFF_MILLIS,
+        Long.class,
+        LightstepConfig.DEFAULT_RETRY_INITIAL_BACKOFF_MILLIS);
+  }
+
+  @VisibleForTesting
+  static long getRetryMaxBackoffMillis(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.RETRY_MAX_BACKOFF_MILLIS_PROPERTY_KEY,
+        LightstepConfig.RETRY_MAX_BACKOFF_MILLIS,
+        Long.class,
+        LightstepConfig.DEFAULT_RETRY_MAX_BACKOFF_MILLIS);
+  }
+
+  @VisibleForTesting
+  static int getRetryBudgetPercent(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.RETRY_BUDGET_PERCENT_PROPERTY_KEY,
+        LightstepConfig.RETRY_BUDGET_PERCENT,
+        Integer.class,
+        LightstepConfig.DEFAULT_RETRY_BUDGET_PERCENT);
+  }
+
+  @VisibleForTesting
+  static int getCircuitBreakerFailureThreshold(Config config, Properties properties) {
+    return getProperty(config, properties,
+        LightstepConfig.CIRCUIT_BREAKER_FAILURE_THRESHOLD_PROPERTY_KEY,
+        LightstepConfig.CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+        Integer.class,
+        LightstepConfig.DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+  }
+
+  @VisibleForTesting
+  static long getCircuitBreakerOpenMillis(Config config, Properties properties) {
+    return getProperty(config, properties,
+        LightstepConfig.CIRCUIT_BREAKER_OPEN_MILLIS_PROPERTY_KEY,
+        LightstepConfig.CIRCUIT_BREAKER_OPEN_MILLIS,
+        Long.class,
+        LightstepConfig.DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS);
+  }
+
+  @VisibleForTesting
+  static String getSpoolDirectory(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.SPOOL_DIRECTORY_PROPERTY_KEY,
+        LightstepConfig.SPOOL_DIRECTORY,
+        String.class,
+        null);
+  }
+
+  @VisibleForTesting
+  static long getSpoolMaxBytes(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.SPOOL_MAX_BYTES_PROPERTY_KEY,
+        LightstepConfig.SPOOL_MAX_BYTES,
+        Long.class,
+        LightstepConfig.DEFAULT_SPOOL_MAX_BYTES);
+  }
+
+  @VisibleForTesting
+  static int getSpoolDrainRate(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.SPOOL_DRAIN_RATE_PROPERTY_KEY,
+        LightstepConfig.SPOOL_DRAIN_RATE,
+        Integer.class,
+        LightstepConfig.DEFAULT_SPOOL_DRAIN_RATE);
+  }
+
+  @VisibleForTesting
+  static long getTailSamplingDecisionWaitMillis(Config config, Properties properties) {
+    return getProperty(config, properties,
+        LightstepConfig.TAIL_SAMPLING_DECISION_WAIT_MILLIS_PROPERTY_KEY,
+        LightstepConfig.TAIL_SAMPLING_DECISION_WAIT_MILLIS,
+        Long.class,
+        LightstepConfig.DEFAULT_TAIL_SAMPLING_DECISION_WAIT_MILLIS);
+  }
+
+  @VisibleForTesting
+  static int getTailSamplingMaxSpans(Config config, Properties properties) {
+    return getProperty(config, properties, LightstepConfig.TAIL_SAMPLING_MAX_SPANS_PROPERTY_KEY,
+        LightstepConfig.TAIL_SAMPLING_MAX_SPANS,
+        Integer.class,
+        LightstepConfig.DEFAULT_TAIL_SAMPLING_MAX_SPANS);
+  }
+
+  @VisibleForTesting
+  static long getTailSamplingMinDurationMillis(Config config, Properties properties) {
+    return getProperty(config, properties,
+        LightstepConfig.TAIL_SAMPLING_MIN_DURATION_MILLIS_PROPERTY_KEY,
+        LightstepConfig.TAIL_SAMPLING_MIN_DURATION_MILLIS,
+        Long.class,
+        0L);
+  }
+
+  @VisibleForTesting
+  static int getTailSamplingOperationRate(Config config, Properties properties) {
+    return getProperty(config, properties,
+        LightstepConfig.TAIL_SAMPLING_OPERATION_RATE_PROPERTY_KEY,
+        LightstepConfig.TAIL_SAMPLING_OPERATION_RATE,
+        Integer.class,
+        0);
+  }
+
   private static <T> T getProperty(final Properties properties, final String key, Class<T> type) {
     if (properties == null) {
       return null;
@@ -2,6 +2,8 @@ package com.lightstep.opentelemetry.exporter.auto;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -64,6 +66,35 @@ public class LightstepSpanExporterFactoryTest {
     System.clearProperty(LightstepConfig.COMPONENT_NAME_PROPERTY_KEY);
     System.clearProperty(LightstepConfig.SERVICE_VERSION_PROPERTY_KEY);
     System.clearProperty(LightstepConfig.CONFIG_FILE_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.BUFFER_POOL_SIZE_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.MAX_RETAINED_BUFFER_BYTES_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.COMPRESSION_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.COMPRESSION_LEVEL_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.COMPRESSION_MIN_BYTES_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.ASYNC_EXPORT_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.RESOURCE_TAGS_ON_REPORTER_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.MAX_IN_FLIGHT_REPORTS_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.PIPELINE_CHUNK_SIZE_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.TRANSPORT_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.BATCH_SIZE_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.BATCH_DELAY_MILLIS_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.MAX_REPORT_BYTES_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.CONVERSION_PARALLELISM_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.PARALLEL_CONVERSION_THRESHOLD_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.INTERNAL_METRICS_INTERVAL_MILLIS_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.MAX_RETRIES_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.RETRY_INITIAL_BACKOFF_MILLIS_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.RETRY_MAX_BACKOFF_MILLIS_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.RETRY_BUDGET_PERCENT_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.CIRCUIT_BREAKER_FAILURE_THRESHOLD_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.CIRCUIT_BREAKER_OPEN_MILLIS_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.SPOOL_DIRECTORY_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.SPOOL_MAX_BYTES_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.SPOOL_DRAIN_RATE_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.TAIL_SAMPLING_DECISION_WAIT_MILLIS_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.TAIL_SAMPLING_MAX_SPANS_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.TAIL_SAMPLING_MIN_DURATION_MILLIS_PROPERTY_KEY);
+    System.clearProperty(LightstepConfig.TAIL_SAMPLING_OPERATION_RATE_PROPERTY_KEY);
   }
 
   private void mockSystem() {
@@ -329,6 +360,415 @@ public class LightstepSpanExporterFactoryTest {
     assertEquals("version-from-config", serviceVersion);
   }
 
+  @Test
+  public void testGetBufferPoolSize_default() {
+    mockSystem();
+    final int bufferPoolSize = LightstepSpanExporterFactory.getBufferPoolSize(config, null);
+    assertEquals(LightstepConfig.DEFAULT_BUFFER_POOL_SIZE, bufferPoolSize);
+  }
+
+  @Test
+  public void testGetBufferPoolSize_fromEnvVariable() {
+    mockSystem();
+    Mockito.when(System.getenv(LightstepConfig.BUFFER_POOL_SIZE)).thenReturn("5");
+    final int bufferPoolSize = LightstepSpanExporterFactory.getBufferPoolSize(config, null);
+    assertEquals(5, bufferPoolSize);
+  }
+
+  @Test
+  public void testGetBufferPoolSize_fromConfig() {
+    Mockito.when(config.getInt(LightstepConfig.BUFFER_POOL_SIZE_PROPERTY_KEY,
+        LightstepConfig.DEFAULT_BUFFER_POOL_SIZE))
+        .thenReturn(0);
+    final int bufferPoolSize = LightstepSpanExporterFactory.getBufferPoolSize(config, null);
+    assertEquals(0, bufferPoolSize);
+  }
+
+  @Test
+  public void testGetMaxRetainedBufferBytes_default() {
+    mockSystem();
+    final int maxRetainedBufferBytes =
+        LightstepSpanExporterFactory.getMaxRetainedBufferBytes(config, null);
+    assertEquals(LightstepConfig.DEFAULT_MAX_RETAINED_BUFFER_BYTES, maxRetainedBufferBytes);
+  }
+
+  @Test
+  public void testGetMaxRetainedBufferBytes_fromSystemProperty() {
+    System.setProperty(LightstepConfig.MAX_RETAINED_BUFFER_BYTES_PROPERTY_KEY, "65536");
+    final int maxRetainedBufferBytes =
+        LightstepSpanExporterFactory.getMaxRetainedBufferBytes(config, null);
+    assertEquals(65536, maxRetainedBufferBytes);
+  }
+
+  @Test
+  public void testGetCompression_default() {
+    mockSystem();
+    final String compression = LightstepSpanExporterFactory.getCompression(config, null);
+    assertEquals(LightstepConfig.COMPRESSION_NONE, compression);
+  }
+
+  @Test
+  public void testGetCompression_fromEnvVariable() {
+    mockSystem();
+    Mockito.when(System.getenv(LightstepConfig.COMPRESSION))
+        .thenReturn(LightstepConfig.COMPRESSION_GZIP);
+    final String compression = LightstepSpanExporterFactory.getCompression(config, null);
+    assertEquals(LightstepConfig.COMPRESSION_GZIP, compression);
+  }
+
+  @Test
+  public void testGetCompressionLevel_fromSystemProperty() {
+    System.setProperty(LightstepConfig.COMPRESSION_LEVEL_PROPERTY_KEY, "9");
+    final int compressionLevel = LightstepSpanExporterFactory.getCompressionLevel(config, null);
+    assertEquals(9, compressionLevel);
+  }
+
+  @Test
+  public void testGetCompressionMinBytes_fromConfig() {
+    Mockito.when(config.getInt(LightstepConfig.COMPRESSION_MIN_BYTES_PROPERTY_KEY,
+        LightstepConfig.DEFAULT_COMPRESSION_MIN_BYTES))
+        .thenReturn(0);
+    final int compressionMinBytes =
+        LightstepSpanExporterFactory.getCompressionMinBytes(config, null);
+    assertEquals(0, compressionMinBytes);
+  }
+
+  @Test
+  public void testGetAsyncExport_default() {
+    mockSystem();
+    assertFalse(LightstepSpanExporterFactory.getAsyncExport(config, null));
+  }
+
+  @Test
+  public void testGetAsyncExport_fromSystemProperty() {
+    System.setProperty(LightstepConfig.ASYNC_EXPORT_PROPERTY_KEY, "true");
+    assertTrue(LightstepSpanExporterFactory.getAsyncExport(config, null));
+  }
+
+  @Test
+  public void testGetResourceTagsOnReporter_default() {
+    mockSystem();
+    assertFalse(LightstepSpanExporterFactory.getResourceTagsOnReporter(config, null));
+  }
+
+  @Test
+  public void testGetResourceTagsOnReporter_fromSystemProperty() {
+    System.setProperty(LightstepConfig.RESOURCE_TAGS_ON_REPORTER_PROPERTY_KEY, "true");
+    assertTrue(LightstepSpanExporterFactory.getResourceTagsOnReporter(config, null));
+  }
+
+  @Test
+  public void testGetMaxInFlightReports_fromEnvVariable() {
+    mockSystem();
+    Mockito.when(System.getenv(LightstepConfig.MAX_IN_FLIGHT_REPORTS)).thenReturn("8");
+    final int maxInFlightReports =
+        LightstepSpanExporterFactory.getMaxInFlightReports(config, null);
+    assertEquals(8, maxInFlightReports);
+  }
+
+  @Test
+  public void testGetPipelineChunkSize_default() {
+    mockSystem();
+    final int pipelineChunkSize = LightstepSpanExporterFactory.getPipelineChunkSize(config, null);
+    assertEquals(LightstepConfig.DEFAULT_PIPELINE_CHUNK_SIZE, pipelineChunkSize);
+  }
+
+  @Test
+  public void testGetPipelineChunkSize_fromSystemProperty() {
+    System.setProperty(LightstepConfig.PIPELINE_CHUNK_SIZE_PROPERTY_KEY, "512");
+    final int pipelineChunkSize = LightstepSpanExporterFactory.getPipelineChunkSize(config, null);
+    assertEquals(512, pipelineChunkSize);
+  }
+
+  @Test
+  public void testGetTransport_default() {
+    mockSystem();
+    final String transport = LightstepSpanExporterFactory.getTransport(config, null);
+    assertEquals(LightstepConfig.TRANSPORT_OKHTTP, transport);
+  }
+
+  @Test
+  public void testGetTransport_fromEnvVariable() {
+    mockSystem();
+    Mockito.when(System.getenv(LightstepConfig.TRANSPORT))
+        .thenReturn(LightstepConfig.TRANSPORT_GRPC);
+    final String transport = LightstepSpanExporterFactory.getTransport(config, null);
+    assertEquals(LightstepConfig.TRANSPORT_GRPC, transport);
+  }
+
+  @Test
+  public void testGetTransport_fromSystemProperty() {
+    System.setProperty(LightstepConfig.TRANSPORT_PROPERTY_KEY, LightstepConfig.TRANSPORT_GRPC);
+    final String transport = LightstepSpanExporterFactory.getTransport(config, null);
+    assertEquals(LightstepConfig.TRANSPORT_GRPC, transport);
+  }
+
+  @Test
+  public void testGetBatchSize_default() {
+    mockSystem();
+    final int batchSize = LightstepSpanExporterFactory.getBatchSize(config, null);
+    assertEquals(LightstepConfig.DEFAULT_BATCH_SIZE, batchSize);
+  }
+
+  @Test
+  public void testGetBatchSize_fromEnvVariable() {
+    mockSystem();
+    Mockito.when(System.getenv(LightstepConfig.BATCH_SIZE)).thenReturn("256");
+    final int batchSize = LightstepSpanExporterFactory.getBatchSize(config, null);
+    assertEquals(256, batchSize);
+  }
+
+  @Test
+  public void testGetBatchDelayMillis_fromSystemProperty() {
+    System.setProperty(LightstepConfig.BATCH_DELAY_MILLIS_PROPERTY_KEY, "250");
+    final long batchDelayMillis = LightstepSpanExporterFactory.getBatchDelayMillis(config, null);
+    assertEquals(250, batchDelayMillis);
+  }
+
+  @Test
+  public void testGetBatchDelayMillis_fromConfig() {
+    Mockito.when(config
+        .getLong(LightstepConfig.BATCH_DELAY_MILLIS_PROPERTY_KEY,
+            LightstepConfig.DEFAULT_BATCH_DELAY_MILLIS))
+        .thenReturn(333L);
+    final long batchDelayMillis = LightstepSpanExporterFactory.getBatchDelayMillis(config, null);
+    assertEquals(333, batchDelayMillis);
+  }
+
+  @Test
+  public void testGetMaxReportBytes_default() {
+    mockSystem();
+    final int maxReportBytes = LightstepSpanExporterFactory.getMaxReportBytes(config, null);
+    assertEquals(LightstepConfig.DEFAULT_MAX_REPORT_BYTES, maxReportBytes);
+  }
+
+  @Test
+  public void testGetMaxReportBytes_fromSystemProperty() {
+    System.setProperty(LightstepConfig.MAX_REPORT_BYTES_PROPERTY_KEY, "65536");
+    final int maxReportBytes = LightstepSpanExporterFactory.getMaxReportBytes(config, null);
+    assertEquals(65536, maxReportBytes);
+  }
+
+  @Test
+  public void testGetConversionParallelism_default() {
+    mockSystem();
+    final int parallelism = LightstepSpanExporterFactory.getConversionParallelism(config, null);
+    assertEquals(LightstepConfig.DEFAULT_CONVERSION_PARALLELISM, parallelism);
+  }
+
+  @Test
+  public void testGetConversionParallelism_fromSystemProperty() {
+    System.setProperty(LightstepConfig.CONVERSION_PARALLELISM_PROPERTY_KEY, "4");
+    final int parallelism = LightstepSpanExporterFactory.getConversionParallelism(config, null);
+    assertEquals(4, parallelism);
+  }
+
+  @Test
+  public void testGetParallelConversionThreshold_default() {
+    mockSystem();
+    final int threshold =
+        LightstepSpanExporterFactory.getParallelConversionThreshold(config, null);
+    assertEquals(LightstepConfig.DEFAULT_PARALLEL_CONVERSION_THRESHOLD, threshold);
+  }
+
+  @Test
+  public void testGetParallelConversionThreshold_fromSystemProperty() {
+    System.setProperty(LightstepConfig.PARALLEL_CONVERSION_THRESHOLD_PROPERTY_KEY, "500");
+    final int threshold =
+        LightstepSpanExporterFactory.getParallelConversionThreshold(config, null);
+    assertEquals(500, threshold);
+  }
+
+  @Test
+  public void testGetInternalMetricsIntervalMillis_default() {
+    mockSystem();
+    final long interval =
+        LightstepSpanExporterFactory.getInternalMetricsIntervalMillis(config, null);
+    assertEquals(LightstepConfig.DEFAULT_INTERNAL_METRICS_INTERVAL_MILLIS, interval);
+  }
+
+  @Test
+  public void testGetInternalMetricsIntervalMillis_fromSystemProperty() {
+    System.setProperty(LightstepConfig.INTERNAL_METRICS_INTERVAL_MILLIS_PROPERTY_KEY, "10000");
+    final long interval =
+        LightstepSpanExporterFactory.getInternalMetricsIntervalMillis(config, null);
+    assertEquals(10000, interval);
+  }
+
+  @Test
+  public void testGetMaxRetries_default() {
+    mockSystem();
+    final int maxRetries = LightstepSpanExporterFactory.getMaxRetries(config, null);
+    assertEquals(LightstepConfig.DEFAULT_MAX_RETRIES, maxRetries);
+  }
+
+  @Test
+  public void testGetMaxRetries_fromSystemProperty() {
+    System.setProperty(LightstepConfig.MAX_RETRIES_PROPERTY_KEY, "5");
+    final int maxRetries = LightstepSpanExporterFactory.getMaxRetries(config, null);
+    assertEquals(5, maxRetries);
+  }
+
+  @Test
+  public void testGetRetryInitialBackoffMillis_default() {
+    mockSystem();
+    final long backoff = LightstepSpanExporterFactory.getRetryInitialBackoffMillis(config, null);
+    assertEquals(LightstepConfig.DEFAULT_RETRY_INITIAL_BACKOFF_MILLIS, backoff);
+  }
+
+  @Test
+  public void testGetRetryInitialBackoffMillis_fromSystemProperty() {
+    System.setProperty(LightstepConfig.RETRY_INITIAL_BACKOFF_MILLIS_PROPERTY_KEY, "250");
+    final long backoff = LightstepSpanExporterFactory.getRetryInitialBackoffMillis(config, null);
+    assertEquals(250, backoff);
+  }
+
+  @Test
+  public void testGetRetryMaxBackoffMillis_default() {
+    mockSystem();
+    final long backoff = LightstepSpanExporterFactory.getRetryMaxBackoffMillis(config, null);
+    assertEquals(LightstepConfig.DEFAULT_RETRY_MAX_BACKOFF_MILLIS, backoff);
+  }
+
+  @Test
+  public void testGetRetryMaxBackoffMillis_fromSystemProperty() {
+    System.setProperty(LightstepConfig.RETRY_MAX_BACKOFF_MILLIS_PROPERTY_KEY, "10000");
+    final long backoff = LightstepSpanExporterFactory.getRetryMaxBackoffMillis(config, null);
+    assertEquals(10000, backoff);
+  }
+
+  @Test
+  public void testGetRetryBudgetPercent_default() {
+    mockSystem();
+    final int budget = LightstepSpanExporterFactory.getRetryBudgetPercent(config, null);
+    assertEquals(LightstepConfig.DEFAULT_RETRY_BUDGET_PERCENT, budget);
+  }
+
+  @Test
+  public void testGetRetryBudgetPercent_fromSystemProperty() {
+    System.setProperty(LightstepConfig.RETRY_BUDGET_PERCENT_PROPERTY_KEY, "20");
+    final int budget = LightstepSpanExporterFactory.getRetryBudgetPercent(config, null);
+    assertEquals(20, budget);
+  }
+
+  @Test
+  public void testGetCircuitBreakerFailureThreshold_default() {
+    mockSystem();
+    final int threshold =
+        LightstepSpanExporterFactory.getCircuitBreakerFailureThreshold(config, null);
+    assertEquals(LightstepConfig.DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD, threshold);
+  }
+
+  @Test
+  public void testGetCircuitBreakerFailureThreshold_fromSystemProperty() {
+    System.setProperty(LightstepConfig.CIRCUIT_BREAKER_FAILURE_THRESHOLD_PROPERTY_KEY, "3");
+    final int threshold =
+        LightstepSpanExporterFactory.getCircuitBreakerFailureThreshold(config, null);
+    assertEquals(3, threshold);
+  }
+
+  @Test
+  public void testGetCircuitBreakerOpenMillis_default() {
+    mockSystem();
+    final long openMillis = LightstepSpanExporterFactory.getCircuitBreakerOpenMillis(config, null);
+    assertEquals(LightstepConfig.DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS, openMillis);
+  }
+
+  @Test
+  public void testGetCircuitBreakerOpenMillis_fromSystemProperty() {
+    System.setProperty(LightstepConfig.CIRCUIT_BREAKER_OPEN_MILLIS_PROPERTY_KEY, "60000");
+    final long openMillis = LightstepSpanExporterFactory.getCircuitBreakerOpenMillis(config, null);
+    assertEquals(60000, openMillis);
+  }
+
+  @Test
+  public void testGetSpoolDirectory_default() {
+    mockSystem();
+    final String directory = LightstepSpanExporterFactory.getSpoolDirectory(config, null);
+    assertThat(directory).isNull();
+  }
+
+  @Test
+  public void testGetSpoolDirectory_fromSystemProperty() {
+    System.setProperty(LightstepConfig.SPOOL_DIRECTORY_PROPERTY_KEY, "/var/spool/lightstep");
+    final String directory = LightstepSpanExporterFactory.getSpoolDirectory(config, null);
+    assertEquals("/var/spool/lightstep", directory);
+  }
+
+  @Test
+  public void testGetSpoolMaxBytes_default() {
+    mockSystem();
+    final long maxBytes = LightstepSpanExporterFactory.getSpoolMaxBytes(config, null);
+    assertEquals(LightstepConfig.DEFAULT_SPOOL_MAX_BYTES, maxBytes);
+  }
+
+  @Test
+  public void testGetSpoolMaxBytes_fromSystemProperty() {
+    System.setProperty(LightstepConfig.SPOOL_MAX_BYTES_PROPERTY_KEY, "1048576");
+    final long maxBytes = LightstepSpanExporterFactory.getSpoolMaxBytes(config, null);
+    assertEquals(1048576, maxBytes);
+  }
+
+  @Test
+  public void testGetSpoolDrainRate_default() {
+    mockSystem();
+    final int drainRate = LightstepSpanExporterFactory.getSpoolDrainRate(config, null);
+    assertEquals(LightstepConfig.DEFAULT_SPOOL_DRAIN_RATE, drainRate);
+  }
+
+  @Test
+  public void testGetSpoolDrainRate_fromSystemProperty() {
+    System.setProperty(LightstepConfig.SPOOL_DRAIN_RATE_PROPERTY_KEY, "50");
+    final int drainRate = LightstepSpanExporterFactory.getSpoolDrainRate(config, null);
+    assertEquals(50, drainRate);
+  }
+
+  @Test
+  public void testGetTailSamplingDecisionWaitMillis_default() {
+    mockSystem();
+    final long waitMillis =
+        LightstepSpanExporterFactory.getTailSamplingDecisionWaitMillis(config, null);
+    assertEquals(LightstepConfig.DEFAULT_TAIL_SAMPLING_DECISION_WAIT_MILLIS, waitMillis);
+  }
+
+  @Test
+  public void testGetTailSamplingDecisionWaitMillis_fromSystemProperty() {
+    System.setProperty(LightstepConfig.TAIL_SAMPLING_DECISION_WAIT_MILLIS_PROPERTY_KEY, "30000");
+    final long waitMillis =
+        LightstepSpanExporterFactory.getTailSamplingDecisionWaitMillis(config, null);
+    assertEquals(30000, waitMillis);
+  }
+
+  @Test
+  public void testGetTailSamplingMaxSpans_default() {
+    mockSystem();
+    final int maxSpans = LightstepSpanExporterFactory.getTailSamplingMaxSpans(config, null);
+    assertEquals(LightstepConfig.DEFAULT_TAIL_SAMPLING_MAX_SPANS, maxSpans);
+  }
+
+  @Test
+  public void testGetTailSamplingMaxSpans_fromSystemProperty() {
+    System.setProperty(LightstepConfig.TAIL_SAMPLING_MAX_SPANS_PROPERTY_KEY, "50000");
+    final int maxSpans = LightstepSpanExporterFactory.getTailSamplingMaxSpans(config, null);
+    assertEquals(50000, maxSpans);
+  }
+
+  @Test
+  public void testGetTailSamplingMinDurationMillis_fromSystemProperty() {
+    System.setProperty(LightstepConfig.TAIL_SAMPLING_MIN_DURATION_MILLIS_PROPERTY_KEY, "500");
+    final long minDurationMillis =
+        LightstepSpanExporterFactory.getTailSamplingMinDurationMillis(config, null);
+    assertEquals(500, minDurationMillis);
+  }
+
+  @Test
+  public void testGetTailSamplingOperationRate_fromSystemProperty() {
+    System.setProperty(LightstepConfig.TAIL_SAMPLING_OPERATION_RATE_PROPERTY_KEY, "2");
+    final int operationRate =
+        LightstepSpanExporterFactory.getTailSamplingOperationRate(config, null);
+    assertEquals(2, operationRate);
+  }
+
   @Test
   public void testConfigFile_default() {
     mockSystem();
@@ -0,0 +1,68 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.Log;
+import com.lightstep.tracer.grpc.Span;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the conversion of a single span of each shape into a Lightstep span, along with the
+ * conversion of its attributes and events alone. With {@code -prof gc}, {@code
+ * gc.alloc.rate.norm} is the number of bytes allocated per span.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdapterBenchmark {
+  private static final List<KeyValue> LS_SPAN_ATTRIBUTES = Collections.singletonList(
+      KeyValue.newBuilder().setKey(LightstepSpanExporter.LIGHTSTEP_HOSTNAME_KEY)
+          .setStringValue("checkout-7d9f8b-xk2lp").build());
+
+  @Param
+  private SpanShape shape;
+
+  private ResourceTagsCache resourceTagsCache;
+  private SpanData span;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    resourceTagsCache = new ResourceTagsCache(ResourceTagsCache.DEFAULT_CAPACITY);
+    span = BenchmarkSpans.span(1, shape);
+  }
+
+  /**
+   * Converts a span as the exporter does, the tags of its resource being cached.
+   */
+  @Benchmark
+  public Span toLightstepSpan() {
+    return Adapter.toLightstepSpan(span, LS_SPAN_ATTRIBUTES, true, resourceTagsCache);
+  }
+
+  @Benchmark
+  public List<KeyValue> toKeyValues() {
+    return Adapter.toKeyValues(span.getAttributes());
+  }
+
+  @Benchmark
+  public List<Log> toLightstepLogs() {
+    return Adapter.toLightstepLogs(span.getEvents());
+  }
+}
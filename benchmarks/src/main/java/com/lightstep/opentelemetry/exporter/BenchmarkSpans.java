@@ -0,0 +1,156 @@
+package com.lightstep.opentelemetry.exporter;
+
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.common.Attributes;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.EventImpl;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.SpanData.Event;
+import io.opentelemetry.sdk.trace.data.SpanData.Link;
+import io.opentelemetry.sdk.trace.data.test.TestSpanData;
+import io.opentelemetry.trace.Span.Kind;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.TraceFlags;
+import io.opentelemetry.trace.TraceId;
+import io.opentelemetry.trace.TraceState;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Spans shared by the benchmarks, shaped like those of an instrumented HTTP service.
+ */
+final class BenchmarkSpans {
+  private static final Resource RESOURCE = Resource.create(Attributes.newBuilder()
+      .setAttribute("service.name", AttributeValue.stringAttributeValue("checkout"))
+      .setAttribute("service.version", AttributeValue.stringAttributeValue("1.4.2"))
+      .setAttribute("host.name", AttributeValue.stringAttributeValue("checkout-7d9f8b-xk2lp"))
+      .setAttribute("telemetry.sdk.language", AttributeValue.stringAttributeValue("java"))
+      .setAttribute("telemetry.sdk.version", AttributeValue.stringAttributeValue("0.7.0"))
+      .build());
+
+  private static final int MANY_ATTRIBUTES = 32;
+  private static final int EVENTS = 8;
+  private static final int LINKS = 8;
+  private static final int LARGE_VALUE_LENGTH = 4096;
+
+  private BenchmarkSpans() {
+  }
+
+  /**
+   * Creates a batch of spans.
+   *
+   * @param size the number of spans of the batch
+   * @return the spans
+   */
+  static List<SpanData> batch(int size) {
+    final List<SpanData> spans = new ArrayList<>(size);
+    for (int i = 1; i <= size; i++) {
+      spans.add(span(i));
+    }
+    return spans;
+  }
+
+  /**
+   * Creates a batch of spans of the given shape.
+   *
+   * @param size the number of spans of the batch
+   * @param shape the shape of the spans
+   * @return the spans
+   */
+  static List<SpanData> batch(int size, SpanShape shape) {
+    final List<SpanData> spans = new ArrayList<>(size);
+    for (int i = 1; i <= size; i++) {
+      spans.add(span(i, shape));
+    }
+    return spans;
+  }
+
+  /**
+   * Creates a span whose ids derive from the given index.
+   *
+   * @param index the index of the span in its batch
+   * @return the span
+   */
+  static SpanData span(int index) {
+    return span(index, SpanShape.FEW_ATTRIBUTES);
+  }
+
+  /**
+   * Creates a span of the given shape whose ids derive from the given index.
+   *
+   * @param index the index of the span in its batch
+   * @param shape the shape of the span
+   * @return the span
+   */
+  static SpanData span(int index, SpanShape shape) {
+    final long startNanos = 1581000000000000000L + index * 1000000L;
+    final Attributes.Builder attributes = Attributes.newBuilder()
+        .setAttribute("http.method", AttributeValue.stringAttributeValue("GET"))
+        .setAttribute("http.url", AttributeValue.stringAttributeValue(
+            "https://checkout.example.com/api/v1/orders/" + index))
+        .setAttribute("http.status_code", AttributeValue.longAttributeValue(200))
+        .setAttribute("http.user_agent", AttributeValue.stringAttributeValue(
+            "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36"))
+        .setAttribute("net.peer.port", AttributeValue.longAttributeValue(443))
+        .setAttribute("sampled", AttributeValue.booleanAttributeValue(true));
+    final List<Event> events = new ArrayList<>();
+    final List<Link> links = new ArrayList<>();
+    switch (shape) {
+      case MANY_ATTRIBUTES:
+        for (int i = 0; i < MANY_ATTRIBUTES; i++) {
+          attributes
+              .setAttribute("app.string." + i, AttributeValue.stringAttributeValue("value " + i))
+              .setAttribute("app.long." + i, AttributeValue.longAttributeValue(i))
+              .setAttribute("app.double." + i, AttributeValue.doubleAttributeValue(i / 10.0))
+              .setAttribute("app.boolean." + i, AttributeValue.booleanAttributeValue(i % 2 == 0));
+        }
+        break;
+      case EVENTS:
+        for (int i = 0; i < EVENTS; i++) {
+          events.add(EventImpl.create(startNanos + i * 1000L, "cache miss", Attributes.of(
+              "cache.key", AttributeValue.stringAttributeValue("order:" + index + ":" + i),
+              "cache.attempt", AttributeValue.longAttributeValue(i))));
+        }
+        break;
+      case LINKS:
+        for (int i = 0; i < LINKS; i++) {
+          links.add(SpanData.Link.create(SpanContext.create(
+              new TraceId(index + i, i), new SpanId(index + i), TraceFlags.builder().build(),
+              TraceState.builder().build())));
+        }
+        break;
+      case LARGE_VALUES:
+        attributes.setAttribute("db.statement", AttributeValue.stringAttributeValue(
+            largeValue("SELECT * FROM orders WHERE id IN (" + index + ", ")));
+        break;
+      default:
+        break;
+    }
+    return TestSpanData.newBuilder()
+        .setHasEnded(true)
+        .setTraceId(new TraceId(index, index * 31L))
+        .setSpanId(new SpanId(index))
+        .setParentSpanId(new SpanId(index + 1))
+        .setName("GET /api/v1/orders/{id}")
+        .setStartEpochNanos(startNanos)
+        .setEndEpochNanos(startNanos + 12345678L)
+        .setAttributes(attributes.build())
+        .setEvents(events)
+        .setLinks(links)
+        .setKind(Kind.SERVER)
+        .setResource(RESOURCE)
+        .setStatus(Status.OK)
+        .setTotalRecordedEvents(events.size())
+        .setTotalRecordedLinks(links.size())
+        .build();
+  }
+
+  private static String largeValue(String prefix) {
+    final char[] chars = new char[LARGE_VALUE_LENGTH - prefix.length()];
+    Arrays.fill(chars, '7');
+    return prefix + new String(chars);
+  }
+}
@@ -0,0 +1,55 @@
+package com.lightstep.opentelemetry.exporter;
+
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.TraceFlags;
+import io.opentelemetry.trace.TraceState;
+
+/**
+ * Ended span returning prebuilt data, as the exporting thread converts spans once dequeued.
+ */
+final class EndedSpan implements ReadableSpan {
+  private static final InstrumentationLibraryInfo INSTRUMENTATION_LIBRARY_INFO =
+      InstrumentationLibraryInfo.create("benchmark", null);
+
+  private final SpanData spanData;
+  private final SpanContext spanContext;
+
+  EndedSpan(SpanData spanData) {
+    this.spanData = spanData;
+    this.spanContext = SpanContext.create(spanData.getTraceId(), spanData.getSpanId(),
+        TraceFlags.builder().setIsSampled(true).build(), TraceState.getDefault());
+  }
+
+  @Override
+  public SpanContext getSpanContext() {
+    return spanContext;
+  }
+
+  @Override
+  public String getName() {
+    return spanData.getName();
+  }
+
+  @Override
+  public SpanData toSpanData() {
+    return spanData;
+  }
+
+  @Override
+  public InstrumentationLibraryInfo getInstrumentationLibraryInfo() {
+    return INSTRUMENTATION_LIBRARY_INFO;
+  }
+
+  @Override
+  public boolean hasEnded() {
+    return true;
+  }
+
+  @Override
+  public long getLatencyNanos() {
+    return spanData.getEndEpochNanos() - spanData.getStartEpochNanos();
+  }
+}
@@ -0,0 +1,248 @@
+package com.lightstep.opentelemetry.exporter;
+
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the full export path, from spans ended by application threads through the SDK {@link
+ * BatchSpanProcessor} and {@link LightstepSpanExporter} to a local {@link StubCollector}, for each
+ * combination of producer thread count and export batch size.
+ *
+ * <p>Producers end spans at the given rate, or as fast as they can by default. The processor drops
+ * the spans ended while its queue is full, as an application would see under sustained load. Each
+ * run prints a JSON object on its own line with the rate of spans ended by the producers and
+ * accepted by the collector, and the percentiles of the time {@link
+ * LightstepSpanExporter#export(Collection)} took, conversion, serialization, I/O and response
+ * parsing included. Progress goes to the standard error.
+ *
+ * <p>Options, given as {@code --name=value}:
+ * <ul>
+ *   <li>{@code producers}: comma separated producer thread counts, defaults to 1,4,16</li>
+ *   <li>{@code batch-sizes}: comma separated maximum export batch sizes, defaults to 64,512,2048
+ *   </li>
+ *   <li>{@code rate}: spans ended per second by each producer, defaults to 0 for no limit</li>
+ *   <li>{@code latency-millis}: latency injected by the collector, defaults to 0</li>
+ *   <li>{@code error-rate}: ratio of reports refused by the collector, defaults to 0</li>
+ *   <li>{@code warmup-seconds}: time run before measuring, defaults to 5</li>
+ *   <li>{@code duration-seconds}: time measured, defaults to 10</li>
+ * </ul>
+ */
+public final class ExportThroughputHarness {
+  private static final int SPAN_COUNT = 1024;
+  // Producers check their rate once per this many spans.
+  private static final int PACING_SPANS = 64;
+
+  private final int producers;
+  private final int batchSize;
+  private final long rate;
+  private final long latencyMillis;
+  private final double errorRate;
+  private final ReadableSpan[] spans = new ReadableSpan[SPAN_COUNT];
+
+  private ExportThroughputHarness(int producers, int batchSize, long rate, long latencyMillis,
+      double errorRate) {
+    this.producers = producers;
+    this.batchSize = batchSize;
+    this.rate = rate;
+    this.latencyMillis = latencyMillis;
+    this.errorRate = errorRate;
+    for (int i = 0; i < SPAN_COUNT; i++) {
+      spans[i] = new EndedSpan(BenchmarkSpans.span(i + 1));
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    final Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      final int separator = arg.indexOf('=');
+      if (!arg.startsWith("--") || separator < 0) {
+        throw new IllegalArgumentException("Invalid option: " + arg);
+      }
+      options.put(arg.substring(2, separator), arg.substring(separator + 1));
+    }
+    final long rate = Long.parseLong(option(options, "rate", "0"));
+    final long latencyMillis = Long.parseLong(option(options, "latency-millis", "0"));
+    final double errorRate = Double.parseDouble(option(options, "error-rate", "0"));
+    final long warmupSeconds = Long.parseLong(option(options, "warmup-seconds", "5"));
+    final long durationSeconds = Long.parseLong(option(options, "duration-seconds", "10"));
+    for (String producers : option(options, "producers", "1,4,16").split(",")) {
+      for (String batchSize : option(options, "batch-sizes", "64,512,2048").split(",")) {
+        final ExportThroughputHarness harness = new ExportThroughputHarness(
+            Integer.parseInt(producers.trim()), Integer.parseInt(batchSize.trim()), rate,
+            latencyMillis, errorRate);
+        System.err.println("Running " + producers + " producers with batches of " + batchSize);
+        System.out.println(harness.run(warmupSeconds, durationSeconds));
+      }
+    }
+  }
+
+  private static String option(Map<String, String> options, String name, String defaultValue) {
+    final String value = options.get(name);
+    return value != null ? value : defaultValue;
+  }
+
+  /**
+   * Runs the producers for the warmup then the measured duration.
+   *
+   * @return the results of the measured duration, as a JSON object
+   */
+  private String run(long warmupSeconds, long durationSeconds) throws Exception {
+    final StubCollector collector = StubCollector.start(latencyMillis, errorRate);
+    final TimedExporter exporter = new TimedExporter(LightstepSpanExporter.newBuilder()
+        .setCollectorProtocol("http")
+        .setCollectorHost("localhost")
+        .setCollectorPort(collector.getPort())
+        .build());
+    final BatchSpanProcessor processor = BatchSpanProcessor.newBuilder(exporter)
+        .setMaxExportBatchSize(batchSize)
+        .setMaxQueueSize(Math.max(2048, 4 * batchSize))
+        .build();
+    final Producer[] threads = new Producer[producers];
+    for (int i = 0; i < producers; i++) {
+      threads[i] = new Producer(processor, i);
+      threads[i].start();
+    }
+
+    Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+    final long startNanos = System.nanoTime();
+    final long startEnded = endedSpans(threads);
+    final long startAccepted = collector.getSpanCount();
+    final long startErrors = collector.getErrorCount();
+    exporter.takeLatencies();
+    exporter.failedExports.set(0);
+    Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+    final double seconds = (System.nanoTime() - startNanos) / 1e9;
+    final long ended = endedSpans(threads) - startEnded;
+    final long accepted = collector.getSpanCount() - startAccepted;
+    final long errors = collector.getErrorCount() - startErrors;
+    final long[] latencies = exporter.takeLatencies();
+    final long failed = exporter.failedExports.get();
+
+    for (Producer thread : threads) {
+      thread.interrupt();
+      thread.join();
+    }
+    processor.shutdown();
+    collector.stop();
+
+    Arrays.sort(latencies);
+    return String.format(Locale.ROOT, "{\"producers\":%d,\"batchSize\":%d,\"rate\":%d,"
+            + "\"latencyMillis\":%d,\"errorRate\":%s,\"seconds\":%.3f,\"endedSpansPerSecond\":%.1f,"
+            + "\"acceptedSpansPerSecond\":%.1f,\"exports\":%d,\"failedExports\":%d,"
+            + "\"collectorErrors\":%d,\"exportP50Millis\":%.3f,\"exportP99Millis\":%.3f,"
+            + "\"exportMaxMillis\":%.3f}",
+        producers, batchSize, rate, latencyMillis, errorRate, seconds, ended / seconds,
+        accepted / seconds, latencies.length, failed, errors, percentileMillis(latencies, 0.5),
+        percentileMillis(latencies, 0.99), percentileMillis(latencies, 1));
+  }
+
+  private static long endedSpans(Producer[] threads) {
+    long count = 0;
+    for (Producer thread : threads) {
+      count += thread.ended.get();
+    }
+    return count;
+  }
+
+  private static double percentileMillis(long[] sortedNanos, double percentile) {
+    if (sortedNanos.length == 0) {
+      return 0;
+    }
+    final int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+    return sortedNanos[Math.max(0, index)] / 1e6;
+  }
+
+  /**
+   * Application thread ending spans in a loop until interrupted.
+   */
+  private final class Producer extends Thread {
+    private final BatchSpanProcessor processor;
+    private final AtomicLong ended = new AtomicLong();
+
+    Producer(BatchSpanProcessor processor, int index) {
+      super("producer-" + index);
+      this.processor = processor;
+    }
+
+    @Override
+    public void run() {
+      final long startNanos = System.nanoTime();
+      long count = 0;
+      while (!isInterrupted()) {
+        processor.onEnd(spans[(int) count & (SPAN_COUNT - 1)]);
+        ended.lazySet(++count);
+        if (rate > 0 && count % PACING_SPANS == 0) {
+          final long aheadNanos =
+              startNanos + count * TimeUnit.SECONDS.toNanos(1) / rate - System.nanoTime();
+          if (aheadNanos > 0) {
+            try {
+              TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            } catch (InterruptedException e) {
+              return;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Records the time taken by each export of the wrapped exporter.
+   */
+  private static final class TimedExporter implements SpanExporter {
+    private final SpanExporter delegate;
+    private final AtomicLong failedExports = new AtomicLong();
+    private List<Long> latencies = new ArrayList<>();
+
+    TimedExporter(SpanExporter delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public ResultCode export(Collection<SpanData> spans) {
+      final long start = System.nanoTime();
+      final ResultCode result = delegate.export(spans);
+      final long latency = System.nanoTime() - start;
+      if (result != ResultCode.SUCCESS) {
+        failedExports.incrementAndGet();
+      }
+      synchronized (this) {
+        latencies.add(latency);
+      }
+      return result;
+    }
+
+    /**
+     * Returns the export latencies recorded since the previous call, in nanoseconds.
+     */
+    synchronized long[] takeLatencies() {
+      final long[] taken = new long[latencies.size()];
+      for (int i = 0; i < taken.length; i++) {
+        taken[i] = latencies.get(i);
+      }
+      latencies = new ArrayList<>();
+      return taken;
+    }
+
+    @Override
+    public ResultCode flush() {
+      return delegate.flush();
+    }
+
+    @Override
+    public void shutdown() {
+      delegate.shutdown();
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.lightstep.opentelemetry.exporter;
+
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.TraceId;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the conversion of OpenTelemetry ids into Lightstep's 64 bit ids. Run with {@code -prof
+ * gc} to verify the conversion does not allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdConversionBenchmark {
+  private final TraceId traceId = TraceId.fromLowerBase16("463ac35c9f6413ad48485a3953bb6124", 0);
+  private final SpanId spanId = SpanId.fromLowerBase16("0000000000def456", 0);
+
+  @Benchmark
+  public long traceIdToLong() {
+    return Adapter.traceIdToLong(traceId);
+  }
+
+  @Benchmark
+  public long spanIdToLong() {
+    return Adapter.spanIdToLong(spanId);
+  }
+}
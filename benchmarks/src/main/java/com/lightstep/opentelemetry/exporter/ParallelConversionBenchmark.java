@@ -0,0 +1,70 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.Span;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the conversion of a batch into Lightstep spans, split into as many chunks as the
+ * parallelism and converted on a {@link ForkJoinPool}. A parallelism of one is the sequential
+ * conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelConversionBenchmark {
+  private static final List<KeyValue> LS_SPAN_ATTRIBUTES = Collections.singletonList(
+      KeyValue.newBuilder().setKey(LightstepSpanExporter.LIGHTSTEP_HOSTNAME_KEY)
+          .setStringValue("checkout-7d9f8b-xk2lp").build());
+
+  @Param({"512", "2048", "8192"})
+  private int batchSize;
+
+  @Param({"1", "2", "4", "8"})
+  private int parallelism;
+
+  private ForkJoinPool pool;
+  private ResourceTagsCache resourceTagsCache;
+  private List<SpanData> batch;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    pool = new ForkJoinPool(parallelism);
+    resourceTagsCache = new ResourceTagsCache(ResourceTagsCache.DEFAULT_CAPACITY);
+    batch = BenchmarkSpans.batch(batchSize);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  /**
+   * Converts a batch, the score is the time per batch.
+   */
+  @Benchmark
+  public List<Span> toLightstepSpans() {
+    return Adapter.toLightstepSpans(batch, LS_SPAN_ATTRIBUTES, true, resourceTagsCache, pool,
+        parallelism, 0);
+  }
+}
@@ -0,0 +1,76 @@
+package com.lightstep.opentelemetry.exporter;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter.ResultCode;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the span throughput of exports split into several reports, against a local collector
+ * with injected latency. A window of one report in flight sends the reports one after the other,
+ * as the serial export path does; larger windows serialize a report while the previous ones are on
+ * the wire.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@OperationsPerInvocation(PipelinedExportBenchmark.BATCH_SIZE)
+public class PipelinedExportBenchmark {
+  static final int BATCH_SIZE = 2048;
+  private static final int CHUNK_SIZE = 256;
+
+  @Param({"50", "200"})
+  private long latencyMillis;
+
+  @Param({"1", "4"})
+  private int maxInFlightReports;
+
+  private StubCollector collector;
+  private LightstepSpanExporter exporter;
+  private List<SpanData> batch;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    collector = StubCollector.start(latencyMillis);
+    exporter = LightstepSpanExporter.newBuilder()
+        .setCollectorProtocol("http")
+        .setCollectorHost("localhost")
+        .setCollectorPort(collector.getPort())
+        .setPipelineChunkSize(CHUNK_SIZE)
+        .setMaxInFlightReports(maxInFlightReports)
+        .setBufferPoolSize(maxInFlightReports)
+        .build();
+    batch = BenchmarkSpans.batch(BATCH_SIZE);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    exporter.shutdown();
+    collector.stop();
+  }
+
+  /**
+   * Exports a batch, the score is in spans per second.
+   */
+  @Benchmark
+  public ResultCode export() {
+    return exporter.export(batch);
+  }
+}
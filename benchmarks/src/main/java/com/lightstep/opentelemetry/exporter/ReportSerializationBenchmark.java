@@ -0,0 +1,96 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.google.protobuf.CodedOutputStream;
+import com.lightstep.tracer.grpc.Auth;
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.Reporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the serialization of a full report of 256 spans of each shape, from the spans to the
+ * bytes of the request. Scores are per span, so with {@code -prof gc}, {@code gc.alloc.rate.norm}
+ * is the number of bytes allocated per span.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReportSerializationBenchmark {
+  private static final int BATCH_SIZE = 256;
+  private static final List<KeyValue> LS_SPAN_ATTRIBUTES = Collections.singletonList(
+      KeyValue.newBuilder().setKey(LightstepSpanExporter.LIGHTSTEP_HOSTNAME_KEY)
+          .setStringValue("checkout-7d9f8b-xk2lp").build());
+  private static final Reporter REPORTER = Reporter.newBuilder()
+      .setReporterId(1)
+      .addTags(KeyValue.newBuilder().setKey("lightstep.component_name").setStringValue("checkout"))
+      .build();
+  private static final Auth AUTH = Auth.newBuilder().setAccessToken("token").build();
+
+  @Param
+  private SpanShape shape;
+
+  private ResourceTagsCache resourceTagsCache;
+  private List<SpanData> batch;
+  private byte[] buffer;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    resourceTagsCache = new ResourceTagsCache(ResourceTagsCache.DEFAULT_CAPACITY);
+    batch = BenchmarkSpans.batch(BATCH_SIZE, shape);
+    buffer = new byte[(int) encodedSpans().contentLength()];
+  }
+
+  private ReportRequestBody encodedSpans() {
+    return ReportRequestBody.create(REPORTER, AUTH, batch, LS_SPAN_ATTRIBUTES, true,
+        resourceTagsCache, null, null);
+  }
+
+  /**
+   * Converts the spans with {@link Adapter}, then serializes the resulting {@link ReportRequest}.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public int convertedReport() throws IOException {
+    final ReportRequest request = ReportRequest.newBuilder()
+        .setAuth(AUTH)
+        .setReporter(REPORTER)
+        .addAllSpans(Adapter.toLightstepSpans(batch, LS_SPAN_ATTRIBUTES, true, resourceTagsCache))
+        .build();
+    return write(ReportRequestBody.create(request, null, null));
+  }
+
+  /**
+   * Encodes the spans straight into the request with {@link SpanEncoder}.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public int encodedReport() throws IOException {
+    return write(encodedSpans());
+  }
+
+  private int write(ReportRequestBody body) throws IOException {
+    final CodedOutputStream out = CodedOutputStream.newInstance(buffer);
+    body.writeTo(out);
+    return out.spaceLeft();
+  }
+}
@@ -0,0 +1,134 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.lightstep.opentelemetry.exporter.LightstepSpanProcessor.WaitStrategy;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of ending spans when many application threads hand them over to the exporting
+ * thread at once, comparing the SDK {@link BatchSpanProcessor} queue to the ring buffer of {@link
+ * LightstepSpanProcessor} with each of its wait strategies. The exporter discards the spans so only
+ * the handoff is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class SpanProcessorContentionBenchmark {
+  private static final int SPAN_COUNT = 1024;
+
+  @Param({"batch", "lightstep-park", "lightstep-yield", "lightstep-busy-spin"})
+  private String processorType;
+
+  private SpanProcessor processor;
+  private ReadableSpan[] spans;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final SpanExporter exporter = new SpanExporter() {
+      @Override
+      public ResultCode export(Collection<SpanData> spans) {
+        return ResultCode.SUCCESS;
+      }
+
+      @Override
+      public ResultCode flush() {
+        return ResultCode.SUCCESS;
+      }
+
+      @Override
+      public void shutdown() {
+      }
+    };
+    switch (processorType) {
+      case "batch":
+        processor = BatchSpanProcessor.newBuilder(exporter).build();
+        break;
+      case "lightstep-park":
+        processor = newLightstepProcessor(exporter, WaitStrategy.PARK);
+        break;
+      case "lightstep-yield":
+        processor = newLightstepProcessor(exporter, WaitStrategy.YIELD);
+        break;
+      case "lightstep-busy-spin":
+        processor = newLightstepProcessor(exporter, WaitStrategy.BUSY_SPIN);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown processor type: " + processorType);
+    }
+
+    spans = new ReadableSpan[SPAN_COUNT];
+    for (int i = 0; i < SPAN_COUNT; i++) {
+      spans[i] = new EndedSpan(BenchmarkSpans.span(i + 1));
+    }
+  }
+
+  private static SpanProcessor newLightstepProcessor(SpanExporter exporter,
+      WaitStrategy waitStrategy) {
+    return LightstepSpanProcessor.newBuilder(exporter)
+        .setWaitStrategy(waitStrategy)
+        .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    processor.shutdown();
+  }
+
+  /**
+   * Index of the next span ended by each benchmark thread.
+   */
+  @State(Scope.Thread)
+  public static class SpanIndex {
+    private int index;
+
+    ReadableSpan next(ReadableSpan[] spans) {
+      return spans[index++ & (SPAN_COUNT - 1)];
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void onEnd_1Thread(SpanIndex spanIndex) {
+    processor.onEnd(spanIndex.next(spans));
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void onEnd_8Threads(SpanIndex spanIndex) {
+    processor.onEnd(spanIndex.next(spans));
+  }
+
+  @Benchmark
+  @Threads(32)
+  public void onEnd_32Threads(SpanIndex spanIndex) {
+    processor.onEnd(spanIndex.next(spans));
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void onEnd_64Threads(SpanIndex spanIndex) {
+    processor.onEnd(spanIndex.next(spans));
+  }
+}
@@ -0,0 +1,13 @@
+package com.lightstep.opentelemetry.exporter;
+
+/**
+ * The shapes of the spans created by {@link BenchmarkSpans}, from the typical HTTP server span with
+ * a few attributes to spans carrying many attributes, events, links or large string values.
+ */
+public enum SpanShape {
+  FEW_ATTRIBUTES,
+  MANY_ATTRIBUTES,
+  EVENTS,
+  LINKS,
+  LARGE_VALUES
+}
@@ -0,0 +1,142 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Local collector accepting reports after an injected latency, standing in for the network round
+ * trip to Lightstep. Reports are decoded as the collector would, and a given ratio of them can be
+ * refused with a 503 to inject errors.
+ */
+final class StubCollector {
+  private static final byte[] RESPONSE = ReportResponse.newBuilder().build().toByteArray();
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final AtomicLong reports = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong spans = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+
+  private StubCollector(final long latencyMillis, final double errorRate) throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    this.executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext(LightstepSpanExporter.PATH, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final boolean gzip = LightstepConfig.COMPRESSION_GZIP.equals(
+            exchange.getRequestHeaders().getFirst(LightstepSpanExporter.CONTENT_ENCODING));
+        try (InputStream in = gzip ? new GZIPInputStream(exchange.getRequestBody())
+            : exchange.getRequestBody()) {
+          final byte[] buffer = new byte[8192];
+          int read;
+          while ((read = in.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+          }
+        }
+        bytes.addAndGet(body.size());
+        final ReportRequest request = ReportRequest.parseFrom(body.toByteArray());
+        reports.incrementAndGet();
+        sleep(latencyMillis);
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+          errors.incrementAndGet();
+          exchange.sendResponseHeaders(503, -1);
+          exchange.close();
+          return;
+        }
+        spans.addAndGet(request.getSpansCount());
+        exchange.sendResponseHeaders(200, RESPONSE.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(RESPONSE);
+        }
+      }
+    });
+  }
+
+  /**
+   * Starts a collector on an ephemeral port.
+   *
+   * @param latencyMillis the time waited before responding to each report
+   * @return the started collector
+   * @throws IOException if the server could not be started
+   */
+  static StubCollector start(long latencyMillis) throws IOException {
+    return start(latencyMillis, 0);
+  }
+
+  /**
+   * Starts a collector on an ephemeral port, refusing some of the reports.
+   *
+   * @param latencyMillis the time waited before responding to each report
+   * @param errorRate the ratio of reports refused with a 503, between 0 and 1
+   * @return the started collector
+   * @throws IOException if the server could not be started
+   */
+  static StubCollector start(long latencyMillis, double errorRate) throws IOException {
+    final StubCollector collector = new StubCollector(latencyMillis, errorRate);
+    collector.server.start();
+    return collector;
+  }
+
+  int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Returns the number of reports received.
+   */
+  long getReportCount() {
+    return reports.get();
+  }
+
+  /**
+   * Returns the number of request body bytes received.
+   */
+  long getByteCount() {
+    return bytes.get();
+  }
+
+  /**
+   * Returns the number of spans in the reports accepted.
+   */
+  long getSpanCount() {
+    return spans.get();
+  }
+
+  /**
+   * Returns the number of reports refused with an injected error.
+   */
+  long getErrorCount() {
+    return errors.get();
+  }
+
+  void stop() throws InterruptedException {
+    server.stop(0);
+    executor.shutdownNow();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -1,7 +1,6 @@
 package com.lightstep.opentelemetry.exporter;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.protobuf.ByteString;
 import com.google.protobuf.Timestamp;
 import com.google.protobuf.util.Durations;
 import com.google.protobuf.util.Timestamps;
@@ -14,15 +13,17 @@ import com.lightstep.tracer.grpc.SpanContext;
 import io.opentelemetry.common.AttributeValue;
 import io.opentelemetry.common.ReadableAttributes;
 import io.opentelemetry.common.ReadableKeyValuePairs.KeyValueConsumer;
+import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import io.opentelemetry.sdk.trace.data.SpanData.Event;
 import io.opentelemetry.sdk.trace.data.SpanData.Link;
 import io.opentelemetry.trace.SpanId;
 import io.opentelemetry.trace.TraceId;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -36,6 +37,17 @@ final class Adapter {
   static final String KEY_SPAN_STATUS_CODE = "span.status.code";
   static final String KEY_ERROR = "error";
 
+  /**
+   * Thread-specific scratch buffers the bytes of span ids are copied into.
+   */
+  private static final ThreadLocal<byte[]> spanIdBytes =
+      new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+          return new byte[SpanId.getSize()];
+        }
+      };
+
   private Adapter() {
   }
 
@@ -49,13 +61,58 @@ final class Adapter {
    */
   static List<Span> toLightstepSpans(Collection<SpanData> spans,
       Collection<KeyValue> lsSpanAttributes) {
+    return toLightstepSpans(spans, lsSpanAttributes, true, null);
+  }
+
+  /**
+   * Converts a list of {@link SpanData} into a collection of Lightstep's {@link Span}.
+   *
+   * @param spans the list of spans to be converted
+   * @param lsSpanAttributes the list of LS-specific Span attributes to add.
+   * @param includeResourceTags whether the resource attributes are added as span tags
+   * @param resourceTagsCache the cache of resource tags, or {@code null} to convert them for
+   * every span
+   * @return the collection of Lightstep spans
+   */
+  static List<Span> toLightstepSpans(Collection<SpanData> spans,
+      Collection<KeyValue> lsSpanAttributes, boolean includeResourceTags,
+      @Nullable ResourceTagsCache resourceTagsCache) {
     List<Span> converted = new ArrayList<>();
     for (SpanData span : spans) {
-      converted.add(toLightstepSpan(span, lsSpanAttributes));
+      converted.add(
+          toLightstepSpan(span, lsSpanAttributes, includeResourceTags, resourceTagsCache));
     }
     return converted;
   }
 
+  /**
+   * Converts a list of {@link SpanData} into a collection of Lightstep's {@link Span}, splitting
+   * large batches into chunks converted concurrently. The calling thread converts the first chunk
+   * while the executor converts the others, or converts them too if the executor rejects them.
+   * The converted spans keep the order of the given ones.
+   *
+   * @param spans the list of spans to be converted
+   * @param lsSpanAttributes the list of LS-specific Span attributes to add.
+   * @param includeResourceTags whether the resource attributes are added as span tags
+   * @param resourceTagsCache the cache of resource tags, or {@code null} to convert them for
+   * every span
+   * @param executor the executor converting the chunks
+   * @param parallelism the number of chunks a batch is split into
+   * @param threshold the number of spans below which a batch is converted sequentially
+   * @return the collection of Lightstep spans
+   */
+  static List<Span> toLightstepSpans(Collection<SpanData> spans,
+      final Collection<KeyValue> lsSpanAttributes, final boolean includeResourceTags,
+      @Nullable final ResourceTagsCache resourceTagsCache, Executor executor, int parallelism,
+      int threshold) {
+    return new ParallelConversion<Span>() {
+      @Override
+      List<Span> convert(List<SpanData> chunk) {
+        return toLightstepSpans(chunk, lsSpanAttributes, includeResourceTags, resourceTagsCache);
+      }
+    }.convert(spans, executor, parallelism, threshold);
+  }
+
   /**
    * Converts a single {@link SpanData} into a Lightstep's {@link Span}.
    *
@@ -64,6 +121,20 @@ final class Adapter {
    * @return the Lightstep span
    */
   static Span toLightstepSpan(SpanData spanData, Collection<KeyValue> lsSpanAttributes) {
+    return toLightstepSpan(spanData, lsSpanAttributes, true, null);
+  }
+
+  /**
+   * Converts a single {@link SpanData} into a Lightstep's {@link Span}.
+   *
+   * @param spanData the spanData to be converted
+   * @param lsSpanAttributes the list of LS-specific Span attributes to add.
+   * @param includeResourceTags whether the resource attributes are added as span tags
+   * @param resourceTagsCache the cache of resource tags, or {@code null} to convert them
+   * @return the Lightstep span
+   */
+  static Span toLightstepSpan(SpanData spanData, Collection<KeyValue> lsSpanAttributes,
+      boolean includeResourceTags, @Nullable ResourceTagsCache resourceTagsCache) {
     final Span.Builder builder = Span.newBuilder();
     builder.setOperationName(spanData.getName());
 
@@ -81,7 +152,9 @@ final class Adapter {
     builder.setDurationMicros(Durations.toMicros(Timestamps.between(startTimestamp, endTimestamp)));
 
     builder.addAllTags(toKeyValues(spanData.getAttributes()));
-    builder.addAllTags(toKeyValues(spanData.getResource().getAttributes()));
+    if (includeResourceTags) {
+      builder.addAllTags(toResourceTags(spanData.getResource(), resourceTagsCache));
+    }
 
     if (lsSpanAttributes != null && !lsSpanAttributes.isEmpty()) {
       builder.addAllTags(lsSpanAttributes);
@@ -134,6 +207,22 @@ final class Adapter {
     return builder.build();
   }
 
+  /**
+   * Converts the attributes of a {@link Resource} into a collection of Lightstep's {@link
+   * KeyValue}.
+   *
+   * @param resource the resource to be converted
+   * @param resourceTagsCache the cache of resource tags, or {@code null} to convert them
+   * @return a collection of Lightstep key values
+   */
+  static List<KeyValue> toResourceTags(Resource resource,
+      @Nullable ResourceTagsCache resourceTagsCache) {
+    if (resourceTagsCache != null) {
+      return resourceTagsCache.get(resource).getTags();
+    }
+    return toKeyValues(resource.getAttributes());
+  }
+
   /**
    * Converts {@link Link}s into a collection of Lightstep's {@link Reference}.
    *
@@ -251,6 +340,9 @@ final class Adapter {
   /**
    * Convert {@link TraceId} to long value.
    *
+   * <p>Uses the 64 least significant bits, represented by the right-most 8 bytes. See
+   * https://github.com/openzipkin/b3-propagation#traceid-1
+   *
    * @param traceId trace id
    * @return long value of trace id
    */
@@ -259,23 +351,7 @@ final class Adapter {
     if (traceId == null) {
       return 0L;
     }
-    final ByteString protoTraceId = toByteString(traceId);
-    return fromByteArray(protoTraceId.toByteArray());
-  }
-
-  private static ByteString toByteString(TraceId traceId) {
-    int traceIdSize = TraceId.getSize();
-    byte[] traceIdBytes = new byte[traceIdSize];
-    traceId.copyBytesTo(traceIdBytes, 0);
-    // Use the 64 least significant bits, represented by the right-most
-    // 8 bytes. See https://github.com/openzipkin/b3-propagation#traceid-1
-    return ByteString.copyFrom(traceIdBytes, traceIdSize / 2, traceIdSize / 2);
-  }
-
-  private static ByteString toByteString(SpanId spanId) {
-    byte[] spanIdBytes = new byte[SpanId.getSize()];
-    spanId.copyBytesTo(spanIdBytes, 0);
-    return ByteString.copyFrom(spanIdBytes);
+    return traceId.getTraceRandomPart();
   }
 
   /**
@@ -289,11 +365,13 @@ final class Adapter {
     if (spanId == null) {
       return 0L;
     }
-    final ByteString protoSpanId = toByteString(spanId);
-    return fromByteArray(protoSpanId.toByteArray());
-  }
-
-  private static long fromByteArray(byte[] bytes) {
-    return ByteBuffer.wrap(bytes).getLong();
+    // SpanId does not expose its value, copy its big-endian bytes without allocating instead.
+    final byte[] bytes = spanIdBytes.get();
+    spanId.copyBytesTo(bytes, 0);
+    long value = 0;
+    for (byte b : bytes) {
+      value = (value << 8) | (b & 0xff);
+    }
+    return value;
   }
 }
@@ -0,0 +1,111 @@
+package com.lightstep.opentelemetry.exporter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Small pool of heap {@link ByteBuffer}s that report requests are serialized into.
+ *
+ * <p>Buffers are reused across exports so that steady-state exports do not allocate a new payload
+ * array per batch. At most {@code maxPoolSize} buffers are retained, and buffers larger than
+ * {@code maxRetainedCapacity} are dropped when released, so a burst of large batches does not pin
+ * memory once it is over.
+ */
+@ThreadSafe
+final class BufferPool {
+  private static final int MIN_CAPACITY = 4096;
+
+  private final int maxPoolSize;
+  private final int maxRetainedCapacity;
+  private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+  private final AtomicLong allocations = new AtomicLong();
+
+  /**
+   * Creates a new pool.
+   *
+   * @param maxPoolSize the maximum number of idle buffers kept in the pool
+   * @param maxRetainedCapacity the maximum capacity of a buffer kept in the pool
+   */
+  BufferPool(int maxPoolSize, int maxRetainedCapacity) {
+    if (maxPoolSize <= 0) {
+      throw new IllegalArgumentException("Invalid pool size: " + maxPoolSize);
+    }
+    if (maxRetainedCapacity <= 0) {
+      throw new IllegalArgumentException("Invalid retained capacity: " + maxRetainedCapacity);
+    }
+    this.maxPoolSize = maxPoolSize;
+    this.maxRetainedCapacity = maxRetainedCapacity;
+  }
+
+  /**
+   * Returns a cleared buffer of at least the given capacity, reusing a pooled one when possible.
+   *
+   * @param capacity the minimum capacity of the buffer
+   * @return a buffer whose limit is its capacity
+   */
+  ByteBuffer acquire(int capacity) {
+    synchronized (buffers) {
+      final Iterator<ByteBuffer> iterator = buffers.iterator();
+      while (iterator.hasNext()) {
+        final ByteBuffer buffer = iterator.next();
+        if (buffer.capacity() >= capacity) {
+          iterator.remove();
+          buffer.clear();
+          return buffer;
+        }
+      }
+      // None is large enough, drop one so the new buffer can take its place once released.
+      buffers.pollFirst();
+    }
+    allocations.incrementAndGet();
+    return ByteBuffer.allocate(
+        Math.max(capacity, Math.min(roundUpCapacity(capacity), maxRetainedCapacity)));
+  }
+
+  /**
+   * Returns a buffer to the pool. Buffers above the maximum retained capacity are dropped.
+   *
+   * @param buffer a buffer obtained from {@link #acquire(int)}
+   */
+  void release(ByteBuffer buffer) {
+    if (buffer.capacity() > maxRetainedCapacity) {
+      return;
+    }
+    synchronized (buffers) {
+      if (buffers.size() < maxPoolSize) {
+        buffers.offerLast(buffer);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of buffers allocated because no pooled buffer was large enough.
+   */
+  long getAllocationCount() {
+    return allocations.get();
+  }
+
+  /**
+   * Returns the number of idle buffers currently held by the pool.
+   */
+  int size() {
+    synchronized (buffers) {
+      return buffers.size();
+    }
+  }
+
+  private static int roundUpCapacity(int capacity) {
+    if (capacity <= MIN_CAPACITY) {
+      return MIN_CAPACITY;
+    }
+    // Round up to the next power of two so that slightly growing batches reuse the same buffer.
+    final int highestOneBit = Integer.highestOneBit(capacity);
+    if (highestOneBit == capacity || highestOneBit == 1 << 30) {
+      return capacity;
+    }
+    return highestOneBit << 1;
+  }
+}
@@ -0,0 +1,125 @@
+package com.lightstep.opentelemetry.exporter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Stops exporting while the collector is unreachable, so that exports skip the conversion and
+ * serialization of spans which would only fail to be sent.
+ *
+ * <p>The breaker opens after the configured number of consecutive failed reports. Once open,
+ * exports are refused until the open duration elapsed, at which point the breaker is half-open and
+ * lets a single export through as a probe: its success closes the breaker, its failure opens it
+ * again for another open duration. While the breaker is not closed, a single failed report opens
+ * it.
+ */
+@ThreadSafe
+final class CircuitBreaker {
+  private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+  /**
+   * The states of a breaker, the ordinal being the value of its internal metrics gauge.
+   */
+  enum State {
+    CLOSED,
+    HALF_OPEN,
+    OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openNanos;
+  private final ExporterMetrics metrics;
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private volatile State state = State.CLOSED;
+  @GuardedBy("this")
+  private long stateSinceNanos;
+
+  /**
+   * Creates a new closed breaker.
+   *
+   * @param failureThreshold the number of consecutive failed reports opening the breaker, 0 to
+   * never open it
+   * @param openMillis the time during which exports are refused once the breaker opened
+   * @param metrics the metrics recording the transitions of the breaker
+   */
+  CircuitBreaker(int failureThreshold, long openMillis, ExporterMetrics metrics) {
+    this.failureThreshold = failureThreshold;
+    this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    this.metrics = metrics;
+  }
+
+  /**
+   * Returns whether an export may proceed. When the open duration elapsed, the first caller is let
+   * through as the probe of the half-open breaker. A probe which did not complete within another
+   * open duration, for instance because its spans were dropped before being sent, is replaced.
+   *
+   * @return {@code true} unless the breaker is open, or half-open with its probe in progress
+   */
+  boolean allowExport() {
+    if (state == State.CLOSED) {
+      return true;
+    }
+    synchronized (this) {
+      if (state == State.CLOSED) {
+        return true;
+      }
+      if (System.nanoTime() - stateSinceNanos < openNanos) {
+        return false;
+      }
+      transition(State.HALF_OPEN);
+      return true;
+    }
+  }
+
+  /**
+   * Records a report the collector accepted, closing the breaker.
+   */
+  void onSuccess() {
+    consecutiveFailures.set(0);
+    if (state == State.CLOSED) {
+      return;
+    }
+    synchronized (this) {
+      if (state != State.CLOSED) {
+        transition(State.CLOSED);
+      }
+    }
+  }
+
+  /**
+   * Records a report which failed after all its retries, opening the breaker once the threshold is
+   * reached or when it was the probe of the half-open breaker.
+   */
+  void onFailure() {
+    if (failureThreshold <= 0
+        || state == State.CLOSED && consecutiveFailures.incrementAndGet() < failureThreshold) {
+      return;
+    }
+    synchronized (this) {
+      // Reports failing while already open, such as the other reports of a failed probe, do not
+      // extend the open duration.
+      if (state != State.OPEN) {
+        transition(State.OPEN);
+      }
+    }
+  }
+
+  State getState() {
+    return state;
+  }
+
+  @GuardedBy("this")
+  private void transition(State to) {
+    state = to;
+    stateSinceNanos = System.nanoTime();
+    consecutiveFailures.set(0);
+    metrics.recordCircuitTransition(to);
+    final Level level = to == State.OPEN ? Level.WARNING
+        : to == State.CLOSED ? Level.INFO : Level.FINE;
+    logger.log(level, "Collector circuit breaker is now " + to);
+  }
+}
@@ -0,0 +1,56 @@
+package com.lightstep.opentelemetry.exporter;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Estimates the offset of the collector clock from the local clock, sent along with reports so
+ * that the collector corrects the timestamps of spans ended on hosts with skewed clocks.
+ *
+ * <p>Each response carrying the collector receive and transmit timestamps gives a sample of the
+ * offset, as in NTP. The estimate is the offset of the sample with the shortest round trip among
+ * the most recent ones, as a short round trip leaves little room for asymmetric network delays.
+ */
+@ThreadSafe
+final class ClockState {
+  static final int MAX_SAMPLES = 8;
+
+  @GuardedBy("this")
+  private final long[] offsetsMicros = new long[MAX_SAMPLES];
+  @GuardedBy("this")
+  private final long[] roundTripsMicros = new long[MAX_SAMPLES];
+  @GuardedBy("this")
+  private int sampleCount;
+  @GuardedBy("this")
+  private int nextSample;
+  private volatile long offsetMicros;
+
+  /**
+   * Records a sample, replacing the oldest one once {@link #MAX_SAMPLES} were recorded.
+   *
+   * @param offsetMicros the offset of the collector clock from the local clock
+   * @param roundTripMicros the round trip time of the report the sample comes from
+   */
+  synchronized void addSample(long offsetMicros, long roundTripMicros) {
+    offsetsMicros[nextSample] = offsetMicros;
+    roundTripsMicros[nextSample] = roundTripMicros;
+    nextSample = (nextSample + 1) % MAX_SAMPLES;
+    sampleCount = Math.min(sampleCount + 1, MAX_SAMPLES);
+
+    int best = 0;
+    for (int i = 1; i < sampleCount; i++) {
+      if (roundTripsMicros[i] < roundTripsMicros[best]) {
+        best = i;
+      }
+    }
+    this.offsetMicros = offsetsMicros[best];
+  }
+
+  /**
+   * Returns the estimated offset, to be added to local timestamps to get collector ones, or 0
+   * until a sample was recorded.
+   */
+  long getOffsetMicros() {
+    return offsetMicros;
+  }
+}
@@ -0,0 +1,162 @@
+package com.lightstep.opentelemetry.exporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * The outcome of an asynchronous operation, e.g. an export, which completes either successfully
+ * or with a failure.
+ */
+@ThreadSafe
+public final class CompletableResultCode {
+  private final Object lock = new Object();
+  private final CountDownLatch done = new CountDownLatch(1);
+
+  @GuardedBy("lock")
+  private Boolean succeeded;
+  @GuardedBy("lock")
+  private final List<Runnable> completionActions = new ArrayList<>();
+
+  /**
+   * Returns a result that is already successfully completed.
+   *
+   * @return a successful result
+   */
+  public static CompletableResultCode ofSuccess() {
+    return new CompletableResultCode().succeed();
+  }
+
+  /**
+   * Returns a result that is already completed with a failure.
+   *
+   * @return a failed result
+   */
+  public static CompletableResultCode ofFailure() {
+    return new CompletableResultCode().fail();
+  }
+
+  /**
+   * Returns a result that completes once all the given results are completed. It succeeds only
+   * if all of them succeed.
+   *
+   * @param results the results to be combined
+   * @return the combined result
+   */
+  public static CompletableResultCode ofAll(final List<CompletableResultCode> results) {
+    final CompletableResultCode result = new CompletableResultCode();
+    if (results.isEmpty()) {
+      return result.succeed();
+    }
+    final AtomicInteger pending = new AtomicInteger(results.size());
+    for (final CompletableResultCode each : results) {
+      each.whenComplete(new Runnable() {
+        @Override
+        public void run() {
+          if (pending.decrementAndGet() == 0) {
+            for (CompletableResultCode completed : results) {
+              if (!completed.isSuccess()) {
+                result.fail();
+                return;
+              }
+            }
+            result.succeed();
+          }
+        }
+      });
+    }
+    return result;
+  }
+
+  /**
+   * Completes this result successfully, unless it is already completed.
+   *
+   * @return this result
+   */
+  public CompletableResultCode succeed() {
+    complete(true);
+    return this;
+  }
+
+  /**
+   * Completes this result with a failure, unless it is already completed.
+   *
+   * @return this result
+   */
+  public CompletableResultCode fail() {
+    complete(false);
+    return this;
+  }
+
+  /**
+   * Returns whether this result is completed.
+   */
+  public boolean isDone() {
+    synchronized (lock) {
+      return succeeded != null;
+    }
+  }
+
+  /**
+   * Returns whether this result completed successfully. Returns {@code false} while it is not
+   * completed.
+   */
+  public boolean isSuccess() {
+    synchronized (lock) {
+      return succeeded != null && succeeded;
+    }
+  }
+
+  /**
+   * Runs the given action once this result is completed, right away if it already is.
+   *
+   * @param action the action to run
+   * @return this result
+   */
+  public CompletableResultCode whenComplete(Runnable action) {
+    synchronized (lock) {
+      if (succeeded == null) {
+        completionActions.add(action);
+        return this;
+      }
+    }
+    action.run();
+    return this;
+  }
+
+  /**
+   * Waits up to the given timeout for this result to complete.
+   *
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return this result
+   */
+  public CompletableResultCode join(long timeout, TimeUnit unit) {
+    try {
+      done.await(timeout, unit);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return this;
+  }
+
+  private void complete(boolean success) {
+    final List<Runnable> actions;
+    synchronized (lock) {
+      if (succeeded != null) {
+        return;
+      }
+      succeeded = success;
+      actions = new ArrayList<>(completionActions);
+      completionActions.clear();
+    }
+    done.countDown();
+    for (Runnable action : actions) {
+      action.run();
+    }
+  }
+}
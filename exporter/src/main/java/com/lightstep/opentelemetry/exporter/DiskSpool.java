@@ -0,0 +1,446 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.lightstep.tracer.grpc.ReportRequest;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Persistent queue of reports which could not be sent, replayed once the collector is reachable
+ * again.
+ *
+ * <p>Reports are appended to fixed-size segment files mapped in memory. A record is the length of
+ * the report and its number of spans followed by the serialized report, stripped of its
+ * authentication which is attached again on replay; the length is written last, so a record
+ * interrupted by a crash is never read. Replayed records are not removed but marked as
+ * consumed by negating their length, and a segment is deleted once all its records were consumed.
+ * Segments left by a previous process are replayed first, the new records going to new segments.
+ *
+ * <p>Reports are serialized into the segments on a dedicated thread, so appending a report only
+ * enqueues it. At most {@code maxBytes / segmentBytes} segments are kept: when a new segment is
+ * needed beyond that, the oldest one is dropped along with its pending reports.
+ *
+ * <p>Records are replayed by a single consumer calling {@link #peek()} then {@link #commit()}.
+ */
+@ThreadSafe
+final class DiskSpool {
+  private static final Logger logger = Logger.getLogger(DiskSpool.class.getName());
+
+  static final int DEFAULT_SEGMENT_BYTES = 8 * 1024 * 1024;
+  static final String SEGMENT_PREFIX = "spool-";
+  static final String SEGMENT_SUFFIX = ".seg";
+  // The length of the report and its number of spans.
+  private static final int RECORD_HEADER_BYTES = 8;
+  private static final int MAX_PENDING_APPENDS = 16;
+
+  private final File directory;
+  private final int segmentBytes;
+  private final int maxSegments;
+  private final ExporterMetrics metrics;
+  private final ThreadPoolExecutor writer;
+  private final AtomicLong pendingReports = new AtomicLong();
+
+  @GuardedBy("this")
+  private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+  @GuardedBy("this")
+  @Nullable
+  private Segment writeSegment;
+  @GuardedBy("this")
+  private long nextSequence;
+  @GuardedBy("this")
+  @Nullable
+  private Segment peekedSegment;
+  @GuardedBy("this")
+  private int peekedPosition;
+
+  /**
+   * Opens the spool in the given directory, creating it if needed and recovering the reports left
+   * by a previous process.
+   *
+   * @param directory the directory of the segment files
+   * @param maxBytes the maximum size of all the segment files
+   * @param segmentBytes the size of a segment file, lowered to the maximum size if larger
+   * @param metrics the metrics recording the reports written, replayed and dropped
+   * @throws IOException if the directory or its segments cannot be read
+   */
+  DiskSpool(File directory, long maxBytes, int segmentBytes, ExporterMetrics metrics)
+      throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create the spool directory " + directory);
+    }
+    this.directory = directory;
+    this.segmentBytes = (int) Math.min(segmentBytes, maxBytes);
+    this.maxSegments = (int) Math.max(1, maxBytes / this.segmentBytes);
+    this.metrics = metrics;
+    this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(MAX_PENDING_APPENDS), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "lightstep-spool-writer");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    recover();
+  }
+
+  private synchronized void recover() throws IOException {
+    final File[] files = directory.listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+      }
+    });
+    if (files == null) {
+      throw new IOException("Cannot list the spool directory " + directory);
+    }
+    // Sequences are zero-padded, so the names sort in the order the segments were created.
+    Arrays.sort(files);
+    for (File file : files) {
+      final String name = file.getName();
+      nextSequence = Math.max(nextSequence, 1 + Long.parseLong(
+          name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+      final Segment segment = Segment.open(file, (int) Math.min(file.length(), Integer.MAX_VALUE));
+      final long pending = segment.recover();
+      if (pending == 0) {
+        segment.delete();
+        continue;
+      }
+      pendingReports.addAndGet(pending);
+      segments.addLast(segment);
+    }
+    if (!segments.isEmpty()) {
+      logger.log(Level.INFO, "Recovered " + pendingReports.get() + " spooled reports from "
+          + segments.size() + " segments in " + directory);
+    }
+  }
+
+  /**
+   * Enqueues a report to be written to the spool, which then releases it. The report is dropped
+   * when too many reports are already waiting to be written.
+   *
+   * @param report the report, owned by the spool if accepted
+   * @return whether the report was accepted, the caller still owns it otherwise
+   */
+  boolean append(final ReportRequestBody report) {
+    try {
+      writer.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            write(report);
+          } finally {
+            report.release();
+          }
+        }
+      });
+      return true;
+    } catch (RejectedExecutionException e) {
+      logger.log(Level.WARNING,
+          "Dropped " + report.getSpanCount() + " spans, too many reports are being spooled");
+      return false;
+    }
+  }
+
+  @VisibleForTesting
+  synchronized void write(ReportRequestBody report) {
+    // The access token is never written to disk, nor the clock offset which may be stale once
+    // the report is replayed.
+    report = report.toSpooled();
+    final long size = report.contentLength();
+    if (size + RECORD_HEADER_BYTES > segmentBytes) {
+      logger.log(Level.WARNING, "Dropped " + report.getSpanCount()
+          + " spans, their report is larger than a spool segment");
+      metrics.recordDroppedSpans(report.getSpanCount());
+      return;
+    }
+    try {
+      if (writeSegment == null
+          || writeSegment.writePosition + RECORD_HEADER_BYTES + size > segmentBytes) {
+        rollSegment();
+      }
+      writeSegment.write(report, (int) size);
+      pendingReports.incrementAndGet();
+      metrics.recordSpooledReport();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to spool spans", e);
+      metrics.recordDroppedSpans(report.getSpanCount());
+    }
+  }
+
+  @GuardedBy("this")
+  private void rollSegment() throws IOException {
+    if (writeSegment != null) {
+      writeSegment.buffer.force();
+    }
+    while (segments.size() >= maxSegments) {
+      final Segment oldest = segments.removeFirst();
+      final long[] dropped = oldest.countPending();
+      pendingReports.addAndGet(-dropped[0]);
+      metrics.recordDroppedSpans(dropped[1]);
+      logger.log(Level.WARNING, "Dropped " + dropped[1] + " spooled spans, the spool is full");
+      oldest.delete();
+    }
+    final File file = new File(directory,
+        String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX));
+    writeSegment = Segment.open(file, segmentBytes);
+    segments.addLast(writeSegment);
+  }
+
+  /**
+   * Returns the oldest report not replayed yet, without authentication, skipping unreadable ones.
+   * The same report is returned until {@link #commit()} is called.
+   *
+   * @return the report, or {@code null} if the spool is empty
+   */
+  @Nullable
+  synchronized ReportRequest peek() {
+    while (!segments.isEmpty()) {
+      final Segment segment = segments.getFirst();
+      if (segment.skipConsumed()) {
+        try {
+          final ReportRequest report = segment.readRecord();
+          peekedSegment = segment;
+          peekedPosition = segment.readPosition;
+          return report;
+        } catch (IOException e) {
+          logger.log(Level.WARNING, "Skipped an unreadable spooled report", e);
+          metrics.recordDroppedSpans(segment.consumeRecord());
+          pendingReports.decrementAndGet();
+          continue;
+        }
+      }
+      if (segment == writeSegment) {
+        return null;
+      }
+      segments.removeFirst();
+      segment.delete();
+    }
+    return null;
+  }
+
+  /**
+   * Marks the report returned by {@link #peek()} as replayed.
+   */
+  synchronized void commit() {
+    if (consumePeeked() >= 0) {
+      metrics.recordReplayedReport();
+    }
+  }
+
+  /**
+   * Drops the report returned by {@link #peek()}, which the collector refused.
+   */
+  synchronized void skip() {
+    final int spanCount = consumePeeked();
+    if (spanCount >= 0) {
+      metrics.recordDroppedSpans(spanCount);
+    }
+  }
+
+  /**
+   * Marks the peeked report as consumed and returns its number of spans, or -1 if it was dropped
+   * in the meantime along with its segment.
+   */
+  @GuardedBy("this")
+  private int consumePeeked() {
+    final Segment segment = peekedSegment;
+    peekedSegment = null;
+    if (segment == null || segments.isEmpty() || segments.getFirst() != segment
+        || segment.readPosition != peekedPosition) {
+      return -1;
+    }
+    pendingReports.decrementAndGet();
+    return segment.consumeRecord();
+  }
+
+  /**
+   * Returns the number of reports written and not replayed yet.
+   */
+  long getPendingReports() {
+    return pendingReports.get();
+  }
+
+  /**
+   * Writes the reports waiting to be spooled, up to the given timeout, and flushes the segments
+   * to disk. Reports appended afterwards are refused.
+   *
+   * @param timeoutMillis the maximum time to wait for the pending writes
+   */
+  void shutdown(long timeoutMillis) {
+    writer.shutdown();
+    try {
+      writer.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      for (Segment segment : segments) {
+        segment.close();
+      }
+      segments.clear();
+      writeSegment = null;
+    }
+  }
+
+  /**
+   * A segment file and its read and write positions.
+   */
+  private static final class Segment {
+    final File file;
+    final FileChannel channel;
+    final MappedByteBuffer buffer;
+    int writePosition;
+    int readPosition;
+
+    private Segment(File file, FileChannel channel, MappedByteBuffer buffer) {
+      this.file = file;
+      this.channel = channel;
+      this.buffer = buffer;
+    }
+
+    static Segment open(File file, int size) throws IOException {
+      final FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+      try {
+        // Mapping extends a new file with zeros, the end marker of the records.
+        return new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+      } catch (IOException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    /**
+     * Finds the end of the records of a segment written by a previous process and returns the
+     * number of records left to replay.
+     */
+    long recover() {
+      long pending = 0;
+      int length;
+      while ((length = recordLength(writePosition)) != 0) {
+        if (length > 0) {
+          pending++;
+        }
+        writePosition += RECORD_HEADER_BYTES + Math.abs(length);
+      }
+      // Recovered segments are only read, new records go to a new segment.
+      skipConsumed();
+      return pending;
+    }
+
+    /**
+     * Returns the length of the record at the given position, negative once replayed, or 0 past
+     * the last record.
+     */
+    int recordLength(int position) {
+      if (position + RECORD_HEADER_BYTES > buffer.capacity()) {
+        return 0;
+      }
+      final int length = buffer.getInt(position);
+      // A length overflowing the segment can only come from a corrupted file, read it as the end.
+      final long end = (long) position + RECORD_HEADER_BYTES + Math.abs((long) length);
+      return end <= buffer.capacity() ? length : 0;
+    }
+
+    void write(ReportRequestBody report, int size) throws IOException {
+      final ByteBuffer target = buffer.duplicate();
+      target.position(writePosition + RECORD_HEADER_BYTES);
+      target.limit(writePosition + RECORD_HEADER_BYTES + size);
+      final CodedOutputStream out = CodedOutputStream.newInstance(target.slice());
+      report.writeTo(out);
+      out.flush();
+      out.checkNoSpaceLeft();
+      buffer.putInt(writePosition + 4, report.getSpanCount());
+      // Written last, the record is only visible once complete.
+      buffer.putInt(writePosition, size);
+      writePosition += RECORD_HEADER_BYTES + size;
+    }
+
+    /**
+     * Moves the read position past the replayed records and returns whether a record is left.
+     */
+    boolean skipConsumed() {
+      int length;
+      while ((length = recordLength(readPosition)) < 0) {
+        readPosition += RECORD_HEADER_BYTES - length;
+      }
+      return length > 0;
+    }
+
+    ReportRequest readRecord() throws IOException {
+      final ByteBuffer record = buffer.duplicate();
+      record.position(readPosition + RECORD_HEADER_BYTES);
+      record.limit(readPosition + RECORD_HEADER_BYTES + buffer.getInt(readPosition));
+      return ReportRequest.parseFrom(CodedInputStream.newInstance(record.slice()));
+    }
+
+    /**
+     * Marks the record at the read position as replayed and returns its number of spans.
+     */
+    int consumeRecord() {
+      final int length = buffer.getInt(readPosition);
+      final int spanCount = buffer.getInt(readPosition + 4);
+      buffer.putInt(readPosition, -length);
+      readPosition += RECORD_HEADER_BYTES + length;
+      return spanCount;
+    }
+
+    /**
+     * Returns the number of records left to replay and their number of spans.
+     */
+    long[] countPending() {
+      long reports = 0;
+      long spans = 0;
+      int position = readPosition;
+      int length;
+      while ((length = recordLength(position)) != 0) {
+        if (length > 0) {
+          reports++;
+          spans += buffer.getInt(position + 4);
+        }
+        position += RECORD_HEADER_BYTES + Math.abs(length);
+      }
+      return new long[]{reports, spans};
+    }
+
+    void close() {
+      buffer.force();
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.log(Level.FINE, "Failed to close spool segment " + file, e);
+      }
+    }
+
+    void delete() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.log(Level.FINE, "Failed to close spool segment " + file, e);
+      }
+      if (!file.delete()) {
+        logger.log(Level.WARNING, "Failed to delete spool segment " + file);
+      }
+    }
+  }
+}
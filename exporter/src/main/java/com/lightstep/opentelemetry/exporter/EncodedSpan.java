@@ -0,0 +1,62 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.google.protobuf.CodedOutputStream;
+import io.opentelemetry.sdk.resources.Resource;
+import java.io.IOException;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A Lightstep {@link com.lightstep.tracer.grpc.Span} already encoded into its wire format, not
+ * including its tag and length prefix.
+ *
+ * <p>The bytes are a range of an array which may be shared with other spans encoded by the same
+ * thread, see {@link SpanEncoder#encodeSpan(io.opentelemetry.sdk.trace.data.SpanData,
+ * java.util.Collection, boolean, ResourceTagsCache)}. They are never written to once encoded.
+ */
+@Immutable
+final class EncodedSpan {
+  private final byte[] array;
+  private final int offset;
+  private final int length;
+  private final Resource resource;
+
+  EncodedSpan(byte[] array, int offset, int length, Resource resource) {
+    this.array = array;
+    this.offset = offset;
+    this.length = length;
+    this.resource = resource;
+  }
+
+  /**
+   * Returns the encoded size of the span.
+   */
+  int getLength() {
+    return length;
+  }
+
+  /**
+   * Returns the resource of the span, which tags are not part of the encoded span when they are
+   * reported on the reporter.
+   */
+  Resource getResource() {
+    return resource;
+  }
+
+  /**
+   * Writes the encoded span, which is {@link #getLength()} bytes long.
+   *
+   * @param out the stream to write to
+   */
+  void writeTo(CodedOutputStream out) throws IOException {
+    out.writeRawBytes(array, offset, length);
+  }
+
+  /**
+   * Returns a copy of the encoded span.
+   */
+  byte[] toByteArray() {
+    final byte[] result = new byte[length];
+    System.arraycopy(array, offset, result, 0, length);
+    return result;
+  }
+}
@@ -0,0 +1,238 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.google.protobuf.util.Timestamps;
+import com.lightstep.tracer.grpc.InternalMetrics;
+import com.lightstep.tracer.grpc.MetricsSample;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Self-telemetry of the exporter, sampled into the {@link InternalMetrics} of a report at a fixed
+ * interval so the health of the exporter shows in Lightstep itself.
+ *
+ * <p>Counts are the deltas since the previous sample and gauges describe the reports completed in
+ * that period, along with the state of the circuit breaker at the time of the sample: 0 when
+ * closed, 1 when half-open and 2 when open. A sample is taken once per interval, whichever report
+ * is sent first carries it; it is lost if that report fails.
+ */
+@ThreadSafe
+final class ExporterMetrics {
+  static final String SPANS_SENT = "spans.sent";
+  static final String SPANS_DROPPED = "spans.dropped";
+  static final String SPANS_DROPPED_BYTES = "spans.dropped.bytes";
+  static final String SPANS_SAMPLED_OUT = "spans.sampled_out";
+  static final String BYTES_SENT = "bytes.sent";
+  static final String REPORTS_SENT = "reports.sent";
+  static final String REPORTS_FAILED = "reports.failed";
+  static final String REPORTS_RETRIED = "reports.retried";
+  static final String REPORT_LATENCY_MEAN_MILLIS = "reports.latency.mean.millis";
+  static final String REPORT_LATENCY_MAX_MILLIS = "reports.latency.max.millis";
+  static final String CIRCUIT_OPENED = "circuit.opened";
+  static final String CIRCUIT_HALF_OPENED = "circuit.half_opened";
+  static final String CIRCUIT_CLOSED = "circuit.closed";
+  static final String CIRCUIT_STATE = "circuit.state";
+  static final String SPOOL_WRITTEN = "spool.reports.written";
+  static final String SPOOL_REPLAYED = "spool.reports.replayed";
+
+  private final long intervalNanos;
+  private final AtomicLong spansSent = new AtomicLong();
+  private final AtomicLong spansDropped = new AtomicLong();
+  private final AtomicLong spansDroppedBytes = new AtomicLong();
+  private final AtomicLong spansSampledOut = new AtomicLong();
+  private final AtomicLong bytesSent = new AtomicLong();
+  private final AtomicLong reportsSent = new AtomicLong();
+  private final AtomicLong reportsFailed = new AtomicLong();
+  private final AtomicLong reportsRetried = new AtomicLong();
+  private final AtomicLong reportLatencyNanos = new AtomicLong();
+  private final AtomicLong maxReportLatencyNanos = new AtomicLong();
+  private final AtomicLong circuitOpened = new AtomicLong();
+  private final AtomicLong circuitHalfOpened = new AtomicLong();
+  private final AtomicLong circuitClosed = new AtomicLong();
+  private final AtomicLong spoolWritten = new AtomicLong();
+  private final AtomicLong spoolReplayed = new AtomicLong();
+  private volatile CircuitBreaker.State circuitState = CircuitBreaker.State.CLOSED;
+  private volatile long nextSampleNanos;
+
+  @GuardedBy("this")
+  private long periodStartMillis;
+  @GuardedBy("this")
+  private long periodStartNanos;
+
+  /**
+   * Creates new metrics, whose first period starts now.
+   *
+   * @param intervalMillis the time between two samples, 0 to never take one
+   */
+  ExporterMetrics(long intervalMillis) {
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    this.periodStartMillis = System.currentTimeMillis();
+    this.periodStartNanos = System.nanoTime();
+    this.nextSampleNanos = periodStartNanos + intervalNanos;
+  }
+
+  /**
+   * Records a report the collector responded to, or which failed, after all its retries.
+   *
+   * @param spanCount the number of spans of the report
+   * @param bytes the encoded size of the report
+   * @param latencyNanos the time from sending the report to its completion, retries included
+   * @param success whether the collector accepted the report, the spans of a failed report are
+   * recorded as dropped separately unless spooled
+   */
+  void recordReport(int spanCount, long bytes, long latencyNanos, boolean success) {
+    if (success) {
+      reportsSent.incrementAndGet();
+      spansSent.addAndGet(spanCount);
+      bytesSent.addAndGet(bytes);
+    } else {
+      reportsFailed.incrementAndGet();
+    }
+    reportLatencyNanos.addAndGet(latencyNanos);
+    long max;
+    do {
+      max = maxReportLatencyNanos.get();
+    } while (latencyNanos > max && !maxReportLatencyNanos.compareAndSet(max, latencyNanos));
+  }
+
+  /**
+   * Records a report about to be sent again.
+   */
+  void recordRetry() {
+    reportsRetried.incrementAndGet();
+  }
+
+  /**
+   * Records a transition of the circuit breaker of the exporter.
+   *
+   * @param state the new state of the breaker
+   */
+  void recordCircuitTransition(CircuitBreaker.State state) {
+    circuitState = state;
+    switch (state) {
+      case OPEN:
+        circuitOpened.incrementAndGet();
+        break;
+      case HALF_OPEN:
+        circuitHalfOpened.incrementAndGet();
+        break;
+      default:
+        circuitClosed.incrementAndGet();
+    }
+  }
+
+  /**
+   * Records a report written to the disk spool.
+   */
+  void recordSpooledReport() {
+    spoolWritten.incrementAndGet();
+  }
+
+  /**
+   * Records a spooled report replayed to the collector.
+   */
+  void recordReplayedReport() {
+    spoolReplayed.incrementAndGet();
+  }
+
+  /**
+   * Records spans dropped without being accepted by the collector nor spooled.
+   *
+   * @param count the number of dropped spans
+   */
+  void recordDroppedSpans(long count) {
+    spansDropped.addAndGet(count);
+  }
+
+  /**
+   * Records the estimated encoded size of spans dropped because of the byte budget of a {@link
+   * LightstepSpanProcessor}.
+   *
+   * @param bytes the number of dropped bytes
+   */
+  void recordDroppedBytes(long bytes) {
+    spansDroppedBytes.addAndGet(bytes);
+  }
+
+  /**
+   * Records spans of traces which the tail sampling did not keep.
+   *
+   * @param count the number of spans sampled out
+   */
+  void recordSampledOutSpans(long count) {
+    spansSampledOut.addAndGet(count);
+  }
+
+  /**
+   * Takes a sample if the interval elapsed since the previous one.
+   *
+   * @return the sample, or {@code null} if none is due
+   */
+  @Nullable
+  InternalMetrics sampleIfDue() {
+    if (intervalNanos <= 0 || System.nanoTime() - nextSampleNanos < 0) {
+      return null;
+    }
+    synchronized (this) {
+      // Another report may have taken the sample in the meantime.
+      if (System.nanoTime() - nextSampleNanos < 0) {
+        return null;
+      }
+      return sample();
+    }
+  }
+
+  /**
+   * Takes a sample of the metrics since the previous one and starts a new period.
+   *
+   * @return the sample
+   */
+  synchronized InternalMetrics sample() {
+    final long nowNanos = System.nanoTime();
+    final long sent = reportsSent.getAndSet(0);
+    final long failed = reportsFailed.getAndSet(0);
+    final long latencyNanos = reportLatencyNanos.getAndSet(0);
+    final long maxLatencyNanos = maxReportLatencyNanos.getAndSet(0);
+    final InternalMetrics.Builder builder = InternalMetrics.newBuilder()
+        .setStartTimestamp(Timestamps.fromMillis(periodStartMillis))
+        .setDurationMicros(TimeUnit.NANOSECONDS.toMicros(nowNanos - periodStartNanos))
+        .addCounts(count(SPANS_SENT, spansSent.getAndSet(0)))
+        .addCounts(count(SPANS_DROPPED, spansDropped.getAndSet(0)))
+        .addCounts(count(SPANS_DROPPED_BYTES, spansDroppedBytes.getAndSet(0)))
+        .addCounts(count(SPANS_SAMPLED_OUT, spansSampledOut.getAndSet(0)))
+        .addCounts(count(BYTES_SENT, bytesSent.getAndSet(0)))
+        .addCounts(count(REPORTS_SENT, sent))
+        .addCounts(count(REPORTS_FAILED, failed))
+        .addCounts(count(REPORTS_RETRIED, reportsRetried.getAndSet(0)))
+        .addCounts(count(CIRCUIT_OPENED, circuitOpened.getAndSet(0)))
+        .addCounts(count(CIRCUIT_HALF_OPENED, circuitHalfOpened.getAndSet(0)))
+        .addCounts(count(CIRCUIT_CLOSED, circuitClosed.getAndSet(0)))
+        .addCounts(count(SPOOL_WRITTEN, spoolWritten.getAndSet(0)))
+        .addCounts(count(SPOOL_REPLAYED, spoolReplayed.getAndSet(0)))
+        .addGauges(gauge(CIRCUIT_STATE, circuitState.ordinal()));
+    if (sent + failed > 0) {
+      builder
+          .addGauges(gauge(REPORT_LATENCY_MEAN_MILLIS, toMillis(latencyNanos) / (sent + failed)))
+          .addGauges(gauge(REPORT_LATENCY_MAX_MILLIS, toMillis(maxLatencyNanos)));
+    }
+
+    periodStartMillis += TimeUnit.NANOSECONDS.toMillis(nowNanos - periodStartNanos);
+    periodStartNanos = nowNanos;
+    nextSampleNanos = nowNanos + intervalNanos;
+    return builder.build();
+  }
+
+  private static MetricsSample count(String name, long value) {
+    return MetricsSample.newBuilder().setName(name).setIntValue(value).build();
+  }
+
+  private static MetricsSample gauge(String name, double value) {
+    return MetricsSample.newBuilder().setName(name).setDoubleValue(value).build();
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1e6;
+  }
+}
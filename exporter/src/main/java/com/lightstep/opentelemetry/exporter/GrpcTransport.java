@@ -0,0 +1,203 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.lightstep.tracer.grpc.CollectorServiceGrpc;
+import com.lightstep.tracer.grpc.ReportResponse;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.Marshaller;
+import io.grpc.Status;
+import io.grpc.okhttp.OkHttpChannelBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.ThreadSafe;
+import okio.Buffer;
+
+/**
+ * Sends reports with the {@code CollectorService} of the collector over a long-lived HTTP/2
+ * channel, on which concurrent reports are multiplexed.
+ *
+ * <p>Reports are marshalled from their {@link ReportRequestBody}, so the spans are encoded
+ * straight into the wire format just as with the OkHttp transport. Reports failing with {@code
+ * UNAVAILABLE} or {@code RESOURCE_EXHAUSTED} are retryable, after the pushback of the collector if
+ * any.
+ */
+@ThreadSafe
+final class GrpcTransport extends ReportTransport {
+  private static final Logger logger = Logger.getLogger(GrpcTransport.class.getName());
+
+  static final Metadata.Key<String> ACCESS_TOKEN_KEY =
+      Metadata.Key.of("lightstep-access-token", Metadata.ASCII_STRING_MARSHALLER);
+
+  static final Metadata.Key<String> RETRY_PUSHBACK_KEY =
+      Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+
+  static final MethodDescriptor<ReportRequestBody, ReportResponse> REPORT_METHOD =
+      MethodDescriptor.<ReportRequestBody, ReportResponse>newBuilder()
+          .setType(MethodDescriptor.MethodType.UNARY)
+          .setFullMethodName(CollectorServiceGrpc.getReportMethod().getFullMethodName())
+          .setRequestMarshaller(new ReportRequestMarshaller())
+          .setResponseMarshaller(ProtoUtils.marshaller(ReportResponse.getDefaultInstance()))
+          .build();
+
+  private final ManagedChannel managedChannel;
+  private final Channel channel;
+  private final long deadlineMillis;
+  private final boolean gzip;
+
+  /**
+   * Creates a new gRPC transport over the given channel, which is shut down along with the
+   * transport.
+   *
+   * @param managedChannel the channel to the collector
+   * @param accessToken Your specific token for Lightstep access.
+   * @param deadlineMillis The maximum amount of time to wait for the collector to respond.
+   * @param gzip Whether reports are compressed with gzip.
+   */
+  GrpcTransport(ManagedChannel managedChannel, String accessToken, long deadlineMillis,
+      boolean gzip) {
+    this.managedChannel = managedChannel;
+    final Metadata headers = new Metadata();
+    headers.put(ACCESS_TOKEN_KEY, accessToken);
+    this.channel = ClientInterceptors
+        .intercept(managedChannel, MetadataUtils.newAttachHeadersInterceptor(headers));
+    this.deadlineMillis = deadlineMillis;
+    this.gzip = gzip;
+  }
+
+  /**
+   * Creates a channel to the host and port of the collector url, in plaintext when its protocol
+   * is http.
+   *
+   * @param collectorUrl collector url.
+   * @return the channel
+   */
+  static ManagedChannel createChannel(URL collectorUrl) {
+    final OkHttpChannelBuilder builder =
+        OkHttpChannelBuilder.forAddress(collectorUrl.getHost(), collectorUrl.getPort());
+    if (LightstepConfig.PROTOCOL_HTTP.equals(collectorUrl.getProtocol())) {
+      builder.usePlaintext();
+    }
+    return builder.build();
+  }
+
+  @Override
+  PreparedReport prepare(ReportRequestBody body) {
+    return new GrpcReport(body);
+  }
+
+  private static Result toResult(Throwable t) {
+    final Status.Code code = Status.fromThrowable(t).getCode();
+    if (code != Status.Code.UNAVAILABLE && code != Status.Code.RESOURCE_EXHAUSTED) {
+      return Result.FAILURE;
+    }
+    final Metadata trailers = Status.trailersFromThrowable(t);
+    final String pushback = trailers != null ? trailers.get(RETRY_PUSHBACK_KEY) : null;
+    if (pushback == null) {
+      return Result.retryable(-1);
+    }
+    try {
+      final long pushbackMillis = Long.parseLong(pushback);
+      // A negative pushback asks not to retry.
+      return pushbackMillis >= 0 ? Result.retryable(pushbackMillis) : Result.FAILURE;
+    } catch (NumberFormatException e) {
+      return Result.retryable(-1);
+    }
+  }
+
+  @Override
+  void shutdown() {
+    managedChannel.shutdown();
+  }
+
+  private CallOptions callOptions() {
+    final CallOptions callOptions =
+        CallOptions.DEFAULT.withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS);
+    return gzip ? callOptions.withCompression(GzipRequestBody.CONTENT_ENCODING) : callOptions;
+  }
+
+  /**
+   * Writes reports into gRPC messages. Reports are only ever sent, never parsed.
+   */
+  private static final class ReportRequestMarshaller implements Marshaller<ReportRequestBody> {
+    @Override
+    public InputStream stream(ReportRequestBody body) {
+      final Buffer buffer = new Buffer();
+      try {
+        body.writeTo(buffer);
+      } catch (IOException e) {
+        throw Status.INTERNAL.withDescription("Failed to serialize report").withCause(e)
+            .asRuntimeException();
+      }
+      return buffer.inputStream();
+    }
+
+    @Override
+    public ReportRequestBody parse(InputStream stream) {
+      throw new UnsupportedOperationException("Reports are not parsed");
+    }
+  }
+
+  /**
+   * Sends the same report message on each attempt, gRPC serializes and compresses it per call.
+   */
+  private final class GrpcReport extends PreparedReport {
+    private final ReportRequestBody body;
+
+    GrpcReport(ReportRequestBody body) {
+      this.body = body;
+    }
+
+    @Override
+    Result send() {
+      try {
+        final long originMicros = currentTimeMicros();
+        final ReportResponse response =
+            ClientCalls.blockingUnaryCall(channel, REPORT_METHOD, callOptions(), body);
+        return toResult(response, originMicros, currentTimeMicros());
+      } catch (Throwable e) {
+        logger.log(Level.WARNING, "Failed to send spans", e);
+        return toResult(e);
+      }
+    }
+
+    @Override
+    void sendAsync(final ResultCallback callback) {
+      try {
+        final long originMicros = currentTimeMicros();
+        ClientCalls.asyncUnaryCall(channel.newCall(REPORT_METHOD, callOptions()), body,
+            new StreamObserver<ReportResponse>() {
+              @Override
+              public void onNext(ReportResponse response) {
+                callback.onComplete(toResult(response, originMicros, currentTimeMicros()));
+              }
+
+              @Override
+              public void onError(Throwable t) {
+                logger.log(Level.WARNING, "Failed to send spans", t);
+                callback.onComplete(toResult(t));
+              }
+
+              @Override
+              public void onCompleted() {
+                // Unary calls complete once the response was received, already handled.
+              }
+            });
+      } catch (Throwable e) {
+        logger.log(Level.WARNING, "Failed to send spans", e);
+        callback.onComplete(Result.FAILURE);
+      }
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package com.lightstep.opentelemetry.exporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * {@link RequestBody} holding the gzip compressed content of another body.
+ *
+ * <p>The content is compressed once, up front, so that its length is known and the body can be
+ * written again when OkHttp retries the call.
+ */
+final class GzipRequestBody extends RequestBody {
+  static final String CONTENT_ENCODING = "gzip";
+
+  @Nullable
+  private final MediaType contentType;
+  private final Buffer compressed;
+
+  private GzipRequestBody(@Nullable MediaType contentType, Buffer compressed) {
+    this.contentType = contentType;
+    this.compressed = compressed;
+  }
+
+  /**
+   * Compresses the given body.
+   *
+   * @param body the body to be compressed
+   * @param level the compression level, from 0 to 9 or -1 for the default level
+   * @return the compressed body
+   * @throws IOException if the body could not be written
+   */
+  static GzipRequestBody compress(RequestBody body, final int level) throws IOException {
+    final Buffer compressed = new Buffer();
+    final OutputStream gzip = new GZIPOutputStream(compressed.outputStream()) {
+      {
+        def.setLevel(level);
+      }
+    };
+    try (BufferedSink sink = Okio.buffer(Okio.sink(gzip))) {
+      body.writeTo(sink);
+    }
+    return new GzipRequestBody(body.contentType(), compressed);
+  }
+
+  @Nullable
+  @Override
+  public MediaType contentType() {
+    return contentType;
+  }
+
+  @Override
+  public long contentLength() {
+    return compressed.size();
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    // The clone shares the segments of the compressed content rather than copying them.
+    sink.writeAll(compressed.clone());
+  }
+}
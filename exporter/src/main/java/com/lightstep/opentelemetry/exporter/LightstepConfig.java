@@ -34,6 +34,138 @@ public class LightstepConfig {
    */
   public static final long DEFAULT_DEADLINE_MILLIS = 30000;
 
+  /**
+   * Reports are posted over HTTP with OkHttp.
+   */
+  public static final String TRANSPORT_OKHTTP = "okhttp";
+
+  /**
+   * Reports are sent with the gRPC {@code CollectorService}.
+   */
+  public static final String TRANSPORT_GRPC = "grpc";
+
+  /**
+   * Default number of idle buffers kept to serialize reports into.
+   */
+  public static final int DEFAULT_BUFFER_POOL_SIZE = 2;
+
+  /**
+   * Default maximum capacity, in bytes, of a serialization buffer kept for reuse.
+   */
+  public static final int DEFAULT_MAX_RETAINED_BUFFER_BYTES = 4 * 1024 * 1024;
+
+  /**
+   * Reports are sent uncompressed.
+   */
+  public static final String COMPRESSION_NONE = "none";
+
+  /**
+   * Reports are compressed with gzip.
+   */
+  public static final String COMPRESSION_GZIP = "gzip";
+
+  /**
+   * Default compression level, see {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}.
+   */
+  public static final int DEFAULT_COMPRESSION_LEVEL = -1;
+
+  /**
+   * Default size, in bytes, below which reports are sent uncompressed.
+   */
+  public static final int DEFAULT_COMPRESSION_MIN_BYTES = 1024;
+
+  /**
+   * Default maximum number of reports concurrently sent by asynchronous exports.
+   */
+  public static final int DEFAULT_MAX_IN_FLIGHT_REPORTS = 5;
+
+  /**
+   * Default number of spans per report of a pipelined export, 0 disables pipelining.
+   */
+  public static final int DEFAULT_PIPELINE_CHUNK_SIZE = 0;
+
+  /**
+   * Default number of spans coalesced into a report by the exporter, 0 disables batching.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 0;
+
+  /**
+   * Default maximum time, in milliseconds, spans are held in a batch before being sent.
+   */
+  public static final long DEFAULT_BATCH_DELAY_MILLIS = 5000;
+
+  /**
+   * Default maximum encoded size, in bytes, of a report.
+   */
+  public static final int DEFAULT_MAX_REPORT_BYTES = 4 * 1024 * 1024;
+
+  /**
+   * Default number of threads converting large batches of spans, 0 disables parallel conversion.
+   */
+  public static final int DEFAULT_CONVERSION_PARALLELISM = 0;
+
+  /**
+   * Default number of spans from which a batch is converted in parallel.
+   */
+  public static final int DEFAULT_PARALLEL_CONVERSION_THRESHOLD = 2048;
+
+  /**
+   * Default time, in milliseconds, between two samples of the internal metrics sent in reports.
+   */
+  public static final long DEFAULT_INTERNAL_METRICS_INTERVAL_MILLIS = 30000;
+
+  /**
+   * Default maximum number of retries of a report after a retryable failure.
+   */
+  public static final int DEFAULT_MAX_RETRIES = 3;
+
+  /**
+   * Default maximum delay, in milliseconds, before the first retry of a report.
+   */
+  public static final long DEFAULT_RETRY_INITIAL_BACKOFF_MILLIS = 100;
+
+  /**
+   * Default maximum delay, in milliseconds, before any retry of a report.
+   */
+  public static final long DEFAULT_RETRY_MAX_BACKOFF_MILLIS = 5000;
+
+  /**
+   * Default number of retries allowed per hundred reports.
+   */
+  public static final int DEFAULT_RETRY_BUDGET_PERCENT = 10;
+
+  /**
+   * Default number of consecutive failed reports after which exports are refused, 0 as the circuit
+   * breaker is disabled by default: without a spool, it drops every batch while open.
+   */
+  public static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 0;
+
+  /**
+   * Default time, in milliseconds, during which exports are refused before probing the collector.
+   */
+  public static final long DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS = 30000;
+
+  /**
+   * Default maximum size, in bytes, of the files of the disk spool.
+   */
+  public static final long DEFAULT_SPOOL_MAX_BYTES = 256 * 1024 * 1024;
+
+  /**
+   * Default maximum number of spooled reports replayed per second.
+   */
+  public static final int DEFAULT_SPOOL_DRAIN_RATE = 10;
+
+  /**
+   * Default time, in milliseconds, the spans of a trace are held by tail sampling, which is
+   * disabled.
+   */
+  public static final long DEFAULT_TAIL_SAMPLING_DECISION_WAIT_MILLIS = 0;
+
+  /**
+   * Default maximum number of spans held by tail sampling.
+   */
+  public static final int DEFAULT_TAIL_SAMPLING_MAX_SPANS = 10000;
+
   /**
    * Use {@link #SERVICE_NAME} instead
    */
@@ -48,6 +180,42 @@ public class LightstepConfig {
   public static final String COLLECTOR_PORT = "LIGHTSTEP_COLLECTOR_PORT";
   public static final String ACCESS_TOKEN = "LIGHTSTEP_ACCESS_TOKEN";
   public static final String CONFIG_FILE = "LIGHTSTEP_CONFIG_FILE";
+  public static final String TRANSPORT = "LIGHTSTEP_TRANSPORT";
+  public static final String BATCH_SIZE = "LIGHTSTEP_BATCH_SIZE";
+  public static final String BATCH_DELAY_MILLIS = "LIGHTSTEP_BATCH_DELAY_MILLIS";
+  public static final String MAX_REPORT_BYTES = "LIGHTSTEP_MAX_REPORT_BYTES";
+  public static final String CONVERSION_PARALLELISM = "LIGHTSTEP_CONVERSION_PARALLELISM";
+  public static final String PARALLEL_CONVERSION_THRESHOLD =
+      "LIGHTSTEP_PARALLEL_CONVERSION_THRESHOLD";
+  public static final String INTERNAL_METRICS_INTERVAL_MILLIS =
+      "LIGHTSTEP_INTERNAL_METRICS_INTERVAL_MILLIS";
+  public static final String MAX_RETRIES = "LIGHTSTEP_MAX_RETRIES";
+  public static final String RETRY_INITIAL_BACKOFF_MILLIS =
+      "LIGHTSTEP_RETRY_INITIAL_BACKOFF_MILLIS";
+  public static final String RETRY_MAX_BACKOFF_MILLIS = "LIGHTSTEP_RETRY_MAX_BACKOFF_MILLIS";
+  public static final String RETRY_BUDGET_PERCENT = "LIGHTSTEP_RETRY_BUDGET_PERCENT";
+  public static final String CIRCUIT_BREAKER_FAILURE_THRESHOLD =
+      "LIGHTSTEP_CIRCUIT_BREAKER_FAILURE_THRESHOLD";
+  public static final String CIRCUIT_BREAKER_OPEN_MILLIS = "LIGHTSTEP_CIRCUIT_BREAKER_OPEN_MILLIS";
+  public static final String SPOOL_DIRECTORY = "LIGHTSTEP_SPOOL_DIRECTORY";
+  public static final String SPOOL_MAX_BYTES = "LIGHTSTEP_SPOOL_MAX_BYTES";
+  public static final String SPOOL_DRAIN_RATE = "LIGHTSTEP_SPOOL_DRAIN_RATE";
+  public static final String TAIL_SAMPLING_DECISION_WAIT_MILLIS =
+      "LIGHTSTEP_TAIL_SAMPLING_DECISION_WAIT_MILLIS";
+  public static final String TAIL_SAMPLING_MAX_SPANS = "LIGHTSTEP_TAIL_SAMPLING_MAX_SPANS";
+  public static final String TAIL_SAMPLING_MIN_DURATION_MILLIS =
+      "LIGHTSTEP_TAIL_SAMPLING_MIN_DURATION_MILLIS";
+  public static final String TAIL_SAMPLING_OPERATION_RATE =
+      "LIGHTSTEP_TAIL_SAMPLING_OPERATION_RATE";
+  public static final String BUFFER_POOL_SIZE = "LIGHTSTEP_BUFFER_POOL_SIZE";
+  public static final String MAX_RETAINED_BUFFER_BYTES = "LIGHTSTEP_MAX_RETAINED_BUFFER_BYTES";
+  public static final String COMPRESSION = "LIGHTSTEP_COMPRESSION";
+  public static final String COMPRESSION_LEVEL = "LIGHTSTEP_COMPRESSION_LEVEL";
+  public static final String COMPRESSION_MIN_BYTES = "LIGHTSTEP_COMPRESSION_MIN_BYTES";
+  public static final String ASYNC_EXPORT = "LIGHTSTEP_ASYNC_EXPORT";
+  public static final String MAX_IN_FLIGHT_REPORTS = "LIGHTSTEP_MAX_IN_FLIGHT_REPORTS";
+  public static final String PIPELINE_CHUNK_SIZE = "LIGHTSTEP_PIPELINE_CHUNK_SIZE";
+  public static final String RESOURCE_TAGS_ON_REPORTER = "LIGHTSTEP_RESOURCE_TAGS_ON_REPORTER";
 
   /**
    * Use {@link #SERVICE_NAME_PROPERTY_KEY} instead
@@ -63,6 +231,48 @@ public class LightstepConfig {
   public static final String COLLECTOR_PORT_PROPERTY_KEY = "lightstep.collector.port";
   public static final String ACCESS_TOKEN_PROPERTY_KEY = "lightstep.access.token";
   public static final String CONFIG_FILE_PROPERTY_KEY = "lightstep.config.file";
+  public static final String TRANSPORT_PROPERTY_KEY = "lightstep.transport";
+  public static final String BATCH_SIZE_PROPERTY_KEY = "lightstep.batch.size";
+  public static final String BATCH_DELAY_MILLIS_PROPERTY_KEY = "lightstep.batch.delay.millis";
+  public static final String MAX_REPORT_BYTES_PROPERTY_KEY = "lightstep.max.report.bytes";
+  public static final String CONVERSION_PARALLELISM_PROPERTY_KEY =
+      "lightstep.conversion.parallelism";
+  public static final String PARALLEL_CONVERSION_THRESHOLD_PROPERTY_KEY =
+      "lightstep.parallel.conversion.threshold";
+  public static final String INTERNAL_METRICS_INTERVAL_MILLIS_PROPERTY_KEY =
+      "lightstep.internal.metrics.interval.millis";
+  public static final String MAX_RETRIES_PROPERTY_KEY = "lightstep.max.retries";
+  public static final String RETRY_INITIAL_BACKOFF_MILLIS_PROPERTY_KEY =
+      "lightstep.retry.initial.backoff.millis";
+  public static final String RETRY_MAX_BACKOFF_MILLIS_PROPERTY_KEY =
+      "lightstep.retry.max.backoff.millis";
+  public static final String RETRY_BUDGET_PERCENT_PROPERTY_KEY = "lightstep.retry.budget.percent";
+  public static final String CIRCUIT_BREAKER_FAILURE_THRESHOLD_PROPERTY_KEY =
+      "lightstep.circuit.breaker.failure.threshold";
+  public static final String CIRCUIT_BREAKER_OPEN_MILLIS_PROPERTY_KEY =
+      "lightstep.circuit.breaker.open.millis";
+  public static final String SPOOL_DIRECTORY_PROPERTY_KEY = "lightstep.spool.directory";
+  public static final String SPOOL_MAX_BYTES_PROPERTY_KEY = "lightstep.spool.max.bytes";
+  public static final String SPOOL_DRAIN_RATE_PROPERTY_KEY = "lightstep.spool.drain.rate";
+  public static final String TAIL_SAMPLING_DECISION_WAIT_MILLIS_PROPERTY_KEY =
+      "lightstep.tail.sampling.decision.wait.millis";
+  public static final String TAIL_SAMPLING_MAX_SPANS_PROPERTY_KEY =
+      "lightstep.tail.sampling.max.spans";
+  public static final String TAIL_SAMPLING_MIN_DURATION_MILLIS_PROPERTY_KEY =
+      "lightstep.tail.sampling.min.duration.millis";
+  public static final String TAIL_SAMPLING_OPERATION_RATE_PROPERTY_KEY =
+      "lightstep.tail.sampling.operation.rate";
+  public static final String BUFFER_POOL_SIZE_PROPERTY_KEY = "lightstep.buffer.pool.size";
+  public static final String MAX_RETAINED_BUFFER_BYTES_PROPERTY_KEY =
+      "lightstep.max.retained.buffer.bytes";
+  public static final String COMPRESSION_PROPERTY_KEY = "lightstep.compression";
+  public static final String COMPRESSION_LEVEL_PROPERTY_KEY = "lightstep.compression.level";
+  public static final String COMPRESSION_MIN_BYTES_PROPERTY_KEY = "lightstep.compression.min.bytes";
+  public static final String ASYNC_EXPORT_PROPERTY_KEY = "lightstep.async.export";
+  public static final String MAX_IN_FLIGHT_REPORTS_PROPERTY_KEY = "lightstep.max.in.flight.reports";
+  public static final String PIPELINE_CHUNK_SIZE_PROPERTY_KEY = "lightstep.pipeline.chunk.size";
+  public static final String RESOURCE_TAGS_ON_REPORTER_PROPERTY_KEY =
+      "lightstep.resource.tags.on.reporter";
 
   /**
    * Java System property that will be used as the service name when no other value is provided.
@@ -2,23 +2,33 @@ package com.lightstep.opentelemetry.exporter;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.lightstep.tracer.grpc.Auth;
+import com.lightstep.tracer.grpc.InternalMetrics;
 import com.lightstep.tracer.grpc.KeyValue;
 import com.lightstep.tracer.grpc.ReportRequest;
-import com.lightstep.tracer.grpc.ReportResponse;
 import com.lightstep.tracer.grpc.Reporter;
+import com.lightstep.tracer.grpc.Span;
+import io.grpc.ManagedChannel;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.TracerSdkProvider;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -27,13 +37,9 @@ import javax.annotation.concurrent.ThreadSafe;
 import okhttp3.Dns;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
-import okhttp3.ResponseBody;
 
 /**
- * Exports spans to Lightstep via OkHttp, using Lightstep's protobuf model.
+ * Exports spans to Lightstep via OkHttp or gRPC, using Lightstep's protobuf model.
  */
 @ThreadSafe
 public class LightstepSpanExporter implements SpanExporter {
@@ -41,6 +47,7 @@ public class LightstepSpanExporter implements SpanExporter {
 
   static final String MEDIA_TYPE_STRING = "application/octet-stream";
   static final String LIGHTSTEP_ACCESS_TOKEN = "Lightstep-Access-Token";
+  static final String CONTENT_ENCODING = "Content-Encoding";
   static final String PATH = "/api/v2/reports";
   @Nullable
   private static final MediaType MEDIA_TYPE = MediaType.parse(MEDIA_TYPE_STRING);
@@ -77,43 +84,108 @@ public class LightstepSpanExporter implements SpanExporter {
         }
       };
   private final URL collectorUrl;
-  private final OkHttpClient client;
+  private final long deadlineMillis;
+  private final ReportTransport transport;
   private final Auth.Builder auth;
   private final String serviceName;
   private final String serviceVersion;
   private final List<KeyValue> lsSpanAttributes;
   private final Reporter reporter;
+  private final boolean directEncoding;
+  private final boolean resourceTagsOnReporter;
+  @Nullable
+  private final ResourceTagsCache resourceTagsCache;
+  @Nullable
+  private final BufferPool bufferPool;
+  private final boolean asyncExport;
+  private final int maxInFlightReports;
+  private final Semaphore inFlightReports;
+  private final int pipelineChunkSize;
+  @Nullable
+  private final SpanBatcher batcher;
+  private final int maxReportBytes;
+  @Nullable
+  private final Executor conversionExecutor;
+  @Nullable
+  private final ForkJoinPool conversionPool;
+  private final int conversionParallelism;
+  private final int parallelConversionThreshold;
+  private final ExporterMetrics metrics;
+  private final ReportSender sender;
+  private final CircuitBreaker circuitBreaker;
+  @Nullable
+  private final DiskSpool spool;
+  @Nullable
+  private final SpoolDrainer spoolDrainer;
+  @Nullable
+  private final TailSampler tailSampler;
+  private final ClockState clockState = new ClockState();
+  private volatile boolean disabled;
 
   /**
-   * Creates a new Lightstep OkHttp Span Reporter.
+   * Creates a new Lightstep Span Exporter from the values of a builder.
    *
-   * @param collectorUrl collector url.
-   * @param deadlineMillis The maximum amount of time the tracer should wait for a response from the
-   * collector when sending a report.
-   * @param accessToken Your specific token for Lightstep access.
-   * @param okHttpDns DNS service used to lookup IP addresses for hostnames
-   * @param serviceName The service name attribute. If not set, will default to the Java runtime
-   * command.
+   * @param builder the builder, with defaults already applied
+   * @throws MalformedURLException if the protocol is unknown or the port is negative
    */
-  private LightstepSpanExporter(
-      URL collectorUrl,
-      long deadlineMillis,
-      String accessToken,
-      OkHttpDns okHttpDns,
-      String serviceName,
-      String serviceVersion) {
-    this.collectorUrl = collectorUrl;
-    this.serviceName = serviceName;
-    this.serviceVersion = serviceVersion;
-    OkHttpClient.Builder builder =
-        new OkHttpClient.Builder().connectTimeout(deadlineMillis, TimeUnit.MILLISECONDS);
-
-    if (okHttpDns != null) {
-      builder.dns(new CustomDns(okHttpDns));
-    }
-
-    this.client = builder.build();
-    this.auth = Auth.newBuilder().setAccessToken(accessToken);
+  private LightstepSpanExporter(Builder builder) throws MalformedURLException {
+    this.collectorUrl = builder.getCollectorUrl();
+    this.deadlineMillis = builder.deadlineMillis;
+    this.serviceName = builder.serviceName;
+    this.serviceVersion = builder.serviceVersion;
+    this.directEncoding = builder.directEncoding;
+    this.resourceTagsCache = builder.resourceTagsCacheSize > 0
+        ? new ResourceTagsCache(builder.resourceTagsCacheSize) : null;
+    this.resourceTagsOnReporter = builder.resourceTagsOnReporter;
+    this.bufferPool = builder.bufferPoolSize > 0
+        ? new BufferPool(builder.bufferPoolSize, builder.maxRetainedBufferBytes) : null;
+    this.asyncExport = builder.asyncExport;
+    this.maxInFlightReports = builder.maxInFlightReports;
+    this.inFlightReports = new Semaphore(maxInFlightReports);
+    this.pipelineChunkSize = builder.pipelineChunkSize;
+    this.batcher = builder.batchSize > 0
+        ? new SpanBatcher(builder.batchSize, builder.batchDelayMillis, new SpanBatcher.Sender() {
+          @Override
+          public ResultCode send(List<SpanData> batch) {
+            return exportBatch(batch);
+          }
+        })
+        : null;
+    this.maxReportBytes = builder.maxReportBytes;
+    this.conversionPool = builder.conversionExecutor == null && builder.conversionParallelism > 1
+        ? new ForkJoinPool(builder.conversionParallelism) : null;
+    this.conversionExecutor =
+        builder.conversionExecutor != null ? builder.conversionExecutor : conversionPool;
+    this.conversionParallelism = builder.conversionParallelism > 0
+        ? builder.conversionParallelism : Runtime.getRuntime().availableProcessors();
+    this.parallelConversionThreshold = builder.parallelConversionThreshold;
+    this.metrics = new ExporterMetrics(builder.internalMetricsIntervalMillis);
+    this.tailSampler = builder.tailSamplingDecisionWaitMillis > 0
+        ? new TailSampler(builder.tailSamplingDecisionWaitMillis, builder.tailSamplingMaxSpans,
+            builder.getTailSamplingRules(), metrics)
+        : null;
+    this.circuitBreaker = new CircuitBreaker(builder.circuitBreakerFailureThreshold,
+        builder.circuitBreakerOpenMillis, metrics);
+    this.spool = openSpool(builder.spoolDirectory, builder.spoolMaxBytes, metrics);
+    final boolean gzip = LightstepConfig.COMPRESSION_GZIP.equals(builder.compression);
+    if (LightstepConfig.TRANSPORT_GRPC.equals(builder.transport)) {
+      this.transport = new GrpcTransport(builder.grpcChannel != null
+          ? builder.grpcChannel : GrpcTransport.createChannel(collectorUrl),
+          builder.accessToken, deadlineMillis, gzip);
+    } else {
+      this.transport = new OkHttpTransport(collectorUrl, builder.accessToken, deadlineMillis,
+          builder.okHttpDns, asyncExport || pipelineChunkSize > 0 ? maxInFlightReports : 0, gzip,
+          builder.compressionLevel, builder.compressionMinBytes);
+    }
+    this.sender = new ReportSender(transport, new RetryPolicy(builder.maxRetries,
+        builder.retryInitialBackoffMillis, builder.retryMaxBackoffMillis,
+        builder.retryBudgetPercent), metrics, new ReportTransport.ResultCallback() {
+          @Override
+          public void onComplete(ReportTransport.Result result) {
+            onResponse(result);
+          }
+        });
+    this.auth = Auth.newBuilder().setAccessToken(builder.accessToken);
 
     this.lsSpanAttributes = new ArrayList<>();
     this.lsSpanAttributes.add(KeyValue.newBuilder().setKey(LIGHTSTEP_HOSTNAME_KEY)
@@ -125,6 +197,39 @@ public class LightstepSpanExporter implements SpanExporter {
 
     // should be last step in constructor
     this.reporter = createReporter();
+
+    this.spoolDrainer = spool != null
+        ? new SpoolDrainer(spool, builder.spoolDrainRate, new SpoolDrainer.Replayer() {
+          @Override
+          public boolean canReplay() {
+            return !disabled && circuitBreaker.allowExport();
+          }
+
+          @Override
+          public ReportTransport.Result replay(ReportRequest request) {
+            return replaySpooled(request);
+          }
+        })
+        : null;
+    if (spoolDrainer != null) {
+      spoolDrainer.start();
+    }
+  }
+
+  @Nullable
+  private static DiskSpool openSpool(@Nullable String spoolDirectory, long spoolMaxBytes,
+      ExporterMetrics metrics) {
+    if (spoolDirectory == null || spoolDirectory.isEmpty()) {
+      return null;
+    }
+    try {
+      return new DiskSpool(new File(spoolDirectory), spoolMaxBytes,
+          DiskSpool.DEFAULT_SEGMENT_BYTES, metrics);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to open the spool in " + spoolDirectory
+          + ", spans which cannot be sent will be dropped", e);
+      return null;
+    }
   }
 
   private Reporter createReporter() {
@@ -176,74 +281,555 @@ public class LightstepSpanExporter implements SpanExporter {
   }
 
   /**
-   * Submits all the given spans in a single batch to the Lightstep collector.
+   * Submits all the given spans in a single batch to the Lightstep collector. When resource tags
+   * are reported on the reporter, one batch is sent per distinct resource.
+   *
+   * <p>With batching enabled, the spans are instead added to the pending batch, which is only
+   * submitted once full or after the batch delay, and the returned code is the result of the
+   * batches submitted by this call, if any.
+   *
+   * <p>With asynchronous exports enabled, the batch is only enqueued and the returned code is
+   * {@link ResultCode#FAILURE} only if it could not be enqueued, see {@link
+   * #exportAsync(Collection)}.
+   *
+   * <p>With pipelining enabled, large batches are split into reports of the configured number of
+   * spans. Each report is serialized while the previous ones are sent, up to the maximum number of
+   * reports in flight, and this method returns once all of them completed.
+   *
+   * <p>After consecutive failed reports the collector is deemed unreachable: until it is probed
+   * again, the spans are then written to the disk spool if enabled, and dropped without being
+   * converted otherwise. Reports which failed while the collector was unavailable are spooled too,
+   * and replayed once it is reachable again.
+   *
+   * <p>With tail sampling enabled, only the spans of kept traces are submitted, the spans of
+   * undecided traces being held until a rule keeps them or their decision wait elapsed.
+   *
+   * <p>Once the collector responded with a disable command, the spans are dropped without being
+   * converted and {@link ResultCode#SUCCESS} is returned.
    *
    * @param spans the list of sampled Spans to be exported.
    * @return the result of the operation
    */
   @Override
   public ResultCode export(Collection<SpanData> spans) {
-    ReportRequest request =
-        ReportRequest.newBuilder()
-            .setAuth(auth)
-            .setReporter(reporter)
-            .addAllSpans(Adapter.toLightstepSpans(spans, lsSpanAttributes))
-            .build();
-
-    try (Response response = client.newCall(toRequest(request)).execute()) {
-      if (!response.isSuccessful()) {
-        logger.log(Level.WARNING, "Failed to post spans to collector. " + response.toString());
-        return ResultCode.FAILURE;
+    if (disabled) {
+      return ResultCode.SUCCESS;
+    }
+    if (tailSampler != null) {
+      spans = tailSampler.add(spans);
+      if (spans.isEmpty()) {
+        return ResultCode.SUCCESS;
       }
+    }
+    if (batcher != null) {
+      return batcher.add(spans);
+    }
+    return exportBatch(spans);
+  }
 
-      final ResponseBody body = response.body();
-      if (body == null) {
-        logger.log(Level.WARNING, "Response body is null");
-        return ResultCode.FAILURE;
+  private ResultCode exportBatch(Collection<SpanData> spans) {
+    if (asyncExport) {
+      final CompletableResultCode result = exportBatchAsync(spans);
+      return result.isDone() && !result.isSuccess() ? ResultCode.FAILURE : ResultCode.SUCCESS;
+    }
+
+    if (pipelineChunkSize > 0) {
+      final CompletableResultCode result =
+          exportBatchAsync(spans).join(deadlineMillis, TimeUnit.MILLISECONDS);
+      return result.isSuccess() ? ResultCode.SUCCESS : ResultCode.FAILURE;
+    }
+
+    if (!circuitBreaker.allowExport()) {
+      return spool != null ? spool(toRequestBodies(new ArrayList<>(spans))) : drop(spans.size());
+    }
+    if (!resourceTagsOnReporter) {
+      return send(toRequestBody(reporter, spans, lsSpanAttributes, true));
+    }
+
+    ResultCode result = ResultCode.SUCCESS;
+    final Map<Resource, List<SpanData>> groups = ResourceGrouping.groupSpans(spans);
+    for (Map.Entry<Resource, List<SpanData>> group : groups.entrySet()) {
+      final ReportRequestBody body = toRequestBody(reporterFor(group.getKey()), group.getValue(),
+          Collections.<KeyValue>emptyList(), false);
+      if (send(body) != ResultCode.SUCCESS) {
+        result = ResultCode.FAILURE;
       }
+    }
+    return result;
+  }
 
-      final ReportResponse reportResponse = ReportResponse.parseFrom(body.byteStream());
-      if (!reportResponse.getErrorsList().isEmpty()) {
-        List<String> errs = reportResponse.getErrorsList();
-        for (String err : errs) {
-          logger.log(Level.WARNING, "Collector response contained error: " + err);
-        }
-        return ResultCode.FAILURE;
+  /**
+   * Submits all the given spans to the Lightstep collector without waiting for its response. At
+   * most the configured number of reports are in flight at once; when the limit is reached this
+   * method waits up to the deadline for a report to complete, and fails otherwise. With
+   * pipelining enabled, large batches are split into several reports. With tail sampling enabled,
+   * only the spans of kept traces are submitted.
+   *
+   * @param spans the list of sampled Spans to be exported.
+   * @return the result of the operation, completed once the collector responded
+   */
+  public CompletableResultCode exportAsync(Collection<SpanData> spans) {
+    if (disabled) {
+      return CompletableResultCode.ofSuccess();
+    }
+    if (tailSampler != null) {
+      spans = tailSampler.add(spans);
+      if (spans.isEmpty()) {
+        return CompletableResultCode.ofSuccess();
+      }
+    }
+    return exportBatchAsync(spans);
+  }
+
+  private CompletableResultCode exportBatchAsync(Collection<SpanData> spans) {
+    if (disabled) {
+      return CompletableResultCode.ofSuccess();
+    }
+    // Spans are encoded while the request is written, after the caller may have reused the list.
+    final List<SpanData> batch = new ArrayList<>(spans);
+    if (!circuitBreaker.allowExport()) {
+      final ResultCode result = spool != null ? spool(toRequestBodies(batch)) : drop(batch.size());
+      return result == ResultCode.SUCCESS
+          ? CompletableResultCode.ofSuccess() : CompletableResultCode.ofFailure();
+    }
+    final List<CompletableResultCode> results = new ArrayList<>();
+    if (!resourceTagsOnReporter) {
+      sendChunksAsync(reporter, batch, lsSpanAttributes, true, results);
+    } else {
+      final Map<Resource, List<SpanData>> groups = ResourceGrouping.groupSpans(batch);
+      for (Map.Entry<Resource, List<SpanData>> group : groups.entrySet()) {
+        sendChunksAsync(reporterFor(group.getKey()), group.getValue(),
+            Collections.<KeyValue>emptyList(), false, results);
       }
+    }
+    return results.size() == 1 ? results.get(0) : CompletableResultCode.ofAll(results);
+  }
+
+  private void sendChunksAsync(Reporter requestReporter, List<SpanData> spans,
+      List<KeyValue> spanAttributes, boolean includeResourceTags,
+      List<CompletableResultCode> results) {
+    if (pipelineChunkSize <= 0 || spans.size() <= pipelineChunkSize) {
+      sendAsync(requestReporter, spans, spanAttributes, includeResourceTags, results);
+      return;
+    }
+    for (int from = 0; from < spans.size(); from += pipelineChunkSize) {
+      final List<SpanData> chunk =
+          spans.subList(from, Math.min(spans.size(), from + pipelineChunkSize));
+      sendAsync(requestReporter, chunk, spanAttributes, includeResourceTags, results);
+    }
+  }
+
+  /**
+   * Encodes a span into the wire format of its report on the calling thread, so that exporting it
+   * with {@link #exportEncoded(List)} only copies its bytes. Used by {@link LightstepSpanProcessor}
+   * to encode spans on the threads ending them.
+   *
+   * @param span the span to be encoded
+   * @return the encoded span
+   */
+  EncodedSpan encode(SpanData span) {
+    if (resourceTagsOnReporter) {
+      return SpanEncoder.encodeSpan(span, Collections.<KeyValue>emptyList(), false,
+          resourceTagsCache);
+    }
+    return SpanEncoder.encodeSpan(span, lsSpanAttributes, true, resourceTagsCache);
+  }
 
+  /**
+   * Submits spans encoded by {@link #encode(SpanData)} to the Lightstep collector, concatenating
+   * their bytes into reports. Neither batching nor pipelining apply, the spans come in batches of
+   * the processor and are not serialized again.
+   *
+   * @param spans the encoded spans
+   * @return the result of the operation, see {@link #export(Collection)}
+   */
+  ResultCode exportEncoded(List<EncodedSpan> spans) {
+    if (disabled) {
       return ResultCode.SUCCESS;
+    }
+    if (!circuitBreaker.allowExport()) {
+      // Spooled once this call returned, when the processor may have reused the list.
+      return spool != null ? spool(toEncodedBodies(new ArrayList<>(spans))) : drop(spans.size());
+    }
+    ResultCode result = ResultCode.SUCCESS;
+    for (ReportRequestBody body : toEncodedBodies(spans)) {
+      if (sendEncoded(body) != ResultCode.SUCCESS) {
+        result = ResultCode.FAILURE;
+      }
+    }
+    return result;
+  }
+
+  private List<ReportRequestBody> toEncodedBodies(List<EncodedSpan> spans) {
+    if (!resourceTagsOnReporter) {
+      return Collections.singletonList(
+          ReportRequestBody.create(reporter, auth.build(), spans, MEDIA_TYPE, bufferPool));
+    }
+
+    final Map<Resource, List<EncodedSpan>> groups = ResourceGrouping.groupEncodedSpans(spans);
+    final List<ReportRequestBody> bodies = new ArrayList<>(groups.size());
+    for (Map.Entry<Resource, List<EncodedSpan>> group : groups.entrySet()) {
+      bodies.add(ReportRequestBody.create(reporterFor(group.getKey()), auth.build(),
+          group.getValue(), MEDIA_TYPE, bufferPool));
+    }
+    return bodies;
+  }
+
+  private ResultCode sendEncoded(ReportRequestBody requestBody) {
+    if (!asyncExport) {
+      return send(requestBody);
+    }
+    ResultCode result = ResultCode.SUCCESS;
+    for (ReportRequestBody report : split(requestBody)) {
+      final CompletableResultCode sent = sendAsync(report);
+      if (sent.isDone() && !sent.isSuccess()) {
+        result = ResultCode.FAILURE;
+      }
+    }
+    return result;
+  }
+
+  private List<ReportRequestBody> toRequestBodies(List<SpanData> spans) {
+    if (!resourceTagsOnReporter) {
+      return Collections.singletonList(toRequestBody(reporter, spans, lsSpanAttributes, true));
+    }
+    final List<ReportRequestBody> bodies = new ArrayList<>();
+    final Map<Resource, List<SpanData>> groups = ResourceGrouping.groupSpans(spans);
+    for (Map.Entry<Resource, List<SpanData>> group : groups.entrySet()) {
+      bodies.add(toRequestBody(reporterFor(group.getKey()), group.getValue(),
+          Collections.<KeyValue>emptyList(), false));
+    }
+    return bodies;
+  }
+
+  /**
+   * Writes the reports refused by the circuit breaker to the spool, in reports of at most the
+   * maximum report size.
+   */
+  private ResultCode spool(List<ReportRequestBody> bodies) {
+    ResultCode result = ResultCode.SUCCESS;
+    for (ReportRequestBody body : bodies) {
+      final List<ReportRequestBody> reports =
+          maxReportBytes > 0 ? body.split(maxReportBytes) : Collections.singletonList(body);
+      for (ReportRequestBody report : reports) {
+        if (!spoolOrDrop(report, true)) {
+          report.release();
+          result = ResultCode.FAILURE;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Drops the spans of an export refused by the circuit breaker, when there is no spool.
+   */
+  private ResultCode drop(int spanCount) {
+    if (logger.isLoggable(Level.FINE)) {
+      logger.log(Level.FINE,
+          "Dropped " + spanCount + " spans, the collector circuit breaker is open");
+    }
+    metrics.recordDroppedSpans(spanCount);
+    return ResultCode.FAILURE;
+  }
+
+  /**
+   * Hands a report which could not be sent over to the spool if the collector was unavailable,
+   * or records its spans as dropped.
+   *
+   * @return whether the spool took ownership of the report
+   */
+  private boolean spoolOrDrop(ReportRequestBody report, boolean retryable) {
+    if (retryable && spool != null && spool.append(report)) {
+      return true;
+    }
+    metrics.recordDroppedSpans(report.getSpanCount());
+    return false;
+  }
+
+  /**
+   * Sends a spooled report through the spool drainer. Spooled reports carry neither the access
+   * token nor the clock offset, the current ones are attached.
+   */
+  private ReportTransport.Result replaySpooled(ReportRequest request) {
+    ReportRequestBody report =
+        ReportRequestBody.create(request.toBuilder().setAuth(auth).build(), MEDIA_TYPE, null);
+    final long offsetMicros = clockState.getOffsetMicros();
+    if (offsetMicros != 0) {
+      report = report.withTimestampOffset(offsetMicros);
+    }
+    final long start = System.nanoTime();
+    final ReportTransport.Result result = transport.prepare(report).send();
+    onResponse(result);
+    recordReport(report, start, result.getResultCode() == ResultCode.SUCCESS);
+    return result;
+  }
+
+  private Reporter reporterFor(Resource resource) {
+    return ResourceGrouping.reporterFor(reporter, resource, resourceTagsCache);
+  }
+
+  private ReportRequestBody toRequestBody(Reporter requestReporter, Collection<SpanData> spans,
+      List<KeyValue> spanAttributes, boolean includeResourceTags) {
+    if (directEncoding && conversionExecutor != null
+        && spans.size() >= parallelConversionThreshold) {
+      // Chunks are encoded concurrently, then their bytes are concatenated in order.
+      final List<EncodedSpan> encodedSpans = SpanEncoder.encodeSpans(spans, spanAttributes,
+          includeResourceTags, resourceTagsCache, conversionExecutor, conversionParallelism,
+          parallelConversionThreshold);
+      return ReportRequestBody.create(requestReporter, auth.build(), encodedSpans, MEDIA_TYPE,
+          bufferPool);
+    }
+    if (directEncoding) {
+      return ReportRequestBody.create(requestReporter, auth.build(), spans, spanAttributes,
+          includeResourceTags, resourceTagsCache, MEDIA_TYPE, bufferPool);
+    }
+    final List<Span> lsSpans = conversionExecutor != null
+        ? Adapter.toLightstepSpans(spans, spanAttributes, includeResourceTags, resourceTagsCache,
+            conversionExecutor, conversionParallelism, parallelConversionThreshold)
+        : Adapter.toLightstepSpans(spans, spanAttributes, includeResourceTags, resourceTagsCache);
+    final ReportRequest request = ReportRequest.newBuilder()
+        .setAuth(auth)
+        .setReporter(requestReporter)
+        .addAllSpans(lsSpans)
+        .build();
+    return ReportRequestBody.create(request, MEDIA_TYPE, bufferPool);
+  }
+
+  private ResultCode send(ReportRequestBody requestBody) {
+    ResultCode result = ResultCode.SUCCESS;
+    for (ReportRequestBody report : split(requestBody)) {
+      final long start = System.nanoTime();
+      boolean spooled = false;
+      try {
+        final ReportTransport.Result reportResult = sender.send(report);
+        final boolean success = reportResult.getResultCode() == ResultCode.SUCCESS;
+        recordReport(report, start, success);
+        if (!success) {
+          result = ResultCode.FAILURE;
+          spooled = spoolOrDrop(report, reportResult.isRetryable());
+        }
+      } finally {
+        if (!spooled) {
+          report.release();
+        }
+      }
+    }
+    return result;
+  }
+
+  private void sendAsync(Reporter requestReporter, Collection<SpanData> spans,
+      List<KeyValue> spanAttributes, boolean includeResourceTags,
+      List<CompletableResultCode> results) {
+    final ReportRequestBody requestBody;
+    try {
+      requestBody = toRequestBody(requestReporter, spans, spanAttributes, includeResourceTags);
     } catch (Throwable e) {
       logger.log(Level.WARNING, "Failed to post spans", e);
-      return ResultCode.FAILURE;
+      metrics.recordDroppedSpans(spans.size());
+      results.add(CompletableResultCode.ofFailure());
+      return;
+    }
+    for (ReportRequestBody report : split(requestBody)) {
+      results.add(sendAsync(report));
     }
   }
 
-  private Request toRequest(ReportRequest request) {
-    return new Request.Builder()
-        .url(this.collectorUrl)
-        .post(RequestBody.create(request.toByteArray(), MEDIA_TYPE))
-        .addHeader(LIGHTSTEP_ACCESS_TOKEN, request.getAuth().getAccessToken())
-        .build();
+  private CompletableResultCode sendAsync(final ReportRequestBody requestBody) {
+    final CompletableResultCode result = new CompletableResultCode();
+    if (!acquireInFlightReport()) {
+      logger.log(Level.WARNING,
+          "Dropped " + requestBody.getSpanCount() + " spans, too many reports are in flight");
+      metrics.recordDroppedSpans(requestBody.getSpanCount());
+      return result.fail();
+    }
+
+    try {
+      // Serialize on the calling thread, while the previous reports are on the wire.
+      requestBody.serialize();
+    } catch (Throwable e) {
+      logger.log(Level.WARNING, "Failed to post spans", e);
+      inFlightReports.release();
+      metrics.recordDroppedSpans(requestBody.getSpanCount());
+      return result.fail();
+    }
+
+    final long start = System.nanoTime();
+    sender.sendAsync(requestBody, new ReportTransport.ResultCallback() {
+      @Override
+      public void onComplete(ReportTransport.Result sent) {
+        final boolean success = sent.getResultCode() == ResultCode.SUCCESS;
+        recordReport(requestBody, start, success);
+        if (success || !spoolOrDrop(requestBody, sent.isRetryable())) {
+          requestBody.release();
+        }
+        inFlightReports.release();
+        if (success) {
+          result.succeed();
+        } else {
+          result.fail();
+        }
+      }
+    });
+    return result;
+  }
+
+  private void recordReport(ReportRequestBody report, long startNanos, boolean success) {
+    metrics.recordReport(report.getSpanCount(), report.contentLength(),
+        System.nanoTime() - startNanos, success);
+    if (success) {
+      circuitBreaker.onSuccess();
+    } else {
+      circuitBreaker.onFailure();
+    }
+  }
+
+  /**
+   * Acts on the commands and timestamps of a collector response.
+   */
+  private void onResponse(ReportTransport.Result result) {
+    if (result.getRoundTripMicros() >= 0) {
+      clockState.addSample(result.getClockOffsetMicros(), result.getRoundTripMicros());
+    }
+    if (result.isDisable() && !disabled) {
+      disabled = true;
+      logger.log(Level.WARNING, "The Lightstep collector disabled the exporter, spans will be "
+          + "dropped from now on");
+    }
+  }
+
+  /**
+   * Splits the report into reports under the maximum report size, if any, and attaches the
+   * internal metrics to the first one when a sample is due. The estimated offset of the collector
+   * clock is attached to all of them.
+   */
+  private List<ReportRequestBody> split(ReportRequestBody requestBody) {
+    final long offsetMicros = clockState.getOffsetMicros();
+    if (offsetMicros != 0) {
+      requestBody = requestBody.withTimestampOffset(offsetMicros);
+    }
+    List<ReportRequestBody> reports = Collections.singletonList(requestBody);
+    if (maxReportBytes > 0) {
+      reports = requestBody.split(maxReportBytes);
+      if (reports.size() > 1 && logger.isLoggable(Level.FINE)) {
+        logger.log(Level.FINE, "Split a report of " + requestBody.contentLength() + " bytes into "
+            + reports.size() + " reports");
+      }
+    }
+    final InternalMetrics sample = metrics.sampleIfDue();
+    if (sample == null) {
+      return reports;
+    }
+    final List<ReportRequestBody> withMetrics = new ArrayList<>(reports);
+    withMetrics.set(0, reports.get(0).withInternalMetrics(sample));
+    return withMetrics;
+  }
+
+  private boolean acquireInFlightReport() {
+    try {
+      return inFlightReports.tryAcquire(deadlineMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Returns the number of spans whose resource tags were served from the resource tags cache.
+   *
+   * @return the number of cache hits, always 0 when the cache is disabled
+   */
+  public long getResourceTagsCacheHits() {
+    return resourceTagsCache != null ? resourceTagsCache.getHitCount() : 0;
+  }
+
+  /**
+   * Returns the number of spans whose resource tags had to be converted because their resource
+   * was not in the resource tags cache.
+   *
+   * @return the number of cache misses, always 0 when the cache is disabled
+   */
+  public long getResourceTagsCacheMisses() {
+    return resourceTagsCache != null ? resourceTagsCache.getMissCount() : 0;
+  }
+
+  /**
+   * Returns the self-telemetry of the exporter, also fed by the {@link LightstepSpanProcessor}
+   * exporting to it.
+   */
+  ExporterMetrics getMetrics() {
+    return metrics;
+  }
+
+  @VisibleForTesting
+  CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  @VisibleForTesting
+  ClockState getClockState() {
+    return clockState;
+  }
+
+  /**
+   * Returns whether the collector commanded the exporter to stop reporting, in which case spans
+   * are dropped as soon as they are submitted.
+   */
+  boolean isDisabled() {
+    return disabled;
+  }
+
+  @VisibleForTesting
+  @Nullable
+  DiskSpool getSpool() {
+    return spool;
   }
 
   /**
-   * Initiates an orderly shutdown in which preexisting calls continue but new calls are immediately
-   * cancelled.
+   * Initiates an orderly shutdown in which pending spans are submitted and preexisting calls
+   * continue but new calls are immediately cancelled.
    */
   @Override
   public void shutdown() {
-    client.dispatcher().executorService().shutdown();
+    sender.shutdown();
+    if (tailSampler != null) {
+      tailSampler.shutdown();
+    }
+    if (batcher != null) {
+      batcher.shutdown();
+    }
+    if (conversionPool != null) {
+      conversionPool.shutdown();
+    }
+    if (spoolDrainer != null) {
+      spoolDrainer.shutdown(deadlineMillis);
+    }
+    transport.shutdown();
   }
 
   /**
-   * The Lightstep exporter does not batch spans, so this method will immediately return with
-   * success.
+   * Submits the spans pending in the batch, if batching is enabled. With asynchronous or pipelined
+   * exports enabled, this method then waits up to the deadline for the reports in flight to
+   * complete. Spans held by tail sampling are not submitted, their trace being undecided.
    *
-   * @return always Success
+   * @return Success unless a batch failed or reports are still in flight after the deadline
    */
   @Override
   public ResultCode flush() {
-    return ResultCode.SUCCESS;
+    final ResultCode result = batcher != null ? batcher.flush() : ResultCode.SUCCESS;
+    if (!asyncExport && pipelineChunkSize <= 0) {
+      return result;
+    }
+    try {
+      if (!inFlightReports.tryAcquire(maxInFlightReports, deadlineMillis, TimeUnit.MILLISECONDS)) {
+        return ResultCode.FAILURE;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return ResultCode.FAILURE;
+    }
+    inFlightReports.release(maxInFlightReports);
+    return result;
   }
 
   public interface OkHttpDns {
@@ -275,6 +861,47 @@ public class LightstepSpanExporter implements SpanExporter {
     private OkHttpDns okHttpDns;
     private String serviceName;
     private String serviceVersion;
+    private boolean directEncoding = true;
+    private int resourceTagsCacheSize = ResourceTagsCache.DEFAULT_CAPACITY;
+    private boolean resourceTagsOnReporter;
+    private int bufferPoolSize = LightstepConfig.DEFAULT_BUFFER_POOL_SIZE;
+    private int maxRetainedBufferBytes = LightstepConfig.DEFAULT_MAX_RETAINED_BUFFER_BYTES;
+    private String compression = LightstepConfig.COMPRESSION_NONE;
+    private int compressionLevel = LightstepConfig.DEFAULT_COMPRESSION_LEVEL;
+    private int compressionMinBytes = LightstepConfig.DEFAULT_COMPRESSION_MIN_BYTES;
+    private boolean asyncExport;
+    private int maxInFlightReports = LightstepConfig.DEFAULT_MAX_IN_FLIGHT_REPORTS;
+    private int pipelineChunkSize = LightstepConfig.DEFAULT_PIPELINE_CHUNK_SIZE;
+    private String transport = LightstepConfig.TRANSPORT_OKHTTP;
+    private int batchSize = LightstepConfig.DEFAULT_BATCH_SIZE;
+    private long batchDelayMillis = LightstepConfig.DEFAULT_BATCH_DELAY_MILLIS;
+    private int maxReportBytes = LightstepConfig.DEFAULT_MAX_REPORT_BYTES;
+    private int conversionParallelism = LightstepConfig.DEFAULT_CONVERSION_PARALLELISM;
+    private int parallelConversionThreshold =
+        LightstepConfig.DEFAULT_PARALLEL_CONVERSION_THRESHOLD;
+    @Nullable
+    private Executor conversionExecutor;
+    private long internalMetricsIntervalMillis =
+        LightstepConfig.DEFAULT_INTERNAL_METRICS_INTERVAL_MILLIS;
+    private int maxRetries = LightstepConfig.DEFAULT_MAX_RETRIES;
+    private long retryInitialBackoffMillis = LightstepConfig.DEFAULT_RETRY_INITIAL_BACKOFF_MILLIS;
+    private long retryMaxBackoffMillis = LightstepConfig.DEFAULT_RETRY_MAX_BACKOFF_MILLIS;
+    private int retryBudgetPercent = LightstepConfig.DEFAULT_RETRY_BUDGET_PERCENT;
+    private int circuitBreakerFailureThreshold =
+        LightstepConfig.DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD;
+    private long circuitBreakerOpenMillis = LightstepConfig.DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS;
+    @Nullable
+    private String spoolDirectory;
+    private long spoolMaxBytes = LightstepConfig.DEFAULT_SPOOL_MAX_BYTES;
+    private int spoolDrainRate = LightstepConfig.DEFAULT_SPOOL_DRAIN_RATE;
+    private long tailSamplingDecisionWaitMillis =
+        LightstepConfig.DEFAULT_TAIL_SAMPLING_DECISION_WAIT_MILLIS;
+    private int tailSamplingMaxSpans = LightstepConfig.DEFAULT_TAIL_SAMPLING_MAX_SPANS;
+    private long tailSamplingMinDurationMillis;
+    private int tailSamplingOperationRate;
+    private final List<TailSamplingRule> tailSamplingRules = new ArrayList<>();
+    @Nullable
+    private ManagedChannel grpcChannel;
 
     /**
      * Creates builder from configuration file
@@ -303,6 +930,88 @@ public class LightstepSpanExporter implements SpanExporter {
               LightstepConfig.defaultServiceName());
       builder.serviceVersion = properties
           .getProperty(LightstepConfig.SERVICE_VERSION_PROPERTY_KEY);
+      builder.setBufferPoolSize(Integer.parseInt(properties
+          .getProperty(LightstepConfig.BUFFER_POOL_SIZE_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_BUFFER_POOL_SIZE))));
+      builder.setMaxRetainedBufferBytes(Integer.parseInt(properties
+          .getProperty(LightstepConfig.MAX_RETAINED_BUFFER_BYTES_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_MAX_RETAINED_BUFFER_BYTES))));
+      builder.setCompression(properties
+          .getProperty(LightstepConfig.COMPRESSION_PROPERTY_KEY,
+              LightstepConfig.COMPRESSION_NONE));
+      builder.setCompressionLevel(Integer.parseInt(properties
+          .getProperty(LightstepConfig.COMPRESSION_LEVEL_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_COMPRESSION_LEVEL))));
+      builder.setCompressionMinBytes(Integer.parseInt(properties
+          .getProperty(LightstepConfig.COMPRESSION_MIN_BYTES_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_COMPRESSION_MIN_BYTES))));
+      builder.asyncExport = Boolean.parseBoolean(properties
+          .getProperty(LightstepConfig.ASYNC_EXPORT_PROPERTY_KEY, "false"));
+      builder.setMaxInFlightReports(Integer.parseInt(properties
+          .getProperty(LightstepConfig.MAX_IN_FLIGHT_REPORTS_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_MAX_IN_FLIGHT_REPORTS))));
+      builder.setPipelineChunkSize(Integer.parseInt(properties
+          .getProperty(LightstepConfig.PIPELINE_CHUNK_SIZE_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_PIPELINE_CHUNK_SIZE))));
+      builder.setResourceTagsOnReporter(Boolean.parseBoolean(properties
+          .getProperty(LightstepConfig.RESOURCE_TAGS_ON_REPORTER_PROPERTY_KEY, "false")));
+      builder.setTransport(properties
+          .getProperty(LightstepConfig.TRANSPORT_PROPERTY_KEY,
+              LightstepConfig.TRANSPORT_OKHTTP));
+      builder.setBatchSize(Integer.parseInt(properties
+          .getProperty(LightstepConfig.BATCH_SIZE_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_BATCH_SIZE))));
+      builder.setBatchDelayMillis(Long.parseLong(properties
+          .getProperty(LightstepConfig.BATCH_DELAY_MILLIS_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_BATCH_DELAY_MILLIS))));
+      builder.setMaxReportBytes(Integer.parseInt(properties
+          .getProperty(LightstepConfig.MAX_REPORT_BYTES_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_MAX_REPORT_BYTES))));
+      builder.setConversionParallelism(Integer.parseInt(properties
+          .getProperty(LightstepConfig.CONVERSION_PARALLELISM_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_CONVERSION_PARALLELISM))));
+      builder.setParallelConversionThreshold(Integer.parseInt(properties
+          .getProperty(LightstepConfig.PARALLEL_CONVERSION_THRESHOLD_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_PARALLEL_CONVERSION_THRESHOLD))));
+      builder.setInternalMetricsIntervalMillis(Long.parseLong(properties
+          .getProperty(LightstepConfig.INTERNAL_METRICS_INTERVAL_MILLIS_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_INTERNAL_METRICS_INTERVAL_MILLIS))));
+      builder.setMaxRetries(Integer.parseInt(properties
+          .getProperty(LightstepConfig.MAX_RETRIES_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_MAX_RETRIES))));
+      builder.setRetryInitialBackoffMillis(Long.parseLong(properties
+          .getProperty(LightstepConfig.RETRY_INITIAL_BACKOFF_MILLIS_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_RETRY_INITIAL_BACKOFF_MILLIS))));
+      builder.setRetryMaxBackoffMillis(Long.parseLong(properties
+          .getProperty(LightstepConfig.RETRY_MAX_BACKOFF_MILLIS_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_RETRY_MAX_BACKOFF_MILLIS))));
+      builder.setRetryBudgetPercent(Integer.parseInt(properties
+          .getProperty(LightstepConfig.RETRY_BUDGET_PERCENT_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_RETRY_BUDGET_PERCENT))));
+      builder.setCircuitBreakerFailureThreshold(Integer.parseInt(properties
+          .getProperty(LightstepConfig.CIRCUIT_BREAKER_FAILURE_THRESHOLD_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD))));
+      builder.setCircuitBreakerOpenMillis(Long.parseLong(properties
+          .getProperty(LightstepConfig.CIRCUIT_BREAKER_OPEN_MILLIS_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS))));
+      builder.setSpoolDirectory(properties
+          .getProperty(LightstepConfig.SPOOL_DIRECTORY_PROPERTY_KEY));
+      builder.setSpoolMaxBytes(Long.parseLong(properties
+          .getProperty(LightstepConfig.SPOOL_MAX_BYTES_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_SPOOL_MAX_BYTES))));
+      builder.setSpoolDrainRate(Integer.parseInt(properties
+          .getProperty(LightstepConfig.SPOOL_DRAIN_RATE_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_SPOOL_DRAIN_RATE))));
+      builder.setTailSamplingDecisionWaitMillis(Long.parseLong(properties
+          .getProperty(LightstepConfig.TAIL_SAMPLING_DECISION_WAIT_MILLIS_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_TAIL_SAMPLING_DECISION_WAIT_MILLIS))));
+      builder.setTailSamplingMaxSpans(Integer.parseInt(properties
+          .getProperty(LightstepConfig.TAIL_SAMPLING_MAX_SPANS_PROPERTY_KEY,
+              String.valueOf(LightstepConfig.DEFAULT_TAIL_SAMPLING_MAX_SPANS))));
+      builder.setTailSamplingMinDurationMillis(Long.parseLong(properties
+          .getProperty(LightstepConfig.TAIL_SAMPLING_MIN_DURATION_MILLIS_PROPERTY_KEY, "0")));
+      builder.setTailSamplingOperationRate(Integer.parseInt(properties
+          .getProperty(LightstepConfig.TAIL_SAMPLING_OPERATION_RATE_PROPERTY_KEY, "0")));
 
       return builder;
     }
@@ -328,6 +1037,85 @@ public class LightstepSpanExporter implements SpanExporter {
       builder.serviceName = getProperty(LightstepConfig.SERVICE_NAME,
           LightstepConfig.defaultServiceName());
       builder.serviceVersion = getProperty(LightstepConfig.SERVICE_VERSION, null);
+      builder.setBufferPoolSize(Integer.parseInt(
+          getProperty(LightstepConfig.BUFFER_POOL_SIZE,
+              String.valueOf(LightstepConfig.DEFAULT_BUFFER_POOL_SIZE))));
+      builder.setMaxRetainedBufferBytes(Integer.parseInt(
+          getProperty(LightstepConfig.MAX_RETAINED_BUFFER_BYTES,
+              String.valueOf(LightstepConfig.DEFAULT_MAX_RETAINED_BUFFER_BYTES))));
+      builder.setCompression(getProperty(LightstepConfig.COMPRESSION,
+          LightstepConfig.COMPRESSION_NONE));
+      builder.setCompressionLevel(Integer.parseInt(
+          getProperty(LightstepConfig.COMPRESSION_LEVEL,
+              String.valueOf(LightstepConfig.DEFAULT_COMPRESSION_LEVEL))));
+      builder.setCompressionMinBytes(Integer.parseInt(
+          getProperty(LightstepConfig.COMPRESSION_MIN_BYTES,
+              String.valueOf(LightstepConfig.DEFAULT_COMPRESSION_MIN_BYTES))));
+      builder.asyncExport = Boolean.parseBoolean(
+          getProperty(LightstepConfig.ASYNC_EXPORT, "false"));
+      builder.setMaxInFlightReports(Integer.parseInt(
+          getProperty(LightstepConfig.MAX_IN_FLIGHT_REPORTS,
+              String.valueOf(LightstepConfig.DEFAULT_MAX_IN_FLIGHT_REPORTS))));
+      builder.setPipelineChunkSize(Integer.parseInt(
+          getProperty(LightstepConfig.PIPELINE_CHUNK_SIZE,
+              String.valueOf(LightstepConfig.DEFAULT_PIPELINE_CHUNK_SIZE))));
+      builder.setResourceTagsOnReporter(Boolean.parseBoolean(
+          getProperty(LightstepConfig.RESOURCE_TAGS_ON_REPORTER, "false")));
+      builder.setTransport(getProperty(LightstepConfig.TRANSPORT,
+          LightstepConfig.TRANSPORT_OKHTTP));
+      builder.setBatchSize(Integer.parseInt(
+          getProperty(LightstepConfig.BATCH_SIZE,
+              String.valueOf(LightstepConfig.DEFAULT_BATCH_SIZE))));
+      builder.setBatchDelayMillis(Long.parseLong(
+          getProperty(LightstepConfig.BATCH_DELAY_MILLIS,
+              String.valueOf(LightstepConfig.DEFAULT_BATCH_DELAY_MILLIS))));
+      builder.setMaxReportBytes(Integer.parseInt(
+          getProperty(LightstepConfig.MAX_REPORT_BYTES,
+              String.valueOf(LightstepConfig.DEFAULT_MAX_REPORT_BYTES))));
+      builder.setConversionParallelism(Integer.parseInt(
+          getProperty(LightstepConfig.CONVERSION_PARALLELISM,
+              String.valueOf(LightstepConfig.DEFAULT_CONVERSION_PARALLELISM))));
+      builder.setParallelConversionThreshold(Integer.parseInt(
+          getProperty(LightstepConfig.PARALLEL_CONVERSION_THRESHOLD,
+              String.valueOf(LightstepConfig.DEFAULT_PARALLEL_CONVERSION_THRESHOLD))));
+      builder.setInternalMetricsIntervalMillis(Long.parseLong(
+          getProperty(LightstepConfig.INTERNAL_METRICS_INTERVAL_MILLIS,
+              String.valueOf(LightstepConfig.DEFAULT_INTERNAL_METRICS_INTERVAL_MILLIS))));
+      builder.setMaxRetries(Integer.parseInt(
+          getProperty(LightstepConfig.MAX_RETRIES,
+              String.valueOf(LightstepConfig.DEFAULT_MAX_RETRIES))));
+      builder.setRetryInitialBackoffMillis(Long.parseLong(
+          getProperty(LightstepConfig.RETRY_INITIAL_BACKOFF_MILLIS,
+              String.valueOf(LightstepConfig.DEFAULT_RETRY_INITIAL_BACKOFF_MILLIS))));
+      builder.setRetryMaxBackoffMillis(Long.parseLong(
+          getProperty(LightstepConfig.RETRY_MAX_BACKOFF_MILLIS,
+              String.valueOf(LightstepConfig.DEFAULT_RETRY_MAX_BACKOFF_MILLIS))));
+      builder.setRetryBudgetPercent(Integer.parseInt(
+          getProperty(LightstepConfig.RETRY_BUDGET_PERCENT,
+              String.valueOf(LightstepConfig.DEFAULT_RETRY_BUDGET_PERCENT))));
+      builder.setCircuitBreakerFailureThreshold(Integer.parseInt(
+          getProperty(LightstepConfig.CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+              String.valueOf(LightstepConfig.DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD))));
+      builder.setCircuitBreakerOpenMillis(Long.parseLong(
+          getProperty(LightstepConfig.CIRCUIT_BREAKER_OPEN_MILLIS,
+              String.valueOf(LightstepConfig.DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS))));
+      builder.setSpoolDirectory(getProperty(LightstepConfig.SPOOL_DIRECTORY, null));
+      builder.setSpoolMaxBytes(Long.parseLong(
+          getProperty(LightstepConfig.SPOOL_MAX_BYTES,
+              String.valueOf(LightstepConfig.DEFAULT_SPOOL_MAX_BYTES))));
+      builder.setSpoolDrainRate(Integer.parseInt(
+          getProperty(LightstepConfig.SPOOL_DRAIN_RATE,
+              String.valueOf(LightstepConfig.DEFAULT_SPOOL_DRAIN_RATE))));
+      builder.setTailSamplingDecisionWaitMillis(Long.parseLong(
+          getProperty(LightstepConfig.TAIL_SAMPLING_DECISION_WAIT_MILLIS,
+              String.valueOf(LightstepConfig.DEFAULT_TAIL_SAMPLING_DECISION_WAIT_MILLIS))));
+      builder.setTailSamplingMaxSpans(Integer.parseInt(
+          getProperty(LightstepConfig.TAIL_SAMPLING_MAX_SPANS,
+              String.valueOf(LightstepConfig.DEFAULT_TAIL_SAMPLING_MAX_SPANS))));
+      builder.setTailSamplingMinDurationMillis(Long.parseLong(
+          getProperty(LightstepConfig.TAIL_SAMPLING_MIN_DURATION_MILLIS, "0")));
+      builder.setTailSamplingOperationRate(Integer.parseInt(
+          getProperty(LightstepConfig.TAIL_SAMPLING_OPERATION_RATE, "0")));
 
       // Deprecated LightstepConfig.COMPONENT_NAME should be removed in next releases
       builder.serviceName = getProperty(LightstepConfig.COMPONENT_NAME, builder.serviceName);
@@ -460,68 +1248,690 @@ public class LightstepSpanExporter implements SpanExporter {
     }
 
     /**
-     * If not set, provides a default value for the service name.
+     * Sets whether spans are encoded straight from {@link SpanData} into the protobuf wire format,
+     * without building intermediate Lightstep protobuf objects. Enabled by default; when disabled
+     * spans are first converted into Lightstep protobuf objects and then serialized.
+     *
+     * @param directEncoding whether to encode spans directly
+     * @return this builder's instance
      */
-    private void setDefaultServiceName() {
-      if (serviceName == null) {
-        setServiceName(LightstepConfig.defaultServiceName());
-      }
+    public Builder setDirectEncoding(boolean directEncoding) {
+      this.directEncoding = directEncoding;
+      return this;
     }
 
-    private void defaultDeadlineMillis() {
-      if (deadlineMillis < 0) {
-        deadlineMillis = LightstepConfig.DEFAULT_DEADLINE_MILLIS;
+    /**
+     * Sets how many distinct resources have their converted tags cached, so the attributes of a
+     * resource shared by many spans are converted only once. Defaults to 16.
+     *
+     * @param resourceTagsCacheSize the maximum number of cached resources, 0 disables the cache
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the size is negative.
+     */
+    public Builder setResourceTagsCacheSize(int resourceTagsCacheSize) {
+      if (resourceTagsCacheSize < 0) {
+        throw new IllegalArgumentException(
+            "Invalid resource tags cache size: " + resourceTagsCacheSize);
       }
+      this.resourceTagsCacheSize = resourceTagsCacheSize;
+      return this;
     }
 
-    private int getPort() {
-      if (collectorPort > 0) {
-        return collectorPort;
-      } else if (collectorProtocol.equals(LightstepConfig.PROTOCOL_HTTPS)) {
-        return LightstepConfig.DEFAULT_SECURE_PORT;
-      } else {
-        return LightstepConfig.DEFAULT_PLAINTEXT_PORT;
-      }
+    /**
+     * Sets whether resource attributes are reported once as {@code Reporter} tags instead of
+     * being repeated as tags of every span. When enabled, each exported batch is split into one
+     * report per distinct resource, and the hostname and service version tags, which the reporter
+     * already carries, are no longer added to spans. Disabled by default.
+     *
+     * @param resourceTagsOnReporter whether to report resource tags on the reporter
+     * @return this builder's instance
+     */
+    public Builder setResourceTagsOnReporter(boolean resourceTagsOnReporter) {
+      this.resourceTagsOnReporter = resourceTagsOnReporter;
+      return this;
     }
 
-    @VisibleForTesting
-    URL getCollectorUrl() throws MalformedURLException {
-      int port = getPort();
-      return new URL(collectorProtocol, collectorHost, port, PATH);
+    /**
+     * Sets how many idle buffers are kept to serialize reports into, so that steady-state exports
+     * reuse them instead of allocating a new payload per batch. Defaults to {@link
+     * LightstepConfig#DEFAULT_BUFFER_POOL_SIZE}.
+     *
+     * @param bufferPoolSize the maximum number of pooled buffers, 0 streams reports without a
+     * buffer
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the size is negative.
+     */
+    public Builder setBufferPoolSize(int bufferPoolSize) {
+      if (bufferPoolSize < 0) {
+        throw new IllegalArgumentException("Invalid buffer pool size: " + bufferPoolSize);
+      }
+      this.bufferPoolSize = bufferPoolSize;
+      return this;
     }
 
     /**
-     * Constructs a new instance of the exporter based on the builder's values.
+     * Sets the maximum capacity of a serialization buffer kept for reuse. Larger buffers, needed by
+     * bursts of big batches, are released to the garbage collector once used. Defaults to {@link
+     * LightstepConfig#DEFAULT_MAX_RETAINED_BUFFER_BYTES}.
      *
-     * @return a new exporter's instance
-     * @throws MalformedURLException if an unknown protocol or the port is a negative number
+     * @param maxRetainedBufferBytes the maximum capacity in bytes
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the capacity is not positive.
      */
-    public LightstepSpanExporter build() throws MalformedURLException {
-      defaultDeadlineMillis();
-      setDefaultServiceName();
-      return new LightstepSpanExporter(
-          getCollectorUrl(), deadlineMillis, accessToken, okHttpDns, serviceName, serviceVersion);
+    public Builder setMaxRetainedBufferBytes(int maxRetainedBufferBytes) {
+      if (maxRetainedBufferBytes <= 0) {
+        throw new IllegalArgumentException(
+            "Invalid max retained buffer bytes: " + maxRetainedBufferBytes);
+      }
+      this.maxRetainedBufferBytes = maxRetainedBufferBytes;
+      return this;
     }
 
     /**
-     * Installs exporter into tracer SDK provider with batching span processor.
+     * Sets the compression of reports, sent as their {@code Content-Encoding}, or as their message
+     * encoding with the gRPC transport. Defaults to {@link LightstepConfig#COMPRESSION_NONE}.
      *
-     * @param tracerSdkProvider tracer SDK provider
+     * @param compression Either 'none' or 'gzip'
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the compression argument is invalid.
      */
-    public void install(TracerSdkProvider tracerSdkProvider) throws MalformedURLException {
-      BatchSpanProcessor spansProcessor = BatchSpanProcessor.newBuilder(this.build()).build();
-      tracerSdkProvider.addSpanProcessor(spansProcessor);
+    public Builder setCompression(String compression) {
+      if (!LightstepConfig.COMPRESSION_NONE.equals(compression)
+          && !LightstepConfig.COMPRESSION_GZIP.equals(compression)) {
+        throw new IllegalArgumentException("Invalid compression: " + compression);
+      }
+      this.compression = compression;
+      return this;
     }
 
     /**
-     * Installs exporter into tracer SDK default provider with batching span processor.
+     * Sets the gzip compression level, trading CPU for smaller reports. Defaults to {@link
+     * LightstepConfig#DEFAULT_COMPRESSION_LEVEL}.
+     *
+     * @param compressionLevel the level from 0 (no compression) to 9 (best compression), or -1
+     * for the default level
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the level is out of range.
      */
-    public void install() throws MalformedURLException {
-      BatchSpanProcessor spansProcessor = BatchSpanProcessor.newBuilder(this.build()).build();
-      OpenTelemetrySdk.getTracerProvider().addSpanProcessor(spansProcessor);
+    public Builder setCompressionLevel(int compressionLevel) {
+      if (compressionLevel < -1 || compressionLevel > 9) {
+        throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+      }
+      this.compressionLevel = compressionLevel;
+      return this;
     }
 
-    private static String getProperty(String name, String defaultValue) {
+    /**
+     * Sets the size below which reports are sent uncompressed, as compressing small reports costs
+     * more CPU than it saves bandwidth. Defaults to {@link
+     * LightstepConfig#DEFAULT_COMPRESSION_MIN_BYTES}.
+     *
+     * @param compressionMinBytes the minimum size in bytes of a compressed report
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the size is negative.
+     */
+    public Builder setCompressionMinBytes(int compressionMinBytes) {
+      if (compressionMinBytes < 0) {
+        throw new IllegalArgumentException(
+            "Invalid compression min bytes: " + compressionMinBytes);
+      }
+      this.compressionMinBytes = compressionMinBytes;
+      return this;
+    }
+
+    /**
+     * Sets whether {@link LightstepSpanExporter#export(Collection)} enqueues reports and returns
+     * without waiting for the collector to respond, so that the calling thread is not blocked for
+     * the whole round trip. Disabled by default.
+     *
+     * @param asyncExport whether to export asynchronously
+     * @return this builder's instance
+     */
+    public Builder setAsyncExport(boolean asyncExport) {
+      this.asyncExport = asyncExport;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of reports concurrently sent by asynchronous and pipelined exports.
+     * Defaults to {@link LightstepConfig#DEFAULT_MAX_IN_FLIGHT_REPORTS}.
+     *
+     * @param maxInFlightReports the maximum number of reports in flight
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the number is not positive.
+     */
+    public Builder setMaxInFlightReports(int maxInFlightReports) {
+      if (maxInFlightReports <= 0) {
+        throw new IllegalArgumentException(
+            "Invalid max in flight reports: " + maxInFlightReports);
+      }
+      this.maxInFlightReports = maxInFlightReports;
+      return this;
+    }
+
+    /**
+     * Sets the number of spans per report when pipelining exports. Batches larger than this are
+     * split into several reports, each serialized while the previous ones are sent, with at most
+     * {@link #setMaxInFlightReports(int)} reports in flight; the exporting thread waits when that
+     * window is full. Defaults to {@link LightstepConfig#DEFAULT_PIPELINE_CHUNK_SIZE}.
+     *
+     * @param pipelineChunkSize the number of spans per report, 0 disables pipelining
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the size is negative.
+     */
+    public Builder setPipelineChunkSize(int pipelineChunkSize) {
+      if (pipelineChunkSize < 0) {
+        throw new IllegalArgumentException("Invalid pipeline chunk size: " + pipelineChunkSize);
+      }
+      this.pipelineChunkSize = pipelineChunkSize;
+      return this;
+    }
+
+    /**
+     * Sets the transport of reports. With {@link LightstepConfig#TRANSPORT_GRPC}, reports are sent
+     * with the gRPC {@code CollectorService} over a single long-lived HTTP/2 connection to the
+     * collector host and port, on which concurrent reports are multiplexed, in plaintext when the
+     * protocol is http. Compressed reports then use the gzip message encoding of gRPC, regardless
+     * of the compression level and minimum size. Defaults to {@link
+     * LightstepConfig#TRANSPORT_OKHTTP}.
+     *
+     * @param transport Either 'okhttp' or 'grpc'
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the transport argument is invalid.
+     */
+    public Builder setTransport(String transport) {
+      if (!LightstepConfig.TRANSPORT_OKHTTP.equals(transport)
+          && !LightstepConfig.TRANSPORT_GRPC.equals(transport)) {
+        throw new IllegalArgumentException("Invalid transport: " + transport);
+      }
+      this.transport = transport;
+      return this;
+    }
+
+    /**
+     * Sets the number of spans coalesced into a report. Spans of successive exports are held until
+     * that many are pending, or until the batch delay elapsed, so that span processors exporting
+     * spans one by one, such as {@code SimpleSpanProcessor}, do not send a report per span. {@link
+     * LightstepSpanExporter#flush()} and {@link LightstepSpanExporter#shutdown()} submit the
+     * pending spans. Defaults to {@link LightstepConfig#DEFAULT_BATCH_SIZE}.
+     *
+     * @param batchSize the maximum number of spans per report, 0 disables batching
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the size is negative.
+     */
+    public Builder setBatchSize(int batchSize) {
+      if (batchSize < 0) {
+        throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+      }
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum time spans are held in a batch before being submitted. Defaults to {@link
+     * LightstepConfig#DEFAULT_BATCH_DELAY_MILLIS}.
+     *
+     * @param batchDelayMillis the maximum delay in milliseconds
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the delay is not positive.
+     */
+    public Builder setBatchDelayMillis(long batchDelayMillis) {
+      if (batchDelayMillis <= 0) {
+        throw new IllegalArgumentException("Invalid batch delay millis: " + batchDelayMillis);
+      }
+      this.batchDelayMillis = batchDelayMillis;
+      return this;
+    }
+
+    /**
+     * Sets the maximum encoded size of a report, before compression. Batches whose report would be
+     * larger are split into several reports of consecutive spans, each sent on its own, and the
+     * export fails if any of them fails. Defaults to {@link
+     * LightstepConfig#DEFAULT_MAX_REPORT_BYTES}.
+     *
+     * @param maxReportBytes the maximum size in bytes, 0 for no limit
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the size is negative.
+     */
+    public Builder setMaxReportBytes(int maxReportBytes) {
+      if (maxReportBytes < 0) {
+        throw new IllegalArgumentException("Invalid max report bytes: " + maxReportBytes);
+      }
+      this.maxReportBytes = maxReportBytes;
+      return this;
+    }
+
+    /**
+     * Sets the number of threads converting batches of at least the parallel conversion threshold
+     * into Lightstep spans. Each batch is split into this many chunks, converted concurrently
+     * without changing the order of the spans. When spans are encoded directly, see {@link
+     * #setDirectEncoding(boolean)}, the chunks are encoded into their wire format and the report
+     * concatenates their bytes. Defaults to {@link
+     * LightstepConfig#DEFAULT_CONVERSION_PARALLELISM}, which converts batches on the exporting
+     * thread.
+     *
+     * @param conversionParallelism the number of threads, 0 or 1 to disable parallel conversion
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the number is negative.
+     */
+    public Builder setConversionParallelism(int conversionParallelism) {
+      if (conversionParallelism < 0) {
+        throw new IllegalArgumentException(
+            "Invalid conversion parallelism: " + conversionParallelism);
+      }
+      this.conversionParallelism = conversionParallelism;
+      return this;
+    }
+
+    /**
+     * Sets the number of spans from which a batch is converted in parallel, smaller batches are
+     * converted sequentially. Defaults to {@link
+     * LightstepConfig#DEFAULT_PARALLEL_CONVERSION_THRESHOLD}.
+     *
+     * @param parallelConversionThreshold the minimum number of spans
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the number is negative.
+     */
+    public Builder setParallelConversionThreshold(int parallelConversionThreshold) {
+      if (parallelConversionThreshold < 0) {
+        throw new IllegalArgumentException(
+            "Invalid parallel conversion threshold: " + parallelConversionThreshold);
+      }
+      this.parallelConversionThreshold = parallelConversionThreshold;
+      return this;
+    }
+
+    /**
+     * Sets the executor converting large batches in parallel, instead of a {@link ForkJoinPool}
+     * of the conversion parallelism owned by the exporter. The executor is not shut down with the
+     * exporter. Batches are split into as many chunks as the conversion parallelism, or as the
+     * number of processors when it is not set.
+     *
+     * @param conversionExecutor the executor, or {@code null} to use the pool of the exporter
+     * @return this builder's instance
+     */
+    public Builder setConversionExecutor(@Nullable Executor conversionExecutor) {
+      this.conversionExecutor = conversionExecutor;
+      return this;
+    }
+
+    /**
+     * Sets the interval at which the internal metrics of the exporter, such as the number of spans
+     * sent and dropped or the latency of reports, are attached to the next report. Defaults to
+     * {@link LightstepConfig#DEFAULT_INTERNAL_METRICS_INTERVAL_MILLIS}.
+     *
+     * @param internalMetricsIntervalMillis the interval in milliseconds, 0 to never attach them
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the interval is negative.
+     */
+    public Builder setInternalMetricsIntervalMillis(long internalMetricsIntervalMillis) {
+      if (internalMetricsIntervalMillis < 0) {
+        throw new IllegalArgumentException(
+            "Invalid internal metrics interval: " + internalMetricsIntervalMillis);
+      }
+      this.internalMetricsIntervalMillis = internalMetricsIntervalMillis;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of times a report is sent again after a retryable failure: the
+     * collector answered 429 or 503 (or their gRPC equivalents {@code RESOURCE_EXHAUSTED} and
+     * {@code UNAVAILABLE}), or the connection was refused, timed out or was reset. Synchronous
+     * exports wait for the retries, asynchronous ones hold their report in flight meanwhile.
+     * Defaults to {@link LightstepConfig#DEFAULT_MAX_RETRIES}.
+     *
+     * @param maxRetries the maximum number of retries, 0 to never retry
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the number is negative.
+     */
+    public Builder setMaxRetries(int maxRetries) {
+      if (maxRetries < 0) {
+        throw new IllegalArgumentException("Invalid max retries: " + maxRetries);
+      }
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
+    /**
+     * Sets the maximum delay before the first retry of a report. Retries are delayed by a random
+     * time up to this backoff, doubled on each further retry. Defaults to {@link
+     * LightstepConfig#DEFAULT_RETRY_INITIAL_BACKOFF_MILLIS}.
+     *
+     * @param retryInitialBackoffMillis the backoff in milliseconds
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the backoff is negative.
+     */
+    public Builder setRetryInitialBackoffMillis(long retryInitialBackoffMillis) {
+      if (retryInitialBackoffMillis < 0) {
+        throw new IllegalArgumentException(
+            "Invalid retry initial backoff: " + retryInitialBackoffMillis);
+      }
+      this.retryInitialBackoffMillis = retryInitialBackoffMillis;
+      return this;
+    }
+
+    /**
+     * Sets the maximum delay before any retry of a report. A longer delay asked for by the
+     * collector with a Retry-After header is not honored, the report fails instead. Defaults to
+     * {@link LightstepConfig#DEFAULT_RETRY_MAX_BACKOFF_MILLIS}.
+     *
+     * @param retryMaxBackoffMillis the backoff in milliseconds
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the backoff is negative.
+     */
+    public Builder setRetryMaxBackoffMillis(long retryMaxBackoffMillis) {
+      if (retryMaxBackoffMillis < 0) {
+        throw new IllegalArgumentException("Invalid retry max backoff: " + retryMaxBackoffMillis);
+      }
+      this.retryMaxBackoffMillis = retryMaxBackoffMillis;
+      return this;
+    }
+
+    /**
+     * Sets the number of retries allowed per hundred reports, shared by all reports so that
+     * retries cannot amplify the load of the collector during an outage. On top of it, up to
+     * {@value RetryPolicy#MAX_RETRY_BALANCE} retries can be saved up for bursts of failures.
+     * Defaults to {@link LightstepConfig#DEFAULT_RETRY_BUDGET_PERCENT}.
+     *
+     * @param retryBudgetPercent the percentage of reports which may be retried
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the percentage is negative.
+     */
+    public Builder setRetryBudgetPercent(int retryBudgetPercent) {
+      if (retryBudgetPercent < 0) {
+        throw new IllegalArgumentException("Invalid retry budget: " + retryBudgetPercent);
+      }
+      this.retryBudgetPercent = retryBudgetPercent;
+      return this;
+    }
+
+    /**
+     * Sets the number of consecutive failed reports after which the collector is deemed
+     * unreachable. Exports are then refused, dropping their spans before converting them, until
+     * the open duration elapsed and an export successfully probed the collector, unless a spool
+     * directory is set, in which case their reports are spooled. Disabled by default, see {@link
+     * LightstepConfig#DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD}.
+     *
+     * @param circuitBreakerFailureThreshold the number of failed reports, 0 to never refuse exports
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the number is negative.
+     */
+    public Builder setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+      if (circuitBreakerFailureThreshold < 0) {
+        throw new IllegalArgumentException(
+            "Invalid circuit breaker failure threshold: " + circuitBreakerFailureThreshold);
+      }
+      this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+      return this;
+    }
+
+    /**
+     * Sets the time during which exports are refused once the collector is deemed unreachable,
+     * before an export is let through to probe it. Defaults to {@link
+     * LightstepConfig#DEFAULT_CIRCUIT_BREAKER_OPEN_MILLIS}.
+     *
+     * @param circuitBreakerOpenMillis the open duration in milliseconds
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the duration is negative.
+     */
+    public Builder setCircuitBreakerOpenMillis(long circuitBreakerOpenMillis) {
+      if (circuitBreakerOpenMillis < 0) {
+        throw new IllegalArgumentException(
+            "Invalid circuit breaker open duration: " + circuitBreakerOpenMillis);
+      }
+      this.circuitBreakerOpenMillis = circuitBreakerOpenMillis;
+      return this;
+    }
+
+    /**
+     * Sets the directory of the disk spool, which keeps the reports that could not be sent while
+     * the collector was unavailable, across restarts, and replays them once it is reachable again.
+     * Disabled by default.
+     *
+     * @param spoolDirectory the directory, created if needed, or {@code null} to disable the spool
+     * @return this builder's instance
+     */
+    public Builder setSpoolDirectory(@Nullable String spoolDirectory) {
+      this.spoolDirectory = spoolDirectory;
+      return this;
+    }
+
+    /**
+     * Sets the maximum size of the files of the disk spool. Once reached, the oldest spooled
+     * reports are dropped to make room for new ones. Defaults to {@link
+     * LightstepConfig#DEFAULT_SPOOL_MAX_BYTES}.
+     *
+     * @param spoolMaxBytes the size in bytes
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the size is not positive.
+     */
+    public Builder setSpoolMaxBytes(long spoolMaxBytes) {
+      if (spoolMaxBytes <= 0) {
+        throw new IllegalArgumentException("Invalid spool max bytes: " + spoolMaxBytes);
+      }
+      this.spoolMaxBytes = spoolMaxBytes;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of spooled reports replayed per second, so that replaying a backlog
+     * does not overload a collector which just recovered. Defaults to {@link
+     * LightstepConfig#DEFAULT_SPOOL_DRAIN_RATE}.
+     *
+     * @param spoolDrainRate the number of reports per second
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the rate is not positive.
+     */
+    public Builder setSpoolDrainRate(int spoolDrainRate) {
+      if (spoolDrainRate <= 0) {
+        throw new IllegalArgumentException("Invalid spool drain rate: " + spoolDrainRate);
+      }
+      this.spoolDrainRate = spoolDrainRate;
+      return this;
+    }
+
+    /**
+     * Sets the maximum time the spans of a trace are held by tail sampling, waiting for a rule to
+     * keep the trace. Tail sampling converts and sends only the traces kept by a rule: traces with
+     * an error span are always kept, see {@link #setTailSamplingMinDurationMillis(long)}, {@link
+     * #setTailSamplingOperationRate(int)} and {@link #addTailSamplingRule(TailSamplingRule)} for
+     * the other rules. Disabled by default.
+     *
+     * <p>The delay should exceed the time between the first and the last span of a trace ending,
+     * the spans of a kept trace ending later being sent unless it was forgotten in the meantime.
+     *
+     * @param tailSamplingDecisionWaitMillis the delay in milliseconds, 0 to disable tail sampling
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the delay is negative.
+     */
+    public Builder setTailSamplingDecisionWaitMillis(long tailSamplingDecisionWaitMillis) {
+      if (tailSamplingDecisionWaitMillis < 0) {
+        throw new IllegalArgumentException(
+            "Invalid tail sampling decision wait millis: " + tailSamplingDecisionWaitMillis);
+      }
+      this.tailSamplingDecisionWaitMillis = tailSamplingDecisionWaitMillis;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of spans held by tail sampling. Once reached, the oldest undecided
+     * traces are dropped to make room for new spans. Defaults to {@link
+     * LightstepConfig#DEFAULT_TAIL_SAMPLING_MAX_SPANS}.
+     *
+     * @param tailSamplingMaxSpans the number of spans
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the number is not positive.
+     */
+    public Builder setTailSamplingMaxSpans(int tailSamplingMaxSpans) {
+      if (tailSamplingMaxSpans <= 0) {
+        throw new IllegalArgumentException(
+            "Invalid tail sampling max spans: " + tailSamplingMaxSpans);
+      }
+      this.tailSamplingMaxSpans = tailSamplingMaxSpans;
+      return this;
+    }
+
+    /**
+     * Sets the duration from which a span keeps its trace, see {@link
+     * TailSamplingRule#minDuration(long)}. Disabled by default.
+     *
+     * @param tailSamplingMinDurationMillis the duration in milliseconds, 0 to disable the rule
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the duration is negative.
+     */
+    public Builder setTailSamplingMinDurationMillis(long tailSamplingMinDurationMillis) {
+      if (tailSamplingMinDurationMillis < 0) {
+        throw new IllegalArgumentException(
+            "Invalid tail sampling min duration millis: " + tailSamplingMinDurationMillis);
+      }
+      this.tailSamplingMinDurationMillis = tailSamplingMinDurationMillis;
+      return this;
+    }
+
+    /**
+     * Sets the number of traces kept per second for each operation, see {@link
+     * TailSamplingRule#operationRateLimit(int)}. Disabled by default.
+     *
+     * @param tailSamplingOperationRate the number of traces per second, 0 to disable the rule
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the rate is negative.
+     */
+    public Builder setTailSamplingOperationRate(int tailSamplingOperationRate) {
+      if (tailSamplingOperationRate < 0) {
+        throw new IllegalArgumentException(
+            "Invalid tail sampling operation rate: " + tailSamplingOperationRate);
+      }
+      this.tailSamplingOperationRate = tailSamplingOperationRate;
+      return this;
+    }
+
+    /**
+     * Adds a rule keeping traces with tail sampling, evaluated after the built-in ones.
+     *
+     * @param rule the rule
+     * @return this builder's instance
+     */
+    public Builder addTailSamplingRule(TailSamplingRule rule) {
+      if (rule == null) {
+        throw new IllegalArgumentException("rule cannot be null");
+      }
+      tailSamplingRules.add(rule);
+      return this;
+    }
+
+    private List<TailSamplingRule> getTailSamplingRules() {
+      final List<TailSamplingRule> rules = new ArrayList<>();
+      rules.add(TailSamplingRule.error());
+      if (tailSamplingMinDurationMillis > 0) {
+        rules.add(TailSamplingRule.minDuration(tailSamplingMinDurationMillis));
+      }
+      if (tailSamplingOperationRate > 0) {
+        rules.add(TailSamplingRule.operationRateLimit(tailSamplingOperationRate));
+      }
+      rules.addAll(tailSamplingRules);
+      return rules;
+    }
+
+    /**
+     * Sets the channel used by the gRPC transport instead of connecting to the collector.
+     */
+    @VisibleForTesting
+    Builder setGrpcChannel(ManagedChannel grpcChannel) {
+      this.grpcChannel = grpcChannel;
+      return this;
+    }
+
+    /**
+     * If not set, provides a default value for the service name.
+     */
+    private void setDefaultServiceName() {
+      if (serviceName == null) {
+        setServiceName(LightstepConfig.defaultServiceName());
+      }
+    }
+
+    private void defaultDeadlineMillis() {
+      if (deadlineMillis < 0) {
+        deadlineMillis = LightstepConfig.DEFAULT_DEADLINE_MILLIS;
+      }
+    }
+
+    private int getPort() {
+      if (collectorPort > 0) {
+        return collectorPort;
+      } else if (collectorProtocol.equals(LightstepConfig.PROTOCOL_HTTPS)) {
+        return LightstepConfig.DEFAULT_SECURE_PORT;
+      } else {
+        return LightstepConfig.DEFAULT_PLAINTEXT_PORT;
+      }
+    }
+
+    @VisibleForTesting
+    URL getCollectorUrl() throws MalformedURLException {
+      int port = getPort();
+      return new URL(collectorProtocol, collectorHost, port, PATH);
+    }
+
+    /**
+     * Constructs a new instance of the exporter based on the builder's values.
+     *
+     * @return a new exporter's instance
+     * @throws MalformedURLException if an unknown protocol or the port is a negative number
+     */
+    public LightstepSpanExporter build() throws MalformedURLException {
+      defaultDeadlineMillis();
+      setDefaultServiceName();
+      return new LightstepSpanExporter(this);
+    }
+
+    /**
+     * Installs exporter into tracer SDK provider with batching span processor.
+     *
+     * @param tracerSdkProvider tracer SDK provider
+     */
+    public void install(TracerSdkProvider tracerSdkProvider) throws MalformedURLException {
+      BatchSpanProcessor spansProcessor = BatchSpanProcessor.newBuilder(this.build()).build();
+      tracerSdkProvider.addSpanProcessor(spansProcessor);
+    }
+
+    /**
+     * Installs exporter into tracer SDK default provider with batching span processor.
+     */
+    public void install() throws MalformedURLException {
+      BatchSpanProcessor spansProcessor = BatchSpanProcessor.newBuilder(this.build()).build();
+      OpenTelemetrySdk.getTracerProvider().addSpanProcessor(spansProcessor);
+    }
+
+    /**
+     * Installs exporter into tracer SDK provider with a {@link LightstepSpanProcessor}, which
+     * hands ended spans over to the exporting thread through a lock-free ring buffer rather than
+     * the queue of the SDK batching span processor. With direct encoding enabled, spans are
+     * encoded by the threads ending them, see {@link
+     * LightstepSpanProcessor.Builder#setEncodeOnEnd(boolean)}, unless tail sampling is enabled.
+     *
+     * @param tracerSdkProvider tracer SDK provider
+     * @param waitStrategy how the exporting thread waits for spans
+     */
+    public void install(TracerSdkProvider tracerSdkProvider,
+        LightstepSpanProcessor.WaitStrategy waitStrategy) throws MalformedURLException {
+      LightstepSpanProcessor spansProcessor = LightstepSpanProcessor.newBuilder(this.build())
+          .setWaitStrategy(waitStrategy)
+          .setEncodeOnEnd(directEncoding && tailSamplingDecisionWaitMillis <= 0)
+          .build();
+      tracerSdkProvider.addSpanProcessor(spansProcessor);
+    }
+
+    /**
+     * Installs exporter into tracer SDK default provider with a {@link LightstepSpanProcessor}.
+     *
+     * @param waitStrategy how the exporting thread waits for spans
+     */
+    public void install(LightstepSpanProcessor.WaitStrategy waitStrategy)
+        throws MalformedURLException {
+      install(OpenTelemetrySdk.getTracerProvider(), waitStrategy);
+    }
+
+    private static String getProperty(String name, String defaultValue) {
       String val = System.getProperty(name, System.getenv(name));
       if (val == null || val.isEmpty()) {
         return defaultValue;
@@ -548,6 +1958,151 @@ public class LightstepSpanExporter implements SpanExporter {
     String getServiceVersion() {
       return serviceVersion;
     }
+
+    @VisibleForTesting
+    int getBufferPoolSize() {
+      return bufferPoolSize;
+    }
+
+    @VisibleForTesting
+    int getMaxRetainedBufferBytes() {
+      return maxRetainedBufferBytes;
+    }
+
+    @VisibleForTesting
+    String getCompression() {
+      return compression;
+    }
+
+    @VisibleForTesting
+    int getCompressionLevel() {
+      return compressionLevel;
+    }
+
+    @VisibleForTesting
+    int getCompressionMinBytes() {
+      return compressionMinBytes;
+    }
+
+    @VisibleForTesting
+    boolean isAsyncExport() {
+      return asyncExport;
+    }
+
+    @VisibleForTesting
+    boolean isResourceTagsOnReporter() {
+      return resourceTagsOnReporter;
+    }
+
+    @VisibleForTesting
+    int getMaxInFlightReports() {
+      return maxInFlightReports;
+    }
+
+    @VisibleForTesting
+    int getPipelineChunkSize() {
+      return pipelineChunkSize;
+    }
+
+    @VisibleForTesting
+    String getTransport() {
+      return transport;
+    }
+
+    @VisibleForTesting
+    int getBatchSize() {
+      return batchSize;
+    }
+
+    @VisibleForTesting
+    long getBatchDelayMillis() {
+      return batchDelayMillis;
+    }
+
+    @VisibleForTesting
+    int getMaxReportBytes() {
+      return maxReportBytes;
+    }
+
+    @VisibleForTesting
+    int getConversionParallelism() {
+      return conversionParallelism;
+    }
+
+    @VisibleForTesting
+    int getParallelConversionThreshold() {
+      return parallelConversionThreshold;
+    }
+
+    @VisibleForTesting
+    long getInternalMetricsIntervalMillis() {
+      return internalMetricsIntervalMillis;
+    }
+
+    @VisibleForTesting
+    int getMaxRetries() {
+      return maxRetries;
+    }
+
+    @VisibleForTesting
+    long getRetryInitialBackoffMillis() {
+      return retryInitialBackoffMillis;
+    }
+
+    @VisibleForTesting
+    long getRetryMaxBackoffMillis() {
+      return retryMaxBackoffMillis;
+    }
+
+    @VisibleForTesting
+    int getRetryBudgetPercent() {
+      return retryBudgetPercent;
+    }
+
+    @VisibleForTesting
+    int getCircuitBreakerFailureThreshold() {
+      return circuitBreakerFailureThreshold;
+    }
+
+    @VisibleForTesting
+    long getCircuitBreakerOpenMillis() {
+      return circuitBreakerOpenMillis;
+    }
+
+    @VisibleForTesting
+    String getSpoolDirectory() {
+      return spoolDirectory;
+    }
+
+    @VisibleForTesting
+    long getSpoolMaxBytes() {
+      return spoolMaxBytes;
+    }
+
+    @VisibleForTesting
+    int getSpoolDrainRate() {
+      return spoolDrainRate;
+    }
+
+    @VisibleForTesting
+    long getTailSamplingDecisionWaitMillis() {
+      return tailSamplingDecisionWaitMillis;
+    }
+
+    @VisibleForTesting
+    int getTailSamplingMaxSpans() {
+      return tailSamplingMaxSpans;
+    }
+
+    @VisibleForTesting
+    long getTailSamplingMinDurationMillis() {
+      return tailSamplingMinDurationMillis;
+    }
+
+    @VisibleForTesting
+    int getTailSamplingOperationRate() {
+      return tailSamplingOperationRate;
+    }
   }
 
   @VisibleForTesting
@@ -581,7 +2136,31 @@ public class LightstepSpanExporter implements SpanExporter {
   }
 
   @VisibleForTesting
+  ReportTransport getTransport() {
+    return transport;
+  }
+
+  @VisibleForTesting
+  @Nullable
   OkHttpClient getClient() {
-    return client;
+    return transport instanceof OkHttpTransport ? ((OkHttpTransport) transport).getClient() : null;
+  }
+
+  @VisibleForTesting
+  @Nullable
+  BufferPool getBufferPool() {
+    return bufferPool;
+  }
+
+  @VisibleForTesting
+  @Nullable
+  SpanBatcher getBatcher() {
+    return batcher;
+  }
+
+  @VisibleForTesting
+  @Nullable
+  TailSampler getTailSampler() {
+    return tailSampler;
   }
 }
@@ -0,0 +1,701 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.lightstep.tracer.grpc.KeyValue;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Span processor batching ended spans for a {@link SpanExporter}, like the SDK {@code
+ * BatchSpanProcessor}, but handing spans over to the exporting thread through a preallocated
+ * lock-free ring buffer.
+ *
+ * <p>Ending a span only claims a slot of the ring with a CAS, without locks nor signaling the
+ * exporting thread, which polls the ring and waits according to its {@link WaitStrategy} when it
+ * is empty. Spans ended while the ring is full are dropped.
+ *
+ * <p>When exporting to a {@link LightstepSpanExporter}, spans can also be encoded into their wire
+ * format as they end, see {@link Builder#setEncodeOnEnd(boolean)}. The serialization work is then
+ * spread over the threads ending spans, and the exporting thread only concatenates their bytes.
+ *
+ * <p>Besides the number of slots of the ring, the memory held by pending spans can be bounded in
+ * bytes with {@link Builder#setMaxPendingBytes(long)}, as span sizes vary widely. The encoded size
+ * of each span is estimated as it ends, and spans which would exceed the budget are dropped. With
+ * the {@link DropPolicy#OLDEST} and {@link DropPolicy#NON_ERROR_FIRST} policies, spans are never
+ * dropped as they end: the budget is over-committed, and the exporting thread evicts the older
+ * pending spans once it drained the new ones. Until then, the overshoot is bounded by the ring
+ * buffer. Spans handed over to the exporter are no longer pending, and are never evicted.
+ */
+@ThreadSafe
+public final class LightstepSpanProcessor implements SpanProcessor {
+  private static final Logger logger = Logger.getLogger(LightstepSpanProcessor.class.getName());
+
+  static final String WORKER_THREAD_NAME = "lightstep-span-processor";
+  static final int DEFAULT_BUFFER_SIZE = 2048;
+  static final int DEFAULT_MAX_EXPORT_BATCH_SIZE = 512;
+  static final long DEFAULT_SCHEDULE_DELAY_MILLIS = 5000;
+
+  /**
+   * Which spans are dropped when pending spans exceed their byte budget.
+   */
+  public enum DropPolicy {
+    /**
+     * Drops the spans ending while the budget is exhausted, which includes the spans being
+     * exported.
+     */
+    NEWEST,
+    /**
+     * Evicts the spans pending the longest to make room for new ones, which are always enqueued.
+     */
+    OLDEST,
+    /**
+     * Evicts pending spans without an error status first, oldest first, then the oldest ones. New
+     * spans are always enqueued.
+     */
+    NON_ERROR_FIRST
+  }
+
+  /**
+   * How the exporting thread waits for spans when the ring buffer is empty.
+   */
+  public enum WaitStrategy {
+    /**
+     * Polls the ring continuously, for the lowest latency at the cost of a busy core.
+     */
+    BUSY_SPIN,
+    /**
+     * Yields to other threads between polls.
+     */
+    YIELD,
+    /**
+     * Sleeps briefly between polls, leaving the core idle.
+     */
+    PARK
+  }
+
+  private final SpanExporter spanExporter;
+  // Exporter encoding the spans as they end, if enabled.
+  @Nullable
+  private final LightstepSpanExporter encoder;
+  // The exporter if a Lightstep one, which the collector may disable.
+  @Nullable
+  private final LightstepSpanExporter lightstepExporter;
+  // Internal metrics of the exporter reported along with its spans, if a Lightstep one.
+  @Nullable
+  private final ExporterMetrics exporterMetrics;
+  // Holds ReadableSpan elements, EncodedSpan ones when encoding spans as they end, or
+  // BudgetedSpan ones when the pending bytes are bounded.
+  private final SpanRingBuffer<Object> ringBuffer;
+  private final int maxExportBatchSize;
+  private final long scheduleDelayNanos;
+  private final long parkNanos;
+  private final WaitStrategy waitStrategy;
+  private final boolean exportOnlySampled;
+  private final long maxPendingBytes;
+  // Pending bytes the exporting thread evicts down to, a quarter of the budget below it.
+  private final long evictionWatermark;
+  private final DropPolicy dropPolicy;
+  private final AtomicLong pendingBytes = new AtomicLong();
+  // Bytes of the batch being exported, counted against the budget of NEWEST but not evictable.
+  private final AtomicLong exportingBytes = new AtomicLong();
+  private final AtomicLong droppedSpans = new AtomicLong();
+  private final AtomicLong droppedBytes = new AtomicLong();
+  private final AtomicReference<CountDownLatch> flushRequest = new AtomicReference<>();
+  private final Thread worker;
+  private volatile boolean running = true;
+
+  private LightstepSpanProcessor(SpanExporter spanExporter, int bufferSize,
+      int maxExportBatchSize, long scheduleDelayMillis, long parkNanos, WaitStrategy waitStrategy,
+      boolean exportOnlySampled, boolean encodeOnEnd, long maxPendingBytes,
+      DropPolicy dropPolicy) {
+    this.spanExporter = spanExporter;
+    this.encoder = encodeOnEnd ? (LightstepSpanExporter) spanExporter : null;
+    this.lightstepExporter = spanExporter instanceof LightstepSpanExporter
+        ? (LightstepSpanExporter) spanExporter : null;
+    this.exporterMetrics = lightstepExporter != null ? lightstepExporter.getMetrics() : null;
+    this.ringBuffer = new SpanRingBuffer<>(bufferSize);
+    this.maxExportBatchSize = maxExportBatchSize;
+    this.scheduleDelayNanos = TimeUnit.MILLISECONDS.toNanos(scheduleDelayMillis);
+    this.parkNanos = parkNanos;
+    this.waitStrategy = waitStrategy;
+    this.exportOnlySampled = exportOnlySampled;
+    this.maxPendingBytes = maxPendingBytes;
+    this.evictionWatermark = maxPendingBytes - maxPendingBytes / 4;
+    this.dropPolicy = dropPolicy;
+    this.worker = new Thread(new Worker(), WORKER_THREAD_NAME);
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  /**
+   * Creates a new builder instance.
+   *
+   * @param spanExporter the exporter of the batches of spans
+   * @return a new instance builder for this processor
+   */
+  public static Builder newBuilder(SpanExporter spanExporter) {
+    return new Builder(spanExporter);
+  }
+
+  @Override
+  public void onStart(ReadableSpan span) {
+  }
+
+  @Override
+  public boolean isStartRequired() {
+    return false;
+  }
+
+  @Override
+  public void onEnd(ReadableSpan span) {
+    if (exportOnlySampled && !span.getSpanContext().getTraceFlags().isSampled()) {
+      return;
+    }
+    // Spans are not even buffered once the collector disabled the exporter.
+    if (lightstepExporter != null && lightstepExporter.isDisabled()) {
+      return;
+    }
+    if (!running) {
+      recordDroppedSpan();
+      return;
+    }
+    Object element = span;
+    try {
+      if (maxPendingBytes > 0) {
+        element = reserve(span.toSpanData());
+        if (element == null) {
+          return;
+        }
+      } else if (encoder != null) {
+        element = encoder.encode(span.toSpanData());
+      }
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Failed to encode span", e);
+      recordDroppedSpan();
+      return;
+    }
+    if (!ringBuffer.offer(element)) {
+      recordDroppedSpan();
+      if (element instanceof BudgetedSpan) {
+        release((BudgetedSpan) element, true);
+      }
+    }
+  }
+
+  /**
+   * Estimates the encoded size of the span and reserves it from the byte budget.
+   *
+   * @return the span to be enqueued, or {@code null} if it was dropped
+   */
+  @Nullable
+  private BudgetedSpan reserve(SpanData spanData) {
+    final Object payload;
+    final int size;
+    if (encoder != null) {
+      final EncodedSpan encodedSpan = encoder.encode(spanData);
+      payload = encodedSpan;
+      size = encodedSpan.getLength();
+    } else {
+      // Resource tags and the tags added by the exporter are left out, they are mostly shared.
+      payload = spanData;
+      size = SpanEncoder.computeSpanSize(spanData, Collections.<KeyValue>emptyList(), false,
+          null);
+    }
+
+    final boolean error = !spanData.getStatus().isOk();
+    if (dropPolicy != DropPolicy.NEWEST) {
+      // Over-committed, the exporting thread evicts older spans to make room once it drained
+      // this one.
+      pendingBytes.addAndGet(size);
+      return new BudgetedSpan(payload, size, error);
+    }
+    long pending;
+    do {
+      pending = pendingBytes.get();
+      if (pending + exportingBytes.get() + size > maxPendingBytes) {
+        recordDroppedSpan();
+        recordDroppedBytes(size);
+        return null;
+      }
+    } while (!pendingBytes.compareAndSet(pending, pending + size));
+    return new BudgetedSpan(payload, size, error);
+  }
+
+  private void recordDroppedSpan() {
+    droppedSpans.incrementAndGet();
+    if (exporterMetrics != null) {
+      exporterMetrics.recordDroppedSpans(1);
+    }
+  }
+
+  private void recordDroppedBytes(long bytes) {
+    droppedBytes.addAndGet(bytes);
+    if (exporterMetrics != null) {
+      exporterMetrics.recordDroppedBytes(bytes);
+    }
+  }
+
+  private void release(BudgetedSpan span, boolean dropped) {
+    pendingBytes.addAndGet(-span.size);
+    if (dropped) {
+      recordDroppedBytes(span.size);
+    }
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return true;
+  }
+
+  /**
+   * Exports the spans ended so far and waits for the exporter to send them.
+   */
+  @Override
+  public void forceFlush() {
+    if (!running) {
+      return;
+    }
+    final CountDownLatch flushed = new CountDownLatch(1);
+    while (!flushRequest.compareAndSet(null, flushed)) {
+      final CountDownLatch pending = flushRequest.get();
+      if (pending != null) {
+        await(pending);
+      }
+    }
+    LockSupport.unpark(worker);
+    await(flushed);
+  }
+
+  /**
+   * Exports the pending spans, stops the exporting thread and shuts the exporter down.
+   */
+  @Override
+  public void shutdown() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    LockSupport.unpark(worker);
+    try {
+      worker.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    spanExporter.shutdown();
+  }
+
+  /**
+   * Returns the number of spans dropped because the ring buffer was full, they exceeded the byte
+   * budget or were evicted by the drop policy. They are also reported in the internal metrics of
+   * a {@link LightstepSpanExporter}, see {@link
+   * LightstepSpanExporter.Builder#setInternalMetricsIntervalMillis(long)}.
+   *
+   * @return the number of dropped spans
+   */
+  public long getDroppedSpans() {
+    return droppedSpans.get();
+  }
+
+  /**
+   * Returns the estimated encoded size of the spans dropped because of the byte budget, see
+   * {@link Builder#setMaxPendingBytes(long)}. Spans dropped without a byte budget are not counted.
+   * They are also reported in the internal metrics of a {@link LightstepSpanExporter}.
+   *
+   * @return the number of dropped bytes
+   */
+  public long getDroppedBytes() {
+    return droppedBytes.get();
+  }
+
+  /**
+   * Returns the estimated encoded size of the spans waiting to be exported, not including the
+   * spans being exported, always 0 without a byte budget.
+   *
+   * @return the number of pending bytes
+   */
+  public long getPendingBytes() {
+    return pendingBytes.get();
+  }
+
+  private void await(CountDownLatch latch) {
+    try {
+      while (!latch.await(10, TimeUnit.MILLISECONDS)) {
+        if (!worker.isAlive()) {
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @VisibleForTesting
+  SpanRingBuffer<Object> getRingBuffer() {
+    return ringBuffer;
+  }
+
+  @VisibleForTesting
+  WaitStrategy getWaitStrategy() {
+    return waitStrategy;
+  }
+
+  @VisibleForTesting
+  boolean isEncodeOnEnd() {
+    return encoder != null;
+  }
+
+  /**
+   * Drains the ring buffer into batches, exported once full, once the schedule delay elapsed since
+   * the first span of the batch, or when flushed.
+   */
+  private final class Worker implements Runnable {
+    private final List<Object> drained = new ArrayList<>();
+    // SpanData elements, EncodedSpan ones when encoding spans as they end, or BudgetedSpan ones
+    // when the pending bytes are bounded.
+    private List<Object> batch = new ArrayList<>();
+    private long batchDeadline;
+
+    @Override
+    public void run() {
+      while (running) {
+        final int count = drain();
+        final CountDownLatch flushed = flushRequest.get();
+        if (flushed != null) {
+          // Spans ended before the flush request are already claimed, drain them all.
+          final long flushIndex = ringBuffer.getProducerIndex();
+          while (ringBuffer.getConsumerIndex() < flushIndex) {
+            if (drain() == 0) {
+              Thread.yield();
+            }
+          }
+          exportBatch();
+          spanExporter.flush();
+          flushRequest.set(null);
+          flushed.countDown();
+        } else if (!batch.isEmpty() && System.nanoTime() - batchDeadline >= 0) {
+          exportBatch();
+        } else if (count == 0) {
+          idle();
+        }
+      }
+
+      while (drain() > 0) {
+        // Export everything ended before the shutdown.
+      }
+      exportBatch();
+      final CountDownLatch flushed = flushRequest.getAndSet(null);
+      if (flushed != null) {
+        flushed.countDown();
+      }
+    }
+
+    private int drain() {
+      final int count = ringBuffer.drainTo(drained, maxExportBatchSize - batch.size());
+      if (count == 0) {
+        return 0;
+      }
+      if (batch.isEmpty()) {
+        batchDeadline = System.nanoTime() + scheduleDelayNanos;
+      }
+      for (Object element : drained) {
+        batch.add(element instanceof ReadableSpan
+            ? ((ReadableSpan) element).toSpanData() : element);
+      }
+      drained.clear();
+      // Spans reserved but not drained yet count, the oldest drained ones are evicted first. The
+      // spans being exported do not, they cannot be evicted.
+      long excessBytes = pendingBytes.get() - evictionWatermark;
+      if (dropPolicy != DropPolicy.NEWEST && excessBytes > 0) {
+        if (dropPolicy == DropPolicy.NON_ERROR_FIRST) {
+          excessBytes = evict(excessBytes, false);
+        }
+        evict(excessBytes, true);
+      }
+      if (batch.size() >= maxExportBatchSize) {
+        exportBatch();
+      }
+      return count;
+    }
+
+    /**
+     * Evicts spans of the batch, oldest first, until the given number of bytes were released.
+     *
+     * @param excessBytes the number of bytes to release
+     * @param errors whether spans with an error status are evicted too
+     * @return the number of bytes left to release
+     */
+    private long evict(long excessBytes, boolean errors) {
+      int kept = 0;
+      for (int i = 0; i < batch.size(); i++) {
+        final BudgetedSpan span = (BudgetedSpan) batch.get(i);
+        if (excessBytes > 0 && (errors || !span.error)) {
+          recordDroppedSpan();
+          release(span, true);
+          excessBytes -= span.size;
+        } else {
+          batch.set(kept++, span);
+        }
+      }
+      batch.subList(kept, batch.size()).clear();
+      return excessBytes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void exportBatch() {
+      if (batch.isEmpty()) {
+        return;
+      }
+      // A new list per batch, exporters may hold on to the exported one.
+      final List<Object> exported = batch;
+      batch = new ArrayList<>();
+      long exportedBytes = 0;
+      if (maxPendingBytes > 0) {
+        for (int i = 0; i < exported.size(); i++) {
+          final BudgetedSpan span = (BudgetedSpan) exported.get(i);
+          exportedBytes += span.size;
+          exported.set(i, span.payload);
+        }
+      }
+      // Counted as exporting first, so that producers never see a budget lower than in use.
+      exportingBytes.addAndGet(exportedBytes);
+      pendingBytes.addAndGet(-exportedBytes);
+      try {
+        if (encoder != null) {
+          encoder.exportEncoded((List<EncodedSpan>) (List<?>) exported);
+        } else {
+          spanExporter.export(Collections.unmodifiableList((List<SpanData>) (List<?>) exported));
+        }
+      } catch (Throwable e) {
+        logger.log(Level.WARNING, "Exception thrown by the export.", e);
+      } finally {
+        // The exported spans are held until the export returned.
+        exportingBytes.addAndGet(-exportedBytes);
+      }
+    }
+
+    private void idle() {
+      switch (waitStrategy) {
+        case BUSY_SPIN:
+          break;
+        case YIELD:
+          Thread.yield();
+          break;
+        default:
+          LockSupport.parkNanos(LightstepSpanProcessor.this, parkNanos);
+          break;
+      }
+    }
+  }
+
+  /**
+   * Span counted against the byte budget, with its estimated encoded size.
+   */
+  private static final class BudgetedSpan {
+    // SpanData, or EncodedSpan when encoding spans as they end.
+    private final Object payload;
+    private final int size;
+    private final boolean error;
+
+    private BudgetedSpan(Object payload, int size, boolean error) {
+      this.payload = payload;
+      this.size = size;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Builder utility for this processor.
+   */
+  public static class Builder {
+    private final SpanExporter spanExporter;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private int maxExportBatchSize = DEFAULT_MAX_EXPORT_BATCH_SIZE;
+    private long scheduleDelayMillis = DEFAULT_SCHEDULE_DELAY_MILLIS;
+    private long parkNanos = TimeUnit.MILLISECONDS.toNanos(1);
+    private WaitStrategy waitStrategy = WaitStrategy.PARK;
+    private boolean exportOnlySampled = true;
+    private boolean encodeOnEnd;
+    private long maxPendingBytes;
+    private DropPolicy dropPolicy = DropPolicy.NEWEST;
+
+    private Builder(SpanExporter spanExporter) {
+      if (spanExporter == null) {
+        throw new IllegalArgumentException("spanExporter cannot be null");
+      }
+      this.spanExporter = spanExporter;
+    }
+
+    /**
+     * Sets the number of slots of the ring buffer, rounded up to a power of two. Defaults to
+     * 2048.
+     *
+     * @param bufferSize the maximum number of spans waiting to be exported
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the size is not positive.
+     */
+    public Builder setBufferSize(int bufferSize) {
+      if (bufferSize <= 0) {
+        throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+      }
+      this.bufferSize = bufferSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of spans exported at once. Defaults to 512.
+     *
+     * @param maxExportBatchSize the maximum number of spans per export
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the size is not positive.
+     */
+    public Builder setMaxExportBatchSize(int maxExportBatchSize) {
+      if (maxExportBatchSize <= 0) {
+        throw new IllegalArgumentException(
+            "Invalid max export batch size: " + maxExportBatchSize);
+      }
+      this.maxExportBatchSize = maxExportBatchSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum time spans wait for their batch to fill up before being exported. Defaults
+     * to 5000 milliseconds.
+     *
+     * @param scheduleDelayMillis the maximum delay in milliseconds
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the delay is negative.
+     */
+    public Builder setScheduleDelayMillis(long scheduleDelayMillis) {
+      if (scheduleDelayMillis < 0) {
+        throw new IllegalArgumentException(
+            "Invalid schedule delay millis: " + scheduleDelayMillis);
+      }
+      this.scheduleDelayMillis = scheduleDelayMillis;
+      return this;
+    }
+
+    /**
+     * Sets how the exporting thread waits for spans when there are none. Defaults to {@link
+     * WaitStrategy#PARK}.
+     *
+     * @param waitStrategy the wait strategy
+     * @return this builder's instance
+     */
+    public Builder setWaitStrategy(WaitStrategy waitStrategy) {
+      if (waitStrategy == null) {
+        throw new IllegalArgumentException("waitStrategy cannot be null");
+      }
+      this.waitStrategy = waitStrategy;
+      return this;
+    }
+
+    /**
+     * Sets how long the exporting thread sleeps between polls with {@link WaitStrategy#PARK},
+     * which bounds the latency added to flushes. Defaults to 1 millisecond.
+     *
+     * @param parkNanos the sleep duration in nanoseconds
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the duration is not positive.
+     */
+    public Builder setParkNanos(long parkNanos) {
+      if (parkNanos <= 0) {
+        throw new IllegalArgumentException("Invalid park nanos: " + parkNanos);
+      }
+      this.parkNanos = parkNanos;
+      return this;
+    }
+
+    /**
+     * Sets whether only sampled spans are exported. Enabled by default.
+     *
+     * @param exportOnlySampled whether to export only sampled spans
+     * @return this builder's instance
+     */
+    public Builder setExportOnlySampled(boolean exportOnlySampled) {
+      this.exportOnlySampled = exportOnlySampled;
+      return this;
+    }
+
+    /**
+     * Sets whether spans are encoded into the wire format of their report by the thread ending
+     * them, rather than by the exporting thread. Requires a {@link LightstepSpanExporter} without
+     * tail sampling. Disabled by default.
+     *
+     * @param encodeOnEnd whether to encode spans as they end
+     * @return this builder's instance
+     */
+    public Builder setEncodeOnEnd(boolean encodeOnEnd) {
+      this.encodeOnEnd = encodeOnEnd;
+      return this;
+    }
+
+    /**
+     * Sets the maximum estimated encoded size of the spans waiting to be exported. Spans ending
+     * while the budget is exhausted are dropped, or older spans are evicted instead depending on
+     * the {@link #setDropPolicy(DropPolicy) drop policy}. Disabled by default.
+     *
+     * @param maxPendingBytes the maximum size in bytes, 0 for no limit
+     * @return this builder's instance
+     * @throws IllegalArgumentException If the size is negative.
+     */
+    public Builder setMaxPendingBytes(long maxPendingBytes) {
+      if (maxPendingBytes < 0) {
+        throw new IllegalArgumentException("Invalid max pending bytes: " + maxPendingBytes);
+      }
+      this.maxPendingBytes = maxPendingBytes;
+      return this;
+    }
+
+    /**
+     * Sets which spans are dropped when pending spans exceed their byte budget. Defaults to
+     * {@link DropPolicy#NEWEST}.
+     *
+     * @param dropPolicy the drop policy
+     * @return this builder's instance
+     */
+    public Builder setDropPolicy(DropPolicy dropPolicy) {
+      if (dropPolicy == null) {
+        throw new IllegalArgumentException("dropPolicy cannot be null");
+      }
+      this.dropPolicy = dropPolicy;
+      return this;
+    }
+
+    /**
+     * Constructs a new instance of the processor based on the builder's values, and starts its
+     * exporting thread.
+     *
+     * @return a new processor's instance
+     * @throws IllegalArgumentException If spans are encoded as they end but the exporter is not a
+     * {@link LightstepSpanExporter}, or samples the tail of traces.
+     */
+    public LightstepSpanProcessor build() {
+      if (encodeOnEnd && !(spanExporter instanceof LightstepSpanExporter)) {
+        throw new IllegalArgumentException(
+            "Encoding spans as they end requires a LightstepSpanExporter");
+      }
+      // Tail sampling happens before spans are converted, encoded spans would bypass it.
+      if (encodeOnEnd && ((LightstepSpanExporter) spanExporter).getTailSampler() != null) {
+        throw new IllegalArgumentException(
+            "Encoding spans as they end is not supported with tail sampling");
+      }
+      return new LightstepSpanProcessor(spanExporter, bufferSize, maxExportBatchSize,
+          scheduleDelayMillis, parkNanos, waitStrategy, exportOnlySampled, encodeOnEnd,
+          maxPendingBytes, maxPendingBytes > 0 ? dropPolicy : DropPolicy.NEWEST);
+    }
+  }
+}
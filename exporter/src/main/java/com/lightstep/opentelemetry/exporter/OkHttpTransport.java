@@ -0,0 +1,250 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.lightstep.opentelemetry.exporter.LightstepSpanExporter.CustomDns;
+import com.lightstep.opentelemetry.exporter.LightstepSpanExporter.OkHttpDns;
+import com.lightstep.tracer.grpc.ReportResponse;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Posts reports to the HTTP endpoint of the collector with OkHttp.
+ *
+ * <p>Reports rejected with 429 or 503, and reports which could not reach the collector because
+ * the connection was refused, timed out or was reset, are retryable.
+ */
+@ThreadSafe
+final class OkHttpTransport extends ReportTransport {
+  private static final Logger logger = Logger.getLogger(OkHttpTransport.class.getName());
+
+  static final int TOO_MANY_REQUESTS = 429;
+  static final int SERVICE_UNAVAILABLE = 503;
+  static final String RETRY_AFTER = "Retry-After";
+  private static final String HTTP_DATE_PATTERN = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+  private final URL collectorUrl;
+  private final String accessToken;
+  private final OkHttpClient client;
+  private final boolean gzip;
+  private final int compressionLevel;
+  private final int compressionMinBytes;
+
+  /**
+   * Creates a new OkHttp transport.
+   *
+   * @param collectorUrl collector url.
+   * @param accessToken Your specific token for Lightstep access.
+   * @param deadlineMillis The connect timeout.
+   * @param okHttpDns DNS service used to lookup IP addresses for hostnames, or {@code null} for
+   * the default one
+   * @param maxRequests The maximum number of concurrent calls, 0 for the OkHttp defaults.
+   * @param gzip Whether reports are compressed with gzip.
+   * @param compressionLevel The gzip compression level.
+   * @param compressionMinBytes The size below which reports are sent uncompressed.
+   */
+  OkHttpTransport(URL collectorUrl, String accessToken, long deadlineMillis,
+      @Nullable OkHttpDns okHttpDns, int maxRequests, boolean gzip, int compressionLevel,
+      int compressionMinBytes) {
+    this.collectorUrl = collectorUrl;
+    this.accessToken = accessToken;
+    this.gzip = gzip;
+    this.compressionLevel = compressionLevel;
+    this.compressionMinBytes = compressionMinBytes;
+
+    final OkHttpClient.Builder builder =
+        new OkHttpClient.Builder().connectTimeout(deadlineMillis, TimeUnit.MILLISECONDS);
+
+    if (maxRequests > 0) {
+      final Dispatcher dispatcher = new Dispatcher();
+      dispatcher.setMaxRequests(maxRequests);
+      dispatcher.setMaxRequestsPerHost(maxRequests);
+      builder.dispatcher(dispatcher);
+    }
+
+    if (okHttpDns != null) {
+      builder.dns(new CustomDns(okHttpDns));
+    }
+
+    this.client = builder.build();
+  }
+
+  @Override
+  PreparedReport prepare(ReportRequestBody body) {
+    return new OkHttpReport(body);
+  }
+
+  @Override
+  void shutdown() {
+    client.dispatcher().executorService().shutdown();
+  }
+
+  private static Result toResult(Response response) throws IOException {
+    if (!response.isSuccessful()) {
+      logger.log(Level.WARNING, "Failed to post spans to collector. " + response.toString());
+      if (response.code() == TOO_MANY_REQUESTS || response.code() == SERVICE_UNAVAILABLE) {
+        return Result.retryable(parseRetryAfter(response.header(RETRY_AFTER)));
+      }
+      return Result.FAILURE;
+    }
+
+    final ResponseBody body = response.body();
+    if (body == null) {
+      logger.log(Level.WARNING, "Response body is null");
+      return Result.FAILURE;
+    }
+
+    return toResult(ReportResponse.parseFrom(body.byteStream()),
+        TimeUnit.MILLISECONDS.toMicros(response.sentRequestAtMillis()),
+        TimeUnit.MILLISECONDS.toMicros(response.receivedResponseAtMillis()));
+  }
+
+  /**
+   * Returns a retryable result when the report did not reach the collector, or may not have been
+   * processed because the connection was reset. Other timeouts are not retried, the collector may
+   * have processed the report.
+   */
+  private static Result toResult(Throwable e) {
+    final String message = e.getMessage() != null ? e.getMessage() : "";
+    if (e instanceof ConnectException
+        || e instanceof SocketTimeoutException && message.startsWith("connect")
+        || e instanceof SocketException && message.startsWith("Connection reset")) {
+      return Result.retryable(-1);
+    }
+    return Result.FAILURE;
+  }
+
+  /**
+   * Parses the value of a Retry-After header, either a number of seconds or an HTTP date.
+   *
+   * @return the time to wait in milliseconds, or -1 if there is none
+   */
+  @VisibleForTesting
+  static long parseRetryAfter(@Nullable String retryAfter) {
+    if (retryAfter == null || retryAfter.isEmpty()) {
+      return -1;
+    }
+    try {
+      return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(retryAfter.trim())));
+    } catch (NumberFormatException e) {
+      // Not a number of seconds, an HTTP date.
+    }
+    try {
+      final SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_PATTERN, Locale.US);
+      final long date = format.parse(retryAfter.trim()).getTime();
+      return Math.max(0, date - System.currentTimeMillis());
+    } catch (ParseException e) {
+      logger.log(Level.FINE, "Ignored invalid Retry-After header: " + retryAfter);
+      return -1;
+    }
+  }
+
+  private Request toRequest(RequestBody requestBody) throws IOException {
+    final Request.Builder builder = new Request.Builder()
+        .url(this.collectorUrl)
+        .addHeader(LightstepSpanExporter.LIGHTSTEP_ACCESS_TOKEN, accessToken);
+
+    if (gzip && requestBody.contentLength() >= compressionMinBytes) {
+      final RequestBody compressed = GzipRequestBody.compress(requestBody, compressionLevel);
+      // Poorly compressible reports are cheaper to send as they are.
+      if (compressed.contentLength() < requestBody.contentLength()) {
+        return builder
+            .post(compressed)
+            .addHeader(LightstepSpanExporter.CONTENT_ENCODING, GzipRequestBody.CONTENT_ENCODING)
+            .build();
+      }
+    }
+
+    return builder.post(requestBody).build();
+  }
+
+  @VisibleForTesting
+  OkHttpClient getClient() {
+    return client;
+  }
+
+  /**
+   * Builds the request of the report, compressing it if needed, on the first attempt and posts
+   * the same request on the retries.
+   */
+  @VisibleForTesting
+  final class OkHttpReport extends PreparedReport {
+    private final ReportRequestBody body;
+    @GuardedBy("this")
+    @Nullable
+    private Request request;
+
+    OkHttpReport(ReportRequestBody body) {
+      this.body = body;
+    }
+
+    @VisibleForTesting
+    synchronized Request getRequest() throws IOException {
+      if (request == null) {
+        request = toRequest(body);
+      }
+      return request;
+    }
+
+    @Override
+    Result send() {
+      try (Response response = client.newCall(getRequest()).execute()) {
+        return toResult(response);
+      } catch (Throwable e) {
+        logger.log(Level.WARNING, "Failed to post spans", e);
+        return toResult(e);
+      }
+    }
+
+    @Override
+    void sendAsync(final ResultCallback callback) {
+      final Request request;
+      try {
+        request = getRequest();
+      } catch (Throwable e) {
+        logger.log(Level.WARNING, "Failed to post spans", e);
+        callback.onComplete(Result.FAILURE);
+        return;
+      }
+
+      client.newCall(request).enqueue(new Callback() {
+        @Override
+        public void onFailure(Call call, IOException e) {
+          logger.log(Level.WARNING, "Failed to post spans", e);
+          callback.onComplete(toResult(e));
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+          Result result;
+          try (Response closed = response) {
+            result = toResult(closed);
+          } catch (Throwable e) {
+            logger.log(Level.WARNING, "Failed to post spans", e);
+            result = Result.FAILURE;
+          }
+          callback.onComplete(result);
+        }
+      });
+    }
+  }
+}
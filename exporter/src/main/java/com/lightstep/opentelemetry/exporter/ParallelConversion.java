@@ -0,0 +1,91 @@
+package com.lightstep.opentelemetry.exporter;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Converts large batches of spans by splitting them into chunks converted concurrently, whether
+ * into Lightstep spans by {@link Adapter} or into their wire format by {@link SpanEncoder}.
+ *
+ * @param <T> the type of the converted spans
+ */
+@ThreadSafe
+abstract class ParallelConversion<T> {
+  /**
+   * Converts a chunk of spans, in order.
+   *
+   * @param chunk the spans to be converted
+   * @return the converted spans
+   */
+  abstract List<T> convert(List<SpanData> chunk);
+
+  /**
+   * Converts the given spans, splitting large batches into chunks converted concurrently. The
+   * calling thread converts the first chunk while the executor converts the others, or converts
+   * them too if the executor rejects them. The converted spans keep the order of the given ones.
+   *
+   * @param spans the spans to be converted
+   * @param executor the executor converting the chunks
+   * @param parallelism the number of chunks a batch is split into
+   * @param threshold the number of spans below which a batch is converted sequentially
+   * @return the converted spans
+   */
+  final List<T> convert(Collection<SpanData> spans, Executor executor, int parallelism,
+      int threshold) {
+    final List<SpanData> list =
+        spans instanceof List ? (List<SpanData>) spans : new ArrayList<>(spans);
+    if (parallelism <= 1 || list.size() < Math.max(threshold, 2)) {
+      return convert(list);
+    }
+
+    final int chunkSize = (list.size() + parallelism - 1) / parallelism;
+    final List<FutureTask<List<T>>> chunks = new ArrayList<>(parallelism);
+    for (int from = chunkSize; from < list.size(); from += chunkSize) {
+      final List<SpanData> chunk = list.subList(from, Math.min(list.size(), from + chunkSize));
+      final FutureTask<List<T>> task = new FutureTask<>(new Callable<List<T>>() {
+        @Override
+        public List<T> call() {
+          return convert(chunk);
+        }
+      });
+      chunks.add(task);
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException e) {
+        task.run();
+      }
+    }
+
+    final List<T> converted = new ArrayList<>(list.size());
+    converted.addAll(convert(list.subList(0, chunkSize)));
+    for (FutureTask<List<T>> chunk : chunks) {
+      converted.addAll(getChunk(chunk));
+    }
+    return converted;
+  }
+
+  private static <T> List<T> getChunk(FutureTask<List<T>> chunk) {
+    try {
+      return chunk.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while converting spans", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new IllegalStateException("Failed to convert spans", e.getCause());
+    }
+  }
+}
@@ -0,0 +1,514 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.google.protobuf.CodedOutputStream;
+import com.lightstep.tracer.grpc.Auth;
+import com.lightstep.tracer.grpc.InternalMetrics;
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.Reporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * {@link RequestBody} that serializes a {@link ReportRequest} straight into the OkHttp sink.
+ *
+ * <p>The size of the request is computed up front to provide the content length, so the payload
+ * never has to be materialized as a new byte array. When a {@link BufferPool} is given, the request
+ * is serialized once into a pooled buffer which is then copied to the sink, and {@link #release()}
+ * must be called once the call completed. Otherwise the request is serialized straight into the
+ * sink. The body can be written more than once, e.g. when OkHttp retries the call on a new
+ * connection.
+ *
+ * <p>Bodies larger than the payload limit of the collector are {@link #split(long)} along span
+ * boundaries, reusing the span sizes computed for the content length.
+ */
+@NotThreadSafe
+abstract class ReportRequestBody extends RequestBody {
+  @Nullable
+  private final MediaType contentType;
+  @Nullable
+  private final BufferPool bufferPool;
+  @Nullable
+  private ByteBuffer buffer;
+
+  private ReportRequestBody(@Nullable MediaType contentType, @Nullable BufferPool bufferPool) {
+    this.contentType = contentType;
+    this.bufferPool = bufferPool;
+  }
+
+  /**
+   * Creates a body that serializes an already built {@link ReportRequest}.
+   *
+   * @param request the request to be sent
+   * @param contentType the media type of the body
+   * @param bufferPool the pool of serialization buffers, or {@code null} to stream the request
+   * @return the request body
+   */
+  static ReportRequestBody create(ReportRequest request, @Nullable MediaType contentType,
+      @Nullable BufferPool bufferPool) {
+    return new MessageBody(request, contentType, bufferPool);
+  }
+
+  /**
+   * Creates a body that encodes the given spans with {@link SpanEncoder} while it is written.
+   *
+   * @param reporter the reporter of the request
+   * @param auth the authentication of the request
+   * @param spans the spans to be encoded
+   * @param lsSpanAttributes the list of LS-specific Span attributes to add.
+   * @param includeResourceTags whether the resource attributes are added as span tags
+   * @param resourceTagsCache the cache of resource tags, or {@code null} to convert them for
+   * every span
+   * @param contentType the media type of the body
+   * @param bufferPool the pool of serialization buffers, or {@code null} to stream the request
+   * @return the request body
+   */
+  static ReportRequestBody create(Reporter reporter, Auth auth, Collection<SpanData> spans,
+      Collection<KeyValue> lsSpanAttributes, boolean includeResourceTags,
+      @Nullable ResourceTagsCache resourceTagsCache, @Nullable MediaType contentType,
+      @Nullable BufferPool bufferPool) {
+    return new EncodedSpansBody(reporter, auth, spans, lsSpanAttributes, includeResourceTags,
+        resourceTagsCache, contentType, bufferPool);
+  }
+
+  /**
+   * Creates a body of spans already encoded with {@link SpanEncoder#encodeSpan(SpanData,
+   * Collection, boolean, ResourceTagsCache)}, whose bytes are only copied when it is written.
+   *
+   * @param reporter the reporter of the request
+   * @param auth the authentication of the request
+   * @param spans the encoded spans
+   * @param contentType the media type of the body
+   * @param bufferPool the pool of serialization buffers, or {@code null} to stream the request
+   * @return the request body
+   */
+  static ReportRequestBody create(Reporter reporter, Auth auth, List<EncodedSpan> spans,
+      @Nullable MediaType contentType, @Nullable BufferPool bufferPool) {
+    return new PreEncodedSpansBody(reporter, auth, spans, contentType, bufferPool);
+  }
+
+  @Nullable
+  @Override
+  public MediaType contentType() {
+    return contentType;
+  }
+
+  /**
+   * Returns the size of the serialized request, computed up front.
+   */
+  @Override
+  public abstract long contentLength();
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    if (bufferPool == null) {
+      final CodedOutputStream out = CodedOutputStream.newInstance(sink.outputStream());
+      writeTo(out);
+      out.flush();
+      return;
+    }
+
+    serialize();
+    sink.write(buffer.array(), 0, (int) contentLength());
+  }
+
+  /**
+   * Serializes the request into a pooled buffer right away, rather than when the body is first
+   * written. Does nothing when there is no buffer pool or the request is already serialized.
+   *
+   * @throws IOException if the request could not be serialized
+   */
+  void serialize() throws IOException {
+    if (bufferPool == null || buffer != null) {
+      return;
+    }
+    final int size = (int) contentLength();
+    final ByteBuffer pooled = bufferPool.acquire(size);
+    final CodedOutputStream out = CodedOutputStream.newInstance(pooled.array(), 0, size);
+    writeTo(out);
+    out.checkNoSpaceLeft();
+    buffer = pooled;
+  }
+
+  /**
+   * Returns the serialization buffer to the pool. The body must not be written afterwards.
+   */
+  void release() {
+    if (buffer != null) {
+      bufferPool.release(buffer);
+      buffer = null;
+    }
+  }
+
+  /**
+   * Splits this body into bodies of at most the given size, each holding consecutive spans. A
+   * single span larger than the limit is sent on its own.
+   *
+   * @param maxBytes the maximum encoded size of a body
+   * @return this body if it fits, the bodies of its spans otherwise
+   */
+  List<ReportRequestBody> split(long maxBytes) {
+    final int spanCount = getSpanCount();
+    if (contentLength() <= maxBytes || spanCount <= 1) {
+      return Collections.singletonList(this);
+    }
+
+    long spansSize = 0;
+    for (int i = 0; i < spanCount; i++) {
+      spansSize += getSpanFieldSize(i);
+    }
+    // The reporter and auth, repeated in every body.
+    final long overhead = contentLength() - spansSize;
+
+    final List<ReportRequestBody> bodies = new ArrayList<>();
+    int from = 0;
+    long size = overhead;
+    for (int i = 0; i < spanCount; i++) {
+      final int spanFieldSize = getSpanFieldSize(i);
+      if (i > from && size + spanFieldSize > maxBytes) {
+        bodies.add(slice(from, i, bufferPool));
+        from = i;
+        size = overhead;
+      }
+      size += spanFieldSize;
+    }
+    bodies.add(slice(from, spanCount, bufferPool));
+    return bodies;
+  }
+
+  /**
+   * Returns a body of the same request carrying the given internal metrics. This body must not be
+   * written nor released afterwards, the returned one is.
+   *
+   * @param internalMetrics the self-telemetry of the exporter
+   * @return the request body
+   */
+  ReportRequestBody withInternalMetrics(InternalMetrics internalMetrics) {
+    return new InternalMetricsBody(this, internalMetrics);
+  }
+
+  /**
+   * Returns a body of the same request carrying the given offset of the collector clock. This
+   * body must not be written nor released afterwards, the returned one is.
+   *
+   * @param timestampOffsetMicros the offset of the collector clock from the local clock
+   * @return the request body
+   */
+  ReportRequestBody withTimestampOffset(long timestampOffsetMicros) {
+    return new TimestampOffsetBody(this, timestampOffsetMicros);
+  }
+
+  /**
+   * Returns a body of the reporter and spans of the request, without its authentication, timestamp
+   * offset and internal metrics, which are attached again when the spooled report is replayed.
+   * The returned body streams the request, and this body is left untouched.
+   */
+  abstract ReportRequestBody toSpooled();
+
+  /**
+   * Returns the number of spans of the request.
+   */
+  abstract int getSpanCount();
+
+  /**
+   * Returns the encoded size of the span at the given index, including its tag and length prefix.
+   */
+  abstract int getSpanFieldSize(int index);
+
+  /**
+   * Returns a body holding the spans from index {@code from}, inclusive, to {@code to}, exclusive.
+   */
+  abstract ReportRequestBody slice(int from, int to, @Nullable BufferPool bufferPool);
+
+  /**
+   * Writes the serialized request, which must be exactly {@link #contentLength()} bytes long.
+   */
+  abstract void writeTo(CodedOutputStream out) throws IOException;
+
+  private static final class MessageBody extends ReportRequestBody {
+    private final ReportRequest request;
+
+    private MessageBody(ReportRequest request, @Nullable MediaType contentType,
+        @Nullable BufferPool bufferPool) {
+      super(contentType, bufferPool);
+      this.request = request;
+    }
+
+    @Override
+    public long contentLength() {
+      return request.getSerializedSize();
+    }
+
+    @Override
+    int getSpanCount() {
+      return request.getSpansCount();
+    }
+
+    @Override
+    int getSpanFieldSize(int index) {
+      // Sizes are memoized by the messages, so they are not computed again when written.
+      return CodedOutputStream
+          .computeMessageSize(ReportRequest.SPANS_FIELD_NUMBER, request.getSpans(index));
+    }
+
+    @Override
+    ReportRequestBody slice(int from, int to, @Nullable BufferPool bufferPool) {
+      final ReportRequest slice = request.toBuilder()
+          .clearSpans()
+          .addAllSpans(request.getSpansList().subList(from, to))
+          .build();
+      return new MessageBody(slice, contentType(), bufferPool);
+    }
+
+    @Override
+    ReportRequestBody toSpooled() {
+      final ReportRequest spooled = request.toBuilder()
+          .clearAuth()
+          .clearTimestampOffsetMicros()
+          .clearInternalMetrics()
+          .build();
+      return new MessageBody(spooled, contentType(), null);
+    }
+
+    @Override
+    void writeTo(CodedOutputStream out) throws IOException {
+      request.writeTo(out);
+    }
+  }
+
+  private static final class EncodedSpansBody extends ReportRequestBody {
+    private final Reporter reporter;
+    private final Auth auth;
+    private final List<SpanData> spans;
+    private final Collection<KeyValue> lsSpanAttributes;
+    private final boolean includeResourceTags;
+    @Nullable
+    private final ResourceTagsCache resourceTagsCache;
+    private final int[] spanSizes;
+    private final int size;
+
+    private EncodedSpansBody(Reporter reporter, Auth auth, Collection<SpanData> spans,
+        Collection<KeyValue> lsSpanAttributes, boolean includeResourceTags,
+        @Nullable ResourceTagsCache resourceTagsCache, @Nullable MediaType contentType,
+        @Nullable BufferPool bufferPool) {
+      super(contentType, bufferPool);
+      this.reporter = reporter;
+      this.auth = auth;
+      this.spans = spans instanceof List ? (List<SpanData>) spans : new ArrayList<>(spans);
+      this.lsSpanAttributes = lsSpanAttributes;
+      this.includeResourceTags = includeResourceTags;
+      this.resourceTagsCache = resourceTagsCache;
+      this.spanSizes = new int[spans.size()];
+      this.size = SpanEncoder.computeReportRequestSize(reporter, auth, spans, lsSpanAttributes,
+          includeResourceTags, resourceTagsCache, spanSizes);
+    }
+
+    private EncodedSpansBody(EncodedSpansBody body, int from, int to,
+        @Nullable BufferPool bufferPool) {
+      super(body.contentType(), bufferPool);
+      this.reporter = body.reporter;
+      this.auth = body.auth;
+      this.spans = body.spans.subList(from, to);
+      this.lsSpanAttributes = body.lsSpanAttributes;
+      this.includeResourceTags = body.includeResourceTags;
+      this.resourceTagsCache = body.resourceTagsCache;
+      this.spanSizes = Arrays.copyOfRange(body.spanSizes, from, to);
+      int size = body.size;
+      for (int i = 0; i < body.spanSizes.length; i++) {
+        if (i < from || i >= to) {
+          size -= SpanEncoder.computeReportSpanSize(body.spanSizes[i]);
+        }
+      }
+      this.size = size;
+    }
+
+    @Override
+    public long contentLength() {
+      return size;
+    }
+
+    @Override
+    int getSpanCount() {
+      return spanSizes.length;
+    }
+
+    @Override
+    int getSpanFieldSize(int index) {
+      return SpanEncoder.computeReportSpanSize(spanSizes[index]);
+    }
+
+    @Override
+    ReportRequestBody slice(int from, int to, @Nullable BufferPool bufferPool) {
+      return new EncodedSpansBody(this, from, to, bufferPool);
+    }
+
+    @Override
+    ReportRequestBody toSpooled() {
+      return new EncodedSpansBody(reporter, Auth.getDefaultInstance(), spans, lsSpanAttributes,
+          includeResourceTags, resourceTagsCache, contentType(), null);
+    }
+
+    @Override
+    void writeTo(CodedOutputStream out) throws IOException {
+      SpanEncoder.writeReportRequest(out, reporter, auth, spans, lsSpanAttributes,
+          includeResourceTags, resourceTagsCache, spanSizes);
+    }
+  }
+
+  private static final class PreEncodedSpansBody extends ReportRequestBody {
+    private final Reporter reporter;
+    private final Auth auth;
+    private final List<EncodedSpan> spans;
+    private final int size;
+
+    private PreEncodedSpansBody(Reporter reporter, Auth auth, List<EncodedSpan> spans,
+        @Nullable MediaType contentType, @Nullable BufferPool bufferPool) {
+      super(contentType, bufferPool);
+      this.reporter = reporter;
+      this.auth = auth;
+      this.spans = spans;
+      this.size = SpanEncoder.computeReportRequestSize(reporter, auth, spans);
+    }
+
+    @Override
+    public long contentLength() {
+      return size;
+    }
+
+    @Override
+    int getSpanCount() {
+      return spans.size();
+    }
+
+    @Override
+    int getSpanFieldSize(int index) {
+      return SpanEncoder.computeReportSpanSize(spans.get(index).getLength());
+    }
+
+    @Override
+    ReportRequestBody slice(int from, int to, @Nullable BufferPool bufferPool) {
+      return new PreEncodedSpansBody(reporter, auth, spans.subList(from, to), contentType(),
+          bufferPool);
+    }
+
+    @Override
+    ReportRequestBody toSpooled() {
+      return new PreEncodedSpansBody(reporter, Auth.getDefaultInstance(), spans, contentType(),
+          null);
+    }
+
+    @Override
+    void writeTo(CodedOutputStream out) throws IOException {
+      SpanEncoder.writeReportRequest(out, reporter, auth, spans);
+    }
+  }
+
+  /**
+   * Appends the internal metrics field to the request of another body, fields of a message can be
+   * written in any order.
+   */
+  private static final class InternalMetricsBody extends ReportRequestBody {
+    private final ReportRequestBody body;
+    private final InternalMetrics internalMetrics;
+    private final int internalMetricsSize;
+
+    private InternalMetricsBody(ReportRequestBody body, InternalMetrics internalMetrics) {
+      super(body.contentType(), body.bufferPool);
+      this.body = body;
+      this.internalMetrics = internalMetrics;
+      this.internalMetricsSize = CodedOutputStream
+          .computeMessageSize(ReportRequest.INTERNAL_METRICS_FIELD_NUMBER, internalMetrics);
+    }
+
+    @Override
+    public long contentLength() {
+      return body.contentLength() + internalMetricsSize;
+    }
+
+    @Override
+    int getSpanCount() {
+      return body.getSpanCount();
+    }
+
+    @Override
+    int getSpanFieldSize(int index) {
+      return body.getSpanFieldSize(index);
+    }
+
+    @Override
+    ReportRequestBody slice(int from, int to, @Nullable BufferPool bufferPool) {
+      final ReportRequestBody slice = body.slice(from, to, bufferPool);
+      // The metrics are only reported once, along with the first spans.
+      return from == 0 ? new InternalMetricsBody(slice, internalMetrics) : slice;
+    }
+
+    @Override
+    ReportRequestBody toSpooled() {
+      return body.toSpooled();
+    }
+
+    @Override
+    void writeTo(CodedOutputStream out) throws IOException {
+      body.writeTo(out);
+      out.writeMessage(ReportRequest.INTERNAL_METRICS_FIELD_NUMBER, internalMetrics);
+    }
+  }
+
+  /**
+   * Appends the timestamp offset field to the request of another body, which applies to all the
+   * spans of the request and thus to each of its slices.
+   */
+  private static final class TimestampOffsetBody extends ReportRequestBody {
+    private final ReportRequestBody body;
+    private final long timestampOffsetMicros;
+
+    private TimestampOffsetBody(ReportRequestBody body, long timestampOffsetMicros) {
+      super(body.contentType(), body.bufferPool);
+      this.body = body;
+      this.timestampOffsetMicros = timestampOffsetMicros;
+    }
+
+    @Override
+    public long contentLength() {
+      return body.contentLength() + CodedOutputStream.computeInt64Size(
+          ReportRequest.TIMESTAMP_OFFSET_MICROS_FIELD_NUMBER, timestampOffsetMicros);
+    }
+
+    @Override
+    int getSpanCount() {
+      return body.getSpanCount();
+    }
+
+    @Override
+    int getSpanFieldSize(int index) {
+      return body.getSpanFieldSize(index);
+    }
+
+    @Override
+    ReportRequestBody slice(int from, int to, @Nullable BufferPool bufferPool) {
+      return new TimestampOffsetBody(body.slice(from, to, bufferPool), timestampOffsetMicros);
+    }
+
+    @Override
+    ReportRequestBody toSpooled() {
+      return body.toSpooled();
+    }
+
+    @Override
+    void writeTo(CodedOutputStream out) throws IOException {
+      body.writeTo(out);
+      out.writeInt64(ReportRequest.TIMESTAMP_OFFSET_MICROS_FIELD_NUMBER, timestampOffsetMicros);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.lightstep.opentelemetry.exporter.ReportTransport.PreparedReport;
+import com.lightstep.opentelemetry.exporter.ReportTransport.Result;
+import com.lightstep.opentelemetry.exporter.ReportTransport.ResultCallback;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Sends reports through a transport, retrying the retryable failures as decided by a {@link
+ * RetryPolicy}. Synchronous retries sleep on the sending thread, asynchronous ones are scheduled on
+ * a single daemon thread, only started by the first of them.
+ *
+ * <p>Each report is prepared once, whatever the number of times it is sent.
+ */
+@ThreadSafe
+final class ReportSender {
+  private static final Logger logger = Logger.getLogger(ReportSender.class.getName());
+
+  private final ReportTransport transport;
+  private final RetryPolicy retryPolicy;
+  private final ExporterMetrics metrics;
+  private final ResultCallback responseCallback;
+  private final ScheduledExecutorService retryScheduler;
+  private volatile boolean shutdown;
+
+  /**
+   * Creates a new sender.
+   *
+   * @param transport the transport sending the reports
+   * @param retryPolicy the policy deciding whether and when reports are retried
+   * @param metrics the metrics recording the retries
+   * @param responseCallback the callback notified of the response to each attempt, retries
+   * included
+   */
+  ReportSender(ReportTransport transport, RetryPolicy retryPolicy, ExporterMetrics metrics,
+      ResultCallback responseCallback) {
+    this.transport = transport;
+    this.retryPolicy = retryPolicy;
+    this.metrics = metrics;
+    this.responseCallback = responseCallback;
+    this.retryScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "lightstep-report-retry");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Sends a report, sleeping between its retries.
+   *
+   * @param report the report to be sent
+   * @return the result of the last attempt
+   */
+  Result send(ReportRequestBody report) {
+    retryPolicy.onReport();
+    final PreparedReport prepared = transport.prepare(report);
+    for (int retry = 0; ; retry++) {
+      final Result result = prepared.send();
+      responseCallback.onComplete(result);
+      final long backoffMillis = backoffMillis(result, retry);
+      if (backoffMillis < 0) {
+        return result;
+      }
+      try {
+        Thread.sleep(backoffMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return result;
+      }
+    }
+  }
+
+  /**
+   * Sends a report without waiting for the collector, scheduling its retries. A retry which cannot
+   * be scheduled because the sender is shut down completes the report with its retryable failure.
+   *
+   * @param report the report to be sent
+   * @param callback the callback notified of the result of the last attempt
+   */
+  void sendAsync(ReportRequestBody report, ResultCallback callback) {
+    retryPolicy.onReport();
+    sendAsync(transport.prepare(report), 0, callback);
+  }
+
+  private void sendAsync(final PreparedReport prepared, final int retry,
+      final ResultCallback callback) {
+    prepared.sendAsync(new ResultCallback() {
+      @Override
+      public void onComplete(Result result) {
+        responseCallback.onComplete(result);
+        final long backoffMillis = backoffMillis(result, retry);
+        if (backoffMillis < 0) {
+          callback.onComplete(result);
+          return;
+        }
+        try {
+          retryScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+              sendAsync(prepared, retry + 1, callback);
+            }
+          }, backoffMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+          callback.onComplete(result);
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the delay before sending a report again, or -1 if it is not retried.
+   */
+  private long backoffMillis(Result result, int retry) {
+    if (!result.isRetryable() || shutdown) {
+      return -1;
+    }
+    final long backoffMillis = retryPolicy.nextBackoffMillis(retry, result.getRetryAfterMillis());
+    if (backoffMillis >= 0) {
+      metrics.recordRetry();
+      if (logger.isLoggable(Level.FINE)) {
+        logger.log(Level.FINE, "Retrying a report in " + backoffMillis + "ms");
+      }
+    }
+    return backoffMillis;
+  }
+
+  /**
+   * Stops retrying reports. Retries already scheduled still run, and fail once the transport is
+   * shut down.
+   */
+  void shutdown() {
+    shutdown = true;
+    retryScheduler.shutdown();
+  }
+}
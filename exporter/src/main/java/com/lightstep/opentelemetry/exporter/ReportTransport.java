@@ -0,0 +1,187 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.google.protobuf.util.Timestamps;
+import com.lightstep.tracer.grpc.Command;
+import com.lightstep.tracer.grpc.ReportResponse;
+import io.opentelemetry.sdk.trace.export.SpanExporter.ResultCode;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Sends serialized reports to the Lightstep collector.
+ *
+ * <p>Transports do not release the bodies they are given, this is left to the caller once the
+ * report completed.
+ */
+@ThreadSafe
+abstract class ReportTransport {
+  private static final Logger logger = Logger.getLogger(ReportTransport.class.getName());
+
+  /**
+   * Prepares the report for being sent, once for all its attempts: what does not change between
+   * retries, such as the compressed request, is built by the first attempt and then reused.
+   *
+   * @param body the report to be sent, already serialized when pooled
+   * @return the prepared report
+   */
+  abstract PreparedReport prepare(ReportRequestBody body);
+
+  /**
+   * Initiates an orderly shutdown in which reports in flight complete but no new report is sent.
+   */
+  abstract void shutdown();
+
+  /**
+   * Converts the response of the collector into a result, along with a sample of the offset of
+   * the collector clock when the response carries its receive and transmit timestamps.
+   *
+   * @param reportResponse the response of the collector
+   * @param originMicros the local time the report was sent at, in microseconds since the epoch
+   * @param destinationMicros the local time the response was received at
+   * @return the result
+   */
+  static Result toResult(ReportResponse reportResponse, long originMicros,
+      long destinationMicros) {
+    boolean disable = false;
+    for (Command command : reportResponse.getCommandsList()) {
+      disable |= command.getDisable();
+    }
+
+    long clockOffsetMicros = 0;
+    long roundTripMicros = -1;
+    if (reportResponse.hasReceiveTimestamp() && reportResponse.hasTransmitTimestamp()
+        && destinationMicros >= originMicros) {
+      final long receiveMicros = Timestamps.toMicros(reportResponse.getReceiveTimestamp());
+      final long transmitMicros = Timestamps.toMicros(reportResponse.getTransmitTimestamp());
+      clockOffsetMicros =
+          ((receiveMicros - originMicros) + (transmitMicros - destinationMicros)) / 2;
+      roundTripMicros =
+          Math.max(0, (destinationMicros - originMicros) - (transmitMicros - receiveMicros));
+    }
+
+    if (!reportResponse.getErrorsList().isEmpty()) {
+      for (String err : reportResponse.getErrorsList()) {
+        logger.log(Level.WARNING, "Collector response contained error: " + err);
+      }
+      return new Result(ResultCode.FAILURE, false, -1, disable, clockOffsetMicros,
+          roundTripMicros);
+    }
+    return new Result(ResultCode.SUCCESS, false, -1, disable, clockOffsetMicros, roundTripMicros);
+  }
+
+  /**
+   * Returns the current time in microseconds since the epoch, for the clock offset samples.
+   */
+  static long currentTimeMicros() {
+    return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+  }
+
+  /**
+   * A report prepared by a transport, which is sent once per attempt. Attempts are sequential.
+   */
+  @ThreadSafe
+  abstract static class PreparedReport {
+    /**
+     * Sends the report and waits for the collector to respond.
+     *
+     * @return the result of the report
+     */
+    abstract Result send();
+
+    /**
+     * Sends the report without waiting for the collector to respond.
+     *
+     * @param callback the callback invoked once the collector responded
+     */
+    abstract void sendAsync(ResultCallback callback);
+  }
+
+  /**
+   * Receives the result of a report sent asynchronously.
+   */
+  interface ResultCallback {
+    void onComplete(Result result);
+  }
+
+  /**
+   * The result of a report, telling whether a failed one may be sent again.
+   */
+  @Immutable
+  static final class Result {
+    static final Result SUCCESS = new Result(ResultCode.SUCCESS, false, -1);
+    static final Result FAILURE = new Result(ResultCode.FAILURE, false, -1);
+
+    private final ResultCode resultCode;
+    private final boolean retryable;
+    private final long retryAfterMillis;
+    private final boolean disable;
+    private final long clockOffsetMicros;
+    private final long roundTripMicros;
+
+    private Result(ResultCode resultCode, boolean retryable, long retryAfterMillis) {
+      this(resultCode, retryable, retryAfterMillis, false, 0, -1);
+    }
+
+    private Result(ResultCode resultCode, boolean retryable, long retryAfterMillis,
+        boolean disable, long clockOffsetMicros, long roundTripMicros) {
+      this.resultCode = resultCode;
+      this.retryable = retryable;
+      this.retryAfterMillis = retryAfterMillis;
+      this.disable = disable;
+      this.clockOffsetMicros = clockOffsetMicros;
+      this.roundTripMicros = roundTripMicros;
+    }
+
+    /**
+     * Returns the result of a report which failed but may succeed if sent again, e.g. because the
+     * collector was overloaded or could not be reached.
+     *
+     * @param retryAfterMillis the time the collector asked to wait before sending it again, or -1
+     * @return the result
+     */
+    static Result retryable(long retryAfterMillis) {
+      return new Result(ResultCode.FAILURE, true, retryAfterMillis);
+    }
+
+    ResultCode getResultCode() {
+      return resultCode;
+    }
+
+    boolean isRetryable() {
+      return retryable;
+    }
+
+    /**
+     * Returns the time the collector asked to wait before sending the report again, or -1.
+     */
+    long getRetryAfterMillis() {
+      return retryAfterMillis;
+    }
+
+    /**
+     * Returns whether the collector commanded the exporter to stop reporting.
+     */
+    boolean isDisable() {
+      return disable;
+    }
+
+    /**
+     * Returns the offset of the collector clock from the local clock, in microseconds, valid only
+     * when {@link #getRoundTripMicros()} is not -1.
+     */
+    long getClockOffsetMicros() {
+      return clockOffsetMicros;
+    }
+
+    /**
+     * Returns the round trip time of the report, excluding the time the collector spent processing
+     * it, or -1 if the collector did not send its timestamps.
+     */
+    long getRoundTripMicros() {
+      return roundTripMicros;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.lightstep.tracer.grpc.Reporter;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Groups spans by resource, for their resource tags to be reported once on the reporter of each
+ * group rather than on every span. Groups keep the order in which their resource was first seen,
+ * and the spans of a group their order in the batch.
+ */
+@ThreadSafe
+final class ResourceGrouping {
+  private ResourceGrouping() {
+  }
+
+  /**
+   * Groups spans by resource.
+   *
+   * @param spans the spans to be grouped
+   * @return the spans of each resource
+   */
+  static Map<Resource, List<SpanData>> groupSpans(Collection<SpanData> spans) {
+    final Map<Resource, List<SpanData>> groups = new LinkedHashMap<>();
+    Resource lastResource = null;
+    List<SpanData> lastGroup = null;
+    for (SpanData span : spans) {
+      // Spans of a batch mostly share the same resource instance, skip hashing it in that case.
+      if (span.getResource() != lastResource) {
+        lastResource = span.getResource();
+        lastGroup = groups.get(lastResource);
+        if (lastGroup == null) {
+          lastGroup = new ArrayList<>();
+          groups.put(lastResource, lastGroup);
+        }
+      }
+      lastGroup.add(span);
+    }
+    return groups;
+  }
+
+  /**
+   * Groups encoded spans by the resource of their span.
+   *
+   * @param spans the encoded spans to be grouped
+   * @return the encoded spans of each resource
+   */
+  static Map<Resource, List<EncodedSpan>> groupEncodedSpans(Collection<EncodedSpan> spans) {
+    final Map<Resource, List<EncodedSpan>> groups = new LinkedHashMap<>();
+    for (EncodedSpan span : spans) {
+      List<EncodedSpan> group = groups.get(span.getResource());
+      if (group == null) {
+        group = new ArrayList<>();
+        groups.put(span.getResource(), group);
+      }
+      group.add(span);
+    }
+    return groups;
+  }
+
+  /**
+   * Returns the reporter of a group, tagged with the tags of its resource.
+   *
+   * @param reporter the reporter of the exporter
+   * @param resource the resource of the group
+   * @param resourceTagsCache the cache of resource tags, or {@code null} to convert them
+   * @return the reporter of the group
+   */
+  static Reporter reporterFor(Reporter reporter, Resource resource,
+      @Nullable ResourceTagsCache resourceTagsCache) {
+    return reporter.toBuilder()
+        .addAllTags(Adapter.toResourceTags(resource, resourceTagsCache))
+        .build();
+  }
+}
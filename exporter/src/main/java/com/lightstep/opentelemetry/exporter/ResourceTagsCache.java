@@ -0,0 +1,123 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.google.protobuf.ByteString;
+import com.lightstep.tracer.grpc.KeyValue;
+import io.opentelemetry.sdk.resources.Resource;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Bounded cache of the Lightstep tags of {@link Resource}s, keyed by identity.
+ *
+ * <p>Spans of a batch usually share one or a handful of {@link Resource} instances, so converting
+ * their attributes once avoids repeating the work for every span. Lookups scan a small array
+ * without locking; when the cache is full the oldest entry is replaced.
+ */
+@ThreadSafe
+final class ResourceTagsCache {
+  static final int DEFAULT_CAPACITY = 16;
+
+  private final AtomicReferenceArray<Entry> entries;
+  private final AtomicInteger nextSlot = new AtomicInteger();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Creates a new cache.
+   *
+   * @param capacity the maximum number of resources kept in the cache
+   */
+  ResourceTagsCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+    this.entries = new AtomicReferenceArray<>(capacity);
+  }
+
+  /**
+   * Returns the converted tags of the given resource, converting and caching them on a miss.
+   *
+   * @param resource the resource whose attributes are converted
+   * @return the cache entry of the resource
+   */
+  Entry get(Resource resource) {
+    Entry entry = find(resource);
+    if (entry != null) {
+      hits.incrementAndGet();
+      return entry;
+    }
+
+    misses.incrementAndGet();
+    final List<KeyValue> tags =
+        Collections.unmodifiableList(Adapter.toKeyValues(resource.getAttributes()));
+    entry = new Entry(resource, tags, SpanEncoder.encodeTags(tags));
+    entries.set((nextSlot.getAndIncrement() & Integer.MAX_VALUE) % entries.length(), entry);
+    return entry;
+  }
+
+  /**
+   * Returns the cached entry of the given resource without converting it nor updating the hit and
+   * miss counters.
+   *
+   * @param resource the resource to look up
+   * @return the cache entry of the resource, or {@code null} if it is not cached
+   */
+  @Nullable
+  Entry find(Resource resource) {
+    for (int i = 0; i < entries.length(); i++) {
+      final Entry entry = entries.get(i);
+      if (entry != null && entry.resource == resource) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the number of lookups served from the cache.
+   */
+  long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of lookups that had to convert the resource attributes.
+   */
+  long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * The converted tags of a single {@link Resource}.
+   */
+  static final class Entry {
+    private final Resource resource;
+    private final List<KeyValue> tags;
+    private final ByteString encodedTags;
+
+    private Entry(Resource resource, List<KeyValue> tags, ByteString encodedTags) {
+      this.resource = resource;
+      this.tags = tags;
+      this.encodedTags = encodedTags;
+    }
+
+    /**
+     * Returns the resource attributes as Lightstep tags.
+     */
+    List<KeyValue> getTags() {
+      return tags;
+    }
+
+    /**
+     * Returns the tags already serialized as repeated {@code Span.tags} fields.
+     */
+    ByteString getEncodedTags() {
+      return encodedTags;
+    }
+  }
+}
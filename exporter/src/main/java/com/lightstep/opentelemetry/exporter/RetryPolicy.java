@@ -0,0 +1,94 @@
+package com.lightstep.opentelemetry.exporter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Decides whether and when a retryable report is sent again.
+ *
+ * <p>Retries are delayed by an exponential backoff with full jitter: the delay of a retry is
+ * uniformly distributed between 0 and the initial backoff doubled for each previous retry, capped
+ * by the maximum backoff. A delay asked for by the collector is honored instead when longer, unless
+ * it exceeds the maximum backoff, in which case the report is not retried.
+ *
+ * <p>Retries are also bounded by a budget shared by all reports, so they cannot amplify the load
+ * of an overloaded collector: each report deposits a percentage of a retry into the budget, and
+ * each retry withdraws a whole one. The budget starts with, and holds at most, {@link
+ * #MAX_RETRY_BALANCE} retries.
+ */
+@ThreadSafe
+final class RetryPolicy {
+  static final int MAX_RETRY_BALANCE = 10;
+  // The balance is kept in hundredths of a retry, so each report deposits the percentage as is.
+  private static final long RETRY_COST = 100;
+
+  private final int maxRetries;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final int budgetPercent;
+  private final AtomicLong balance = new AtomicLong(MAX_RETRY_BALANCE * RETRY_COST);
+
+  /**
+   * Creates a new retry policy.
+   *
+   * @param maxRetries the maximum number of retries of a report, 0 to never retry
+   * @param initialBackoffMillis the maximum delay of the first retry
+   * @param maxBackoffMillis the maximum delay of any retry
+   * @param budgetPercent the number of retries allowed per hundred reports
+   */
+  RetryPolicy(int maxRetries, long initialBackoffMillis, long maxBackoffMillis,
+      int budgetPercent) {
+    this.maxRetries = maxRetries;
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.budgetPercent = budgetPercent;
+  }
+
+  /**
+   * Records a report sent for the first time, depositing its share of a retry into the budget.
+   */
+  void onReport() {
+    final long max = MAX_RETRY_BALANCE * RETRY_COST;
+    long current;
+    do {
+      current = balance.get();
+      if (current >= max) {
+        return;
+      }
+    } while (!balance.compareAndSet(current, Math.min(max, current + budgetPercent)));
+  }
+
+  /**
+   * Returns the delay before the given retry of a report, withdrawing it from the budget.
+   *
+   * @param retry the number of retries of the report so far
+   * @param retryAfterMillis the delay asked for by the collector, or -1
+   * @return the delay in milliseconds, or -1 if the report must not be retried
+   */
+  long nextBackoffMillis(int retry, long retryAfterMillis) {
+    if (retry >= maxRetries || retryAfterMillis > maxBackoffMillis || !withdraw()) {
+      return -1;
+    }
+    // Doubling stops at the maximum backoff, before overflowing.
+    long backoffMillis = initialBackoffMillis;
+    for (int i = 0; i < retry && backoffMillis < maxBackoffMillis; i++) {
+      backoffMillis *= 2;
+    }
+    backoffMillis = Math.min(backoffMillis, maxBackoffMillis);
+    final long jitteredMillis =
+        backoffMillis > 0 ? ThreadLocalRandom.current().nextLong(backoffMillis + 1) : 0;
+    return Math.max(jitteredMillis, retryAfterMillis);
+  }
+
+  private boolean withdraw() {
+    long current;
+    do {
+      current = balance.get();
+      if (current < RETRY_COST) {
+        return false;
+      }
+    } while (!balance.compareAndSet(current, current - RETRY_COST));
+    return true;
+  }
+}
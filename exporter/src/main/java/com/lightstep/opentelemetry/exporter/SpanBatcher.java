@@ -0,0 +1,166 @@
+package com.lightstep.opentelemetry.exporter;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter.ResultCode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Coalesces the spans of many exports into reports of a bounded size, sent once enough spans are
+ * pending or after a bounded delay, whichever comes first.
+ *
+ * <p>Full batches are sent on the exporting thread, which is thus throttled by the collector;
+ * batches sent after the delay are sent by a background thread.
+ */
+@ThreadSafe
+final class SpanBatcher {
+  private static final Logger logger = Logger.getLogger(SpanBatcher.class.getName());
+
+  /**
+   * Sends a batch of spans.
+   */
+  interface Sender {
+    ResultCode send(List<SpanData> batch);
+  }
+
+  private final int batchSize;
+  private final long delayMillis;
+  private final Sender sender;
+  private final ScheduledExecutorService scheduler;
+  private final Object lock = new Object();
+  private final Runnable delayedFlush = new Runnable() {
+    @Override
+    public void run() {
+      synchronized (lock) {
+        flushScheduled = false;
+      }
+      flush();
+    }
+  };
+
+  @GuardedBy("lock")
+  private List<SpanData> pending;
+  @GuardedBy("lock")
+  private boolean flushScheduled;
+  @GuardedBy("lock")
+  private boolean shutdown;
+
+  /**
+   * Creates a new batcher.
+   *
+   * @param batchSize the maximum number of spans of a batch, which is sent once reached
+   * @param delayMillis the maximum time spans are pending before being sent
+   * @param sender the sender of batches
+   */
+  SpanBatcher(int batchSize, long delayMillis, Sender sender) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+    }
+    this.batchSize = batchSize;
+    this.delayMillis = delayMillis;
+    this.sender = sender;
+    this.pending = new ArrayList<>(batchSize);
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "lightstep-span-batcher");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Adds spans to the pending batch, sending the batches which are full.
+   *
+   * @param spans the spans to be added
+   * @return the result of the batches sent, success when none was sent
+   */
+  ResultCode add(Collection<SpanData> spans) {
+    final List<List<SpanData>> batches = new ArrayList<>();
+    synchronized (lock) {
+      if (shutdown) {
+        logger.log(Level.WARNING, "Dropped " + spans.size() + " spans, the exporter is shut down");
+        return ResultCode.FAILURE;
+      }
+      pending.addAll(spans);
+      while (pending.size() >= batchSize) {
+        batches.add(takePending(batchSize));
+      }
+      if (!pending.isEmpty() && !flushScheduled) {
+        flushScheduled = true;
+        scheduler.schedule(delayedFlush, delayMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+    return send(batches);
+  }
+
+  /**
+   * Sends all pending spans, in batches of at most the batch size.
+   *
+   * @return the result of the batches sent, success when none was sent
+   */
+  ResultCode flush() {
+    final List<List<SpanData>> batches = new ArrayList<>();
+    synchronized (lock) {
+      while (!pending.isEmpty()) {
+        batches.add(takePending(Math.min(batchSize, pending.size())));
+      }
+    }
+    return send(batches);
+  }
+
+  /**
+   * Sends all pending spans and stops the background thread. Spans added afterwards are dropped.
+   *
+   * @return the result of the batches sent, success when none was sent
+   */
+  ResultCode shutdown() {
+    synchronized (lock) {
+      shutdown = true;
+    }
+    scheduler.shutdownNow();
+    return flush();
+  }
+
+  /**
+   * Returns the number of pending spans.
+   */
+  int size() {
+    synchronized (lock) {
+      return pending.size();
+    }
+  }
+
+  @GuardedBy("lock")
+  private List<SpanData> takePending(int count) {
+    if (count == pending.size()) {
+      final List<SpanData> batch = pending;
+      pending = new ArrayList<>(batchSize);
+      return batch;
+    }
+    final List<SpanData> head = pending.subList(0, count);
+    final List<SpanData> batch = new ArrayList<>(head);
+    head.clear();
+    return batch;
+  }
+
+  private ResultCode send(List<List<SpanData>> batches) {
+    ResultCode result = ResultCode.SUCCESS;
+    for (List<SpanData> batch : batches) {
+      if (sender.send(batch) != ResultCode.SUCCESS) {
+        result = ResultCode.FAILURE;
+      }
+    }
+    return result;
+  }
+}
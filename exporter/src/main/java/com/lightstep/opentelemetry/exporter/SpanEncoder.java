@@ -0,0 +1,721 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static com.lightstep.opentelemetry.exporter.Adapter.KEY_ERROR;
+import static com.lightstep.opentelemetry.exporter.Adapter.KEY_LOG_MESSAGE;
+import static com.lightstep.opentelemetry.exporter.Adapter.KEY_SPAN_KIND;
+import static com.lightstep.opentelemetry.exporter.Adapter.KEY_SPAN_STATUS_CODE;
+import static com.lightstep.opentelemetry.exporter.Adapter.KEY_SPAN_STATUS_MESSAGE;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import com.lightstep.tracer.grpc.Auth;
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.Reference.Relationship;
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.Reporter;
+import com.lightstep.tracer.grpc.Span;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.common.ReadableAttributes;
+import io.opentelemetry.common.ReadableKeyValuePairs.KeyValueConsumer;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.SpanData.Event;
+import io.opentelemetry.sdk.trace.data.SpanData.Link;
+import io.opentelemetry.trace.Status;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Encodes OpenTelemetry objects straight into Lightstep's protobuf wire format.
+ *
+ * <p>The output is byte-identical to serializing the messages built by {@link Adapter}, but no
+ * intermediate {@link Span}, {@link KeyValue} or {@link com.lightstep.tracer.grpc.Log} objects are
+ * created. Every message is written in two passes: the first computes its size, the second writes
+ * the length-prefixed content.
+ */
+@ThreadSafe
+final class SpanEncoder {
+  // ReportRequest fields
+  private static final int REPORT_REQUEST_REPORTER = 1;
+  private static final int REPORT_REQUEST_AUTH = 2;
+  private static final int REPORT_REQUEST_SPANS = 3;
+
+  // Span fields
+  private static final int SPAN_SPAN_CONTEXT = 1;
+  private static final int SPAN_OPERATION_NAME = 2;
+  private static final int SPAN_REFERENCES = 3;
+  private static final int SPAN_START_TIMESTAMP = 4;
+  private static final int SPAN_DURATION_MICROS = 5;
+  private static final int SPAN_TAGS = 6;
+  private static final int SPAN_LOGS = 7;
+
+  // SpanContext fields
+  private static final int SPAN_CONTEXT_TRACE_ID = 1;
+  private static final int SPAN_CONTEXT_SPAN_ID = 2;
+
+  // Reference fields
+  private static final int REFERENCE_RELATIONSHIP = 1;
+  private static final int REFERENCE_SPAN_CONTEXT = 2;
+
+  // Log fields
+  private static final int LOG_TIMESTAMP = 1;
+  private static final int LOG_FIELDS = 2;
+
+  // KeyValue fields
+  private static final int KEY_VALUE_KEY = 1;
+  private static final int KEY_VALUE_STRING_VALUE = 2;
+  private static final int KEY_VALUE_INT_VALUE = 3;
+  private static final int KEY_VALUE_DOUBLE_VALUE = 4;
+  private static final int KEY_VALUE_BOOL_VALUE = 5;
+
+  // Timestamp fields
+  private static final int TIMESTAMP_SECONDS = 1;
+  private static final int TIMESTAMP_NANOS = 2;
+
+  private static final long NANOS_PER_SECOND = 1000000000L;
+  private static final long NANOS_PER_MICROSECOND = 1000L;
+
+  // Spans encoded by a thread are carved out of a chunk, larger ones get their own array.
+  private static final int ENCODING_CHUNK_SIZE = 32 * 1024;
+  private static final int MAX_CHUNKED_SPAN_SIZE = ENCODING_CHUNK_SIZE / 4;
+
+  /**
+   * Thread-specific chunks receiving the spans encoded by {@link #encodeSpan(SpanData, Collection,
+   * boolean, ResourceTagsCache)}. A full chunk is replaced rather than reused, as it stays
+   * referenced by its spans until they are exported.
+   */
+  private static final ThreadLocal<EncodingChunk> encodingChunk =
+      new ThreadLocal<EncodingChunk>() {
+        @Override
+        protected EncodingChunk initialValue() {
+          return new EncodingChunk();
+        }
+      };
+
+  private SpanEncoder() {
+  }
+
+  /**
+   * Encodes a whole {@link ReportRequest} into a new byte array.
+   *
+   * @param reporter the reporter of the request
+   * @param auth the authentication of the request
+   * @param spans the spans to be encoded
+   * @param lsSpanAttributes the list of LS-specific Span attributes to add.
+   * @param includeResourceTags whether the resource attributes are added as span tags
+   * @param resourceTagsCache the cache of resource tags, or {@code null} to convert them for
+   * every span
+   * @return the wire format of the report request
+   */
+  static byte[] toByteArray(Reporter reporter, Auth auth, Collection<SpanData> spans,
+      Collection<KeyValue> lsSpanAttributes, boolean includeResourceTags,
+      @Nullable ResourceTagsCache resourceTagsCache) {
+    final int[] spanSizes = new int[spans.size()];
+    final byte[] result = new byte[computeReportRequestSize(reporter, auth, spans,
+        lsSpanAttributes, includeResourceTags, resourceTagsCache, spanSizes)];
+    final CodedOutputStream out = CodedOutputStream.newInstance(result);
+    try {
+      writeReportRequest(out, reporter, auth, spans, lsSpanAttributes, includeResourceTags,
+          resourceTagsCache, spanSizes);
+      out.checkNoSpaceLeft();
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to a byte array threw an IOException", e);
+    }
+    return result;
+  }
+
+  /**
+   * Computes the encoded size of a {@link ReportRequest}.
+   *
+   * @param reporter the reporter of the request
+   * @param auth the authentication of the request
+   * @param spans the spans to be encoded
+   * @param lsSpanAttributes the list of LS-specific Span attributes to add.
+   * @param includeResourceTags whether the resource attributes are added as span tags
+   * @param resourceTagsCache the cache of resource tags, or {@code null} to convert them for
+   * every span
+   * @param spanSizes receives the encoded size of each span, must hold {@code spans.size()}
+   * elements
+   * @return the encoded size of the report request
+   */
+  static int computeReportRequestSize(Reporter reporter, Auth auth, Collection<SpanData> spans,
+      Collection<KeyValue> lsSpanAttributes, boolean includeResourceTags,
+      @Nullable ResourceTagsCache resourceTagsCache, int[] spanSizes) {
+    int size = CodedOutputStream.computeMessageSize(REPORT_REQUEST_REPORTER, reporter)
+        + CodedOutputStream.computeMessageSize(REPORT_REQUEST_AUTH, auth);
+    int i = 0;
+    for (SpanData span : spans) {
+      final int spanSize =
+          computeSpanSize(span, lsSpanAttributes, includeResourceTags, resourceTagsCache);
+      spanSizes[i++] = spanSize;
+      size += computeReportSpanSize(spanSize);
+    }
+    return size;
+  }
+
+  /**
+   * Computes the encoded size of a span within a {@link ReportRequest}, including its tag and
+   * length prefix.
+   *
+   * @param spanSize the encoded size of the span, see {@link #computeSpanSize(SpanData,
+   * Collection, boolean, ResourceTagsCache)}
+   * @return the encoded size of the span field
+   */
+  static int computeReportSpanSize(int spanSize) {
+    return computeLengthDelimitedSize(REPORT_REQUEST_SPANS, spanSize);
+  }
+
+  /**
+   * Writes a {@link ReportRequest} whose span sizes were computed by {@link
+   * #computeReportRequestSize(Reporter, Auth, Collection, Collection, boolean, ResourceTagsCache,
+   * int[])}.
+   */
+  static void writeReportRequest(CodedOutputStream out, Reporter reporter, Auth auth,
+      Collection<SpanData> spans, Collection<KeyValue> lsSpanAttributes,
+      boolean includeResourceTags, @Nullable ResourceTagsCache resourceTagsCache,
+      int[] spanSizes) throws IOException {
+    out.writeMessage(REPORT_REQUEST_REPORTER, reporter);
+    out.writeMessage(REPORT_REQUEST_AUTH, auth);
+    int i = 0;
+    for (SpanData span : spans) {
+      writeLengthDelimitedTag(out, REPORT_REQUEST_SPANS, spanSizes[i++]);
+      writeSpan(out, span, lsSpanAttributes, includeResourceTags, resourceTagsCache);
+    }
+  }
+
+  /**
+   * Computes the encoded size of a {@link ReportRequest} of already encoded spans.
+   *
+   * @param reporter the reporter of the request
+   * @param auth the authentication of the request
+   * @param spans the encoded spans
+   * @return the encoded size of the report request
+   */
+  static int computeReportRequestSize(Reporter reporter, Auth auth, List<EncodedSpan> spans) {
+    int size = CodedOutputStream.computeMessageSize(REPORT_REQUEST_REPORTER, reporter)
+        + CodedOutputStream.computeMessageSize(REPORT_REQUEST_AUTH, auth);
+    for (int i = 0; i < spans.size(); i++) {
+      size += computeReportSpanSize(spans.get(i).getLength());
+    }
+    return size;
+  }
+
+  /**
+   * Writes a {@link ReportRequest} of already encoded spans, only copying their bytes.
+   */
+  static void writeReportRequest(CodedOutputStream out, Reporter reporter, Auth auth,
+      List<EncodedSpan> spans) throws IOException {
+    out.writeMessage(REPORT_REQUEST_REPORTER, reporter);
+    out.writeMessage(REPORT_REQUEST_AUTH, auth);
+    for (int i = 0; i < spans.size(); i++) {
+      final EncodedSpan span = spans.get(i);
+      writeLengthDelimitedTag(out, REPORT_REQUEST_SPANS, span.getLength());
+      span.writeTo(out);
+    }
+  }
+
+  /**
+   * Encodes the given spans with {@link #encodeSpan(SpanData, Collection, boolean,
+   * ResourceTagsCache)}, splitting large batches into chunks encoded concurrently, see {@link
+   * ParallelConversion}. The encoded spans keep the order of the given ones.
+   *
+   * @param spans the spans to be encoded
+   * @param lsSpanAttributes the list of LS-specific Span attributes to add.
+   * @param includeResourceTags whether the resource attributes are added as span tags
+   * @param resourceTagsCache the cache of resource tags, or {@code null} to convert them
+   * @param executor the executor encoding the chunks
+   * @param parallelism the number of chunks a batch is split into
+   * @param threshold the number of spans below which a batch is encoded sequentially
+   * @return the encoded spans
+   */
+  static List<EncodedSpan> encodeSpans(Collection<SpanData> spans,
+      final Collection<KeyValue> lsSpanAttributes, final boolean includeResourceTags,
+      @Nullable final ResourceTagsCache resourceTagsCache, Executor executor, int parallelism,
+      int threshold) {
+    return new ParallelConversion<EncodedSpan>() {
+      @Override
+      List<EncodedSpan> convert(List<SpanData> chunk) {
+        final List<EncodedSpan> encoded = new ArrayList<>(chunk.size());
+        for (SpanData span : chunk) {
+          encoded.add(encodeSpan(span, lsSpanAttributes, includeResourceTags, resourceTagsCache));
+        }
+        return encoded;
+      }
+    }.convert(spans, executor, parallelism, threshold);
+  }
+
+  /**
+   * Encodes the Lightstep {@link Span} for the given {@link SpanData} on the calling thread, into
+   * a buffer of this thread.
+   *
+   * @param spanData the spanData to be encoded
+   * @param lsSpanAttributes the list of LS-specific Span attributes to add.
+   * @param includeResourceTags whether the resource attributes are added as span tags
+   * @param resourceTagsCache the cache of resource tags, or {@code null} to convert them
+   * @return the encoded span
+   */
+  static EncodedSpan encodeSpan(SpanData spanData, Collection<KeyValue> lsSpanAttributes,
+      boolean includeResourceTags, @Nullable ResourceTagsCache resourceTagsCache) {
+    final int size =
+        computeSpanSize(spanData, lsSpanAttributes, includeResourceTags, resourceTagsCache);
+    final byte[] array;
+    final int offset;
+    if (size > MAX_CHUNKED_SPAN_SIZE) {
+      array = new byte[size];
+      offset = 0;
+    } else {
+      final EncodingChunk chunk = encodingChunk.get();
+      if (chunk.array == null || chunk.position + size > chunk.array.length) {
+        chunk.array = new byte[ENCODING_CHUNK_SIZE];
+        chunk.position = 0;
+      }
+      array = chunk.array;
+      offset = chunk.position;
+      chunk.position += size;
+    }
+
+    final CodedOutputStream out = CodedOutputStream.newInstance(array, offset, size);
+    try {
+      writeSpan(out, spanData, lsSpanAttributes, includeResourceTags, resourceTagsCache);
+      out.checkNoSpaceLeft();
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to a byte array threw an IOException", e);
+    }
+    return new EncodedSpan(array, offset, size, spanData.getResource());
+  }
+
+  /**
+   * Computes the encoded size of the Lightstep {@link Span} for the given {@link SpanData}, not
+   * including its tag and length prefix.
+   *
+   * @param spanData the spanData to be encoded
+   * @param lsSpanAttributes the list of LS-specific Span attributes to add.
+   * @param includeResourceTags whether the resource attributes are added as span tags
+   * @param resourceTagsCache the cache of resource tags, or {@code null} to convert them
+   * @return the encoded size of the span
+   */
+  static int computeSpanSize(SpanData spanData, Collection<KeyValue> lsSpanAttributes,
+      boolean includeResourceTags, @Nullable ResourceTagsCache resourceTagsCache) {
+    final long traceId = Adapter.traceIdToLong(spanData.getTraceId());
+    final long spanId = Adapter.spanIdToLong(spanData.getSpanId());
+
+    int size = computeLengthDelimitedSize(SPAN_SPAN_CONTEXT,
+        computeSpanContextSize(traceId, spanId));
+    size += computeStringSizeIfNotEmpty(SPAN_OPERATION_NAME, spanData.getName());
+
+    for (Link link : spanData.getLinks()) {
+      size += computeLengthDelimitedSize(SPAN_REFERENCES, computeReferenceSize(
+          Relationship.FOLLOWS_FROM,
+          Adapter.traceIdToLong(link.getContext().getTraceId()),
+          Adapter.spanIdToLong(link.getContext().getSpanId())));
+    }
+    if (spanData.getParentSpanId().isValid()) {
+      size += computeLengthDelimitedSize(SPAN_REFERENCES, computeReferenceSize(
+          Relationship.CHILD_OF, traceId, Adapter.spanIdToLong(spanData.getParentSpanId())));
+    }
+
+    size += computeLengthDelimitedSize(SPAN_START_TIMESTAMP,
+        computeTimestampSize(spanData.getStartEpochNanos()));
+    final long durationMicros = durationMicros(spanData);
+    if (durationMicros != 0) {
+      size += CodedOutputStream.computeUInt64Size(SPAN_DURATION_MICROS, durationMicros);
+    }
+
+    size += computeAttributesSize(SPAN_TAGS, spanData.getAttributes());
+    if (includeResourceTags && resourceTagsCache != null) {
+      size += resourceTagsCache.get(spanData.getResource()).getEncodedTags().size();
+    } else if (includeResourceTags) {
+      size += computeAttributesSize(SPAN_TAGS, spanData.getResource().getAttributes());
+    }
+    if (lsSpanAttributes != null) {
+      for (KeyValue keyValue : lsSpanAttributes) {
+        size += CodedOutputStream.computeMessageSize(SPAN_TAGS, keyValue);
+      }
+    }
+    if (spanData.getKind() != null) {
+      size += computeLengthDelimitedSize(SPAN_TAGS,
+          computeStringKeyValueSize(KEY_SPAN_KIND, spanData.getKind().name()));
+    }
+    final Status status = spanData.getStatus();
+    if (status.getDescription() != null) {
+      size += computeLengthDelimitedSize(SPAN_TAGS,
+          computeStringKeyValueSize(KEY_SPAN_STATUS_MESSAGE, status.getDescription()));
+    }
+    size += computeLengthDelimitedSize(SPAN_TAGS, computeIntKeyValueSize(
+        KEY_SPAN_STATUS_CODE, status.getCanonicalCode().value()));
+    if (!status.isOk()) {
+      size += computeLengthDelimitedSize(SPAN_TAGS, computeBoolKeyValueSize(KEY_ERROR, true));
+    }
+
+    for (Event event : spanData.getEvents()) {
+      size += computeLengthDelimitedSize(SPAN_LOGS, computeLogSize(event));
+    }
+    return size;
+  }
+
+  /**
+   * Writes the Lightstep {@link Span} for the given {@link SpanData}, not including its tag and
+   * length prefix.
+   *
+   * @param out the stream to write to
+   * @param spanData the spanData to be encoded
+   * @param lsSpanAttributes the list of LS-specific Span attributes to add.
+   * @param includeResourceTags whether the resource attributes are added as span tags
+   * @param resourceTagsCache the cache of resource tags, or {@code null} to convert them
+   */
+  static void writeSpan(CodedOutputStream out, SpanData spanData,
+      Collection<KeyValue> lsSpanAttributes, boolean includeResourceTags,
+      @Nullable ResourceTagsCache resourceTagsCache) throws IOException {
+    final long traceId = Adapter.traceIdToLong(spanData.getTraceId());
+    final long spanId = Adapter.spanIdToLong(spanData.getSpanId());
+
+    writeLengthDelimitedTag(out, SPAN_SPAN_CONTEXT, computeSpanContextSize(traceId, spanId));
+    writeSpanContext(out, traceId, spanId);
+    writeStringIfNotEmpty(out, SPAN_OPERATION_NAME, spanData.getName());
+
+    for (Link link : spanData.getLinks()) {
+      writeReference(out, Relationship.FOLLOWS_FROM,
+          Adapter.traceIdToLong(link.getContext().getTraceId()),
+          Adapter.spanIdToLong(link.getContext().getSpanId()));
+    }
+    if (spanData.getParentSpanId().isValid()) {
+      writeReference(out, Relationship.CHILD_OF, traceId,
+          Adapter.spanIdToLong(spanData.getParentSpanId()));
+    }
+
+    writeTimestamp(out, SPAN_START_TIMESTAMP, spanData.getStartEpochNanos());
+    final long durationMicros = durationMicros(spanData);
+    if (durationMicros != 0) {
+      out.writeUInt64(SPAN_DURATION_MICROS, durationMicros);
+    }
+
+    writeAttributes(out, SPAN_TAGS, spanData.getAttributes());
+    if (includeResourceTags && resourceTagsCache != null) {
+      // The size pass already counted the lookup, and most likely cached the resource.
+      ResourceTagsCache.Entry entry = resourceTagsCache.find(spanData.getResource());
+      if (entry == null) {
+        entry = resourceTagsCache.get(spanData.getResource());
+      }
+      out.writeRawBytes(entry.getEncodedTags());
+    } else if (includeResourceTags) {
+      writeAttributes(out, SPAN_TAGS, spanData.getResource().getAttributes());
+    }
+    if (lsSpanAttributes != null) {
+      for (KeyValue keyValue : lsSpanAttributes) {
+        out.writeMessage(SPAN_TAGS, keyValue);
+      }
+    }
+    if (spanData.getKind() != null) {
+      writeStringKeyValue(out, SPAN_TAGS, KEY_SPAN_KIND, spanData.getKind().name());
+    }
+    final Status status = spanData.getStatus();
+    if (status.getDescription() != null) {
+      writeStringKeyValue(out, SPAN_TAGS, KEY_SPAN_STATUS_MESSAGE, status.getDescription());
+    }
+    writeIntKeyValue(out, SPAN_TAGS, KEY_SPAN_STATUS_CODE, status.getCanonicalCode().value());
+    if (!status.isOk()) {
+      writeBoolKeyValue(out, SPAN_TAGS, KEY_ERROR, true);
+    }
+
+    for (Event event : spanData.getEvents()) {
+      writeLengthDelimitedTag(out, SPAN_LOGS, computeLogSize(event));
+      writeTimestamp(out, LOG_TIMESTAMP, event.getEpochNanos());
+      writeStringKeyValue(out, LOG_FIELDS, KEY_LOG_MESSAGE, event.getName());
+      writeAttributes(out, LOG_FIELDS, event.getAttributes());
+    }
+  }
+
+  /**
+   * Serializes the given tags as repeated {@code Span.tags} fields.
+   *
+   * @param tags the tags to be encoded
+   * @return the encoded tags
+   */
+  static ByteString encodeTags(Collection<KeyValue> tags) {
+    int size = 0;
+    for (KeyValue tag : tags) {
+      size += CodedOutputStream.computeMessageSize(SPAN_TAGS, tag);
+    }
+    final byte[] result = new byte[size];
+    final CodedOutputStream out = CodedOutputStream.newInstance(result);
+    try {
+      for (KeyValue tag : tags) {
+        out.writeMessage(SPAN_TAGS, tag);
+      }
+      out.checkNoSpaceLeft();
+    } catch (IOException e) {
+      throw new IllegalStateException("Writing to a byte array threw an IOException", e);
+    }
+    return ByteString.copyFrom(result);
+  }
+
+  private static long durationMicros(SpanData spanData) {
+    // Same truncation as Durations.toMicros(Timestamps.between(start, end)).
+    return (spanData.getEndEpochNanos() - spanData.getStartEpochNanos()) / NANOS_PER_MICROSECOND;
+  }
+
+  private static int computeSpanContextSize(long traceId, long spanId) {
+    int size = 0;
+    if (traceId != 0) {
+      size += CodedOutputStream.computeUInt64Size(SPAN_CONTEXT_TRACE_ID, traceId);
+    }
+    if (spanId != 0) {
+      size += CodedOutputStream.computeUInt64Size(SPAN_CONTEXT_SPAN_ID, spanId);
+    }
+    return size;
+  }
+
+  private static void writeSpanContext(CodedOutputStream out, long traceId, long spanId)
+      throws IOException {
+    if (traceId != 0) {
+      out.writeUInt64(SPAN_CONTEXT_TRACE_ID, traceId);
+    }
+    if (spanId != 0) {
+      out.writeUInt64(SPAN_CONTEXT_SPAN_ID, spanId);
+    }
+  }
+
+  private static int computeReferenceSize(Relationship relationship, long traceId, long spanId) {
+    int size = 0;
+    if (relationship.getNumber() != 0) {
+      size += CodedOutputStream.computeEnumSize(REFERENCE_RELATIONSHIP, relationship.getNumber());
+    }
+    return size + computeLengthDelimitedSize(REFERENCE_SPAN_CONTEXT,
+        computeSpanContextSize(traceId, spanId));
+  }
+
+  private static void writeReference(CodedOutputStream out, Relationship relationship,
+      long traceId, long spanId) throws IOException {
+    writeLengthDelimitedTag(out, SPAN_REFERENCES,
+        computeReferenceSize(relationship, traceId, spanId));
+    if (relationship.getNumber() != 0) {
+      out.writeEnum(REFERENCE_RELATIONSHIP, relationship.getNumber());
+    }
+    writeLengthDelimitedTag(out, REFERENCE_SPAN_CONTEXT, computeSpanContextSize(traceId, spanId));
+    writeSpanContext(out, traceId, spanId);
+  }
+
+  private static long timestampSeconds(long epochNanos) {
+    long seconds = epochNanos / NANOS_PER_SECOND;
+    if (epochNanos % NANOS_PER_SECOND < 0) {
+      seconds--;
+    }
+    return seconds;
+  }
+
+  private static int timestampNanos(long epochNanos) {
+    int nanos = (int) (epochNanos % NANOS_PER_SECOND);
+    if (nanos < 0) {
+      nanos += NANOS_PER_SECOND;
+    }
+    return nanos;
+  }
+
+  private static int computeTimestampSize(long epochNanos) {
+    final long seconds = timestampSeconds(epochNanos);
+    final int nanos = timestampNanos(epochNanos);
+    int size = 0;
+    if (seconds != 0) {
+      size += CodedOutputStream.computeInt64Size(TIMESTAMP_SECONDS, seconds);
+    }
+    if (nanos != 0) {
+      size += CodedOutputStream.computeInt32Size(TIMESTAMP_NANOS, nanos);
+    }
+    return size;
+  }
+
+  private static void writeTimestamp(CodedOutputStream out, int fieldNumber, long epochNanos)
+      throws IOException {
+    writeLengthDelimitedTag(out, fieldNumber, computeTimestampSize(epochNanos));
+    final long seconds = timestampSeconds(epochNanos);
+    final int nanos = timestampNanos(epochNanos);
+    if (seconds != 0) {
+      out.writeInt64(TIMESTAMP_SECONDS, seconds);
+    }
+    if (nanos != 0) {
+      out.writeInt32(TIMESTAMP_NANOS, nanos);
+    }
+  }
+
+  private static int computeLogSize(Event event) {
+    return computeLengthDelimitedSize(LOG_TIMESTAMP, computeTimestampSize(event.getEpochNanos()))
+        + computeLengthDelimitedSize(LOG_FIELDS,
+        computeStringKeyValueSize(KEY_LOG_MESSAGE, event.getName()))
+        + computeAttributesSize(LOG_FIELDS, event.getAttributes());
+  }
+
+  private static int computeStringKeyValueSize(String key, String value) {
+    return computeStringSizeIfNotEmpty(KEY_VALUE_KEY, key)
+        + CodedOutputStream.computeStringSize(KEY_VALUE_STRING_VALUE, value);
+  }
+
+  private static int computeIntKeyValueSize(String key, long value) {
+    return computeStringSizeIfNotEmpty(KEY_VALUE_KEY, key)
+        + CodedOutputStream.computeInt64Size(KEY_VALUE_INT_VALUE, value);
+  }
+
+  private static int computeBoolKeyValueSize(String key, boolean value) {
+    return computeStringSizeIfNotEmpty(KEY_VALUE_KEY, key)
+        + CodedOutputStream.computeBoolSize(KEY_VALUE_BOOL_VALUE, value);
+  }
+
+  private static void writeStringKeyValue(CodedOutputStream out, int fieldNumber, String key,
+      String value) throws IOException {
+    writeLengthDelimitedTag(out, fieldNumber, computeStringKeyValueSize(key, value));
+    writeStringIfNotEmpty(out, KEY_VALUE_KEY, key);
+    out.writeString(KEY_VALUE_STRING_VALUE, value);
+  }
+
+  private static void writeIntKeyValue(CodedOutputStream out, int fieldNumber, String key,
+      long value) throws IOException {
+    writeLengthDelimitedTag(out, fieldNumber, computeIntKeyValueSize(key, value));
+    writeStringIfNotEmpty(out, KEY_VALUE_KEY, key);
+    out.writeInt64(KEY_VALUE_INT_VALUE, value);
+  }
+
+  private static void writeBoolKeyValue(CodedOutputStream out, int fieldNumber, String key,
+      boolean value) throws IOException {
+    writeLengthDelimitedTag(out, fieldNumber, computeBoolKeyValueSize(key, value));
+    writeStringIfNotEmpty(out, KEY_VALUE_KEY, key);
+    out.writeBool(KEY_VALUE_BOOL_VALUE, value);
+  }
+
+  /**
+   * Mirrors {@link Adapter#toKeyValue(String, AttributeValue)}: value types that have no Lightstep
+   * counterpart produce a {@link KeyValue} holding only the key.
+   */
+  private static int computeKeyValueSize(String key, AttributeValue value) {
+    int size = computeStringSizeIfNotEmpty(KEY_VALUE_KEY, key);
+    switch (value.getType()) {
+      case STRING:
+        size += CodedOutputStream.computeStringSize(KEY_VALUE_STRING_VALUE,
+            value.getStringValue());
+        break;
+      case LONG:
+        size += CodedOutputStream.computeInt64Size(KEY_VALUE_INT_VALUE, value.getLongValue());
+        break;
+      case BOOLEAN:
+        size += CodedOutputStream.computeBoolSize(KEY_VALUE_BOOL_VALUE, value.getBooleanValue());
+        break;
+      case DOUBLE:
+        size += CodedOutputStream.computeDoubleSize(KEY_VALUE_DOUBLE_VALUE,
+            value.getDoubleValue());
+        break;
+    }
+    return size;
+  }
+
+  private static void writeKeyValue(CodedOutputStream out, int fieldNumber, String key,
+      AttributeValue value) throws IOException {
+    writeLengthDelimitedTag(out, fieldNumber, computeKeyValueSize(key, value));
+    writeStringIfNotEmpty(out, KEY_VALUE_KEY, key);
+    switch (value.getType()) {
+      case STRING:
+        out.writeString(KEY_VALUE_STRING_VALUE, value.getStringValue());
+        break;
+      case LONG:
+        out.writeInt64(KEY_VALUE_INT_VALUE, value.getLongValue());
+        break;
+      case BOOLEAN:
+        out.writeBool(KEY_VALUE_BOOL_VALUE, value.getBooleanValue());
+        break;
+      case DOUBLE:
+        out.writeDouble(KEY_VALUE_DOUBLE_VALUE, value.getDoubleValue());
+        break;
+    }
+  }
+
+  private static int computeAttributesSize(int fieldNumber, ReadableAttributes attributes) {
+    if (attributes.isEmpty()) {
+      return 0;
+    }
+    final AttributesSizer sizer = new AttributesSizer(fieldNumber);
+    attributes.forEach(sizer);
+    return sizer.size;
+  }
+
+  private static void writeAttributes(CodedOutputStream out, int fieldNumber,
+      ReadableAttributes attributes) throws IOException {
+    if (attributes.isEmpty()) {
+      return;
+    }
+    final AttributesWriter writer = new AttributesWriter(out, fieldNumber);
+    attributes.forEach(writer);
+    if (writer.error != null) {
+      throw writer.error;
+    }
+  }
+
+  private static int computeStringSizeIfNotEmpty(int fieldNumber, String value) {
+    if (value.isEmpty()) {
+      return 0;
+    }
+    return CodedOutputStream.computeStringSize(fieldNumber, value);
+  }
+
+  private static void writeStringIfNotEmpty(CodedOutputStream out, int fieldNumber, String value)
+      throws IOException {
+    if (!value.isEmpty()) {
+      out.writeString(fieldNumber, value);
+    }
+  }
+
+  private static int computeLengthDelimitedSize(int fieldNumber, int size) {
+    return CodedOutputStream.computeTagSize(fieldNumber)
+        + CodedOutputStream.computeUInt32SizeNoTag(size)
+        + size;
+  }
+
+  private static void writeLengthDelimitedTag(CodedOutputStream out, int fieldNumber, int size)
+      throws IOException {
+    out.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    out.writeUInt32NoTag(size);
+  }
+
+  private static final class AttributesSizer implements KeyValueConsumer<AttributeValue> {
+    private final int fieldNumber;
+    private int size;
+
+    AttributesSizer(int fieldNumber) {
+      this.fieldNumber = fieldNumber;
+    }
+
+    @Override
+    public void consume(String key, AttributeValue value) {
+      size += computeLengthDelimitedSize(fieldNumber, computeKeyValueSize(key, value));
+    }
+  }
+
+  private static final class AttributesWriter implements KeyValueConsumer<AttributeValue> {
+    private final CodedOutputStream out;
+    private final int fieldNumber;
+    private IOException error;
+
+    AttributesWriter(CodedOutputStream out, int fieldNumber) {
+      this.out = out;
+      this.fieldNumber = fieldNumber;
+    }
+
+    @Override
+    public void consume(String key, AttributeValue value) {
+      if (error != null) {
+        return;
+      }
+      try {
+        writeKeyValue(out, fieldNumber, key, value);
+      } catch (IOException e) {
+        error = e;
+      }
+    }
+  }
+
+  private static final class EncodingChunk {
+    private byte[] array;
+    private int position;
+  }
+}
@@ -0,0 +1,143 @@
+package com.lightstep.opentelemetry.exporter;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Bounded lock-free multi-producer/single-consumer queue backed by a preallocated ring of slots.
+ *
+ * <p>Producers claim a slot by incrementing the producer index with a CAS, then publish their
+ * element into it. The single consumer takes elements in claim order, waiting for a claimed slot
+ * to be published before moving past it. Offering never blocks: it fails when the ring is full.
+ *
+ * @param <E> the type of elements
+ */
+@ThreadSafe
+final class SpanRingBuffer<E> {
+  private final AtomicReferenceArray<E> slots;
+  private final int mask;
+  private final PaddedAtomicLong producerIndex = new PaddedAtomicLong();
+  private final PaddedAtomicLong consumerIndex = new PaddedAtomicLong();
+  // Last consumer index seen by producers, so they rarely read the consumer's cache line.
+  private volatile long consumerIndexCache;
+
+  /**
+   * Creates a ring buffer holding at least the given number of elements.
+   *
+   * @param capacity the minimum capacity, rounded up to a power of two
+   */
+  SpanRingBuffer(int capacity) {
+    if (capacity <= 0 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+    }
+    final int size = Integer.highestOneBit(capacity - 1) << 1;
+    this.slots = new AtomicReferenceArray<>(Math.max(size, 1));
+    this.mask = slots.length() - 1;
+  }
+
+  /**
+   * Adds an element, from any thread.
+   *
+   * @param element the element to be added
+   * @return {@code false} if the ring is full
+   */
+  boolean offer(E element) {
+    final int capacity = mask + 1;
+    long index;
+    do {
+      index = producerIndex.get();
+      if (index - consumerIndexCache >= capacity) {
+        consumerIndexCache = consumerIndex.get();
+        if (index - consumerIndexCache >= capacity) {
+          return false;
+        }
+      }
+    } while (!producerIndex.compareAndSet(index, index + 1));
+    slots.lazySet((int) index & mask, element);
+    return true;
+  }
+
+  /**
+   * Removes the next element, from the consumer thread only.
+   *
+   * @return the element, or {@code null} if the ring is empty or the next element is still being
+   * published
+   */
+  @Nullable
+  E poll() {
+    final long index = consumerIndex.get();
+    final int offset = (int) index & mask;
+    final E element = slots.get(offset);
+    if (element == null) {
+      return null;
+    }
+    slots.lazySet(offset, null);
+    consumerIndex.lazySet(index + 1);
+    return element;
+  }
+
+  /**
+   * Moves up to the given number of elements into the collection, from the consumer thread only.
+   *
+   * @param collection the collection receiving the elements
+   * @param maxElements the maximum number of elements to move
+   * @return the number of elements moved
+   */
+  int drainTo(Collection<? super E> collection, int maxElements) {
+    int count = 0;
+    while (count < maxElements) {
+      final E element = poll();
+      if (element == null) {
+        break;
+      }
+      collection.add(element);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of elements claimed by producers and not yet consumed.
+   */
+  int size() {
+    return (int) Math.max(0, producerIndex.get() - consumerIndex.get());
+  }
+
+  /**
+   * Returns the number of elements this ring can hold.
+   */
+  int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Returns the number of elements ever offered successfully.
+   */
+  long getProducerIndex() {
+    return producerIndex.get();
+  }
+
+  /**
+   * Returns the number of elements ever consumed.
+   */
+  long getConsumerIndex() {
+    return consumerIndex.get();
+  }
+
+  /**
+   * Keeps the hot indices of producers and of the consumer on distinct cache lines.
+   */
+  @SuppressWarnings({"serial", "unused"})
+  private static final class PaddedAtomicLong extends AtomicLong {
+    private long p1;
+    private long p2;
+    private long p3;
+    private long p4;
+    private long p5;
+    private long p6;
+    private long p7;
+  }
+}
@@ -0,0 +1,123 @@
+package com.lightstep.opentelemetry.exporter;
+
+import com.lightstep.tracer.grpc.ReportRequest;
+import io.opentelemetry.sdk.trace.export.SpanExporter.ResultCode;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Replays the reports of a {@link DiskSpool} on a single daemon thread, oldest first and at most
+ * at the configured rate. A replayed report is removed from the spool once sent, or once it failed
+ * in a way retrying would not fix; it is replayed again on the next run otherwise.
+ */
+@ThreadSafe
+final class SpoolDrainer {
+  private static final Logger logger = Logger.getLogger(SpoolDrainer.class.getName());
+
+  /**
+   * Sends the replayed reports.
+   */
+  interface Replayer {
+    /**
+     * Returns whether reports can be replayed now, the collector being deemed reachable.
+     */
+    boolean canReplay();
+
+    /**
+     * Sends a spooled report.
+     *
+     * @param request the spooled report
+     * @return the result of the report
+     */
+    ReportTransport.Result replay(ReportRequest request);
+  }
+
+  private final DiskSpool spool;
+  private final long drainDelayMillis;
+  private final Replayer replayer;
+  private final ScheduledExecutorService drainer;
+
+  /**
+   * Creates a new drainer, which only replays reports once started.
+   *
+   * @param spool the spool to be drained
+   * @param drainRate the maximum number of reports replayed per second
+   * @param replayer the replayer sending the reports
+   */
+  SpoolDrainer(DiskSpool spool, int drainRate, Replayer replayer) {
+    this.spool = spool;
+    this.drainDelayMillis = Math.max(1, 1000 / drainRate);
+    this.replayer = replayer;
+    this.drainer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "lightstep-spool-drainer");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Starts replaying the spooled reports.
+   */
+  void start() {
+    drainer.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        drain();
+      }
+    }, drainDelayMillis, drainDelayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Replays the oldest spooled report, if the replayer can. Its replay may be the probe of an open
+   * circuit breaker, so the spool is drained even when the application stopped exporting.
+   */
+  private void drain() {
+    try {
+      if (spool.getPendingReports() == 0 || !replayer.canReplay()) {
+        return;
+      }
+      final ReportRequest request = spool.peek();
+      if (request == null) {
+        return;
+      }
+      final ReportTransport.Result result = replayer.replay(request);
+      if (result.getResultCode() == ResultCode.SUCCESS) {
+        spool.commit();
+      } else if (!result.isRetryable()) {
+        spool.skip();
+      }
+    } catch (Throwable e) {
+      // Keep draining on the next run.
+      logger.log(Level.WARNING, "Failed to replay a spooled report", e);
+    }
+  }
+
+  DiskSpool getSpool() {
+    return spool;
+  }
+
+  /**
+   * Stops replaying reports, waiting for the current replay to complete, then shuts the spool down.
+   *
+   * @param timeoutMillis the maximum time to wait for the current replay, and then for the spool
+   */
+  void shutdown(long timeoutMillis) {
+    drainer.shutdown();
+    // A replay completing after the spool is closed could not be committed, and would be replayed
+    // again on restart.
+    try {
+      drainer.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    spool.shutdown(timeoutMillis);
+  }
+}
@@ -0,0 +1,172 @@
+package com.lightstep.opentelemetry.exporter;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.trace.TraceId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Keeps whole traces based on all their spans rather than on their root, so that only interesting
+ * traces are converted and sent.
+ *
+ * <p>The spans of a trace are held until one of them is kept by a {@link TailSamplingRule}, at
+ * which point they are released along with the spans of the trace ending afterwards. Traces no
+ * rule kept within the decision wait of their first span are dropped, as are their later spans.
+ *
+ * <p>Memory is bounded by the maximum number of held spans: once exceeded, the oldest traces are
+ * dropped early. The outcome of the most recent traces, as many as the maximum number of held
+ * spans, is remembered for their late spans. Each span is handled in constant time: held traces
+ * are ordered by their first span, so expired traces are found at the head.
+ */
+@ThreadSafe
+final class TailSampler {
+  private final long decisionWaitNanos;
+  private final int maxSpans;
+  private final TailSamplingRule[] rules;
+  private final ExporterMetrics metrics;
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
+  private final LinkedHashMap<TraceId, PendingTrace> pending = new LinkedHashMap<>();
+  @GuardedBy("lock")
+  private final LinkedHashMap<TraceId, Boolean> decisions;
+  @GuardedBy("lock")
+  private int pendingSpans;
+
+  /**
+   * Creates a new sampler.
+   *
+   * @param decisionWaitMillis the maximum time a trace is held for a rule to keep it
+   * @param maxSpans the maximum number of held spans
+   * @param rules the rules keeping traces
+   * @param metrics the metrics recording the spans sampled out
+   */
+  TailSampler(long decisionWaitMillis, final int maxSpans, List<TailSamplingRule> rules,
+      ExporterMetrics metrics) {
+    if (maxSpans <= 0) {
+      throw new IllegalArgumentException("Invalid max spans: " + maxSpans);
+    }
+    this.decisionWaitNanos = TimeUnit.MILLISECONDS.toNanos(decisionWaitMillis);
+    this.maxSpans = maxSpans;
+    this.rules = rules.toArray(new TailSamplingRule[0]);
+    this.metrics = metrics;
+    this.decisions = new LinkedHashMap<TraceId, Boolean>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<TraceId, Boolean> eldest) {
+        return size() > maxSpans;
+      }
+    };
+  }
+
+  /**
+   * Adds ended spans, holding those of undecided traces and dropping those of traces sampled out.
+   *
+   * @param spans the spans to be sampled
+   * @return the spans of kept traces, which are to be exported
+   */
+  List<SpanData> add(Collection<SpanData> spans) {
+    final List<SpanData> kept = new ArrayList<>();
+    synchronized (lock) {
+      final long nowNanos = System.nanoTime();
+      expire(nowNanos);
+      for (SpanData span : spans) {
+        final TraceId traceId = span.getTraceId();
+        final Boolean decision = decisions.get(traceId);
+        if (decision != null) {
+          if (decision) {
+            kept.add(span);
+          } else {
+            metrics.recordSampledOutSpans(1);
+          }
+          continue;
+        }
+
+        PendingTrace trace = pending.get(traceId);
+        if (keep(span)) {
+          if (trace != null) {
+            pending.remove(traceId);
+            pendingSpans -= trace.spans.size();
+            kept.addAll(trace.spans);
+          }
+          kept.add(span);
+          decisions.put(traceId, Boolean.TRUE);
+          continue;
+        }
+
+        if (trace == null) {
+          trace = new PendingTrace(nowNanos);
+          pending.put(traceId, trace);
+        }
+        trace.spans.add(span);
+        if (++pendingSpans > maxSpans) {
+          dropHead();
+        }
+      }
+    }
+    return kept;
+  }
+
+  /**
+   * Drops all held spans.
+   */
+  void shutdown() {
+    synchronized (lock) {
+      while (!pending.isEmpty()) {
+        dropHead();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of held spans.
+   */
+  int size() {
+    synchronized (lock) {
+      return pendingSpans;
+    }
+  }
+
+  private boolean keep(SpanData span) {
+    for (TailSamplingRule rule : rules) {
+      if (rule.keep(span)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @GuardedBy("lock")
+  private void expire(long nowNanos) {
+    while (!pending.isEmpty()
+        && nowNanos - pending.values().iterator().next().firstSpanNanos >= decisionWaitNanos) {
+      dropHead();
+    }
+  }
+
+  @GuardedBy("lock")
+  private void dropHead() {
+    final Iterator<Map.Entry<TraceId, PendingTrace>> iterator = pending.entrySet().iterator();
+    final Map.Entry<TraceId, PendingTrace> head = iterator.next();
+    iterator.remove();
+    final int count = head.getValue().spans.size();
+    pendingSpans -= count;
+    metrics.recordSampledOutSpans(count);
+    decisions.put(head.getKey(), Boolean.FALSE);
+  }
+
+  private static final class PendingTrace {
+    final long firstSpanNanos;
+    final List<SpanData> spans = new ArrayList<>(4);
+
+    PendingTrace(long firstSpanNanos) {
+      this.firstSpanNanos = firstSpanNanos;
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package com.lightstep.opentelemetry.exporter;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Decides whether the trace of a span is kept by the tail sampling of a {@link
+ * LightstepSpanExporter}, see {@link
+ * LightstepSpanExporter.Builder#setTailSamplingDecisionWaitMillis(long)}.
+ *
+ * <p>A trace is kept as soon as any rule keeps one of its spans, so rules are only asked about the
+ * spans of traces which are not kept yet. Rules are called by a single thread at a time.
+ */
+public abstract class TailSamplingRule {
+  /**
+   * Returns whether the trace of the given span is kept.
+   *
+   * @param span an ended span of a trace not kept yet
+   * @return {@code true} to keep the whole trace
+   */
+  public abstract boolean keep(SpanData span);
+
+  /**
+   * Returns a rule keeping the traces with an error span, that is a span reported with the {@code
+   * error} tag because its status is not OK.
+   *
+   * @return the rule
+   */
+  public static TailSamplingRule error() {
+    return ErrorRule.INSTANCE;
+  }
+
+  /**
+   * Returns a rule keeping the traces with a span lasting at least the given duration.
+   *
+   * @param minDurationMillis the minimum duration of a span
+   * @return the rule
+   * @throws IllegalArgumentException If the duration is not positive.
+   */
+  public static TailSamplingRule minDuration(long minDurationMillis) {
+    if (minDurationMillis <= 0) {
+      throw new IllegalArgumentException("Invalid min duration millis: " + minDurationMillis);
+    }
+    return new MinDurationRule(TimeUnit.MILLISECONDS.toNanos(minDurationMillis));
+  }
+
+  /**
+   * Returns a rule keeping, for each operation, up to the given number of traces per second with a
+   * span of that operation, so that rare operations are always represented. At most 1024
+   * operations are tracked, the least recently seen ones being forgotten first.
+   *
+   * @param tracesPerSecond the number of traces kept per second and operation
+   * @return the rule
+   * @throws IllegalArgumentException If the rate is not positive.
+   */
+  public static TailSamplingRule operationRateLimit(int tracesPerSecond) {
+    if (tracesPerSecond <= 0) {
+      throw new IllegalArgumentException("Invalid traces per second: " + tracesPerSecond);
+    }
+    return new OperationRateLimitRule(tracesPerSecond);
+  }
+
+  static final class ErrorRule extends TailSamplingRule {
+    static final ErrorRule INSTANCE = new ErrorRule();
+
+    @Override
+    public boolean keep(SpanData span) {
+      return !span.getStatus().isOk();
+    }
+  }
+
+  static final class MinDurationRule extends TailSamplingRule {
+    private final long minDurationNanos;
+
+    MinDurationRule(long minDurationNanos) {
+      this.minDurationNanos = minDurationNanos;
+    }
+
+    @Override
+    public boolean keep(SpanData span) {
+      return span.getEndEpochNanos() - span.getStartEpochNanos() >= minDurationNanos;
+    }
+  }
+
+  /**
+   * Keeps traces with a token bucket per operation name, which holds one second of tokens.
+   */
+  @ThreadSafe
+  static final class OperationRateLimitRule extends TailSamplingRule {
+    static final int MAX_OPERATIONS = 1024;
+
+    private final int tracesPerSecond;
+    private final long nanosPerTrace;
+    @GuardedBy("this")
+    private final Map<String, Bucket> buckets =
+        new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > MAX_OPERATIONS;
+          }
+        };
+
+    OperationRateLimitRule(int tracesPerSecond) {
+      this.tracesPerSecond = tracesPerSecond;
+      this.nanosPerTrace = TimeUnit.SECONDS.toNanos(1) / tracesPerSecond;
+    }
+
+    @Override
+    public synchronized boolean keep(SpanData span) {
+      final long nowNanos = System.nanoTime();
+      Bucket bucket = buckets.get(span.getName());
+      if (bucket == null) {
+        bucket = new Bucket(nowNanos, tracesPerSecond);
+        buckets.put(span.getName(), bucket);
+      }
+      bucket.refill(nowNanos, nanosPerTrace, tracesPerSecond);
+      if (bucket.tokens == 0) {
+        return false;
+      }
+      bucket.tokens--;
+      return true;
+    }
+  }
+
+  private static final class Bucket {
+    long refilledAtNanos;
+    int tokens;
+
+    Bucket(long nowNanos, int tokens) {
+      this.refilledAtNanos = nowNanos;
+      this.tokens = tokens;
+    }
+
+    void refill(long nowNanos, long nanosPerToken, int maxTokens) {
+      final long added = (nowNanos - refilledAtNanos) / nanosPerToken;
+      if (added <= 0) {
+        return;
+      }
+      if (added >= maxTokens - tokens) {
+        tokens = maxTokens;
+        refilledAtNanos = nowNanos;
+      } else {
+        tokens += added;
+        refilledAtNanos += added * nanosPerToken;
+      }
+    }
+  }
+}
@@ -30,6 +30,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.junit.Test;
@@ -132,6 +135,38 @@ public class AdapterTest {
     assertEquals(1, lightStepSpans.size());
   }
 
+  @Test
+  public void testProtoSpans_parallel() {
+    long startMs = System.currentTimeMillis();
+    final List<SpanData> spans = new ArrayList<>();
+    for (int i = 0; i < 1001; i++) {
+      spans.add(getSpanData(startMs + i, startMs + 900));
+    }
+    final List<com.lightstep.tracer.grpc.Span> expected =
+        Adapter.toLightstepSpans(spans, new ArrayList<KeyValue>());
+
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      assertEquals(expected, Adapter.toLightstepSpans(spans, new ArrayList<KeyValue>(), true,
+          null, pool, 4, 100));
+      // Below the threshold
+      assertEquals(expected, Adapter.toLightstepSpans(spans, new ArrayList<KeyValue>(), true,
+          null, pool, 4, 2000));
+    } finally {
+      pool.shutdown();
+    }
+
+    // Chunks rejected by the executor are converted by the calling thread.
+    final Executor rejecting = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        throw new RejectedExecutionException();
+      }
+    };
+    assertEquals(expected, Adapter.toLightstepSpans(spans, new ArrayList<KeyValue>(), true,
+        null, rejecting, 3, 100));
+  }
+
   @Test
   public void testProtoSpan() {
     long duration = 900; // ms
@@ -326,4 +361,24 @@ public class AdapterTest {
     final long spanIdLong2 = Adapter.spanIdToLong(spanId2);
     assertEquals(123456789L, spanIdLong2);
   }
+
+  @Test
+  public void testIdToLongDoesNotAllocate() {
+    final AllocationMeter meter = AllocationMeter.create();
+
+    final TraceId traceId = TraceId.fromLowerBase16(TRACE_ID, 0);
+    final SpanId spanId = SpanId.fromLowerBase16(SPAN_ID, 0);
+    final int iterations = 100000;
+    final long[] sum = new long[1];
+    final long allocated = meter.allocatedBytes(iterations, new Runnable() {
+      @Override
+      public void run() {
+        sum[0] += Adapter.traceIdToLong(traceId) + Adapter.spanIdToLong(spanId);
+      }
+    });
+
+    assertEquals((5208512171318403364L + 14611542L) * 2 * iterations, sum[0]);
+    // allow for a few bytes allocated by the measurement itself, i.e. 0 bytes per conversion
+    assertTrue("Allocated " + allocated + " bytes", allocated < iterations);
+  }
 }
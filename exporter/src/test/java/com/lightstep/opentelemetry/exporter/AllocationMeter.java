@@ -0,0 +1,52 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assume.assumeTrue;
+
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the bytes allocated by an operation on the current thread, skipping the test when the
+ * JVM does not support measuring thread allocations.
+ */
+final class AllocationMeter {
+  private final ThreadMXBean threadMXBean;
+
+  private AllocationMeter(ThreadMXBean threadMXBean) {
+    this.threadMXBean = threadMXBean;
+  }
+
+  /**
+   * Creates a meter, or skips the calling test if allocations cannot be measured.
+   */
+  static AllocationMeter create() {
+    final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof ThreadMXBean);
+    final ThreadMXBean threadMXBean = (ThreadMXBean) bean;
+    assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    return new AllocationMeter(threadMXBean);
+  }
+
+  /**
+   * Runs the operation as many times to warm it up, then returns the bytes it allocated on the
+   * current thread over the given number of iterations.
+   *
+   * @param iterations the number of times the operation runs, both to warm up and to measure
+   * @param operation the measured operation
+   * @return the bytes allocated by all the measured iterations
+   */
+  long allocatedBytes(int iterations, Runnable operation) {
+    // The first calls of a thread allocate its thread-local buffers, and the JIT has yet to
+    // eliminate allocations through escape analysis.
+    for (int i = 0; i < iterations; i++) {
+      operation.run();
+    }
+    final long threadId = Thread.currentThread().getId();
+    final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < iterations; i++) {
+      operation.run();
+    }
+    return threadMXBean.getThreadAllocatedBytes(threadId) - before;
+  }
+}
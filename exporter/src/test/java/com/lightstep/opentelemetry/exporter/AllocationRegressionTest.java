@@ -0,0 +1,134 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.ReportResponse;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.common.Attributes;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.SpanData.Link;
+import io.opentelemetry.sdk.trace.data.test.TestSpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter.ResultCode;
+import io.opentelemetry.trace.Span.Kind;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.TraceId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Fails the build when converting or exporting spans allocates more than a threshold, catching
+ * regressions such as a new collection created per span. Thresholds leave some headroom over the
+ * current allocations and can be overridden with the {@code lightstep.allocation.*} system
+ * properties, e.g. {@code mvn test -Dlightstep.allocation.maxBytesPerSpan=4096}.
+ */
+public class AllocationRegressionTest {
+  private static final long MAX_BYTES_PER_SPAN =
+      Long.getLong("lightstep.allocation.maxBytesPerSpan", 3072);
+  private static final long MAX_BYTES_PER_BATCH =
+      Long.getLong("lightstep.allocation.maxBytesPerBatch", 64 * 1024);
+  private static final int BATCH_SIZE = 100;
+
+  private static final Resource RESOURCE = Resource.create(Attributes.of(
+      "service.name", AttributeValue.stringAttributeValue("checkout"),
+      "service.version", AttributeValue.stringAttributeValue("1.4.2"),
+      "host.name", AttributeValue.stringAttributeValue("checkout-7d9f8b-xk2lp")));
+
+  @Rule
+  public WireMockRule wireMockRule = new WireMockRule(0);
+
+  private static SpanData spanData(int index) {
+    return TestSpanData.newBuilder()
+        .setHasEnded(true)
+        .setTraceId(new TraceId(index, index * 31L))
+        .setSpanId(new SpanId(index))
+        .setParentSpanId(new SpanId(index + 1))
+        .setName("GET /api/v1/orders/{id}")
+        .setStartEpochNanos(1581000000000000000L)
+        .setEndEpochNanos(1581000000012345678L)
+        .setAttributes(Attributes.newBuilder()
+            .setAttribute("http.method", AttributeValue.stringAttributeValue("GET"))
+            .setAttribute("http.url", AttributeValue.stringAttributeValue(
+                "https://checkout.example.com/api/v1/orders/" + index))
+            .setAttribute("http.status_code", AttributeValue.longAttributeValue(200))
+            .setAttribute("net.peer.port", AttributeValue.longAttributeValue(443))
+            .setAttribute("sampled", AttributeValue.booleanAttributeValue(true))
+            .build())
+        .setLinks(Collections.<Link>emptyList())
+        .setKind(Kind.SERVER)
+        .setResource(RESOURCE)
+        .setStatus(Status.OK)
+        .setTotalRecordedEvents(0)
+        .setTotalRecordedLinks(0)
+        .build();
+  }
+
+  @Test
+  public void testToLightstepSpan() {
+    final AllocationMeter meter = AllocationMeter.create();
+    final List<KeyValue> lsSpanAttributes = Collections.singletonList(
+        KeyValue.newBuilder().setKey(LightstepSpanExporter.LIGHTSTEP_HOSTNAME_KEY)
+            .setStringValue("checkout-7d9f8b-xk2lp").build());
+    final ResourceTagsCache resourceTagsCache =
+        new ResourceTagsCache(ResourceTagsCache.DEFAULT_CAPACITY);
+    final SpanData span = spanData(1);
+    final int iterations = 20000;
+
+    final long allocated = meter.allocatedBytes(iterations, new Runnable() {
+      @Override
+      public void run() {
+        Adapter.toLightstepSpan(span, lsSpanAttributes, true, resourceTagsCache);
+      }
+    });
+
+    final long perSpan = allocated / iterations;
+    assertTrue("Allocated " + perSpan + " bytes per span, over " + MAX_BYTES_PER_SPAN,
+        perSpan <= MAX_BYTES_PER_SPAN);
+  }
+
+  @Test
+  public void testExport() throws Exception {
+    final AllocationMeter meter = AllocationMeter.create();
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(200)
+                .withBody(ReportResponse.newBuilder().build().toByteArray())));
+    final LightstepSpanExporter exporter = LightstepSpanExporter.newBuilder()
+        .setAccessToken("token")
+        .setCollectorHost("localhost")
+        .setCollectorPort(wireMockRule.port())
+        .setCollectorProtocol("http")
+        .build();
+    final List<SpanData> batch = new ArrayList<>(BATCH_SIZE);
+    for (int i = 1; i <= BATCH_SIZE; i++) {
+      batch.add(spanData(i));
+    }
+    final int iterations = 50;
+    final int[] failures = new int[1];
+
+    final long allocated = meter.allocatedBytes(iterations, new Runnable() {
+      @Override
+      public void run() {
+        if (exporter.export(batch) != ResultCode.SUCCESS) {
+          failures[0]++;
+        }
+      }
+    });
+    exporter.shutdown();
+
+    assertEquals(0, failures[0]);
+    final long perBatch = allocated / iterations;
+    assertTrue("Allocated " + perBatch + " bytes per batch of " + BATCH_SIZE + " spans, over "
+        + MAX_BYTES_PER_BATCH, perBatch <= MAX_BYTES_PER_BATCH);
+  }
+}
@@ -0,0 +1,85 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+public class BufferPoolTest {
+
+  @Test
+  public void testReuse() {
+    final BufferPool pool = new BufferPool(2, 1024 * 1024);
+
+    final ByteBuffer first = pool.acquire(10000);
+    assertTrue(first.capacity() >= 10000);
+    first.position(100);
+    pool.release(first);
+
+    final ByteBuffer second = pool.acquire(5000);
+    assertSame(first, second);
+    assertEquals(0, second.position());
+    assertEquals(second.capacity(), second.limit());
+    assertEquals(1, pool.getAllocationCount());
+  }
+
+  @Test
+  public void testRoundsUpCapacity() {
+    final BufferPool pool = new BufferPool(1, 1024 * 1024);
+
+    assertEquals(4096, pool.acquire(1).capacity());
+    assertEquals(16384, pool.acquire(10000).capacity());
+    assertEquals(16384, pool.acquire(16384).capacity());
+  }
+
+  @Test
+  public void testGrowsPastSmallBuffers() {
+    final BufferPool pool = new BufferPool(1, 1024 * 1024);
+    final ByteBuffer small = pool.acquire(100);
+    pool.release(small);
+
+    final ByteBuffer large = pool.acquire(100000);
+    assertNotSame(small, large);
+    assertEquals(0, pool.size());
+    pool.release(large);
+
+    assertSame(large, pool.acquire(100));
+    assertEquals(2, pool.getAllocationCount());
+  }
+
+  @Test
+  public void testTrimsOversizedBuffers() {
+    final BufferPool pool = new BufferPool(2, 64 * 1024);
+
+    final ByteBuffer oversized = pool.acquire(100000);
+    assertEquals(100000, oversized.capacity());
+    pool.release(oversized);
+    assertEquals(0, pool.size());
+
+    // Capped to the retained capacity rather than rounded past it
+    final ByteBuffer capped = pool.acquire(40000);
+    assertEquals(64 * 1024, capped.capacity());
+    pool.release(capped);
+    assertEquals(1, pool.size());
+  }
+
+  @Test
+  public void testMaxPoolSize() {
+    final BufferPool pool = new BufferPool(1, 1024 * 1024);
+    final ByteBuffer first = pool.acquire(100);
+    final ByteBuffer second = pool.acquire(100);
+
+    pool.release(first);
+    pool.release(second);
+
+    assertEquals(1, pool.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPoolSize() {
+    new BufferPool(0, 1024);
+  }
+}
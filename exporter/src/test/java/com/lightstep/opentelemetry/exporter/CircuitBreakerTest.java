@@ -0,0 +1,84 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.lightstep.opentelemetry.exporter.CircuitBreaker.State;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+  private final ExporterMetrics metrics = new ExporterMetrics(0);
+
+  @Test
+  public void testOpensAfterConsecutiveFailures() {
+    final CircuitBreaker breaker = new CircuitBreaker(3, 60000, metrics);
+    breaker.onFailure();
+    breaker.onFailure();
+    // A success resets the count.
+    breaker.onSuccess();
+    breaker.onFailure();
+    breaker.onFailure();
+    assertEquals(State.CLOSED, breaker.getState());
+    assertTrue(breaker.allowExport());
+
+    breaker.onFailure();
+    assertEquals(State.OPEN, breaker.getState());
+    assertFalse(breaker.allowExport());
+  }
+
+  @Test
+  public void testHalfOpen_probeSucceeds() throws Exception {
+    final CircuitBreaker breaker = new CircuitBreaker(1, 50, metrics);
+    breaker.onFailure();
+    assertFalse(breaker.allowExport());
+
+    Thread.sleep(60);
+    assertTrue(breaker.allowExport());
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    // A single probe at a time.
+    assertFalse(breaker.allowExport());
+
+    breaker.onSuccess();
+    assertEquals(State.CLOSED, breaker.getState());
+    assertTrue(breaker.allowExport());
+  }
+
+  @Test
+  public void testHalfOpen_probeFails() throws Exception {
+    final CircuitBreaker breaker = new CircuitBreaker(5, 50, metrics);
+    for (int i = 0; i < 5; i++) {
+      breaker.onFailure();
+    }
+    Thread.sleep(60);
+    assertTrue(breaker.allowExport());
+
+    // A single failure opens the half-open breaker again.
+    breaker.onFailure();
+    assertEquals(State.OPEN, breaker.getState());
+    assertFalse(breaker.allowExport());
+  }
+
+  @Test
+  public void testHalfOpen_lostProbe() throws Exception {
+    final CircuitBreaker breaker = new CircuitBreaker(1, 50, metrics);
+    breaker.onFailure();
+    Thread.sleep(60);
+    assertTrue(breaker.allowExport());
+
+    // The probe never completed, another one is let through.
+    Thread.sleep(60);
+    assertTrue(breaker.allowExport());
+    assertEquals(State.HALF_OPEN, breaker.getState());
+  }
+
+  @Test
+  public void testDisabled() {
+    final CircuitBreaker breaker = new CircuitBreaker(0, 60000, metrics);
+    for (int i = 0; i < 100; i++) {
+      breaker.onFailure();
+    }
+    assertEquals(State.CLOSED, breaker.getState());
+    assertTrue(breaker.allowExport());
+  }
+}
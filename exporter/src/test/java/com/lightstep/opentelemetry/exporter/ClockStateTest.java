@@ -0,0 +1,36 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ClockStateTest {
+  @Test
+  public void testNoSample() {
+    assertEquals(0, new ClockState().getOffsetMicros());
+  }
+
+  @Test
+  public void testShortestRoundTrip() {
+    final ClockState clockState = new ClockState();
+    clockState.addSample(5000, 2000);
+    assertEquals(5000, clockState.getOffsetMicros());
+
+    clockState.addSample(4000, 500);
+    clockState.addSample(9000, 3000);
+    assertEquals(4000, clockState.getOffsetMicros());
+  }
+
+  @Test
+  public void testOldestSampleReplaced() {
+    final ClockState clockState = new ClockState();
+    clockState.addSample(-7000, 100);
+    for (int i = 1; i < ClockState.MAX_SAMPLES; i++) {
+      clockState.addSample(i, 1000 + i);
+    }
+    assertEquals(-7000, clockState.getOffsetMicros());
+
+    clockState.addSample(42, 5000);
+    assertEquals(1, clockState.getOffsetMicros());
+  }
+}
@@ -0,0 +1,91 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class CompletableResultCodeTest {
+
+  @Test
+  public void testSucceed() {
+    final CompletableResultCode result = new CompletableResultCode();
+    assertFalse(result.isDone());
+    assertFalse(result.isSuccess());
+
+    result.succeed();
+    assertTrue(result.isDone());
+    assertTrue(result.isSuccess());
+
+    // Completes only once
+    result.fail();
+    assertTrue(result.isSuccess());
+  }
+
+  @Test
+  public void testFail() {
+    final CompletableResultCode result = CompletableResultCode.ofFailure();
+    assertTrue(result.isDone());
+    assertFalse(result.isSuccess());
+  }
+
+  @Test
+  public void testWhenComplete() {
+    final AtomicInteger calls = new AtomicInteger();
+    final Runnable action = new Runnable() {
+      @Override
+      public void run() {
+        calls.incrementAndGet();
+      }
+    };
+
+    final CompletableResultCode result = new CompletableResultCode().whenComplete(action);
+    assertEquals(0, calls.get());
+    result.succeed();
+    assertEquals(1, calls.get());
+    result.succeed();
+    assertEquals(1, calls.get());
+
+    result.whenComplete(action);
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void testJoin() throws Exception {
+    final CompletableResultCode result = new CompletableResultCode();
+    new Thread(new Runnable() {
+      @Override
+      public void run() {
+        result.succeed();
+      }
+    }).start();
+
+    assertTrue(result.join(10, TimeUnit.SECONDS).isSuccess());
+    assertFalse(new CompletableResultCode().join(10, TimeUnit.MILLISECONDS).isDone());
+  }
+
+  @Test
+  public void testOfAll() {
+    final CompletableResultCode first = new CompletableResultCode();
+    final CompletableResultCode second = new CompletableResultCode();
+    final CompletableResultCode all = CompletableResultCode.ofAll(Arrays.asList(first, second));
+
+    first.succeed();
+    assertFalse(all.isDone());
+    second.succeed();
+    assertTrue(all.isSuccess());
+
+    final CompletableResultCode failed = CompletableResultCode.ofAll(
+        Arrays.asList(CompletableResultCode.ofSuccess(), CompletableResultCode.ofFailure()));
+    assertTrue(failed.isDone());
+    assertFalse(failed.isSuccess());
+
+    assertTrue(CompletableResultCode.ofAll(Collections.<CompletableResultCode>emptyList())
+        .isSuccess());
+  }
+}
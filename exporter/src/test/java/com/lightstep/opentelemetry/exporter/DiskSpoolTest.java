@@ -0,0 +1,180 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.lightstep.tracer.grpc.Auth;
+import com.lightstep.tracer.grpc.InternalMetrics;
+import com.lightstep.tracer.grpc.MetricsSample;
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.Span;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiskSpoolTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final ExporterMetrics metrics = new ExporterMetrics(0);
+
+  private static ReportRequestBody report(String operationName, int spanCount) {
+    final ReportRequest.Builder request = ReportRequest.newBuilder();
+    for (int i = 0; i < spanCount; i++) {
+      request.addSpans(Span.newBuilder().setOperationName(operationName));
+    }
+    return ReportRequestBody.create(request.build(), null, null);
+  }
+
+  private static String operationName(ReportRequest request) {
+    return request.getSpans(0).getOperationName();
+  }
+
+  private Map<String, Long> counts() {
+    final InternalMetrics sample = metrics.sample();
+    final Map<String, Long> counts = new HashMap<>();
+    for (MetricsSample count : sample.getCountsList()) {
+      counts.put(count.getName(), count.getIntValue());
+    }
+    return counts;
+  }
+
+  private int segmentCount(File directory) {
+    int count = 0;
+    for (String name : directory.list()) {
+      if (name.startsWith(DiskSpool.SEGMENT_PREFIX)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Test
+  public void testReplay() throws Exception {
+    final DiskSpool spool =
+        new DiskSpool(temporaryFolder.getRoot(), 1024 * 1024, 64 * 1024, metrics);
+    spool.write(report("first", 1));
+    spool.write(report("second", 2));
+    assertEquals(2, spool.getPendingReports());
+
+    assertEquals("first", operationName(spool.peek()));
+    // The same report until committed.
+    assertEquals("first", operationName(spool.peek()));
+    spool.commit();
+    final ReportRequest second = spool.peek();
+    assertEquals("second", operationName(second));
+    assertEquals(2, second.getSpansCount());
+    spool.commit();
+
+    assertNull(spool.peek());
+    assertEquals(0, spool.getPendingReports());
+    final Map<String, Long> counts = counts();
+    assertEquals(Long.valueOf(2), counts.get(ExporterMetrics.SPOOL_WRITTEN));
+    assertEquals(Long.valueOf(2), counts.get(ExporterMetrics.SPOOL_REPLAYED));
+  }
+
+  @Test
+  public void testWrite_withoutAuth() throws Exception {
+    final File directory = temporaryFolder.getRoot();
+    final DiskSpool spool = new DiskSpool(directory, 1024 * 1024, 64 * 1024, metrics);
+    final ReportRequest request = ReportRequest.newBuilder()
+        .setAuth(Auth.newBuilder().setAccessToken("secret-token"))
+        .addSpans(Span.newBuilder().setOperationName("first"))
+        .build();
+    spool.write(ReportRequestBody.create(request, null, null).withTimestampOffset(1000));
+
+    for (File segment : directory.listFiles()) {
+      final String content = new String(Files.readAllBytes(segment.toPath()),
+          StandardCharsets.ISO_8859_1);
+      assertFalse(content.contains("secret-token"));
+    }
+    final ReportRequest replayed = spool.peek();
+    assertEquals("first", operationName(replayed));
+    assertFalse(replayed.hasAuth());
+    assertEquals(0, replayed.getTimestampOffsetMicros());
+  }
+
+  @Test
+  public void testRecovery() throws Exception {
+    final File directory = temporaryFolder.getRoot();
+    final DiskSpool spool = new DiskSpool(directory, 1024 * 1024, 64 * 1024, metrics);
+    spool.write(report("first", 1));
+    spool.write(report("second", 1));
+    spool.write(report("third", 1));
+    spool.peek();
+    spool.commit();
+    spool.shutdown(1000);
+
+    final DiskSpool recovered = new DiskSpool(directory, 1024 * 1024, 64 * 1024, metrics);
+    assertEquals(2, recovered.getPendingReports());
+    assertEquals("second", operationName(recovered.peek()));
+    recovered.commit();
+    // New reports go after the recovered ones.
+    recovered.write(report("fourth", 1));
+    assertEquals("third", operationName(recovered.peek()));
+    recovered.commit();
+    assertEquals("fourth", operationName(recovered.peek()));
+    recovered.commit();
+    assertNull(recovered.peek());
+    // Only the segment being written is left.
+    assertEquals(1, segmentCount(directory));
+    recovered.shutdown(1000);
+  }
+
+  @Test
+  public void testMaxBytes() throws Exception {
+    final File directory = temporaryFolder.getRoot();
+    final DiskSpool spool = new DiskSpool(directory, 2048, 1024, metrics);
+    for (int i = 0; i < 20; i++) {
+      spool.write(report(String.format("report %02d", i), 10));
+    }
+
+    // The oldest segments were dropped along with their spans.
+    assertEquals(2, segmentCount(directory));
+    final long pending = spool.getPendingReports();
+    assertTrue(pending < 20);
+    assertEquals(Long.valueOf((20 - pending) * 10), counts().get(ExporterMetrics.SPANS_DROPPED));
+    assertEquals(String.format("report %02d", 20 - pending), operationName(spool.peek()));
+  }
+
+  @Test
+  public void testReportLargerThanSegment() throws Exception {
+    final DiskSpool spool = new DiskSpool(temporaryFolder.getRoot(), 2048, 1024, metrics);
+    spool.write(report("a report larger than a segment", 100));
+
+    assertEquals(0, spool.getPendingReports());
+    assertEquals(Long.valueOf(100), counts().get(ExporterMetrics.SPANS_DROPPED));
+  }
+
+  @Test
+  public void testSkip() throws Exception {
+    final DiskSpool spool =
+        new DiskSpool(temporaryFolder.getRoot(), 1024 * 1024, 64 * 1024, metrics);
+    spool.write(report("refused", 3));
+    spool.peek();
+    spool.skip();
+
+    assertNull(spool.peek());
+    assertEquals(Long.valueOf(3), counts().get(ExporterMetrics.SPANS_DROPPED));
+  }
+
+  @Test
+  public void testAppend() throws Exception {
+    final DiskSpool spool =
+        new DiskSpool(temporaryFolder.getRoot(), 1024 * 1024, 64 * 1024, metrics);
+    assertTrue(spool.append(report("appended", 1)));
+    // Pending appends are written before the spool is closed.
+    spool.shutdown(10000);
+
+    final DiskSpool recovered =
+        new DiskSpool(temporaryFolder.getRoot(), 1024 * 1024, 64 * 1024, metrics);
+    assertEquals("appended", operationName(recovered.peek()));
+  }
+}
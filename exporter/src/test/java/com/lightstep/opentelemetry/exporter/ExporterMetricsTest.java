@@ -0,0 +1,106 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.lightstep.tracer.grpc.InternalMetrics;
+import com.lightstep.tracer.grpc.MetricsSample;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class ExporterMetricsTest {
+
+  private static Map<String, MetricsSample> byName(List<MetricsSample> samples) {
+    final Map<String, MetricsSample> byName = new HashMap<>();
+    for (MetricsSample sample : samples) {
+      byName.put(sample.getName(), sample);
+    }
+    return byName;
+  }
+
+  @Test
+  public void testSample() {
+    final ExporterMetrics metrics = new ExporterMetrics(0);
+    metrics.recordReport(10, 1000, TimeUnit.MILLISECONDS.toNanos(20), true);
+    metrics.recordReport(5, 500, TimeUnit.MILLISECONDS.toNanos(40), true);
+    metrics.recordReport(3, 300, TimeUnit.MILLISECONDS.toNanos(60), false);
+    metrics.recordDroppedSpans(3);
+    metrics.recordDroppedSpans(2);
+    metrics.recordSampledOutSpans(7);
+    metrics.recordDroppedBytes(640);
+    metrics.recordRetry();
+
+    final InternalMetrics sample = metrics.sample();
+    final Map<String, MetricsSample> counts = byName(sample.getCountsList());
+    assertEquals(15, counts.get(ExporterMetrics.SPANS_SENT).getIntValue());
+    assertEquals(5, counts.get(ExporterMetrics.SPANS_DROPPED).getIntValue());
+    assertEquals(7, counts.get(ExporterMetrics.SPANS_SAMPLED_OUT).getIntValue());
+    assertEquals(640, counts.get(ExporterMetrics.SPANS_DROPPED_BYTES).getIntValue());
+    assertEquals(1500, counts.get(ExporterMetrics.BYTES_SENT).getIntValue());
+    assertEquals(2, counts.get(ExporterMetrics.REPORTS_SENT).getIntValue());
+    assertEquals(1, counts.get(ExporterMetrics.REPORTS_FAILED).getIntValue());
+    assertEquals(1, counts.get(ExporterMetrics.REPORTS_RETRIED).getIntValue());
+    final Map<String, MetricsSample> gauges = byName(sample.getGaugesList());
+    assertEquals(40,
+        gauges.get(ExporterMetrics.REPORT_LATENCY_MEAN_MILLIS).getDoubleValue(), 0.001);
+    assertEquals(60,
+        gauges.get(ExporterMetrics.REPORT_LATENCY_MAX_MILLIS).getDoubleValue(), 0.001);
+    assertTrue(sample.hasStartTimestamp());
+  }
+
+  @Test
+  public void testSample_circuitBreaker() {
+    final ExporterMetrics metrics = new ExporterMetrics(0);
+    metrics.recordCircuitTransition(CircuitBreaker.State.OPEN);
+    metrics.recordCircuitTransition(CircuitBreaker.State.HALF_OPEN);
+    metrics.recordCircuitTransition(CircuitBreaker.State.OPEN);
+
+    final InternalMetrics sample = metrics.sample();
+    final Map<String, MetricsSample> counts = byName(sample.getCountsList());
+    assertEquals(2, counts.get(ExporterMetrics.CIRCUIT_OPENED).getIntValue());
+    assertEquals(1, counts.get(ExporterMetrics.CIRCUIT_HALF_OPENED).getIntValue());
+    assertEquals(0, counts.get(ExporterMetrics.CIRCUIT_CLOSED).getIntValue());
+    final Map<String, MetricsSample> gauges = byName(sample.getGaugesList());
+    assertEquals(CircuitBreaker.State.OPEN.ordinal(),
+        gauges.get(ExporterMetrics.CIRCUIT_STATE).getDoubleValue(), 0);
+  }
+
+  @Test
+  public void testSample_resetsCounts() {
+    final ExporterMetrics metrics = new ExporterMetrics(0);
+    metrics.recordReport(10, 1000, 1000, true);
+    metrics.sample();
+
+    final InternalMetrics sample = metrics.sample();
+    for (MetricsSample count : sample.getCountsList()) {
+      assertEquals(count.getName(), 0, count.getIntValue());
+    }
+    // No latency without reports.
+    final Map<String, MetricsSample> gauges = byName(sample.getGaugesList());
+    assertFalse(gauges.containsKey(ExporterMetrics.REPORT_LATENCY_MEAN_MILLIS));
+    assertFalse(gauges.containsKey(ExporterMetrics.REPORT_LATENCY_MAX_MILLIS));
+  }
+
+  @Test
+  public void testSampleIfDue() throws Exception {
+    final ExporterMetrics metrics = new ExporterMetrics(50);
+    assertNull(metrics.sampleIfDue());
+
+    Thread.sleep(60);
+    final InternalMetrics sample = metrics.sampleIfDue();
+    assertNotNull(sample);
+    assertTrue(sample.getDurationMicros() >= 50000);
+    assertNull(metrics.sampleIfDue());
+  }
+
+  @Test
+  public void testSampleIfDue_disabled() {
+    assertNull(new ExporterMetrics(0).sampleIfDue());
+  }
+}
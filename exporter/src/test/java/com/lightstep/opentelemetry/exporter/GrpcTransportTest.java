@@ -0,0 +1,302 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.Timestamps;
+import com.lightstep.tracer.grpc.CollectorServiceGrpc.CollectorServiceImplBase;
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.common.Attributes;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.test.TestSpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter.ResultCode;
+import io.opentelemetry.trace.Span.Kind;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.TraceId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JUnitParamsRunner.class)
+public class GrpcTransportTest {
+  private final FakeCollector collector = new FakeCollector();
+  private Server server;
+  private ManagedChannel channel;
+
+  @Before
+  public void before() throws Exception {
+    final String serverName = InProcessServerBuilder.generateName();
+    server = InProcessServerBuilder.forName(serverName)
+        .addService(ServerInterceptors.intercept(collector, collector))
+        .build()
+        .start();
+    channel = InProcessChannelBuilder.forName(serverName).build();
+  }
+
+  @After
+  public void after() {
+    channel.shutdownNow();
+    server.shutdownNow();
+  }
+
+  private LightstepSpanExporter.Builder newBuilder() {
+    return LightstepSpanExporter.newBuilder()
+        .setAccessToken("token")
+        .setTransport(LightstepConfig.TRANSPORT_GRPC)
+        .setGrpcChannel(channel);
+  }
+
+  @Test
+  @Parameters(method = "getDirectEncodings")
+  public void testExport(boolean directEncoding) throws Exception {
+    final LightstepSpanExporter exporter = newBuilder()
+        .setDirectEncoding(directEncoding)
+        .build();
+
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans(10)));
+
+    assertEquals(1, collector.requests.size());
+    final ReportRequest request = collector.requests.get(0);
+    assertEquals("token", request.getAuth().getAccessToken());
+    assertEquals(10, request.getSpansCount());
+    assertEquals("span 1", request.getSpans(0).getOperationName());
+    assertEquals("token", collector.accessTokens.get(0));
+  }
+
+  public Object[] getDirectEncodings() {
+    return new Object[]{true, false};
+  }
+
+  @Test
+  public void testExport_gzip() throws Exception {
+    final LightstepSpanExporter exporter = newBuilder()
+        .setCompression(LightstepConfig.COMPRESSION_GZIP)
+        .build();
+
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans(100)));
+
+    assertEquals(100, collector.requests.get(0).getSpansCount());
+  }
+
+  @Test
+  public void testExport_collectorError() throws Exception {
+    collector.response = ReportResponse.newBuilder().addErrors("invalid token").build();
+    final LightstepSpanExporter exporter = newBuilder().build();
+
+    assertEquals(ResultCode.FAILURE, exporter.export(spans(1)));
+  }
+
+  @Test
+  public void testExport_timestampOffset() throws Exception {
+    final Timestamp collectorTime = Timestamps.fromMillis(System.currentTimeMillis() + 10000);
+    collector.response = ReportResponse.newBuilder()
+        .setReceiveTimestamp(collectorTime)
+        .setTransmitTimestamp(collectorTime)
+        .build();
+    final LightstepSpanExporter exporter = newBuilder().build();
+
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans(1)));
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans(1)));
+
+    assertEquals(0, collector.requests.get(0).getTimestampOffsetMicros());
+    assertThat(collector.requests.get(1).getTimestampOffsetMicros())
+        .isBetween(9000000L, 10000000L);
+    assertThat(exporter.getClockState().getOffsetMicros()).isBetween(9000000L, 10000000L);
+  }
+
+  @Test
+  public void testExport_deadline() throws Exception {
+    collector.delayMillis = 1000;
+    final LightstepSpanExporter exporter = newBuilder()
+        .setDeadlineMillis(100)
+        .build();
+
+    assertEquals(ResultCode.FAILURE, exporter.export(spans(1)));
+  }
+
+  @Test
+  public void testExportAsync() throws Exception {
+    collector.delayMillis = 200;
+    final LightstepSpanExporter exporter = newBuilder()
+        .setAsyncExport(true)
+        .build();
+
+    final CompletableResultCode result = exporter.exportAsync(spans(3));
+
+    assertTrue(result.join(10, TimeUnit.SECONDS).isSuccess());
+    assertEquals(3, collector.requests.get(0).getSpansCount());
+  }
+
+  @Test
+  public void testExport_multiplexed() throws Exception {
+    final int delayMillis = 500;
+    collector.delayMillis = delayMillis;
+    final LightstepSpanExporter exporter = newBuilder()
+        .setPipelineChunkSize(3)
+        .setMaxInFlightReports(4)
+        .build();
+
+    final long start = System.nanoTime();
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans(10)));
+    final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // The four reports were in flight at once on the same channel.
+    assertThat(elapsedMillis).isLessThan(4 * delayMillis);
+    assertEquals(4, collector.maxConcurrentReports.get());
+    int spanCount = 0;
+    for (ReportRequest request : collector.requests) {
+      spanCount += request.getSpansCount();
+    }
+    assertEquals(10, spanCount);
+  }
+
+  @Test
+  @Parameters(method = "getAsyncExports")
+  public void testExport_retry(boolean asyncExport) throws Exception {
+    collector.failures.set(2);
+    final LightstepSpanExporter exporter = newBuilder()
+        .setAsyncExport(asyncExport)
+        .setRetryInitialBackoffMillis(10)
+        .build();
+
+    assertTrue(exporter.exportAsync(spans(3)).join(10, TimeUnit.SECONDS).isSuccess());
+
+    assertEquals(1, collector.requests.size());
+    assertEquals(3, collector.attempts.get());
+  }
+
+  public Object[] getAsyncExports() {
+    return new Object[]{false, true};
+  }
+
+  @Test
+  public void testExport_retryPushback() throws Exception {
+    collector.failures.set(1);
+    collector.pushbackMillis = "-1";
+    final LightstepSpanExporter exporter = newBuilder()
+        .setRetryInitialBackoffMillis(10)
+        .build();
+
+    // A negative pushback asks not to retry.
+    assertEquals(ResultCode.FAILURE, exporter.export(spans(1)));
+    assertEquals(1, collector.attempts.get());
+  }
+
+  @Test
+  public void testShutdown() throws Exception {
+    final LightstepSpanExporter exporter = newBuilder().build();
+
+    exporter.shutdown();
+
+    assertTrue(channel.isShutdown());
+    assertEquals(ResultCode.FAILURE, exporter.export(spans(1)));
+  }
+
+  @Test
+  public void testDefaultTransport() throws Exception {
+    final LightstepSpanExporter exporter = LightstepSpanExporter.newBuilder().build();
+
+    assertThat(exporter.getTransport()).isInstanceOf(OkHttpTransport.class);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidTransport() {
+    LightstepSpanExporter.newBuilder().setTransport("udp");
+  }
+
+  private static List<SpanData> spans(int count) {
+    final Resource resource = Resource.create(
+        Attributes.of("service.name", AttributeValue.stringAttributeValue("service")));
+    final List<SpanData> spans = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      spans.add(TestSpanData.newBuilder()
+          .setHasEnded(true)
+          .setTraceId(new TraceId(i, i))
+          .setSpanId(new SpanId(i))
+          .setName("span " + i)
+          .setStartEpochNanos(1581000000000000000L + i)
+          .setEndEpochNanos(1581000000000000000L + i * 1000000L)
+          .setKind(Kind.SERVER)
+          .setResource(resource)
+          .setStatus(Status.OK)
+          .setTotalRecordedEvents(0)
+          .setTotalRecordedLinks(0)
+          .build());
+    }
+    return spans;
+  }
+
+  /**
+   * Collector service recording the reports it receives along with their access token header.
+   */
+  private static final class FakeCollector extends CollectorServiceImplBase
+      implements ServerInterceptor {
+    final List<ReportRequest> requests = new CopyOnWriteArrayList<>();
+    final List<String> accessTokens = new CopyOnWriteArrayList<>();
+    final AtomicInteger concurrentReports = new AtomicInteger();
+    final AtomicInteger maxConcurrentReports = new AtomicInteger();
+    volatile ReportResponse response = ReportResponse.getDefaultInstance();
+    volatile long delayMillis;
+    final AtomicInteger failures = new AtomicInteger();
+    final AtomicInteger attempts = new AtomicInteger();
+    volatile String pushbackMillis;
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+        Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+      accessTokens.add(headers.get(GrpcTransport.ACCESS_TOKEN_KEY));
+      return next.startCall(call, headers);
+    }
+
+    @Override
+    public void report(ReportRequest request, StreamObserver<ReportResponse> responseObserver) {
+      attempts.incrementAndGet();
+      if (failures.getAndDecrement() > 0) {
+        final Metadata trailers = new Metadata();
+        if (pushbackMillis != null) {
+          trailers.put(GrpcTransport.RETRY_PUSHBACK_KEY, pushbackMillis);
+        }
+        responseObserver.onError(io.grpc.Status.UNAVAILABLE.asRuntimeException(trailers));
+        return;
+      }
+      final int concurrent = concurrentReports.incrementAndGet();
+      int max = maxConcurrentReports.get();
+      while (concurrent > max && !maxConcurrentReports.compareAndSet(max, concurrent)) {
+        max = maxConcurrentReports.get();
+      }
+      try {
+        Thread.sleep(delayMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      concurrentReports.decrementAndGet();
+      requests.add(request);
+      responseObserver.onNext(response);
+      responseObserver.onCompleted();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.junit.Test;
+
+public class GzipRequestBodyTest {
+  private static final MediaType MEDIA_TYPE =
+      MediaType.parse(LightstepSpanExporter.MEDIA_TYPE_STRING);
+
+  private static byte[] content() {
+    final byte[] content = new byte[64 * 1024];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) (i % 31);
+    }
+    return content;
+  }
+
+  private static byte[] write(RequestBody body) throws IOException {
+    final Buffer sink = new Buffer();
+    body.writeTo(sink);
+    assertEquals(body.contentLength(), sink.size());
+    return sink.readByteArray();
+  }
+
+  private static byte[] gunzip(byte[] compressed) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      final byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testCompress() throws Exception {
+    final byte[] content = content();
+
+    final GzipRequestBody body =
+        GzipRequestBody.compress(RequestBody.create(content, MEDIA_TYPE), 9);
+
+    assertEquals(MEDIA_TYPE, body.contentType());
+    assertTrue(body.contentLength() < content.length / 10);
+    assertArrayEquals(content, gunzip(write(body)));
+  }
+
+  @Test
+  public void testWriteTwice() throws Exception {
+    final GzipRequestBody body =
+        GzipRequestBody.compress(RequestBody.create(content(), MEDIA_TYPE), -1);
+
+    assertArrayEquals(write(body), write(body));
+  }
+
+  @Test
+  public void testLevel() throws Exception {
+    final byte[] content = content();
+
+    final GzipRequestBody stored =
+        GzipRequestBody.compress(RequestBody.create(content, MEDIA_TYPE), 0);
+
+    assertTrue(stored.contentLength() > content.length);
+    assertArrayEquals(content, gunzip(write(stored)));
+  }
+}
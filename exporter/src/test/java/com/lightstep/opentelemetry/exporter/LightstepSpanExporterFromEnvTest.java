@@ -28,6 +28,35 @@ public class LightstepSpanExporterFromEnvTest {
     System.clearProperty(LightstepConfig.SERVICE_NAME);
     System.clearProperty(LightstepConfig.SERVICE_VERSION);
     System.clearProperty(LightstepConfig.DEADLINE_MILLIS);
+    System.clearProperty(LightstepConfig.BUFFER_POOL_SIZE);
+    System.clearProperty(LightstepConfig.MAX_RETAINED_BUFFER_BYTES);
+    System.clearProperty(LightstepConfig.COMPRESSION);
+    System.clearProperty(LightstepConfig.COMPRESSION_LEVEL);
+    System.clearProperty(LightstepConfig.COMPRESSION_MIN_BYTES);
+    System.clearProperty(LightstepConfig.ASYNC_EXPORT);
+    System.clearProperty(LightstepConfig.MAX_IN_FLIGHT_REPORTS);
+    System.clearProperty(LightstepConfig.PIPELINE_CHUNK_SIZE);
+    System.clearProperty(LightstepConfig.RESOURCE_TAGS_ON_REPORTER);
+    System.clearProperty(LightstepConfig.TRANSPORT);
+    System.clearProperty(LightstepConfig.BATCH_SIZE);
+    System.clearProperty(LightstepConfig.BATCH_DELAY_MILLIS);
+    System.clearProperty(LightstepConfig.MAX_REPORT_BYTES);
+    System.clearProperty(LightstepConfig.CONVERSION_PARALLELISM);
+    System.clearProperty(LightstepConfig.PARALLEL_CONVERSION_THRESHOLD);
+    System.clearProperty(LightstepConfig.INTERNAL_METRICS_INTERVAL_MILLIS);
+    System.clearProperty(LightstepConfig.MAX_RETRIES);
+    System.clearProperty(LightstepConfig.RETRY_INITIAL_BACKOFF_MILLIS);
+    System.clearProperty(LightstepConfig.RETRY_MAX_BACKOFF_MILLIS);
+    System.clearProperty(LightstepConfig.RETRY_BUDGET_PERCENT);
+    System.clearProperty(LightstepConfig.CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+    System.clearProperty(LightstepConfig.CIRCUIT_BREAKER_OPEN_MILLIS);
+    System.clearProperty(LightstepConfig.SPOOL_DIRECTORY);
+    System.clearProperty(LightstepConfig.SPOOL_MAX_BYTES);
+    System.clearProperty(LightstepConfig.SPOOL_DRAIN_RATE);
+    System.clearProperty(LightstepConfig.TAIL_SAMPLING_DECISION_WAIT_MILLIS);
+    System.clearProperty(LightstepConfig.TAIL_SAMPLING_MAX_SPANS);
+    System.clearProperty(LightstepConfig.TAIL_SAMPLING_MIN_DURATION_MILLIS);
+    System.clearProperty(LightstepConfig.TAIL_SAMPLING_OPERATION_RATE);
   }
 
   @Test
@@ -39,6 +68,35 @@ public class LightstepSpanExporterFromEnvTest {
     System.setProperty(LightstepConfig.SERVICE_NAME, "name-from-system-property");
     System.setProperty(LightstepConfig.SERVICE_VERSION, "1.0");
     System.setProperty(LightstepConfig.DEADLINE_MILLIS, "4321");
+    System.setProperty(LightstepConfig.BUFFER_POOL_SIZE, "3");
+    System.setProperty(LightstepConfig.MAX_RETAINED_BUFFER_BYTES, "65536");
+    System.setProperty(LightstepConfig.COMPRESSION, "gzip");
+    System.setProperty(LightstepConfig.COMPRESSION_LEVEL, "1");
+    System.setProperty(LightstepConfig.COMPRESSION_MIN_BYTES, "0");
+    System.setProperty(LightstepConfig.ASYNC_EXPORT, "true");
+    System.setProperty(LightstepConfig.MAX_IN_FLIGHT_REPORTS, "2");
+    System.setProperty(LightstepConfig.PIPELINE_CHUNK_SIZE, "256");
+    System.setProperty(LightstepConfig.RESOURCE_TAGS_ON_REPORTER, "true");
+    System.setProperty(LightstepConfig.TRANSPORT, "grpc");
+    System.setProperty(LightstepConfig.BATCH_SIZE, "512");
+    System.setProperty(LightstepConfig.BATCH_DELAY_MILLIS, "2000");
+    System.setProperty(LightstepConfig.MAX_REPORT_BYTES, "1048576");
+    System.setProperty(LightstepConfig.CONVERSION_PARALLELISM, "4");
+    System.setProperty(LightstepConfig.PARALLEL_CONVERSION_THRESHOLD, "500");
+    System.setProperty(LightstepConfig.INTERNAL_METRICS_INTERVAL_MILLIS, "10000");
+    System.setProperty(LightstepConfig.MAX_RETRIES, "5");
+    System.setProperty(LightstepConfig.RETRY_INITIAL_BACKOFF_MILLIS, "250");
+    System.setProperty(LightstepConfig.RETRY_MAX_BACKOFF_MILLIS, "10000");
+    System.setProperty(LightstepConfig.RETRY_BUDGET_PERCENT, "20");
+    System.setProperty(LightstepConfig.CIRCUIT_BREAKER_FAILURE_THRESHOLD, "3");
+    System.setProperty(LightstepConfig.CIRCUIT_BREAKER_OPEN_MILLIS, "60000");
+    System.setProperty(LightstepConfig.SPOOL_DIRECTORY, "/var/spool/lightstep");
+    System.setProperty(LightstepConfig.SPOOL_MAX_BYTES, "1048576");
+    System.setProperty(LightstepConfig.SPOOL_DRAIN_RATE, "50");
+    System.setProperty(LightstepConfig.TAIL_SAMPLING_DECISION_WAIT_MILLIS, "30000");
+    System.setProperty(LightstepConfig.TAIL_SAMPLING_MAX_SPANS, "50000");
+    System.setProperty(LightstepConfig.TAIL_SAMPLING_MIN_DURATION_MILLIS, "500");
+    System.setProperty(LightstepConfig.TAIL_SAMPLING_OPERATION_RATE, "2");
 
     final Builder builder = Builder.fromEnv();
     assertThat(builder.getCollectorUrl())
@@ -47,6 +105,35 @@ public class LightstepSpanExporterFromEnvTest {
     assertThat(builder.getServiceName()).isEqualTo("name-from-system-property");
     assertThat(builder.getServiceVersion()).isEqualTo("1.0");
     assertThat(builder.getDeadlineMillis()).isEqualTo(4321);
+    assertThat(builder.getBufferPoolSize()).isEqualTo(3);
+    assertThat(builder.getMaxRetainedBufferBytes()).isEqualTo(65536);
+    assertThat(builder.getCompression()).isEqualTo("gzip");
+    assertThat(builder.getCompressionLevel()).isEqualTo(1);
+    assertThat(builder.getCompressionMinBytes()).isEqualTo(0);
+    assertThat(builder.isAsyncExport()).isTrue();
+    assertThat(builder.getMaxInFlightReports()).isEqualTo(2);
+    assertThat(builder.getPipelineChunkSize()).isEqualTo(256);
+    assertThat(builder.isResourceTagsOnReporter()).isTrue();
+    assertThat(builder.getTransport()).isEqualTo("grpc");
+    assertThat(builder.getBatchSize()).isEqualTo(512);
+    assertThat(builder.getBatchDelayMillis()).isEqualTo(2000);
+    assertThat(builder.getMaxReportBytes()).isEqualTo(1048576);
+    assertThat(builder.getConversionParallelism()).isEqualTo(4);
+    assertThat(builder.getParallelConversionThreshold()).isEqualTo(500);
+    assertThat(builder.getInternalMetricsIntervalMillis()).isEqualTo(10000);
+    assertThat(builder.getMaxRetries()).isEqualTo(5);
+    assertThat(builder.getRetryInitialBackoffMillis()).isEqualTo(250);
+    assertThat(builder.getRetryMaxBackoffMillis()).isEqualTo(10000);
+    assertThat(builder.getRetryBudgetPercent()).isEqualTo(20);
+    assertThat(builder.getCircuitBreakerFailureThreshold()).isEqualTo(3);
+    assertThat(builder.getCircuitBreakerOpenMillis()).isEqualTo(60000);
+    assertThat(builder.getSpoolDirectory()).isEqualTo("/var/spool/lightstep");
+    assertThat(builder.getSpoolMaxBytes()).isEqualTo(1048576);
+    assertThat(builder.getSpoolDrainRate()).isEqualTo(50);
+    assertThat(builder.getTailSamplingDecisionWaitMillis()).isEqualTo(30000);
+    assertThat(builder.getTailSamplingMaxSpans()).isEqualTo(50000);
+    assertThat(builder.getTailSamplingMinDurationMillis()).isEqualTo(500);
+    assertThat(builder.getTailSamplingOperationRate()).isEqualTo(2);
   }
 
   @Test
@@ -67,6 +154,7 @@ public class LightstepSpanExporterFromEnvTest {
     Mockito.when(System.getenv(LightstepConfig.SERVICE_NAME)).thenReturn("name-from-env-var");
     Mockito.when(System.getenv(LightstepConfig.SERVICE_VERSION)).thenReturn("1.0");
     Mockito.when(System.getenv(LightstepConfig.DEADLINE_MILLIS)).thenReturn("4321");
+    Mockito.when(System.getenv(LightstepConfig.BUFFER_POOL_SIZE)).thenReturn("0");
 
     final Builder builder = Builder.fromEnv();
     assertThat(builder.getCollectorUrl())
@@ -75,5 +163,8 @@ public class LightstepSpanExporterFromEnvTest {
     assertThat(builder.getServiceName()).isEqualTo("name-from-env-var");
     assertThat(builder.getServiceVersion()).isEqualTo("1.0");
     assertThat(builder.getDeadlineMillis()).isEqualTo(4321);
+    assertThat(builder.getBufferPoolSize()).isEqualTo(0);
+    assertThat(builder.getMaxRetainedBufferBytes())
+        .isEqualTo(LightstepConfig.DEFAULT_MAX_RETAINED_BUFFER_BYTES);
   }
 }
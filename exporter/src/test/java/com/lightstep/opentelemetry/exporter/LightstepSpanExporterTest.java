@@ -8,12 +8,18 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
 import com.github.tomakehurst.wiremock.stubbing.ServeEvent;
 import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.Timestamps;
 import com.lightstep.opentelemetry.exporter.LightstepSpanExporter.Builder;
+import com.lightstep.tracer.grpc.Command;
 import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.MetricsSample;
 import com.lightstep.tracer.grpc.ReportRequest;
 import com.lightstep.tracer.grpc.ReportResponse;
 import com.lightstep.tracer.grpc.Reporter;
@@ -22,6 +28,7 @@ import com.lightstep.tracer.grpc.SpanContext;
 import io.opentelemetry.common.AttributeValue;
 import io.opentelemetry.common.Attributes;
 import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import io.opentelemetry.sdk.trace.data.SpanData.Link;
 import io.opentelemetry.sdk.trace.data.test.TestSpanData;
@@ -30,15 +37,22 @@ import io.opentelemetry.trace.Span.Kind;
 import io.opentelemetry.trace.SpanId;
 import io.opentelemetry.trace.Status;
 import io.opentelemetry.trace.TraceId;
+import io.opentelemetry.trace.Tracer;
+import java.net.ServerSocket;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 
 @RunWith(JUnitParamsRunner.class)
@@ -48,18 +62,1022 @@ public class LightstepSpanExporterTest {
 
   @Rule
   public WireMockRule wireMockRule = new WireMockRule(0);
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Before
+  public void beforeClass() {
+    final byte[] response = ReportResponse.newBuilder().build().toByteArray();
+
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(200).withBody(response)));
+  }
+
+  @Test
+  public void testExport() throws Exception {
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setServiceVersion("1.0")
+            .build();
+
+    long duration = 900; // ms
+    long startMs = System.currentTimeMillis();
+    long endMs = startMs + duration;
+
+    SpanData spanData = spanData(startMs, endMs);
+
+    final ResultCode resultCode = exporter.export(Collections.singletonList(spanData));
+    assertEquals(ResultCode.SUCCESS, resultCode);
+
+    assertEquals(ResultCode.SUCCESS, exporter.flush());
+    exporter.shutdown();
+
+    final List<ServeEvent> events = WireMock.getAllServeEvents();
+    assertEquals(1, events.size());
+    final LoggedRequest loggedRequest = events.get(0).getRequest();
+    assertEquals("token", loggedRequest.getHeader(LightstepSpanExporter.LIGHTSTEP_ACCESS_TOKEN));
+    assertEquals(LightstepSpanExporter.MEDIA_TYPE_STRING, loggedRequest.getHeader("Content-Type"));
+
+    final ReportRequest reportRequest = ReportRequest.parseFrom(loggedRequest.getBody());
+
+    assertEquals("token", reportRequest.getAuth().getAccessToken());
+
+    final Reporter reporter = reportRequest.getReporter();
+    assertEquals(6, reporter.getTagsCount());
+
+    // Verify that "service.version" tag is set to correct value
+    assertTrue(tagEquals(reporter.getTagsList(), LightstepSpanExporter.SERVICE_VERSION_KEY, "1.0"));
+
+    // Verify "lightstep.hostname" is set
+    assertNotNull(
+        getTagValue(reporter.getTagsList(), LightstepSpanExporter.LIGHTSTEP_HOSTNAME_KEY));
+
+    assertEquals(1, reportRequest.getSpansCount());
+    final Span span = reportRequest.getSpans(0);
+    assertEquals("GET /api/endpoint", span.getOperationName());
+    assertEquals(900000L, span.getDurationMicros());
+    assertEquals(5, span.getTagsCount());
+
+    // Verify that Resources are added as tags to span
+    assertTrue(tagEquals(span.getTagsList(), "resource_key", "resource_value"));
+
+    // Verify that "service.version" tag is set to correct value
+    assertTrue(tagEquals(span.getTagsList(), LightstepSpanExporter.SERVICE_VERSION_KEY, "1.0"));
+
+    // Verify "lightstep.hostname" is set
+    assertNotNull(
+        getTagValue(span.getTagsList(), LightstepSpanExporter.LIGHTSTEP_HOSTNAME_KEY));
+
+    final SpanContext spanContext = span.getSpanContext();
+    assertEquals(1302406798037686297L, spanContext.getSpanId());
+    assertEquals(5208512171318403364L, spanContext.getTraceId()); // trimmed id.
+  }
+
+  @Test
+  public void testExport_resourceTagsCache() throws Exception {
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .build();
+
+    long startMs = System.currentTimeMillis();
+    SpanData spanData = spanData(startMs, startMs + 900);
+
+    assertEquals(ResultCode.SUCCESS, exporter.export(Arrays.asList(spanData, spanData)));
+    assertEquals(ResultCode.SUCCESS, exporter.export(Collections.singletonList(spanData)));
+    exporter.shutdown();
+
+    assertEquals(1, exporter.getResourceTagsCacheMisses());
+    assertEquals(2, exporter.getResourceTagsCacheHits());
+
+    final List<ServeEvent> events = WireMock.getAllServeEvents();
+    assertEquals(2, events.size());
+    for (ServeEvent event : events) {
+      final ReportRequest reportRequest = ReportRequest.parseFrom(event.getRequest().getBody());
+      for (Span span : reportRequest.getSpansList()) {
+        assertTrue(tagEquals(span.getTagsList(), "resource_key", "resource_value"));
+      }
+    }
+  }
+
+  @Test
+  public void testExport_resourceTagsCacheDisabled() throws Exception {
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setResourceTagsCacheSize(0)
+            .build();
+
+    long startMs = System.currentTimeMillis();
+    SpanData spanData = spanData(startMs, startMs + 900);
+
+    assertEquals(ResultCode.SUCCESS, exporter.export(Arrays.asList(spanData, spanData)));
+    exporter.shutdown();
+
+    assertEquals(0, exporter.getResourceTagsCacheMisses());
+    assertEquals(0, exporter.getResourceTagsCacheHits());
+  }
+
+  public Object[] getDirectEncodings() {
+    return new Object[]{true, false};
+  }
+
+  public Object[] getAsyncExports() {
+    return new Object[]{false, true};
+  }
+
+  public Object[] getResourceTagsOnReporter() {
+    return new Object[]{false, true};
+  }
+
+  @Test
+  @Parameters(method = "getDirectEncodings")
+  public void testExport_resourceTagsOnReporter(boolean directEncoding) throws Exception {
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setServiceVersion("1.0")
+            .setDirectEncoding(directEncoding)
+            .setResourceTagsOnReporter(true)
+            .build();
+
+    long startMs = System.currentTimeMillis();
+    final SpanData first = spanData(startMs, startMs + 900);
+    final SpanData second = spanData(startMs, startMs + 900, Resource.create(Attributes.of(
+        "resource_key", AttributeValue.stringAttributeValue("other_value"))));
+
+    assertEquals(ResultCode.SUCCESS, exporter.export(Arrays.asList(first, second, first)));
+    exporter.shutdown();
+
+    final List<ServeEvent> events = WireMock.getAllServeEvents();
+    assertEquals(2, events.size());
+
+    int spanCount = 0;
+    for (ServeEvent event : events) {
+      final ReportRequest reportRequest = ReportRequest.parseFrom(event.getRequest().getBody());
+      final Reporter reporter = reportRequest.getReporter();
+      assertEquals(exporter.getReporter().getReporterId(), reporter.getReporterId());
+      assertEquals(7, reporter.getTagsCount());
+      assertTrue(tagEquals(reporter.getTagsList(), LightstepSpanExporter.SERVICE_VERSION_KEY,
+          "1.0"));
+      final String resourceValue = getTagValue(reporter.getTagsList(), "resource_key");
+      assertEquals("resource_value".equals(resourceValue) ? 2 : 1,
+          reportRequest.getSpansCount());
+
+      for (Span span : reportRequest.getSpansList()) {
+        spanCount++;
+        assertEquals(2, span.getTagsCount());
+        assertFalse(tagExist(span.getTagsList(), "resource_key"));
+        assertFalse(tagExist(span.getTagsList(), LightstepSpanExporter.LIGHTSTEP_HOSTNAME_KEY));
+        assertFalse(tagExist(span.getTagsList(), LightstepSpanExporter.SERVICE_VERSION_KEY));
+      }
+    }
+    assertEquals(3, spanCount);
+  }
+
+  @Test
+  public void testResourceTagsOnReporter_payloadSize() throws Exception {
+    final List<SpanData> batch = realisticBatch();
+
+    final long spanTagsBytes = exportedBytes(batch, false);
+    WireMock.resetAllRequests();
+    final long reporterTagsBytes = exportedBytes(batch, true);
+
+    // Each span of the batch carries 12 resource and exporter tags, but only 6 of its own.
+    assertThat(reporterTagsBytes).isLessThan(spanTagsBytes / 2);
+  }
+
+  @Test
+  @Parameters(method = "getDirectEncodings")
+  public void testExport_gzip(boolean directEncoding) throws Exception {
+    final List<SpanData> batch = realisticBatch();
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setDirectEncoding(directEncoding)
+            .setCompression(LightstepConfig.COMPRESSION_GZIP)
+            .setCompressionLevel(9)
+            .build();
+
+    assertEquals(ResultCode.SUCCESS, exporter.export(batch));
+    exporter.shutdown();
+
+    final LoggedRequest request = WireMock.getAllServeEvents().get(0).getRequest();
+    assertEquals("gzip", request.getHeader(LightstepSpanExporter.CONTENT_ENCODING));
+    // WireMock decompresses gzip request bodies
+    final ReportRequest reportRequest = ReportRequest.parseFrom(request.getBody());
+    assertEquals(batch.size(), reportRequest.getSpansCount());
+    final int compressedLength = Integer.parseInt(request.getHeader("Content-Length"));
+    assertThat(compressedLength).isLessThan(reportRequest.getSerializedSize() / 5);
+  }
+
+  @Test
+  public void testExport_gzipBelowMinBytes() throws Exception {
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setCompression(LightstepConfig.COMPRESSION_GZIP)
+            .setCompressionMinBytes(64 * 1024)
+            .build();
+
+    long startMs = System.currentTimeMillis();
+    assertEquals(ResultCode.SUCCESS,
+        exporter.export(Collections.singletonList(spanData(startMs, startMs + 900))));
+    exporter.shutdown();
+
+    final LoggedRequest request = WireMock.getAllServeEvents().get(0).getRequest();
+    assertFalse(request.containsHeader(LightstepSpanExporter.CONTENT_ENCODING));
+    assertEquals(1, ReportRequest.parseFrom(request.getBody()).getSpansCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCompression() {
+    LightstepSpanExporter.newBuilder().setCompression("br");
+  }
+
+  private long exportedBytes(List<SpanData> batch, boolean resourceTagsOnReporter)
+      throws Exception {
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setServiceVersion("1.0.42")
+            .setResourceTagsOnReporter(resourceTagsOnReporter)
+            .build();
+    assertEquals(ResultCode.SUCCESS, exporter.export(batch));
+    exporter.shutdown();
+
+    long bytes = 0;
+    int spanCount = 0;
+    for (ServeEvent event : WireMock.getAllServeEvents()) {
+      bytes += event.getRequest().getBody().length;
+      spanCount += ReportRequest.parseFrom(event.getRequest().getBody()).getSpansCount();
+    }
+    assertEquals(batch.size(), spanCount);
+    return bytes;
+  }
+
+  private List<SpanData> realisticBatch() {
+    final List<SpanData> batch = new ArrayList<>();
+    final Resource[] resources = new Resource[2];
+    for (int i = 0; i < resources.length; i++) {
+      resources[i] = Resource.create(Attributes.newBuilder()
+          .setAttribute("service.name", AttributeValue.stringAttributeValue("checkout-service"))
+          .setAttribute("service.namespace", AttributeValue.stringAttributeValue("shop"))
+          .setAttribute("service.instance.id",
+              AttributeValue.stringAttributeValue("627cc493-f310-47de-96bd-71410b7dec0" + i))
+          .setAttribute("host.name",
+              AttributeValue.stringAttributeValue("ip-10-0-12-34.ec2.internal"))
+          .setAttribute("process.pid", AttributeValue.longAttributeValue(4321 + i))
+          .setAttribute("k8s.pod.name",
+              AttributeValue.stringAttributeValue("checkout-service-7d9f8b6c5-x2k4p"))
+          .setAttribute("k8s.namespace.name", AttributeValue.stringAttributeValue("production"))
+          .setAttribute("telemetry.sdk.name", AttributeValue.stringAttributeValue("opentelemetry"))
+          .setAttribute("telemetry.sdk.language", AttributeValue.stringAttributeValue("java"))
+          .setAttribute("telemetry.sdk.version", AttributeValue.stringAttributeValue("0.7.0"))
+          .build());
+    }
+
+    final long startNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    for (int i = 0; i < 200; i++) {
+      batch.add(TestSpanData.newBuilder()
+          .setHasEnded(true)
+          .setTraceId(new TraceId(i, i * 31L + 7))
+          .setSpanId(new SpanId(i + 1))
+          .setName("GET /api/cart/{id}")
+          .setStartEpochNanos(startNanos + i * 1000L)
+          .setEndEpochNanos(startNanos + i * 1000L + 1234567L)
+          .setAttributes(Attributes.newBuilder()
+              .setAttribute("http.method", AttributeValue.stringAttributeValue("GET"))
+              .setAttribute("http.url",
+                  AttributeValue.stringAttributeValue("https://shop.example.com/api/cart/" + i))
+              .setAttribute("http.status_code", AttributeValue.longAttributeValue(200))
+              .build())
+          .setStatus(Status.OK)
+          .setKind(Kind.SERVER)
+          .setLinks(Collections.<Link>emptyList())
+          .setTotalRecordedLinks(0)
+          .setTotalRecordedEvents(0)
+          .setResource(resources[i % resources.length])
+          .build());
+    }
+    return batch;
+  }
+
+  public String[] getServiceVersions() {
+    return new String[]{null, "", "123"};
+  }
+
+  @Test
+  @Parameters(method = "getServiceVersions")
+  public void testServiceVersion(String serviceVersion) throws Exception {
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setServiceVersion(serviceVersion)
+            .build();
+
+    verifyServiceVersion(exporter, serviceVersion);
+
+  }
+
+  @Test
+  @Parameters(method = "getDirectEncodings")
+  public void testExport_bufferPool(boolean directEncoding) throws Exception {
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setDirectEncoding(directEncoding)
+            .setBufferPoolSize(1)
+            .build();
+
+    long startMs = System.currentTimeMillis();
+    SpanData spanData = spanData(startMs, startMs + 900);
+
+    for (int i = 0; i < 5; i++) {
+      assertEquals(ResultCode.SUCCESS, exporter.export(Collections.singletonList(spanData)));
+    }
+    exporter.shutdown();
+
+    final BufferPool bufferPool = exporter.getBufferPool();
+    assertNotNull(bufferPool);
+    assertEquals(1, bufferPool.getAllocationCount());
+    assertEquals(1, bufferPool.size());
+
+    final List<ServeEvent> events = WireMock.getAllServeEvents();
+    assertEquals(5, events.size());
+    for (ServeEvent event : events) {
+      final ReportRequest reportRequest = ReportRequest.parseFrom(event.getRequest().getBody());
+      assertEquals(1, reportRequest.getSpansCount());
+      assertEquals(spanData.getName(), reportRequest.getSpans(0).getOperationName());
+    }
+  }
+
+  @Test
+  public void testExport_bufferPoolDisabled() throws Exception {
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setBufferPoolSize(0)
+            .build();
+
+    long startMs = System.currentTimeMillis();
+    SpanData spanData = spanData(startMs, startMs + 900);
+
+    assertEquals(ResultCode.SUCCESS, exporter.export(Collections.singletonList(spanData)));
+    exporter.shutdown();
+
+    assertThat(exporter.getBufferPool()).isNull();
+    final ReportRequest reportRequest =
+        ReportRequest.parseFrom(WireMock.getAllServeEvents().get(0).getRequest().getBody());
+    assertEquals(1, reportRequest.getSpansCount());
+  }
+
+  @Test
+  @Parameters(method = "getResourceTagsOnReporter")
+  public void testExportAsync(boolean resourceTagsOnReporter) throws Exception {
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(200).withFixedDelay(500)
+                .withBody(ReportResponse.newBuilder().build().toByteArray())));
+
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setResourceTagsOnReporter(resourceTagsOnReporter)
+            .setAsyncExport(true)
+            .build();
+
+    long startMs = System.currentTimeMillis();
+    final List<SpanData> spans = new ArrayList<>();
+    spans.add(spanData(startMs, startMs + 900));
+
+    final CompletableResultCode result = exporter.exportAsync(spans);
+    // The exporter must not depend on the list once the call returned.
+    spans.clear();
+    assertFalse(result.isDone());
+
+    assertTrue(result.join(10, TimeUnit.SECONDS).isSuccess());
+    exporter.shutdown();
+
+    final ReportRequest reportRequest =
+        ReportRequest.parseFrom(WireMock.getAllServeEvents().get(0).getRequest().getBody());
+    assertEquals(1, reportRequest.getSpansCount());
+  }
+
+  @Test
+  public void testExportAsync_failure() throws Exception {
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(500)));
+
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setAsyncExport(true)
+            .build();
+
+    long startMs = System.currentTimeMillis();
+    final CompletableResultCode result =
+        exporter.exportAsync(Collections.singletonList(spanData(startMs, startMs + 900)));
+
+    assertFalse(result.join(10, TimeUnit.SECONDS).isSuccess());
+    assertTrue(result.isDone());
+    exporter.shutdown();
+  }
+
+  @Test
+  public void testExportAsync_maxInFlightReports() throws Exception {
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(200).withFixedDelay(1000)
+                .withBody(ReportResponse.newBuilder().build().toByteArray())));
+
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setDeadlineMillis(200)
+            .setAsyncExport(true)
+            .setMaxInFlightReports(1)
+            .build();
+
+    long startMs = System.currentTimeMillis();
+    final List<SpanData> spans = Collections.singletonList(spanData(startMs, startMs + 900));
+
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans));
+    // The first report is still in flight after the deadline.
+    assertEquals(ResultCode.FAILURE, exporter.export(spans));
+    assertEquals(ResultCode.FAILURE, exporter.flush());
+
+    Thread.sleep(1000);
+    assertEquals(ResultCode.SUCCESS, exporter.flush());
+    beforeClass();
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans));
+    assertEquals(ResultCode.SUCCESS, exporter.flush());
+    exporter.shutdown();
+  }
+
+  @Test
+  @Parameters(method = "getResourceTagsOnReporter")
+  public void testExport_pipelined(boolean resourceTagsOnReporter) throws Exception {
+    final int delayMillis = 500;
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(200).withFixedDelay(delayMillis)
+                .withBody(ReportResponse.newBuilder().build().toByteArray())));
+
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setResourceTagsOnReporter(resourceTagsOnReporter)
+            .setPipelineChunkSize(3)
+            .setMaxInFlightReports(4)
+            .build();
+
+    long startMs = System.currentTimeMillis();
+    final List<SpanData> spans = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      spans.add(spanData(startMs, startMs + 900));
+    }
+
+    final long start = System.nanoTime();
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans));
+    final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    exporter.shutdown();
+
+    // Four reports sent one after the other would take at least four round trips.
+    assertThat(elapsedMillis).isLessThan(4 * delayMillis);
+
+    final List<ServeEvent> events = WireMock.getAllServeEvents();
+    assertEquals(4, events.size());
+    int spanCount = 0;
+    for (ServeEvent event : events) {
+      final ReportRequest reportRequest = ReportRequest.parseFrom(event.getRequest().getBody());
+      assertThat(reportRequest.getSpansCount()).isLessThanOrEqualTo(3);
+      spanCount += reportRequest.getSpansCount();
+    }
+    assertEquals(spans.size(), spanCount);
+  }
+
+  @Test
+  @Parameters(method = "getAsyncExports")
+  public void testExport_maxReportBytes(boolean asyncExport) throws Exception {
+    final int maxReportBytes = 1024;
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setAsyncExport(asyncExport)
+            .setMaxReportBytes(maxReportBytes)
+            .build();
+
+    long startMs = System.currentTimeMillis();
+    final List<SpanData> spans = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      spans.add(spanData(startMs, startMs + 900));
+    }
+
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans));
+    assertEquals(ResultCode.SUCCESS, exporter.flush());
+    exporter.shutdown();
+
+    final List<ServeEvent> events = WireMock.getAllServeEvents();
+    assertThat(events.size()).isGreaterThan(1);
+    int spanCount = 0;
+    for (ServeEvent event : events) {
+      final byte[] body = event.getRequest().getBody();
+      assertThat(body.length).isLessThanOrEqualTo(maxReportBytes);
+      spanCount += ReportRequest.parseFrom(body).getSpansCount();
+    }
+    assertEquals(spans.size(), spanCount);
+  }
+
+  @Test
+  public void testExport_internalMetrics() throws Exception {
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(500)));
+
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setInternalMetricsIntervalMillis(50)
+            .build();
+
+    long startMs = System.currentTimeMillis();
+    final SpanData span = spanData(startMs, startMs + 900);
+    assertEquals(ResultCode.FAILURE, exporter.export(Collections.singletonList(span)));
 
-  @Before
-  public void beforeClass() {
-    final byte[] response = ReportResponse.newBuilder().build().toByteArray();
+    beforeClass();
+    Thread.sleep(60);
+    assertEquals(ResultCode.SUCCESS, exporter.export(Arrays.asList(span, span)));
+    exporter.shutdown();
+
+    final List<ServeEvent> events = WireMock.getAllServeEvents();
+    assertEquals(2, events.size());
+    final ReportRequest first = ReportRequest.parseFrom(events.get(1).getRequest().getBody());
+    assertFalse(first.hasInternalMetrics());
+    // Serve events are listed most recent first.
+    final ReportRequest second = ReportRequest.parseFrom(events.get(0).getRequest().getBody());
+    assertEquals(2, second.getSpansCount());
+    final Map<String, Long> counts = new HashMap<>();
+    for (MetricsSample count : second.getInternalMetrics().getCountsList()) {
+      counts.put(count.getName(), count.getIntValue());
+    }
+    assertEquals(Long.valueOf(1), counts.get(ExporterMetrics.REPORTS_FAILED));
+    assertEquals(Long.valueOf(1), counts.get(ExporterMetrics.SPANS_DROPPED));
+    assertEquals(Long.valueOf(0), counts.get(ExporterMetrics.SPANS_SENT));
+    assertEquals(3, second.getInternalMetrics().getGaugesCount());
+  }
 
+  private LightstepSpanExporter.Builder newRetryingBuilder() {
+    return LightstepSpanExporter.newBuilder()
+        .setAccessToken("token")
+        .setCollectorHost("localhost")
+        .setCollectorPort(wireMockRule.port())
+        .setCollectorProtocol("http")
+        .setRetryInitialBackoffMillis(10);
+  }
+
+  /**
+   * Fails the first report with the given response, then lets the collector accept the next ones.
+   */
+  private static void stubFailureThenSuccess(ResponseDefinitionBuilder failure) {
     WireMock.stubFor(
         WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
-            .willReturn(aResponse().withStatus(200).withBody(response)));
+            .inScenario("retry")
+            .whenScenarioStateIs(Scenario.STARTED)
+            .willReturn(failure)
+            .willSetStateTo("recovered"));
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .inScenario("retry")
+            .whenScenarioStateIs("recovered")
+            .willReturn(aResponse().withStatus(200)
+                .withBody(ReportResponse.newBuilder().build().toByteArray())));
   }
 
   @Test
-  public void testExport() throws Exception {
+  @Parameters(method = "getRetryableFailures")
+  public void testExport_retry(ResponseDefinitionBuilder failure) throws Exception {
+    stubFailureThenSuccess(failure);
+    final LightstepSpanExporter exporter = newRetryingBuilder().build();
+
+    long startMs = System.currentTimeMillis();
+    final SpanData span = spanData(startMs, startMs + 900);
+    assertEquals(ResultCode.SUCCESS, exporter.export(Collections.singletonList(span)));
+    exporter.shutdown();
+
+    final List<ServeEvent> events = WireMock.getAllServeEvents();
+    assertEquals(2, events.size());
+    // The retry sends the same report again.
+    assertEquals(events.get(1).getRequest().getBodyAsString(),
+        events.get(0).getRequest().getBodyAsString());
+    final Map<String, Long> counts = new HashMap<>();
+    for (MetricsSample count : exporter.getMetrics().sample().getCountsList()) {
+      counts.put(count.getName(), count.getIntValue());
+    }
+    assertEquals(Long.valueOf(1), counts.get(ExporterMetrics.REPORTS_RETRIED));
+    assertEquals(Long.valueOf(1), counts.get(ExporterMetrics.REPORTS_SENT));
+  }
+
+  public Object[] getRetryableFailures() {
+    return new Object[]{
+        aResponse().withStatus(503),
+        aResponse().withStatus(429)
+    };
+  }
+
+  @Test
+  public void testExport_retryConnectionRefused() throws Exception {
+    final int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    final LightstepSpanExporter exporter = newRetryingBuilder()
+        .setCollectorPort(port)
+        .setMaxRetries(2)
+        .build();
+
+    long startMs = System.currentTimeMillis();
+    final SpanData span = spanData(startMs, startMs + 900);
+    assertEquals(ResultCode.FAILURE, exporter.export(Collections.singletonList(span)));
+    exporter.shutdown();
+
+    final Map<String, Long> counts = new HashMap<>();
+    for (MetricsSample count : exporter.getMetrics().sample().getCountsList()) {
+      counts.put(count.getName(), count.getIntValue());
+    }
+    assertEquals(Long.valueOf(2), counts.get(ExporterMetrics.REPORTS_RETRIED));
+    assertEquals(Long.valueOf(1), counts.get(ExporterMetrics.REPORTS_FAILED));
+  }
+
+  @Test
+  public void testExport_retryAfter() throws Exception {
+    stubFailureThenSuccess(aResponse().withStatus(429).withHeader("Retry-After", "1"));
+    final LightstepSpanExporter exporter = newRetryingBuilder().build();
+
+    long startMs = System.currentTimeMillis();
+    final SpanData span = spanData(startMs, startMs + 900);
+    final long start = System.nanoTime();
+    assertEquals(ResultCode.SUCCESS, exporter.export(Collections.singletonList(span)));
+    final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    exporter.shutdown();
+
+    assertThat(elapsedMillis).isGreaterThanOrEqualTo(1000);
+    assertEquals(2, WireMock.getAllServeEvents().size());
+  }
+
+  @Test
+  public void testExport_retryAfterTooLong() throws Exception {
+    stubFailureThenSuccess(aResponse().withStatus(503).withHeader("Retry-After", "60"));
+    final LightstepSpanExporter exporter = newRetryingBuilder().build();
+
+    long startMs = System.currentTimeMillis();
+    final SpanData span = spanData(startMs, startMs + 900);
+    assertEquals(ResultCode.FAILURE, exporter.export(Collections.singletonList(span)));
+    exporter.shutdown();
+
+    assertEquals(1, WireMock.getAllServeEvents().size());
+  }
+
+  @Test
+  public void testExport_notRetryable() throws Exception {
+    stubFailureThenSuccess(aResponse().withStatus(400));
+    final LightstepSpanExporter exporter = newRetryingBuilder().build();
+
+    long startMs = System.currentTimeMillis();
+    final SpanData span = spanData(startMs, startMs + 900);
+    assertEquals(ResultCode.FAILURE, exporter.export(Collections.singletonList(span)));
+    exporter.shutdown();
+
+    assertEquals(1, WireMock.getAllServeEvents().size());
+  }
+
+  @Test
+  public void testExport_maxRetries() throws Exception {
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(503)));
+    final LightstepSpanExporter exporter = newRetryingBuilder().setMaxRetries(2).build();
+
+    long startMs = System.currentTimeMillis();
+    final SpanData span = spanData(startMs, startMs + 900);
+    assertEquals(ResultCode.FAILURE, exporter.export(Collections.singletonList(span)));
+    exporter.shutdown();
+
+    assertEquals(3, WireMock.getAllServeEvents().size());
+  }
+
+  @Test
+  public void testExport_retryBudget() throws Exception {
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(503)));
+    final LightstepSpanExporter exporter = newRetryingBuilder()
+        .setRetryInitialBackoffMillis(0)
+        .setRetryBudgetPercent(0)
+        .setCircuitBreakerFailureThreshold(0)
+        .build();
+
+    long startMs = System.currentTimeMillis();
+    final SpanData span = spanData(startMs, startMs + 900);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(ResultCode.FAILURE, exporter.export(Collections.singletonList(span)));
+    }
+    exporter.shutdown();
+
+    // Once the saved up retries are spent, no report is retried.
+    assertEquals(10 + RetryPolicy.MAX_RETRY_BALANCE, WireMock.getAllServeEvents().size());
+  }
+
+  @Test
+  public void testExportAsync_retry() throws Exception {
+    stubFailureThenSuccess(aResponse().withStatus(503));
+    final LightstepSpanExporter exporter = newRetryingBuilder()
+        .setAsyncExport(true)
+        .build();
+
+    long startMs = System.currentTimeMillis();
+    final CompletableResultCode result =
+        exporter.exportAsync(Collections.singletonList(spanData(startMs, startMs + 900)));
+
+    assertTrue(result.join(10, TimeUnit.SECONDS).isSuccess());
+    exporter.shutdown();
+    assertEquals(2, WireMock.getAllServeEvents().size());
+  }
+
+  @Test
+  @Parameters(method = "getAsyncExports")
+  public void testExport_circuitBreaker(boolean asyncExport) throws Exception {
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(503)));
+    final LightstepSpanExporter exporter = newRetryingBuilder()
+        .setMaxRetries(0)
+        .setAsyncExport(asyncExport)
+        .setCircuitBreakerFailureThreshold(2)
+        .setCircuitBreakerOpenMillis(100)
+        .build();
+
+    long startMs = System.currentTimeMillis();
+    final List<SpanData> spans = Collections.singletonList(spanData(startMs, startMs + 900));
+    for (int i = 0; i < 2; i++) {
+      assertFalse(exporter.exportAsync(spans).join(10, TimeUnit.SECONDS).isSuccess());
+    }
+    assertEquals(CircuitBreaker.State.OPEN, exporter.getCircuitBreaker().getState());
+
+    // Refused without reaching the collector.
+    assertEquals(ResultCode.FAILURE, exporter.export(spans));
+    assertEquals(2, WireMock.getAllServeEvents().size());
+
+    beforeClass();
+    Thread.sleep(120);
+    assertTrue(exporter.exportAsync(spans).join(10, TimeUnit.SECONDS).isSuccess());
+    assertEquals(CircuitBreaker.State.CLOSED, exporter.getCircuitBreaker().getState());
+    assertEquals(3, WireMock.getAllServeEvents().size());
+    exporter.shutdown();
+
+    final Map<String, Long> counts = new HashMap<>();
+    for (MetricsSample count : exporter.getMetrics().sample().getCountsList()) {
+      counts.put(count.getName(), count.getIntValue());
+    }
+    assertEquals(Long.valueOf(1), counts.get(ExporterMetrics.CIRCUIT_OPENED));
+    assertEquals(Long.valueOf(1), counts.get(ExporterMetrics.CIRCUIT_HALF_OPENED));
+    assertEquals(Long.valueOf(1), counts.get(ExporterMetrics.CIRCUIT_CLOSED));
+    assertEquals(Long.valueOf(3), counts.get(ExporterMetrics.SPANS_DROPPED));
+  }
+
+  private static void awaitPendingReports(DiskSpool spool, long count) throws Exception {
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (spool.getPendingReports() != count) {
+      assertTrue(System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  /**
+   * Returns the number of spans in the reports the collector accepted.
+   */
+  private static int acceptedSpanCount() throws Exception {
+    int count = 0;
+    for (ServeEvent event : WireMock.getAllServeEvents()) {
+      if (event.getResponse().getStatus() == 200) {
+        count += ReportRequest.parseFrom(event.getRequest().getBody()).getSpansCount();
+      }
+    }
+    return count;
+  }
+
+  @Test
+  @Parameters(method = "getAsyncExports")
+  public void testExport_spool(boolean asyncExport) throws Exception {
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(503)));
+    final LightstepSpanExporter exporter = newRetryingBuilder()
+        .setMaxRetries(0)
+        .setAsyncExport(asyncExport)
+        .setCircuitBreakerFailureThreshold(1)
+        .setCircuitBreakerOpenMillis(100)
+        .setSpoolDirectory(temporaryFolder.getRoot().getPath())
+        .setSpoolDrainRate(100)
+        .build();
+
+    long startMs = System.currentTimeMillis();
+    final SpanData span = spanData(startMs, startMs + 900);
+    // The first report fails and opens the breaker, which refuses the second one.
+    exporter.exportAsync(Collections.singletonList(span)).join(10, TimeUnit.SECONDS);
+    exporter.exportAsync(Arrays.asList(span, span)).join(10, TimeUnit.SECONDS);
+    awaitPendingReports(exporter.getSpool(), 2);
+
+    beforeClass();
+    awaitPendingReports(exporter.getSpool(), 0);
+    assertEquals(3, acceptedSpanCount());
+    assertEquals(CircuitBreaker.State.CLOSED, exporter.getCircuitBreaker().getState());
+    exporter.shutdown();
+
+    final Map<String, Long> counts = new HashMap<>();
+    for (MetricsSample count : exporter.getMetrics().sample().getCountsList()) {
+      counts.put(count.getName(), count.getIntValue());
+    }
+    assertEquals(Long.valueOf(2), counts.get(ExporterMetrics.SPOOL_WRITTEN));
+    assertEquals(Long.valueOf(2), counts.get(ExporterMetrics.SPOOL_REPLAYED));
+    assertEquals(Long.valueOf(0), counts.get(ExporterMetrics.SPANS_DROPPED));
+  }
+
+  @Test
+  public void testExport_spoolSurvivesRestart() throws Exception {
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(503)));
+    final Builder builder = newRetryingBuilder()
+        .setMaxRetries(0)
+        .setSpoolDirectory(temporaryFolder.getRoot().getPath())
+        .setSpoolDrainRate(100);
+    final LightstepSpanExporter exporter = builder.build();
+
+    long startMs = System.currentTimeMillis();
+    assertEquals(ResultCode.FAILURE,
+        exporter.export(Collections.singletonList(spanData(startMs, startMs + 900))));
+    awaitPendingReports(exporter.getSpool(), 1);
+    exporter.shutdown();
+
+    beforeClass();
+    // The replayed report is sent with the current access token rather than the spooled one.
+    final LightstepSpanExporter restarted = builder.setAccessToken("rotated").build();
+    awaitPendingReports(restarted.getSpool(), 0);
+    assertEquals(1, acceptedSpanCount());
+    final ReportRequest replayed =
+        ReportRequest.parseFrom(WireMock.getAllServeEvents().get(0).getRequest().getBody());
+    assertEquals("rotated", replayed.getAuth().getAccessToken());
+    restarted.shutdown();
+  }
+
+  private static SpanData tracedSpanData(long traceIdLow, String name, Status status) {
+    final long startMs = System.currentTimeMillis();
+    return TestSpanData.newBuilder()
+        .setHasEnded(true)
+        .setTraceId(new TraceId(1, traceIdLow))
+        .setSpanId(SpanId.fromLowerBase16(SPAN_ID, 0))
+        .setName(name)
+        .setStartEpochNanos(TimeUnit.MILLISECONDS.toNanos(startMs))
+        .setEndEpochNanos(TimeUnit.MILLISECONDS.toNanos(startMs + 10))
+        .setStatus(status)
+        .setKind(Kind.SERVER)
+        .setTotalRecordedLinks(0)
+        .setTotalRecordedEvents(0)
+        .build();
+  }
+
+  @Test
+  @Parameters(method = "getAsyncExports")
+  public void testExport_tailSampling(boolean asyncExport) throws Exception {
+    final LightstepSpanExporter exporter = newRetryingBuilder()
+        .setAsyncExport(asyncExport)
+        .setTailSamplingDecisionWaitMillis(60000)
+        .build();
+
+    assertEquals(ResultCode.SUCCESS, exporter.export(Arrays.asList(
+        tracedSpanData(1, "child", Status.OK), tracedSpanData(2, "other", Status.OK))));
+    assertEquals(ResultCode.SUCCESS, exporter.export(
+        Collections.singletonList(tracedSpanData(1, "root", Status.INTERNAL))));
+    exporter.flush();
+
+    // Only the trace with an error was converted and sent, the other one is still held.
+    final List<ServeEvent> events = WireMock.getAllServeEvents();
+    assertEquals(1, events.size());
+    final ReportRequest reportRequest =
+        ReportRequest.parseFrom(events.get(0).getRequest().getBody());
+    assertEquals(2, reportRequest.getSpansCount());
+    assertEquals("child", reportRequest.getSpans(0).getOperationName());
+    assertEquals("root", reportRequest.getSpans(1).getOperationName());
+    assertEquals(1, exporter.getTailSampler().size());
+    exporter.shutdown();
+  }
+
+  @Test
+  @Parameters(method = "getAsyncExports")
+  public void testExport_disableCommand(boolean asyncExport) throws Exception {
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(200).withBody(ReportResponse.newBuilder()
+                .addCommands(Command.newBuilder().setDisable(true))
+                .build().toByteArray())));
+    final LightstepSpanExporter exporter = newRetryingBuilder()
+        .setAsyncExport(asyncExport)
+        .build();
+
+    long startMs = System.currentTimeMillis();
+    final List<SpanData> spans = Collections.singletonList(spanData(startMs, startMs + 900));
+    assertTrue(exporter.exportAsync(spans).join(10, TimeUnit.SECONDS).isSuccess());
+    assertTrue(exporter.isDisabled());
+
+    // Dropped without reaching the collector.
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans));
+    assertTrue(exporter.exportAsync(spans).join(10, TimeUnit.SECONDS).isSuccess());
+    assertEquals(1, WireMock.getAllServeEvents().size());
+    exporter.shutdown();
+  }
+
+  @Test
+  public void testExport_timestampOffset() throws Exception {
+    final Timestamp collectorTime = Timestamps.fromMillis(System.currentTimeMillis() - 10000);
+    WireMock.stubFor(
+        WireMock.post(urlEqualTo(LightstepSpanExporter.PATH))
+            .willReturn(aResponse().withStatus(200).withBody(ReportResponse.newBuilder()
+                .setReceiveTimestamp(collectorTime)
+                .setTransmitTimestamp(collectorTime)
+                .build().toByteArray())));
+    final LightstepSpanExporter exporter = newRetryingBuilder().build();
+
+    long startMs = System.currentTimeMillis();
+    final List<SpanData> spans = Collections.singletonList(spanData(startMs, startMs + 900));
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans));
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans));
+
+    final List<ServeEvent> events = WireMock.getAllServeEvents();
+    assertEquals(2, events.size());
+    // Serve events are listed from the most recent.
+    assertEquals(0, ReportRequest.parseFrom(events.get(1).getRequest().getBody())
+        .getTimestampOffsetMicros());
+    final long offsetMicros = ReportRequest.parseFrom(events.get(0).getRequest().getBody())
+        .getTimestampOffsetMicros();
+    assertThat(offsetMicros).isBetween(-11000000L, -10000000L);
+    exporter.shutdown();
+  }
+
+  @Test
+  @Parameters(method = "getResourceTagsOnReporter")
+  public void testExportEncoded(boolean resourceTagsOnReporter) throws Exception {
     LightstepSpanExporter exporter =
         LightstepSpanExporter.newBuilder()
             .setAccessToken("token")
@@ -67,79 +1085,157 @@ public class LightstepSpanExporterTest {
             .setCollectorPort(wireMockRule.port())
             .setCollectorProtocol("http")
             .setServiceVersion("1.0")
+            .setResourceTagsOnReporter(resourceTagsOnReporter)
             .build();
 
-    long duration = 900; // ms
     long startMs = System.currentTimeMillis();
-    long endMs = startMs + duration;
-
-    SpanData spanData = spanData(startMs, endMs);
+    final SpanData first = spanData(startMs, startMs + 900);
+    final SpanData second = spanData(startMs, startMs + 900, Resource.create(Attributes.of(
+        "resource_key", AttributeValue.stringAttributeValue("other_value"))));
+    final List<SpanData> spans = Arrays.asList(first, second, first);
 
-    final ResultCode resultCode = exporter.export(Collections.singletonList(spanData));
-    assertEquals(ResultCode.SUCCESS, resultCode);
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans));
+    final List<ReportRequest> expected = new ArrayList<>();
+    for (ServeEvent event : WireMock.getAllServeEvents()) {
+      expected.add(ReportRequest.parseFrom(event.getRequest().getBody()));
+    }
+    WireMock.resetAllRequests();
 
-    assertEquals(ResultCode.SUCCESS, exporter.flush());
+    final List<EncodedSpan> encodedSpans = new ArrayList<>();
+    for (SpanData span : spans) {
+      encodedSpans.add(exporter.encode(span));
+    }
+    assertEquals(ResultCode.SUCCESS, exporter.exportEncoded(encodedSpans));
     exporter.shutdown();
 
+    final List<ReportRequest> requests = new ArrayList<>();
+    for (ServeEvent event : WireMock.getAllServeEvents()) {
+      requests.add(ReportRequest.parseFrom(event.getRequest().getBody()));
+    }
+    assertEquals(resourceTagsOnReporter ? 2 : 1, requests.size());
+    assertEquals(expected, requests);
+  }
+
+  @Test
+  public void testInstall_encodeOnEnd() throws Exception {
+    final TracerSdkProvider tracerSdkProvider = TracerSdkProvider.builder().build();
+    LightstepSpanExporter.newBuilder()
+        .setAccessToken("token")
+        .setCollectorHost("localhost")
+        .setCollectorPort(wireMockRule.port())
+        .setCollectorProtocol("http")
+        .install(tracerSdkProvider, LightstepSpanProcessor.WaitStrategy.PARK);
+
+    final Tracer tracer = tracerSdkProvider.get("test");
+    for (int i = 0; i < 3; i++) {
+      tracer.spanBuilder("span " + i).startSpan().end();
+    }
+    tracerSdkProvider.forceFlush();
+    tracerSdkProvider.shutdown();
+
     final List<ServeEvent> events = WireMock.getAllServeEvents();
     assertEquals(1, events.size());
-    final LoggedRequest loggedRequest = events.get(0).getRequest();
-    assertEquals("token", loggedRequest.getHeader(LightstepSpanExporter.LIGHTSTEP_ACCESS_TOKEN));
-    assertEquals(LightstepSpanExporter.MEDIA_TYPE_STRING, loggedRequest.getHeader("Content-Type"));
+    final ReportRequest reportRequest =
+        ReportRequest.parseFrom(events.get(0).getRequest().getBody());
+    assertEquals(3, reportRequest.getSpansCount());
+    assertEquals("span 0", reportRequest.getSpans(0).getOperationName());
+  }
 
-    final ReportRequest reportRequest = ReportRequest.parseFrom(loggedRequest.getBody());
+  @Test
+  public void testExport_batched() throws Exception {
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setBatchSize(5)
+            .build();
 
-    assertEquals("token", reportRequest.getAuth().getAccessToken());
+    // As exported by SimpleSpanProcessor, one span at a time
+    long startMs = System.currentTimeMillis();
+    for (int i = 0; i < 12; i++) {
+      assertEquals(ResultCode.SUCCESS,
+          exporter.export(Collections.singletonList(spanData(startMs, startMs + 900))));
+    }
+    assertEquals(2, WireMock.getAllServeEvents().size());
+    assertEquals(2, exporter.getBatcher().size());
 
-    final Reporter reporter = reportRequest.getReporter();
-    assertEquals(6, reporter.getTagsCount());
+    assertEquals(ResultCode.SUCCESS, exporter.flush());
+    exporter.shutdown();
 
-    // Verify that "service.version" tag is set to correct value
-    assertTrue(tagEquals(reporter.getTagsList(), LightstepSpanExporter.SERVICE_VERSION_KEY, "1.0"));
+    final List<ServeEvent> events = WireMock.getAllServeEvents();
+    assertEquals(3, events.size());
+    int spanCount = 0;
+    for (ServeEvent event : events) {
+      final ReportRequest reportRequest = ReportRequest.parseFrom(event.getRequest().getBody());
+      assertThat(reportRequest.getSpansCount()).isLessThanOrEqualTo(5);
+      spanCount += reportRequest.getSpansCount();
+    }
+    assertEquals(12, spanCount);
+  }
 
-    // Verify "lightstep.hostname" is set
-    assertNotNull(
-        getTagValue(reporter.getTagsList(), LightstepSpanExporter.LIGHTSTEP_HOSTNAME_KEY));
+  @Test
+  public void testShutdown_batched() throws Exception {
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setBatchSize(5)
+            .build();
 
-    assertEquals(1, reportRequest.getSpansCount());
-    final Span span = reportRequest.getSpans(0);
-    assertEquals("GET /api/endpoint", span.getOperationName());
-    assertEquals(900000L, span.getDurationMicros());
-    assertEquals(5, span.getTagsCount());
+    long startMs = System.currentTimeMillis();
+    exporter.export(Collections.singletonList(spanData(startMs, startMs + 900)));
+    assertEquals(0, WireMock.getAllServeEvents().size());
 
-    // Verify that Resources are added as tags to span
-    assertTrue(tagEquals(span.getTagsList(), "resource_key", "resource_value"));
+    exporter.shutdown();
+    assertEquals(1, WireMock.getAllServeEvents().size());
+  }
 
-    // Verify that "service.version" tag is set to correct value
-    assertTrue(tagEquals(span.getTagsList(), LightstepSpanExporter.SERVICE_VERSION_KEY, "1.0"));
+  @Test
+  @Parameters(method = "getDirectEncodings")
+  public void testExport_parallelConversion(boolean directEncoding) throws Exception {
+    LightstepSpanExporter exporter =
+        LightstepSpanExporter.newBuilder()
+            .setAccessToken("token")
+            .setCollectorHost("localhost")
+            .setCollectorPort(wireMockRule.port())
+            .setCollectorProtocol("http")
+            .setDirectEncoding(directEncoding)
+            .setConversionParallelism(4)
+            .setParallelConversionThreshold(10)
+            .build();
 
-    // Verify "lightstep.hostname" is set
-    assertNotNull(
-        getTagValue(span.getTagsList(), LightstepSpanExporter.LIGHTSTEP_HOSTNAME_KEY));
+    long startMs = System.currentTimeMillis();
+    final List<SpanData> spans = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      spans.add(spanData(startMs + i, startMs + 900));
+    }
 
-    final SpanContext spanContext = span.getSpanContext();
-    assertEquals(1302406798037686297L, spanContext.getSpanId());
-    assertEquals(5208512171318403364L, spanContext.getTraceId()); // trimmed id.
-  }
+    assertEquals(ResultCode.SUCCESS, exporter.export(spans));
+    exporter.shutdown();
 
-  public String[] getServiceVersions() {
-    return new String[]{null, "", "123"};
+    final ReportRequest reportRequest =
+        ReportRequest.parseFrom(WireMock.getAllServeEvents().get(0).getRequest().getBody());
+    assertEquals(Adapter.toLightstepSpans(spans, exporter.getLsSpanAttributes()),
+        reportRequest.getSpansList());
   }
 
   @Test
-  @Parameters(method = "getServiceVersions")
-  public void testServiceVersion(String serviceVersion) throws Exception {
+  public void testExport_adapterEncoding() throws Exception {
     LightstepSpanExporter exporter =
         LightstepSpanExporter.newBuilder()
             .setAccessToken("token")
             .setCollectorHost("localhost")
             .setCollectorPort(wireMockRule.port())
             .setCollectorProtocol("http")
-            .setServiceVersion(serviceVersion)
+            .setServiceVersion("1.0")
+            .setDirectEncoding(false)
             .build();
 
-    verifyServiceVersion(exporter, serviceVersion);
-
+    verifyServiceVersion(exporter, "1.0");
   }
 
   @Test
@@ -246,6 +1342,11 @@ public class LightstepSpanExporterTest {
   }
 
   private SpanData spanData(long startMs, long endMs) {
+    return spanData(startMs, endMs, Resource.create(Attributes.of("resource_key",
+        AttributeValue.stringAttributeValue("resource_value"))));
+  }
+
+  private SpanData spanData(long startMs, long endMs, Resource resource) {
     return TestSpanData.newBuilder()
         .setHasEnded(true)
         .setTraceId(TraceId.fromLowerBase16(TRACE_ID, 0))
@@ -258,9 +1359,7 @@ public class LightstepSpanExporterTest {
         .setLinks(Collections.<Link>emptyList())
         .setTotalRecordedLinks(0)
         .setTotalRecordedEvents(0)
-        .setResource(Resource
-            .create(Attributes.of("resource_key",
-                AttributeValue.stringAttributeValue("resource_value"))))
+        .setResource(resource)
         .build();
   }
 
@@ -0,0 +1,411 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.lightstep.opentelemetry.exporter.LightstepSpanProcessor.DropPolicy;
+import com.lightstep.opentelemetry.exporter.LightstepSpanProcessor.WaitStrategy;
+import com.lightstep.tracer.grpc.MetricsSample;
+import io.opentelemetry.sdk.trace.TracerSdkProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.trace.Span;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.Tracer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JUnitParamsRunner.class)
+public class LightstepSpanProcessorTest {
+  private final CollectingExporter exporter = new CollectingExporter();
+  private TracerSdkProvider tracerProvider;
+  private Tracer tracer;
+
+  @Before
+  public void before() {
+    tracerProvider = TracerSdkProvider.builder().build();
+    tracer = tracerProvider.get("test");
+  }
+
+  @After
+  public void after() {
+    tracerProvider.shutdown();
+  }
+
+  private void endSpans(int count) {
+    for (int i = 0; i < count; i++) {
+      tracer.spanBuilder("span " + i).startSpan().end();
+    }
+  }
+
+  @Test
+  @Parameters(method = "getWaitStrategies")
+  public void testForceFlush(WaitStrategy waitStrategy) {
+    final LightstepSpanProcessor processor = LightstepSpanProcessor.newBuilder(exporter)
+        .setWaitStrategy(waitStrategy)
+        .build();
+    tracerProvider.addSpanProcessor(processor);
+
+    endSpans(10);
+    processor.forceFlush();
+
+    assertEquals(10, exporter.spanCount());
+    assertEquals("span 0", exporter.batches.get(0).get(0).getName());
+    assertEquals(1, exporter.flushCount);
+    assertEquals(0, processor.getDroppedSpans());
+  }
+
+  public Object[] getWaitStrategies() {
+    return WaitStrategy.values();
+  }
+
+  @Test
+  public void testMaxExportBatchSize() throws Exception {
+    final LightstepSpanProcessor processor = LightstepSpanProcessor.newBuilder(exporter)
+        .setMaxExportBatchSize(10)
+        .build();
+    tracerProvider.addSpanProcessor(processor);
+
+    endSpans(25);
+
+    assertTrue(exporter.awaitSpans(20));
+    processor.forceFlush();
+    assertEquals(3, exporter.batches.size());
+    assertEquals(10, exporter.batches.get(0).size());
+    assertEquals(10, exporter.batches.get(1).size());
+    assertEquals(5, exporter.batches.get(2).size());
+  }
+
+  @Test
+  public void testScheduleDelay() throws Exception {
+    final LightstepSpanProcessor processor = LightstepSpanProcessor.newBuilder(exporter)
+        .setScheduleDelayMillis(100)
+        .build();
+    tracerProvider.addSpanProcessor(processor);
+
+    endSpans(3);
+
+    assertTrue(exporter.awaitSpans(3));
+    assertEquals(1, exporter.batches.size());
+  }
+
+  @Test
+  public void testDropsWhenFull() throws Exception {
+    final CountDownLatch exporting = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final LightstepSpanProcessor processor = LightstepSpanProcessor.newBuilder(
+        new CollectingExporter() {
+          @Override
+          public ResultCode export(Collection<SpanData> spans) {
+            exporting.countDown();
+            try {
+              release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return super.export(spans);
+          }
+        })
+        .setBufferSize(4)
+        .setMaxExportBatchSize(1)
+        .build();
+    tracerProvider.addSpanProcessor(processor);
+
+    // The exporting thread is blocked on the first span while the ring fills up.
+    endSpans(1);
+    assertTrue(exporting.await(10, TimeUnit.SECONDS));
+    endSpans(6);
+    release.countDown();
+
+    assertEquals(2, processor.getDroppedSpans());
+  }
+
+  private void endSpansOneByOne(LightstepSpanProcessor processor, int count, int errorEvery) {
+    for (int i = 0; i < count; i++) {
+      final Span span = tracer.spanBuilder(String.format("span %02d", i)).startSpan();
+      if (errorEvery > 0 && i % errorEvery == 0) {
+        span.setStatus(Status.INTERNAL);
+      }
+      span.end();
+      // Let the exporting thread take the span and evict the older ones down to the watermark of
+      // a 1000 bytes budget, so that the next span fits.
+      while (processor.getRingBuffer().size() > 0 || processor.getPendingBytes() > 750) {
+        Thread.yield();
+      }
+    }
+  }
+
+  private static List<String> exportedNames(CollectingExporter exporter) {
+    final List<String> names = new ArrayList<>();
+    for (List<SpanData> batch : exporter.batches) {
+      for (SpanData span : batch) {
+        names.add(span.getName());
+      }
+    }
+    return names;
+  }
+
+  @Test
+  public void testMaxPendingBytes_dropNewest() throws Exception {
+    final CountDownLatch exporting = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CollectingExporter blockingExporter = new CollectingExporter() {
+      @Override
+      public ResultCode export(Collection<SpanData> spans) {
+        exporting.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.export(spans);
+      }
+    };
+    final LightstepSpanProcessor processor = LightstepSpanProcessor.newBuilder(blockingExporter)
+        .setMaxExportBatchSize(1)
+        .setMaxPendingBytes(1000)
+        .build();
+    tracerProvider.addSpanProcessor(processor);
+
+    endSpans(1);
+    assertTrue(exporting.await(10, TimeUnit.SECONDS));
+    endSpans(100);
+    assertTrue(processor.getPendingBytes() <= 1000);
+    release.countDown();
+    processor.forceFlush();
+
+    final List<String> names = exportedNames(blockingExporter);
+    assertTrue(names.size() > 1);
+    assertTrue(names.size() < 101);
+    assertEquals(101 - names.size(), processor.getDroppedSpans());
+    assertTrue(processor.getDroppedBytes() > 0);
+    // The spans ending first were kept. Sizes vary by a byte or two with the span durations, so
+    // a span slightly smaller than the first dropped one may still fit.
+    assertEquals("span 0", names.get(0));
+    for (int i = 1; i < names.size() - 1; i++) {
+      assertEquals("span " + (i - 1), names.get(i));
+    }
+    assertEquals(0, processor.getPendingBytes());
+  }
+
+  @Test
+  public void testMaxPendingBytes_dropOldest() {
+    final LightstepSpanProcessor processor = LightstepSpanProcessor.newBuilder(exporter)
+        .setMaxExportBatchSize(1000)
+        .setScheduleDelayMillis(60000)
+        .setMaxPendingBytes(1000)
+        .setDropPolicy(DropPolicy.OLDEST)
+        .build();
+    tracerProvider.addSpanProcessor(processor);
+
+    endSpansOneByOne(processor, 100, 0);
+    processor.forceFlush();
+
+    final List<String> names = exportedNames(exporter);
+    assertTrue(names.size() > 1);
+    assertTrue(names.size() < 100);
+    // The most recent spans were kept.
+    for (int i = 0; i < names.size(); i++) {
+      assertEquals(String.format("span %02d", 100 - names.size() + i), names.get(i));
+    }
+    assertEquals(100 - names.size(), processor.getDroppedSpans());
+    assertTrue(processor.getDroppedBytes() > 0);
+    assertEquals(0, processor.getPendingBytes());
+  }
+
+  @Test
+  public void testMaxPendingBytes_dropNonErrorFirst() {
+    final LightstepSpanProcessor processor = LightstepSpanProcessor.newBuilder(exporter)
+        .setMaxExportBatchSize(1000)
+        .setScheduleDelayMillis(60000)
+        .setMaxPendingBytes(1000)
+        .setDropPolicy(DropPolicy.NON_ERROR_FIRST)
+        .build();
+    tracerProvider.addSpanProcessor(processor);
+
+    endSpansOneByOne(processor, 100, 25);
+    processor.forceFlush();
+
+    final List<String> names = exportedNames(exporter);
+    assertTrue(names.size() < 100);
+    for (int i = 0; i < 100; i += 25) {
+      assertTrue(names.contains(String.format("span %02d", i)));
+    }
+    assertTrue(names.contains("span 99"));
+    assertFalse(names.contains("span 01"));
+    assertEquals(100 - names.size(), processor.getDroppedSpans());
+  }
+
+  @Test
+  @Parameters(method = "getEvictingDropPolicies")
+  public void testMaxPendingBytes_burst(DropPolicy dropPolicy) throws Exception {
+    final CountDownLatch exporting = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CollectingExporter blockingExporter = new CollectingExporter() {
+      @Override
+      public ResultCode export(Collection<SpanData> spans) {
+        exporting.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.export(spans);
+      }
+    };
+    final LightstepSpanProcessor processor = LightstepSpanProcessor.newBuilder(blockingExporter)
+        .setMaxExportBatchSize(1000)
+        .setScheduleDelayMillis(0)
+        .setMaxPendingBytes(1000)
+        .setDropPolicy(dropPolicy)
+        .build();
+    tracerProvider.addSpanProcessor(processor);
+
+    // The exporting thread is blocked on the first span while the others end at once.
+    tracer.spanBuilder("first").startSpan().end();
+    assertTrue(exporting.await(10, TimeUnit.SECONDS));
+    for (int i = 0; i < 100; i++) {
+      final Span span = tracer.spanBuilder(String.format("span %02d", i)).startSpan();
+      if (i == 0) {
+        span.setStatus(Status.INTERNAL);
+      }
+      span.end();
+    }
+    release.countDown();
+    processor.forceFlush();
+
+    final List<String> names = exportedNames(blockingExporter);
+    // The span being exported was not evicted, and the newest spans were kept.
+    assertEquals("first", names.get(0));
+    assertTrue(names.size() < 101);
+    assertEquals("span 99", names.get(names.size() - 1));
+    assertEquals(dropPolicy == DropPolicy.NON_ERROR_FIRST, names.contains("span 00"));
+    assertFalse(names.contains("span 01"));
+    assertEquals(101 - names.size(), processor.getDroppedSpans());
+    assertEquals(0, processor.getPendingBytes());
+  }
+
+  public Object[] getEvictingDropPolicies() {
+    return new Object[] {DropPolicy.OLDEST, DropPolicy.NON_ERROR_FIRST};
+  }
+
+  @Test
+  public void testMaxPendingBytes_exporterMetrics() throws Exception {
+    final LightstepSpanExporter lightstepExporter = LightstepSpanExporter.newBuilder()
+        .setCollectorProtocol("http")
+        .setCollectorHost("localhost")
+        .setCollectorPort(1)
+        .build();
+    final LightstepSpanProcessor processor = LightstepSpanProcessor.newBuilder(lightstepExporter)
+        .setMaxExportBatchSize(1000)
+        .setScheduleDelayMillis(60000)
+        .setMaxPendingBytes(1000)
+        .build();
+    tracerProvider.addSpanProcessor(processor);
+
+    // Nothing is exported before the shutdown, so the budget fills up.
+    endSpans(100);
+    final Map<String, Long> counts = new HashMap<>();
+    for (MetricsSample count : lightstepExporter.getMetrics().sample().getCountsList()) {
+      counts.put(count.getName(), count.getIntValue());
+    }
+    assertTrue(processor.getDroppedBytes() > 0);
+    assertEquals(Long.valueOf(processor.getDroppedSpans()),
+        counts.get(ExporterMetrics.SPANS_DROPPED));
+    assertEquals(Long.valueOf(processor.getDroppedBytes()),
+        counts.get(ExporterMetrics.SPANS_DROPPED_BYTES));
+    processor.shutdown();
+  }
+
+  @Test
+  public void testShutdown() {
+    final LightstepSpanProcessor processor = LightstepSpanProcessor.newBuilder(exporter).build();
+    tracerProvider.addSpanProcessor(processor);
+
+    endSpans(5);
+    processor.shutdown();
+
+    assertEquals(5, exporter.spanCount());
+    assertTrue(exporter.shutdown);
+
+    endSpans(1);
+    assertEquals(1, processor.getDroppedSpans());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEncodeOnEnd_notLightstepExporter() {
+    LightstepSpanProcessor.newBuilder(exporter).setEncodeOnEnd(true).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEncodeOnEnd_tailSampling() throws Exception {
+    final LightstepSpanExporter lightstepExporter = LightstepSpanExporter.newBuilder()
+        .setTailSamplingDecisionWaitMillis(30000)
+        .build();
+    try {
+      LightstepSpanProcessor.newBuilder(lightstepExporter).setEncodeOnEnd(true).build();
+    } finally {
+      lightstepExporter.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidBufferSize() {
+    LightstepSpanProcessor.newBuilder(exporter).setBufferSize(0);
+  }
+
+  private static class CollectingExporter implements SpanExporter {
+    final List<List<SpanData>> batches = new CopyOnWriteArrayList<>();
+    volatile int flushCount;
+    volatile boolean shutdown;
+
+    @Override
+    public ResultCode export(Collection<SpanData> spans) {
+      batches.add(new ArrayList<>(spans));
+      return ResultCode.SUCCESS;
+    }
+
+    @Override
+    public ResultCode flush() {
+      flushCount++;
+      return ResultCode.SUCCESS;
+    }
+
+    @Override
+    public void shutdown() {
+      shutdown = true;
+    }
+
+    int spanCount() {
+      int count = 0;
+      for (List<SpanData> batch : batches) {
+        count += batch.size();
+      }
+      return count;
+    }
+
+    boolean awaitSpans(int count) throws InterruptedException {
+      final long deadline = System.currentTimeMillis() + 10000;
+      while (spanCount() < count) {
+        if (System.currentTimeMillis() > deadline) {
+          return false;
+        }
+        Thread.sleep(10);
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.Span;
+import java.net.URL;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import org.junit.Test;
+
+public class OkHttpTransportTest {
+
+  @Test
+  public void testParseRetryAfter_seconds() {
+    assertEquals(2000, OkHttpTransport.parseRetryAfter("2"));
+    assertEquals(0, OkHttpTransport.parseRetryAfter(" 0 "));
+  }
+
+  @Test
+  public void testParseRetryAfter_httpDate() {
+    final long retryAfterMillis =
+        OkHttpTransport.parseRetryAfter("Wed, 21 Oct 2099 07:28:00 GMT");
+    assertThat(retryAfterMillis).isGreaterThan(0);
+    // A date in the past asks for no delay.
+    assertEquals(0, OkHttpTransport.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+  }
+
+  @Test
+  public void testParseRetryAfter_missing() {
+    assertEquals(-1, OkHttpTransport.parseRetryAfter(null));
+    assertEquals(-1, OkHttpTransport.parseRetryAfter("soon"));
+  }
+
+  @Test
+  public void testPrepare_buildsRequestOnce() throws Exception {
+    final OkHttpTransport transport = new OkHttpTransport(
+        new URL("http://localhost:8360/api/v2/reports"), "token", 1000, null, 0, true, 6, 0);
+    final ReportRequest.Builder request = ReportRequest.newBuilder();
+    for (int i = 0; i < 10; i++) {
+      request.addSpans(Span.newBuilder().setOperationName("span " + i));
+    }
+    final ReportRequestBody body = ReportRequestBody.create(request.build(),
+        MediaType.parse(LightstepSpanExporter.MEDIA_TYPE_STRING), null);
+
+    final OkHttpTransport.OkHttpReport report = (OkHttpTransport.OkHttpReport) transport.prepare(
+        body);
+    final Request compressed = report.getRequest();
+    assertEquals(GzipRequestBody.CONTENT_ENCODING,
+        compressed.header(LightstepSpanExporter.CONTENT_ENCODING));
+    // Retries post the same request rather than compressing the report again.
+    assertSame(compressed, report.getRequest());
+    assertSame(compressed.body(), report.getRequest().body());
+
+    transport.shutdown();
+  }
+}
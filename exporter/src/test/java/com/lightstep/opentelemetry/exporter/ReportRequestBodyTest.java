@@ -0,0 +1,290 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.lightstep.tracer.grpc.Auth;
+import com.lightstep.tracer.grpc.InternalMetrics;
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.MetricsSample;
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.Reporter;
+import com.lightstep.tracer.grpc.Span;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.common.Attributes;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.test.TestSpanData;
+import io.opentelemetry.trace.Span.Kind;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.TraceId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import okhttp3.MediaType;
+import okio.Buffer;
+import org.junit.Test;
+
+public class ReportRequestBodyTest {
+  private static final MediaType MEDIA_TYPE =
+      MediaType.parse(LightstepSpanExporter.MEDIA_TYPE_STRING);
+
+  private final Reporter reporter = Reporter.newBuilder()
+      .setReporterId(1234)
+      .addTags(KeyValue.newBuilder().setKey("lightstep.component_name").setStringValue("test"))
+      .build();
+  private final Auth auth = Auth.newBuilder().setAccessToken("token").build();
+  private final List<KeyValue> lsSpanAttributes = Collections.singletonList(
+      KeyValue.newBuilder().setKey(LightstepSpanExporter.LIGHTSTEP_HOSTNAME_KEY)
+          .setStringValue("host").build());
+
+  private static List<SpanData> spans(int count) {
+    final Resource resource = Resource.create(
+        Attributes.of("service.name", AttributeValue.stringAttributeValue("service")));
+    final List<SpanData> spans = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      spans.add(TestSpanData.newBuilder()
+          .setHasEnded(true)
+          .setTraceId(new TraceId(i, i))
+          .setSpanId(new SpanId(i))
+          .setName("span " + i)
+          .setStartEpochNanos(1581000000000000000L + i)
+          .setEndEpochNanos(1581000000000000000L + i * 1000000L)
+          .setAttributes(Attributes.of("index", AttributeValue.longAttributeValue(i)))
+          .setKind(Kind.SERVER)
+          .setResource(resource)
+          .setStatus(Status.OK)
+          .setTotalRecordedEvents(0)
+          .setTotalRecordedLinks(0)
+          .build());
+    }
+    return spans;
+  }
+
+  private List<EncodedSpan> encode(List<SpanData> spans) {
+    final List<EncodedSpan> encodedSpans = new ArrayList<>();
+    for (SpanData span : spans) {
+      encodedSpans.add(SpanEncoder.encodeSpan(span, lsSpanAttributes, true, null));
+    }
+    return encodedSpans;
+  }
+
+  private static byte[] write(ReportRequestBody body) throws Exception {
+    final Buffer sink = new Buffer();
+    body.writeTo(sink);
+    assertEquals(body.contentLength(), sink.size());
+    return sink.readByteArray();
+  }
+
+  @Test
+  public void testMessageBody() throws Exception {
+    final ReportRequest request = ReportRequest.newBuilder()
+        .setReporter(reporter)
+        .setAuth(auth)
+        .addAllSpans(Adapter.toLightstepSpans(spans(10), lsSpanAttributes))
+        .build();
+
+    final ReportRequestBody body = ReportRequestBody.create(request, MEDIA_TYPE, null);
+
+    assertEquals(MEDIA_TYPE, body.contentType());
+    assertArrayEquals(request.toByteArray(), write(body));
+  }
+
+  @Test
+  public void testEncodedSpansBody() throws Exception {
+    // Large enough to span several internal buffers of CodedOutputStream
+    final List<SpanData> spans = spans(1000);
+    final byte[] expected = ReportRequest.newBuilder()
+        .setReporter(reporter)
+        .setAuth(auth)
+        .addAllSpans(Adapter.toLightstepSpans(spans, lsSpanAttributes))
+        .build()
+        .toByteArray();
+
+    final ReportRequestBody body = ReportRequestBody.create(reporter, auth, spans,
+        lsSpanAttributes, true, new ResourceTagsCache(1), MEDIA_TYPE, null);
+
+    assertEquals(MEDIA_TYPE, body.contentType());
+    assertEquals(expected.length, body.contentLength());
+    assertArrayEquals(expected, write(body));
+  }
+
+  @Test
+  public void testPreEncodedSpansBody() throws Exception {
+    // Large enough to span several encoding chunks
+    final List<SpanData> spans = spans(1000);
+    final byte[] expected = ReportRequest.newBuilder()
+        .setReporter(reporter)
+        .setAuth(auth)
+        .addAllSpans(Adapter.toLightstepSpans(spans, lsSpanAttributes))
+        .build()
+        .toByteArray();
+
+    final ReportRequestBody body =
+        ReportRequestBody.create(reporter, auth, encode(spans), MEDIA_TYPE, null);
+
+    assertEquals(MEDIA_TYPE, body.contentType());
+    assertEquals(expected.length, body.contentLength());
+    assertArrayEquals(expected, write(body));
+  }
+
+  @Test
+  public void testWithInternalMetrics() throws Exception {
+    final InternalMetrics internalMetrics = InternalMetrics.newBuilder()
+        .setDurationMicros(30000000)
+        .addCounts(MetricsSample.newBuilder().setName("spans.sent").setIntValue(100))
+        .build();
+    final List<SpanData> spans = spans(10);
+    final ReportRequest expected = ReportRequest.newBuilder()
+        .setReporter(reporter)
+        .setAuth(auth)
+        .addAllSpans(Adapter.toLightstepSpans(spans, lsSpanAttributes))
+        .setInternalMetrics(internalMetrics)
+        .build();
+
+    final ReportRequestBody body = ReportRequestBody.create(reporter, auth, encode(spans),
+        MEDIA_TYPE, new BufferPool(1, 1024 * 1024)).withInternalMetrics(internalMetrics);
+
+    assertEquals(MEDIA_TYPE, body.contentType());
+    assertEquals(expected.getSerializedSize(), body.contentLength());
+    assertEquals(expected, ReportRequest.parseFrom(write(body)));
+    body.release();
+
+    final List<ReportRequestBody> parts = body.split(body.contentLength() / 2);
+    assertEquals(internalMetrics, ReportRequest.parseFrom(write(parts.get(0)))
+        .getInternalMetrics());
+    for (ReportRequestBody part : parts.subList(1, parts.size())) {
+      assertFalse(ReportRequest.parseFrom(write(part)).hasInternalMetrics());
+    }
+  }
+
+  @Test
+  public void testWithTimestampOffset() throws Exception {
+    final List<SpanData> spans = spans(10);
+    final ReportRequest expected = ReportRequest.newBuilder()
+        .setReporter(reporter)
+        .setAuth(auth)
+        .addAllSpans(Adapter.toLightstepSpans(spans, lsSpanAttributes))
+        .setTimestampOffsetMicros(-1234567)
+        .build();
+
+    final ReportRequestBody body = ReportRequestBody.create(reporter, auth, encode(spans),
+        MEDIA_TYPE, null).withTimestampOffset(-1234567);
+
+    assertEquals(expected.getSerializedSize(), body.contentLength());
+    assertEquals(expected, ReportRequest.parseFrom(write(body)));
+
+    final List<ReportRequestBody> parts = body.split(body.contentLength() / 2);
+    assertTrue(parts.size() > 1);
+    for (ReportRequestBody part : parts) {
+      final byte[] bytes = write(part);
+      assertEquals(part.contentLength(), bytes.length);
+      assertEquals(-1234567, ReportRequest.parseFrom(bytes).getTimestampOffsetMicros());
+    }
+  }
+
+  @Test
+  public void testWriteTwice() throws Exception {
+    final ReportRequestBody body = ReportRequestBody.create(reporter, auth, spans(3),
+        lsSpanAttributes, true, null, MEDIA_TYPE, null);
+
+    assertArrayEquals(write(body), write(body));
+  }
+
+  @Test
+  public void testPooledBuffer() throws Exception {
+    final BufferPool bufferPool = new BufferPool(1, 1024 * 1024);
+    final List<SpanData> spans = spans(100);
+    final byte[] expected = write(ReportRequestBody.create(reporter, auth, spans,
+        lsSpanAttributes, true, null, MEDIA_TYPE, null));
+
+    for (int i = 0; i < 3; i++) {
+      final ReportRequestBody body = ReportRequestBody.create(reporter, auth, spans,
+          lsSpanAttributes, true, null, MEDIA_TYPE, bufferPool);
+      assertArrayEquals(expected, write(body));
+      // Written again from the same buffer, e.g. on a retry
+      assertArrayEquals(expected, write(body));
+      assertEquals(0, bufferPool.size());
+      body.release();
+      assertEquals(1, bufferPool.size());
+    }
+    assertEquals(1, bufferPool.getAllocationCount());
+  }
+
+  @Test
+  public void testSerialize() throws Exception {
+    final BufferPool bufferPool = new BufferPool(1, 1024 * 1024);
+    final ReportRequestBody body = ReportRequestBody.create(reporter, auth, spans(3),
+        lsSpanAttributes, true, null, MEDIA_TYPE, bufferPool);
+
+    body.serialize();
+    assertEquals(1, bufferPool.getAllocationCount());
+    body.serialize();
+    assertEquals(1, bufferPool.getAllocationCount());
+
+    final byte[] expected = write(ReportRequestBody.create(reporter, auth, spans(3),
+        lsSpanAttributes, true, null, MEDIA_TYPE, null));
+    assertArrayEquals(expected, write(body));
+    body.release();
+  }
+
+  @Test
+  public void testSplit() throws Exception {
+    final List<SpanData> spans = spans(100);
+    final ReportRequestBody body = ReportRequestBody.create(reporter, auth, spans,
+        lsSpanAttributes, true, null, MEDIA_TYPE, null);
+    final ReportRequestBody message = ReportRequestBody.create(ReportRequest.newBuilder()
+        .setReporter(reporter)
+        .setAuth(auth)
+        .addAllSpans(Adapter.toLightstepSpans(spans, lsSpanAttributes))
+        .build(), MEDIA_TYPE, null);
+    final ReportRequestBody preEncoded =
+        ReportRequestBody.create(reporter, auth, encode(spans), MEDIA_TYPE, null);
+    final long maxBytes = body.contentLength() / 3;
+
+    for (ReportRequestBody splitBody : new ReportRequestBody[]{body, message, preEncoded}) {
+      final List<ReportRequestBody> bodies = splitBody.split(maxBytes);
+      assertTrue(bodies.size() >= 3);
+
+      final List<Span> splitSpans = new ArrayList<>();
+      for (ReportRequestBody part : bodies) {
+        assertTrue(part.contentLength() <= maxBytes);
+        final ReportRequest request = ReportRequest.parseFrom(write(part));
+        assertEquals(reporter, request.getReporter());
+        assertEquals(auth, request.getAuth());
+        assertEquals(part.getSpanCount(), request.getSpansCount());
+        splitSpans.addAll(request.getSpansList());
+      }
+      assertEquals(ReportRequest.parseFrom(write(splitBody)).getSpansList(), splitSpans);
+    }
+  }
+
+  @Test
+  public void testSplit_fits() throws Exception {
+    final ReportRequestBody body = ReportRequestBody.create(reporter, auth, spans(10),
+        lsSpanAttributes, true, null, MEDIA_TYPE, null);
+
+    final List<ReportRequestBody> bodies = body.split(body.contentLength());
+
+    assertEquals(1, bodies.size());
+    assertSame(body, bodies.get(0));
+  }
+
+  @Test
+  public void testSplit_oversizedSpans() throws Exception {
+    final ReportRequestBody body = ReportRequestBody.create(reporter, auth, spans(10),
+        lsSpanAttributes, true, null, MEDIA_TYPE, null);
+
+    // Spans too large for the limit are still sent, one per report.
+    final List<ReportRequestBody> bodies = body.split(1);
+
+    assertEquals(10, bodies.size());
+    for (ReportRequestBody part : bodies) {
+      assertEquals(1, ReportRequest.parseFrom(write(part)).getSpansCount());
+    }
+  }
+}
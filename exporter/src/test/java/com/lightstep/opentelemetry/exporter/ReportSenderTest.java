@@ -0,0 +1,155 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.lightstep.tracer.grpc.MetricsSample;
+import com.lightstep.tracer.grpc.ReportRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+public class ReportSenderTest {
+  private final ExporterMetrics metrics = new ExporterMetrics(0);
+  private final List<ReportTransport.Result> responses =
+      Collections.synchronizedList(new ArrayList<ReportTransport.Result>());
+  private final ReportTransport.ResultCallback responseCallback =
+      new ReportTransport.ResultCallback() {
+        @Override
+        public void onComplete(ReportTransport.Result result) {
+          responses.add(result);
+        }
+      };
+
+  /**
+   * A transport answering the attempts of each report with the given results, the last one being
+   * repeated.
+   */
+  private static final class ScriptedTransport extends ReportTransport {
+    private final ReportTransport.Result[] results;
+    int prepared;
+
+    ScriptedTransport(ReportTransport.Result... results) {
+      this.results = results;
+    }
+
+    @Override
+    PreparedReport prepare(ReportRequestBody body) {
+      prepared++;
+      return new PreparedReport() {
+        private int attempts;
+
+        @Override
+        Result send() {
+          return results[Math.min(attempts++, results.length - 1)];
+        }
+
+        @Override
+        void sendAsync(ResultCallback callback) {
+          callback.onComplete(send());
+        }
+      };
+    }
+
+    @Override
+    void shutdown() {
+    }
+  }
+
+  private static ReportRequestBody report() {
+    return ReportRequestBody.create(ReportRequest.getDefaultInstance(), null, null);
+  }
+
+  private long retries() {
+    for (MetricsSample count : metrics.sample().getCountsList()) {
+      if (count.getName().equals(ExporterMetrics.REPORTS_RETRIED)) {
+        return count.getIntValue();
+      }
+    }
+    throw new AssertionError();
+  }
+
+  private ReportTransport.Result sendAsync(ReportSender sender) throws InterruptedException {
+    final CountDownLatch completed = new CountDownLatch(1);
+    final AtomicReference<ReportTransport.Result> result = new AtomicReference<>();
+    sender.sendAsync(report(), new ReportTransport.ResultCallback() {
+      @Override
+      public void onComplete(ReportTransport.Result sent) {
+        result.set(sent);
+        completed.countDown();
+      }
+    });
+    assertTrue(completed.await(5, TimeUnit.SECONDS));
+    return result.get();
+  }
+
+  @Test
+  public void testSend_retries() {
+    final ScriptedTransport transport = new ScriptedTransport(
+        ReportTransport.Result.retryable(-1), ReportTransport.Result.SUCCESS);
+    final ReportSender sender =
+        new ReportSender(transport, new RetryPolicy(3, 1, 1, 100), metrics, responseCallback);
+
+    assertSame(ReportTransport.Result.SUCCESS, sender.send(report()));
+    // The report was prepared once for both attempts.
+    assertEquals(1, transport.prepared);
+    assertEquals(2, responses.size());
+    assertEquals(1, retries());
+  }
+
+  @Test
+  public void testSend_maxRetries() {
+    final ReportTransport.Result failure = ReportTransport.Result.retryable(-1);
+    final ReportSender sender = new ReportSender(new ScriptedTransport(failure),
+        new RetryPolicy(2, 1, 1, 100), metrics, responseCallback);
+
+    assertSame(failure, sender.send(report()));
+    assertEquals(3, responses.size());
+    assertEquals(2, retries());
+  }
+
+  @Test
+  public void testSend_notRetryable() {
+    final ReportSender sender = new ReportSender(
+        new ScriptedTransport(ReportTransport.Result.FAILURE), new RetryPolicy(3, 1, 1, 100),
+        metrics, responseCallback);
+
+    assertSame(ReportTransport.Result.FAILURE, sender.send(report()));
+    assertEquals(1, responses.size());
+    assertEquals(0, retries());
+  }
+
+  @Test
+  public void testSendAsync_retries() throws Exception {
+    final ScriptedTransport transport = new ScriptedTransport(
+        ReportTransport.Result.retryable(-1), ReportTransport.Result.retryable(-1),
+        ReportTransport.Result.SUCCESS);
+    final ReportSender sender =
+        new ReportSender(transport, new RetryPolicy(3, 1, 1, 100), metrics, responseCallback);
+
+    assertSame(ReportTransport.Result.SUCCESS, sendAsync(sender));
+    assertEquals(1, transport.prepared);
+    assertEquals(3, responses.size());
+    assertEquals(2, retries());
+    sender.shutdown();
+  }
+
+  @Test
+  public void testShutdown_stopsRetrying() throws Exception {
+    final ReportTransport.Result failure = ReportTransport.Result.retryable(-1);
+    final ReportSender sender = new ReportSender(new ScriptedTransport(failure),
+        new RetryPolicy(3, 1, 1, 100), metrics, responseCallback);
+    sender.shutdown();
+
+    assertSame(failure, sender.send(report()));
+    assertSame(failure, sendAsync(sender));
+    assertEquals(Arrays.asList(failure, failure), responses);
+    assertEquals(0, retries());
+  }
+}
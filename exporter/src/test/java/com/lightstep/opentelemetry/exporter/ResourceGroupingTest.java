@@ -0,0 +1,90 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertEquals;
+
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.Reporter;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.common.Attributes;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.test.TestSpanData;
+import io.opentelemetry.trace.Span.Kind;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.TraceId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class ResourceGroupingTest {
+  private static final Resource FIRST =
+      Resource.create(Attributes.of("service", AttributeValue.stringAttributeValue("first")));
+  private static final Resource SECOND =
+      Resource.create(Attributes.of("service", AttributeValue.stringAttributeValue("second")));
+
+  private static SpanData span(int id, Resource resource) {
+    return TestSpanData.newBuilder()
+        .setHasEnded(true)
+        .setTraceId(new TraceId(1, 1))
+        .setSpanId(new SpanId(id))
+        .setName("span " + id)
+        .setStartEpochNanos(1581000000000000000L)
+        .setEndEpochNanos(1581000000000000000L + id)
+        .setKind(Kind.SERVER)
+        .setStatus(Status.OK)
+        .setResource(resource)
+        .setTotalRecordedEvents(0)
+        .setTotalRecordedLinks(0)
+        .build();
+  }
+
+  private static EncodedSpan encodedSpan(Resource resource) {
+    return new EncodedSpan(new byte[0], 0, 0, resource);
+  }
+
+  @Test
+  public void testGroupSpans() {
+    final SpanData first = span(1, FIRST);
+    final SpanData second = span(2, SECOND);
+    final SpanData third = span(3, FIRST);
+    // An equal resource of another instance belongs to the same group.
+    final SpanData fourth = span(4,
+        Resource.create(Attributes.of("service", AttributeValue.stringAttributeValue("first"))));
+
+    final Map<Resource, List<SpanData>> groups =
+        ResourceGrouping.groupSpans(Arrays.asList(first, second, third, fourth));
+    assertEquals(Arrays.asList(FIRST, SECOND), Arrays.asList(groups.keySet().toArray()));
+    assertEquals(Arrays.asList(first, third, fourth), groups.get(FIRST));
+    assertEquals(Arrays.asList(second), groups.get(SECOND));
+  }
+
+  @Test
+  public void testGroupEncodedSpans() {
+    final EncodedSpan first = encodedSpan(SECOND);
+    final EncodedSpan second = encodedSpan(FIRST);
+    final EncodedSpan third = encodedSpan(SECOND);
+
+    final Map<Resource, List<EncodedSpan>> groups =
+        ResourceGrouping.groupEncodedSpans(Arrays.asList(first, second, third));
+    assertEquals(Arrays.asList(SECOND, FIRST), Arrays.asList(groups.keySet().toArray()));
+    assertEquals(Arrays.asList(first, third), groups.get(SECOND));
+    assertEquals(Arrays.asList(second), groups.get(FIRST));
+  }
+
+  @Test
+  public void testReporterFor() {
+    final Reporter reporter = Reporter.newBuilder()
+        .setReporterId(1)
+        .addTags(KeyValue.newBuilder().setKey("lightstep.component_name").setStringValue("test"))
+        .build();
+
+    final Reporter grouped = ResourceGrouping.reporterFor(reporter, FIRST, null);
+    assertEquals(1, grouped.getReporterId());
+    assertEquals(2, grouped.getTagsCount());
+    assertEquals(reporter.getTags(0), grouped.getTags(0));
+    assertEquals(KeyValue.newBuilder().setKey("service").setStringValue("first").build(),
+        grouped.getTags(1));
+  }
+}
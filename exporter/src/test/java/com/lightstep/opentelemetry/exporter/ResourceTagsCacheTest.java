@@ -0,0 +1,84 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.lightstep.tracer.grpc.KeyValue;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.common.Attributes;
+import io.opentelemetry.sdk.resources.Resource;
+import java.util.List;
+import org.junit.Test;
+
+public class ResourceTagsCacheTest {
+
+  private static Resource resource(String value) {
+    return Resource.create(Attributes.of("key", AttributeValue.stringAttributeValue(value)));
+  }
+
+  @Test
+  public void testHitsAndMisses() {
+    final ResourceTagsCache cache = new ResourceTagsCache(4);
+    final Resource resource = resource("value");
+
+    final ResourceTagsCache.Entry first = cache.get(resource);
+    final ResourceTagsCache.Entry second = cache.get(resource);
+
+    assertSame(first, second);
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getHitCount());
+
+    final List<KeyValue> tags = first.getTags();
+    assertEquals(1, tags.size());
+    assertEquals("key", tags.get(0).getKey());
+    assertEquals("value", tags.get(0).getStringValue());
+  }
+
+  @Test
+  public void testKeyedByIdentity() {
+    final ResourceTagsCache cache = new ResourceTagsCache(4);
+    final Resource resource = resource("value");
+    final Resource equalResource = resource("value");
+
+    assertNotSame(cache.get(resource), cache.get(equalResource));
+    assertEquals(2, cache.getMissCount());
+    assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void testEvictsOldestEntry() {
+    final ResourceTagsCache cache = new ResourceTagsCache(2);
+    final Resource first = resource("first");
+    final Resource second = resource("second");
+    final Resource third = resource("third");
+
+    cache.get(first);
+    cache.get(second);
+    cache.get(third);
+
+    assertNull(cache.find(first));
+    assertEquals("second", cache.find(second).getTags().get(0).getStringValue());
+    assertEquals("third", cache.find(third).getTags().get(0).getStringValue());
+    assertEquals(3, cache.getMissCount());
+  }
+
+  @Test
+  public void testFindDoesNotCount() {
+    final ResourceTagsCache cache = new ResourceTagsCache(2);
+    final Resource resource = resource("value");
+
+    assertNull(cache.find(resource));
+    cache.get(resource);
+    cache.find(resource);
+
+    assertEquals(1, cache.getMissCount());
+    assertEquals(0, cache.getHitCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new ResourceTagsCache(0);
+  }
+}
@@ -0,0 +1,73 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+  @Test
+  public void testNextBackoffMillis_fullJitter() {
+    final RetryPolicy policy = new RetryPolicy(100, 100, 1000, 100);
+    for (int i = 0; i < 100; i++) {
+      policy.onReport();
+      assertThat(policy.nextBackoffMillis(0, -1)).isBetween(0L, 100L);
+      policy.onReport();
+      assertThat(policy.nextBackoffMillis(2, -1)).isBetween(0L, 400L);
+      policy.onReport();
+      // Capped by the maximum backoff.
+      assertThat(policy.nextBackoffMillis(10, -1)).isBetween(0L, 1000L);
+    }
+  }
+
+  @Test
+  public void testNextBackoffMillis_noOverflow() {
+    final RetryPolicy policy = new RetryPolicy(Integer.MAX_VALUE, 1000, Long.MAX_VALUE, 100);
+    assertThat(policy.nextBackoffMillis(100, -1)).isBetween(0L, Long.MAX_VALUE);
+  }
+
+  @Test
+  public void testNextBackoffMillis_retryAfter() {
+    final RetryPolicy policy = new RetryPolicy(3, 100, 5000, 100);
+    assertEquals(2000, policy.nextBackoffMillis(0, 2000));
+    // Longer than the maximum backoff.
+    assertEquals(-1, policy.nextBackoffMillis(0, 10000));
+  }
+
+  @Test
+  public void testNextBackoffMillis_maxRetries() {
+    final RetryPolicy policy = new RetryPolicy(2, 100, 5000, 100);
+    assertThat(policy.nextBackoffMillis(1, -1)).isNotNegative();
+    assertEquals(-1, policy.nextBackoffMillis(2, -1));
+    assertEquals(-1, new RetryPolicy(0, 100, 5000, 100).nextBackoffMillis(0, -1));
+  }
+
+  @Test
+  public void testNextBackoffMillis_budget() {
+    final RetryPolicy policy = new RetryPolicy(3, 0, 0, 50);
+    for (int i = 0; i < RetryPolicy.MAX_RETRY_BALANCE; i++) {
+      assertEquals(0, policy.nextBackoffMillis(0, -1));
+    }
+    assertEquals(-1, policy.nextBackoffMillis(0, -1));
+
+    // Two reports earn a retry at 50%.
+    policy.onReport();
+    assertEquals(-1, policy.nextBackoffMillis(0, -1));
+    policy.onReport();
+    assertEquals(0, policy.nextBackoffMillis(0, -1));
+    assertEquals(-1, policy.nextBackoffMillis(0, -1));
+  }
+
+  @Test
+  public void testOnReport_capped() {
+    final RetryPolicy policy = new RetryPolicy(3, 0, 0, 100);
+    for (int i = 0; i < 100; i++) {
+      policy.onReport();
+    }
+    for (int i = 0; i < RetryPolicy.MAX_RETRY_BALANCE; i++) {
+      assertEquals(0, policy.nextBackoffMillis(0, -1));
+    }
+    assertEquals(-1, policy.nextBackoffMillis(0, -1));
+  }
+}
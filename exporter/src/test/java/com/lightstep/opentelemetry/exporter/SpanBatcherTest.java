@@ -0,0 +1,131 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.test.TestSpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter.ResultCode;
+import io.opentelemetry.trace.Span.Kind;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.TraceId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class SpanBatcherTest {
+  private final List<List<SpanData>> batches = new CopyOnWriteArrayList<>();
+  private volatile ResultCode resultCode = ResultCode.SUCCESS;
+  private final SpanBatcher.Sender sender = new SpanBatcher.Sender() {
+    @Override
+    public ResultCode send(List<SpanData> batch) {
+      batches.add(batch);
+      return resultCode;
+    }
+  };
+
+  private static List<SpanData> spans(int count) {
+    final List<SpanData> spans = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      spans.add(TestSpanData.newBuilder()
+          .setHasEnded(true)
+          .setTraceId(new TraceId(i, i))
+          .setSpanId(new SpanId(i))
+          .setName("span " + i)
+          .setStartEpochNanos(1581000000000000000L)
+          .setEndEpochNanos(1581000000000000000L + i)
+          .setKind(Kind.SERVER)
+          .setStatus(Status.OK)
+          .setTotalRecordedEvents(0)
+          .setTotalRecordedLinks(0)
+          .build());
+    }
+    return spans;
+  }
+
+  @Test
+  public void testSendsFullBatches() {
+    final SpanBatcher batcher = new SpanBatcher(3, 60000, sender);
+    final List<SpanData> spans = spans(8);
+
+    for (SpanData span : spans.subList(0, 2)) {
+      assertEquals(ResultCode.SUCCESS, batcher.add(Collections.singletonList(span)));
+    }
+    assertEquals(0, batches.size());
+
+    assertEquals(ResultCode.SUCCESS, batcher.add(spans.subList(2, 8)));
+    assertEquals(2, batches.size());
+    assertEquals(spans.subList(0, 3), batches.get(0));
+    assertEquals(spans.subList(3, 6), batches.get(1));
+    assertEquals(2, batcher.size());
+    batcher.shutdown();
+  }
+
+  @Test
+  public void testFlush() {
+    final SpanBatcher batcher = new SpanBatcher(3, 60000, sender);
+    final List<SpanData> spans = spans(2);
+
+    batcher.add(spans);
+    assertEquals(ResultCode.SUCCESS, batcher.flush());
+
+    assertEquals(1, batches.size());
+    assertEquals(spans, batches.get(0));
+    assertEquals(0, batcher.size());
+    // Nothing left to send
+    assertEquals(ResultCode.SUCCESS, batcher.flush());
+    assertEquals(1, batches.size());
+    batcher.shutdown();
+  }
+
+  @Test
+  public void testSendsAfterDelay() throws Exception {
+    final CountDownLatch sent = new CountDownLatch(1);
+    final SpanBatcher batcher = new SpanBatcher(100, 100, new SpanBatcher.Sender() {
+      @Override
+      public ResultCode send(List<SpanData> batch) {
+        batches.add(batch);
+        sent.countDown();
+        return ResultCode.SUCCESS;
+      }
+    });
+
+    batcher.add(spans(1));
+
+    assertTrue(sent.await(10, TimeUnit.SECONDS));
+    assertEquals(1, batches.get(0).size());
+    assertEquals(0, batcher.size());
+    batcher.shutdown();
+  }
+
+  @Test
+  public void testFailure() {
+    final SpanBatcher batcher = new SpanBatcher(1, 60000, sender);
+    resultCode = ResultCode.FAILURE;
+
+    assertEquals(ResultCode.FAILURE, batcher.add(spans(1)));
+    batcher.shutdown();
+  }
+
+  @Test
+  public void testShutdown() {
+    final SpanBatcher batcher = new SpanBatcher(3, 60000, sender);
+
+    batcher.add(spans(2));
+    assertEquals(ResultCode.SUCCESS, batcher.shutdown());
+    assertEquals(1, batches.size());
+
+    assertEquals(ResultCode.FAILURE, batcher.add(spans(1)));
+    assertEquals(0, batcher.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidBatchSize() {
+    new SpanBatcher(0, 1000, sender);
+  }
+}
@@ -0,0 +1,285 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.protobuf.CodedOutputStream;
+import com.lightstep.tracer.grpc.Auth;
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.Reporter;
+import io.opentelemetry.common.AttributeValue;
+import io.opentelemetry.common.Attributes;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.EventImpl;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.SpanData.Event;
+import io.opentelemetry.sdk.trace.data.SpanData.Link;
+import io.opentelemetry.sdk.trace.data.test.TestSpanData;
+import io.opentelemetry.trace.Span.Kind;
+import io.opentelemetry.trace.SpanContext;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.TraceFlags;
+import io.opentelemetry.trace.TraceId;
+import io.opentelemetry.trace.TraceState;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+public class SpanEncoderTest {
+  private static final String TRACE_ID = "463ac35c9f6413ad48485a3953bb6124";
+  private static final String SPAN_ID = "0000000000def456";
+  private static final String PARENT_SPAN_ID = "0000000000aef789";
+  private static final String LINK_SPAN_ID = "0000000000fed456";
+
+  private static final List<KeyValue> LS_SPAN_ATTRIBUTES = Arrays.asList(
+      KeyValue.newBuilder().setKey(LightstepSpanExporter.LIGHTSTEP_HOSTNAME_KEY)
+          .setStringValue("host").build(),
+      KeyValue.newBuilder().setKey(LightstepSpanExporter.SERVICE_VERSION_KEY)
+          .setStringValue("1.0").build());
+
+  private static SpanData fullSpanData() {
+    final Attributes attributes = Attributes.newBuilder()
+        .setAttribute("string", AttributeValue.stringAttributeValue("value é漢"))
+        .setAttribute("long", AttributeValue.longAttributeValue(-42))
+        .setAttribute("double", AttributeValue.doubleAttributeValue(1.5))
+        .setAttribute("bool", AttributeValue.booleanAttributeValue(false))
+        .setAttribute("array", AttributeValue.arrayAttributeValue("a", "b"))
+        .setAttribute("", AttributeValue.stringAttributeValue(""))
+        .build();
+
+    final Link link = SpanData.Link.create(SpanContext.create(
+        TraceId.fromLowerBase16(TRACE_ID, 0),
+        SpanId.fromLowerBase16(LINK_SPAN_ID, 0),
+        TraceFlags.builder().build(),
+        TraceState.builder().build()));
+
+    final Event event = EventImpl.create(1581000000123456789L, "the log message",
+        Attributes.of("foo", AttributeValue.stringAttributeValue("bar")));
+    final Event emptyEvent = EventImpl.create(0, "", Attributes.empty());
+
+    return TestSpanData.newBuilder()
+        .setHasEnded(true)
+        .setTraceId(TraceId.fromLowerBase16(TRACE_ID, 0))
+        .setSpanId(SpanId.fromLowerBase16(SPAN_ID, 0))
+        .setParentSpanId(SpanId.fromLowerBase16(PARENT_SPAN_ID, 0))
+        .setName("GET /api/endpoint")
+        .setStartEpochNanos(1581000000000000001L)
+        .setEndEpochNanos(1581000000900000999L)
+        .setAttributes(attributes)
+        .setEvents(Arrays.asList(event, emptyEvent))
+        .setTotalRecordedEvents(2)
+        .setLinks(Collections.singletonList(link))
+        .setTotalRecordedLinks(1)
+        .setKind(Kind.SERVER)
+        .setResource(Resource.create(Attributes.of(
+            "service.name", AttributeValue.stringAttributeValue("service"),
+            "pid", AttributeValue.longAttributeValue(1234))))
+        .setStatus(Status.INTERNAL.withDescription("boom"))
+        .build();
+  }
+
+  private static SpanData minimalSpanData() {
+    return TestSpanData.newBuilder()
+        .setHasEnded(true)
+        .setTraceId(new TraceId(0, 0))
+        .setSpanId(new SpanId(0))
+        .setName("")
+        .setStartEpochNanos(0)
+        .setEndEpochNanos(999)
+        .setKind(Kind.INTERNAL)
+        .setStatus(Status.OK)
+        .setTotalRecordedEvents(0)
+        .setTotalRecordedLinks(0)
+        .build();
+  }
+
+  private static SpanData negativeTimestampSpanData() {
+    return TestSpanData.newBuilder()
+        .setHasEnded(true)
+        .setTraceId(TraceId.fromLowerBase16(TRACE_ID, 0))
+        .setSpanId(SpanId.fromLowerBase16(SPAN_ID, 0))
+        .setName("before epoch")
+        .setStartEpochNanos(-1500000001L)
+        .setEndEpochNanos(-1000L)
+        .setKind(Kind.CLIENT)
+        .setStatus(Status.CANCELLED)
+        .setTotalRecordedEvents(0)
+        .setTotalRecordedLinks(0)
+        .build();
+  }
+
+  private static byte[] encodeSpan(SpanData spanData, List<KeyValue> lsSpanAttributes,
+      boolean includeResourceTags, ResourceTagsCache resourceTagsCache) throws Exception {
+    final byte[] bytes = new byte[SpanEncoder.computeSpanSize(
+        spanData, lsSpanAttributes, includeResourceTags, resourceTagsCache)];
+    final CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+    SpanEncoder.writeSpan(out, spanData, lsSpanAttributes, includeResourceTags,
+        resourceTagsCache);
+    out.checkNoSpaceLeft();
+    return bytes;
+  }
+
+  private static void assertSameSpanBytes(SpanData spanData, List<KeyValue> lsSpanAttributes)
+      throws Exception {
+    final byte[] expected = Adapter.toLightstepSpan(spanData, lsSpanAttributes).toByteArray();
+    assertArrayEquals(expected, encodeSpan(spanData, lsSpanAttributes, true, null));
+    assertArrayEquals(expected,
+        encodeSpan(spanData, lsSpanAttributes, true, new ResourceTagsCache(1)));
+
+    final byte[] withoutResourceTags =
+        Adapter.toLightstepSpan(spanData, lsSpanAttributes, false, null).toByteArray();
+    assertArrayEquals(withoutResourceTags,
+        encodeSpan(spanData, lsSpanAttributes, false, null));
+    assertArrayEquals(withoutResourceTags,
+        encodeSpan(spanData, lsSpanAttributes, false, new ResourceTagsCache(1)));
+  }
+
+  @Test
+  public void testFullSpan() throws Exception {
+    assertSameSpanBytes(fullSpanData(), LS_SPAN_ATTRIBUTES);
+  }
+
+  @Test
+  public void testFullSpanWithoutLsSpanAttributes() throws Exception {
+    assertSameSpanBytes(fullSpanData(), Collections.<KeyValue>emptyList());
+  }
+
+  @Test
+  public void testMinimalSpan() throws Exception {
+    assertSameSpanBytes(minimalSpanData(), LS_SPAN_ATTRIBUTES);
+  }
+
+  @Test
+  public void testNegativeTimestamps() throws Exception {
+    assertSameSpanBytes(negativeTimestampSpanData(), LS_SPAN_ATTRIBUTES);
+  }
+
+  @Test
+  public void testReportRequest() {
+    final Reporter reporter = Reporter.newBuilder()
+        .setReporterId(1234)
+        .addTags(KeyValue.newBuilder().setKey("lightstep.component_name").setStringValue("test"))
+        .build();
+    final Auth auth = Auth.newBuilder().setAccessToken("token").build();
+    final List<SpanData> spans =
+        Arrays.asList(fullSpanData(), minimalSpanData(), negativeTimestampSpanData());
+
+    final byte[] expected = ReportRequest.newBuilder()
+        .setReporter(reporter)
+        .setAuth(auth)
+        .addAllSpans(Adapter.toLightstepSpans(spans, LS_SPAN_ATTRIBUTES))
+        .build()
+        .toByteArray();
+
+    assertArrayEquals(expected,
+        SpanEncoder.toByteArray(reporter, auth, spans, LS_SPAN_ATTRIBUTES, true, null));
+
+    final ResourceTagsCache resourceTagsCache = new ResourceTagsCache(2);
+    assertArrayEquals(expected,
+        SpanEncoder.toByteArray(reporter, auth, spans, LS_SPAN_ATTRIBUTES, true,
+            resourceTagsCache));
+    assertEquals(3, resourceTagsCache.getHitCount() + resourceTagsCache.getMissCount());
+  }
+
+  @Test
+  public void testEncodeSpan() {
+    final SpanData spanData = fullSpanData();
+    final byte[] expected = Adapter.toLightstepSpan(spanData, LS_SPAN_ATTRIBUTES).toByteArray();
+
+    // Enough spans to fill several encoding chunks of this thread.
+    final List<EncodedSpan> encodedSpans = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      encodedSpans.add(SpanEncoder.encodeSpan(spanData, LS_SPAN_ATTRIBUTES, true, null));
+    }
+    for (EncodedSpan encodedSpan : encodedSpans) {
+      assertEquals(expected.length, encodedSpan.getLength());
+      assertArrayEquals(expected, encodedSpan.toByteArray());
+      assertSame(spanData.getResource(), encodedSpan.getResource());
+    }
+  }
+
+  @Test
+  public void testEncodeSpans_parallel() {
+    final List<SpanData> spans = new ArrayList<>();
+    for (int i = 0; i < 1001; i++) {
+      spans.add(TestSpanData.newBuilder()
+          .setHasEnded(true)
+          .setTraceId(TraceId.fromLowerBase16(TRACE_ID, 0))
+          .setSpanId(SpanId.fromLowerBase16(SPAN_ID, 0))
+          .setName("span " + i)
+          .setStartEpochNanos(1581000000000000001L)
+          .setEndEpochNanos(1581000000900000999L)
+          .setKind(Kind.SERVER)
+          .setStatus(Status.OK)
+          .setTotalRecordedEvents(0)
+          .setTotalRecordedLinks(0)
+          .build());
+    }
+
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      final List<EncodedSpan> encodedSpans =
+          SpanEncoder.encodeSpans(spans, LS_SPAN_ATTRIBUTES, true, null, pool, 4, 100);
+      // The chunks encoded by the pool keep the order of the spans.
+      assertEquals(spans.size(), encodedSpans.size());
+      for (int i = 0; i < spans.size(); i++) {
+        assertArrayEquals(
+            Adapter.toLightstepSpan(spans.get(i), LS_SPAN_ATTRIBUTES).toByteArray(),
+            encodedSpans.get(i).toByteArray());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testEncodeSpan_large() {
+    final char[] name = new char[64 * 1024];
+    Arrays.fill(name, 'a');
+    final SpanData spanData = TestSpanData.newBuilder()
+        .setHasEnded(true)
+        .setTraceId(TraceId.fromLowerBase16(TRACE_ID, 0))
+        .setSpanId(SpanId.fromLowerBase16(SPAN_ID, 0))
+        .setName(new String(name))
+        .setStartEpochNanos(1581000000000000001L)
+        .setEndEpochNanos(1581000000900000999L)
+        .setKind(Kind.SERVER)
+        .setStatus(Status.OK)
+        .setTotalRecordedEvents(0)
+        .setTotalRecordedLinks(0)
+        .build();
+
+    assertArrayEquals(Adapter.toLightstepSpan(spanData, LS_SPAN_ATTRIBUTES).toByteArray(),
+        SpanEncoder.encodeSpan(spanData, LS_SPAN_ATTRIBUTES, true, null).toByteArray());
+  }
+
+  @Test
+  public void testEncodeTags() throws Exception {
+    final com.lightstep.tracer.grpc.Span expected = com.lightstep.tracer.grpc.Span.newBuilder()
+        .addAllTags(LS_SPAN_ATTRIBUTES)
+        .build();
+
+    assertArrayEquals(expected.toByteArray(),
+        SpanEncoder.encodeTags(LS_SPAN_ATTRIBUTES).toByteArray());
+  }
+
+  @Test
+  public void testEmptyReportRequest() {
+    final Reporter reporter = Reporter.newBuilder().setReporterId(1).build();
+    final Auth auth = Auth.newBuilder().setAccessToken("token").build();
+
+    final byte[] encoded = SpanEncoder.toByteArray(reporter, auth,
+        Collections.<SpanData>emptyList(), LS_SPAN_ATTRIBUTES, true, null);
+
+    assertArrayEquals(
+        ReportRequest.newBuilder().setReporter(reporter).setAuth(auth).build().toByteArray(),
+        encoded);
+    assertEquals(reporter.getSerializedSize() + auth.getSerializedSize() + 4, encoded.length);
+  }
+}
@@ -0,0 +1,124 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+public class SpanRingBufferTest {
+
+  @Test
+  public void testCapacity() {
+    assertEquals(1, new SpanRingBuffer<String>(1).capacity());
+    assertEquals(4, new SpanRingBuffer<String>(3).capacity());
+    assertEquals(4, new SpanRingBuffer<String>(4).capacity());
+    assertEquals(2048, new SpanRingBuffer<String>(2000).capacity());
+  }
+
+  @Test
+  public void testOfferPoll() {
+    final SpanRingBuffer<String> ringBuffer = new SpanRingBuffer<>(4);
+    assertNull(ringBuffer.poll());
+
+    for (int round = 0; round < 3; round++) {
+      assertTrue(ringBuffer.offer("a"));
+      assertTrue(ringBuffer.offer("b"));
+      assertTrue(ringBuffer.offer("c"));
+      assertEquals(3, ringBuffer.size());
+
+      assertEquals("a", ringBuffer.poll());
+      assertEquals("b", ringBuffer.poll());
+      assertEquals("c", ringBuffer.poll());
+      assertNull(ringBuffer.poll());
+      assertEquals(0, ringBuffer.size());
+    }
+  }
+
+  @Test
+  public void testFull() {
+    final SpanRingBuffer<String> ringBuffer = new SpanRingBuffer<>(2);
+
+    assertTrue(ringBuffer.offer("a"));
+    assertTrue(ringBuffer.offer("b"));
+    assertFalse(ringBuffer.offer("c"));
+
+    assertEquals("a", ringBuffer.poll());
+    assertTrue(ringBuffer.offer("c"));
+    assertFalse(ringBuffer.offer("d"));
+  }
+
+  @Test
+  public void testDrainTo() {
+    final SpanRingBuffer<String> ringBuffer = new SpanRingBuffer<>(8);
+    for (int i = 0; i < 5; i++) {
+      ringBuffer.offer("span " + i);
+    }
+
+    final List<String> drained = new ArrayList<>();
+    assertEquals(3, ringBuffer.drainTo(drained, 3));
+    assertEquals(2, ringBuffer.drainTo(drained, 3));
+    assertEquals(0, ringBuffer.drainTo(drained, 3));
+
+    assertEquals(5, drained.size());
+    assertEquals("span 0", drained.get(0));
+    assertEquals("span 4", drained.get(4));
+  }
+
+  @Test
+  public void testConcurrentProducers() throws Exception {
+    final int producers = 8;
+    final int perProducer = 20000;
+    final SpanRingBuffer<int[]> ringBuffer = new SpanRingBuffer<>(256);
+    final CountDownLatch start = new CountDownLatch(1);
+
+    for (int p = 0; p < producers; p++) {
+      final int producer = p;
+      final Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < perProducer; i++) {
+            final int[] element = {producer, i};
+            while (!ringBuffer.offer(element)) {
+              Thread.yield();
+            }
+          }
+        }
+      });
+      thread.setDaemon(true);
+      thread.start();
+    }
+    start.countDown();
+
+    // Each element is consumed once, in the order of its producer.
+    final int[] next = new int[producers];
+    int consumed = 0;
+    final long deadline = System.currentTimeMillis() + 30000;
+    while (consumed < producers * perProducer && System.currentTimeMillis() < deadline) {
+      final int[] element = ringBuffer.poll();
+      if (element == null) {
+        Thread.yield();
+        continue;
+      }
+      assertEquals(next[element[0]]++, element[1]);
+      consumed++;
+    }
+
+    assertEquals(producers * perProducer, consumed);
+    assertNull(ringBuffer.poll());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new SpanRingBuffer<String>(0);
+  }
+}
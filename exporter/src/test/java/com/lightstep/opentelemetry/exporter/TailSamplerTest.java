@@ -0,0 +1,110 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.lightstep.tracer.grpc.MetricsSample;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.test.TestSpanData;
+import io.opentelemetry.trace.Span.Kind;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.TraceId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class TailSamplerTest {
+  private final ExporterMetrics metrics = new ExporterMetrics(0);
+
+  private static SpanData span(int trace, int id, Status status) {
+    return TestSpanData.newBuilder()
+        .setHasEnded(true)
+        .setTraceId(new TraceId(trace, trace))
+        .setSpanId(new SpanId(id))
+        .setName("span " + id)
+        .setStartEpochNanos(1581000000000000000L)
+        .setEndEpochNanos(1581000000000000000L + id)
+        .setKind(Kind.SERVER)
+        .setStatus(status)
+        .setTotalRecordedEvents(0)
+        .setTotalRecordedLinks(0)
+        .build();
+  }
+
+  private TailSampler newSampler(long decisionWaitMillis, int maxSpans) {
+    return new TailSampler(decisionWaitMillis, maxSpans,
+        Collections.singletonList(TailSamplingRule.error()), metrics);
+  }
+
+  private long sampledOut() {
+    for (MetricsSample count : metrics.sample().getCountsList()) {
+      if (count.getName().equals(ExporterMetrics.SPANS_SAMPLED_OUT)) {
+        return count.getIntValue();
+      }
+    }
+    throw new AssertionError();
+  }
+
+  @Test
+  public void testKeepsWholeTrace() {
+    final TailSampler sampler = newSampler(60000, 100);
+    final SpanData first = span(1, 1, Status.OK);
+    final SpanData other = span(2, 2, Status.OK);
+    final SpanData error = span(1, 3, Status.INTERNAL);
+    final SpanData late = span(1, 4, Status.OK);
+
+    assertTrue(sampler.add(Arrays.asList(first, other)).isEmpty());
+    assertEquals(2, sampler.size());
+
+    assertEquals(Arrays.asList(first, error), sampler.add(Collections.singletonList(error)));
+    assertEquals(1, sampler.size());
+    // Spans of a kept trace are not held anymore.
+    assertEquals(Collections.singletonList(late), sampler.add(Collections.singletonList(late)));
+    assertEquals(1, sampler.size());
+  }
+
+  @Test
+  public void testDropsAfterDecisionWait() throws Exception {
+    final TailSampler sampler = newSampler(50, 100);
+    assertTrue(sampler.add(Arrays.asList(span(1, 1, Status.OK), span(1, 2, Status.OK))).isEmpty());
+
+    Thread.sleep(100);
+    // The trace was sampled out, even though its late span is an error.
+    assertTrue(sampler.add(Collections.singletonList(span(1, 3, Status.INTERNAL))).isEmpty());
+    assertEquals(0, sampler.size());
+    assertEquals(3, sampledOut());
+  }
+
+  @Test
+  public void testMaxSpans() {
+    final TailSampler sampler = newSampler(60000, 3);
+    for (int i = 1; i <= 5; i++) {
+      assertTrue(sampler.add(Collections.singletonList(span(i, i, Status.OK))).isEmpty());
+    }
+    assertEquals(3, sampler.size());
+    assertEquals(2, sampledOut());
+
+    // The oldest traces were dropped, the others are still held.
+    assertTrue(sampler.add(Collections.singletonList(span(1, 6, Status.INTERNAL))).isEmpty());
+    final List<SpanData> kept = sampler.add(Collections.singletonList(span(3, 7, Status.INTERNAL)));
+    assertEquals(2, kept.size());
+    assertEquals(2, sampler.size());
+  }
+
+  @Test
+  public void testShutdown() {
+    final TailSampler sampler = newSampler(60000, 100);
+    sampler.add(Arrays.asList(span(1, 1, Status.OK), span(2, 2, Status.OK)));
+    sampler.shutdown();
+
+    assertEquals(0, sampler.size());
+    assertEquals(2, sampledOut());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxSpans() {
+    newSampler(60000, 0);
+  }
+}
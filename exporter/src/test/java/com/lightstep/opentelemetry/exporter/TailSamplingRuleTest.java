@@ -0,0 +1,76 @@
+package com.lightstep.opentelemetry.exporter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.test.TestSpanData;
+import io.opentelemetry.trace.Span.Kind;
+import io.opentelemetry.trace.SpanId;
+import io.opentelemetry.trace.Status;
+import io.opentelemetry.trace.TraceId;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class TailSamplingRuleTest {
+  private static SpanData span(String name, long durationMillis, Status status) {
+    return TestSpanData.newBuilder()
+        .setHasEnded(true)
+        .setTraceId(new TraceId(1, 1))
+        .setSpanId(new SpanId(1))
+        .setName(name)
+        .setStartEpochNanos(1581000000000000000L)
+        .setEndEpochNanos(1581000000000000000L + TimeUnit.MILLISECONDS.toNanos(durationMillis))
+        .setKind(Kind.SERVER)
+        .setStatus(status)
+        .setTotalRecordedEvents(0)
+        .setTotalRecordedLinks(0)
+        .build();
+  }
+
+  @Test
+  public void testError() {
+    final TailSamplingRule rule = TailSamplingRule.error();
+    assertTrue(rule.keep(span("op", 1, Status.INTERNAL)));
+    assertFalse(rule.keep(span("op", 1, Status.OK)));
+  }
+
+  @Test
+  public void testMinDuration() {
+    final TailSamplingRule rule = TailSamplingRule.minDuration(100);
+    assertTrue(rule.keep(span("op", 100, Status.OK)));
+    assertFalse(rule.keep(span("op", 99, Status.OK)));
+  }
+
+  @Test
+  public void testOperationRateLimit() {
+    final TailSamplingRule rule = TailSamplingRule.operationRateLimit(2);
+    assertTrue(rule.keep(span("frequent", 1, Status.OK)));
+    assertTrue(rule.keep(span("frequent", 1, Status.OK)));
+    assertFalse(rule.keep(span("frequent", 1, Status.OK)));
+    // Each operation has its own rate.
+    assertTrue(rule.keep(span("rare", 1, Status.OK)));
+  }
+
+  @Test
+  public void testOperationRateLimit_refill() throws Exception {
+    final TailSamplingRule rule = TailSamplingRule.operationRateLimit(20);
+    for (int i = 0; i < 20; i++) {
+      assertTrue(rule.keep(span("op", 1, Status.OK)));
+    }
+    assertFalse(rule.keep(span("op", 1, Status.OK)));
+
+    Thread.sleep(100);
+    assertTrue(rule.keep(span("op", 1, Status.OK)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMinDuration() {
+    TailSamplingRule.minDuration(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidOperationRate() {
+    TailSamplingRule.operationRateLimit(0);
+  }
+}